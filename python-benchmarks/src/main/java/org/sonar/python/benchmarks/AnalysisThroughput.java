@@ -0,0 +1,334 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.CheckFactory;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.batch.rule.internal.NewActiveRule;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.config.internal.MapSettings;
+import org.sonar.api.internal.google.gson.JsonElement;
+import org.sonar.api.internal.google.gson.JsonObject;
+import org.sonar.api.internal.google.gson.JsonParser;
+import org.sonar.api.issue.NoSonarFilter;
+import org.sonar.api.measures.FileLinesContext;
+import org.sonar.api.measures.FileLinesContextFactory;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.check.Rule;
+import org.sonar.plugins.python.Python;
+import org.sonar.plugins.python.PythonSensor;
+import org.sonar.python.checks.CheckList;
+
+/**
+ * Analysis of a whole directory by {@link PythonSensor}, with all the rules active, without SonarQube server:
+ * the sensor runs with an in-memory {@link SensorContextTester}.
+ * <p>
+ * Wall time per phase, files and lines of code per second, peak heap and GC time are written to a JSON file, which can
+ * be compared to the result of a previous run: the harness fails when a measure is worse than the baseline by more
+ * than a threshold. When the analysis is profiled, the total time of each phase of the profile is written as well, and
+ * compared to the baseline when it was profiled too.
+ * <pre>
+ * java -cp benchmarks.jar org.sonar.python.benchmarks.AnalysisThroughput [sources directory] [-o result.json] [-b baseline.json] [-t threshold percentage] [-p profile.json]
+ * </pre>
+ * The sources directory defaults to the ruling sources, "its/sources". With "-p", the sensor profiles its phases and rules,
+ * and its profile is copied to the given file: profiling slows the analysis down, its result should not be compared to
+ * a baseline obtained without it.
+ */
+public class AnalysisThroughput {
+
+  private static final String DEFAULT_SOURCES = "its/sources";
+  private static final String DEFAULT_RESULT = "analysis-throughput.json";
+  private static final double DEFAULT_THRESHOLD = 10;
+
+  static final String WALL_TIME = "wallTimeMs";
+  static final String FILES_PER_SECOND = "filesPerSecond";
+  static final String LINES_PER_SECOND = "linesPerSecond";
+  static final String PEAK_HEAP = "peakHeapBytes";
+  static final String GC_TIME = "gcTimeMs";
+  static final String PROFILED_PHASES = "profiledPhases";
+  // see org.sonar.plugins.python.AnalysisProfileReport
+  private static final String PROFILING_KEY = "sonar.python.analysis.profiling";
+  private static final String PROFILE_FILE_NAME = "python-analysis-profile.json";
+
+  private final Map<String, Long> phases = new LinkedHashMap<>();
+  // total time in milliseconds of the phases of the profile, by name
+  private final Map<String, Double> profiledPhases = new LinkedHashMap<>();
+  // null when the sensor does not profile the analysis
+  private final Path profile;
+  private int files;
+  private long lines;
+  private int issues;
+
+  public static void main(String[] args) throws IOException {
+    Path sources = Paths.get(DEFAULT_SOURCES);
+    Path result = Paths.get(DEFAULT_RESULT);
+    Path baseline = null;
+    double threshold = DEFAULT_THRESHOLD;
+    Path profile = null;
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "-o":
+          result = Paths.get(args[++i]);
+          break;
+        case "-b":
+          baseline = Paths.get(args[++i]);
+          break;
+        case "-t":
+          threshold = Double.parseDouble(args[++i]);
+          break;
+        case "-p":
+          profile = Paths.get(args[++i]);
+          break;
+        default:
+          sources = Paths.get(args[i]);
+      }
+    }
+    String json = new AnalysisThroughput(profile).run(sources);
+    Files.write(result, json.getBytes(StandardCharsets.UTF_8));
+    System.out.println(json);
+    if (baseline != null) {
+      List<String> regressions = regressions(new String(Files.readAllBytes(baseline), StandardCharsets.UTF_8), json, threshold);
+      regressions.forEach(System.out::println);
+      if (!regressions.isEmpty()) {
+        System.exit(1);
+      }
+    }
+  }
+
+  AnalysisThroughput(@Nullable Path profile) {
+    this.profile = profile;
+  }
+
+  /**
+   * Analyses the given directory and returns the measures, as JSON.
+   */
+  String run(Path sources) throws IOException {
+    List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+      .filter(pool -> pool.getType() == MemoryType.HEAP)
+      .collect(Collectors.toList());
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+    long gcTime = gcTime();
+    long start = System.nanoTime();
+
+    SensorContextTester context = SensorContextTester.create(sources);
+    Path workDir = Files.createTempDirectory("python-analysis-throughput");
+    context.fileSystem().setWorkDir(workDir);
+    context.setActiveRules(allRules());
+    if (profile != null) {
+      context.setSettings(new MapSettings().setProperty(PROFILING_KEY, "true"));
+    }
+    long phaseStart = System.nanoTime();
+    for (Path path : pythonFiles(sources)) {
+      String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+      InputFile inputFile = TestInputFileBuilder.create("project", sources.toFile(), path.toFile())
+        .setLanguage(Python.KEY)
+        .setType(InputFile.Type.MAIN)
+        .setCharset(StandardCharsets.UTF_8)
+        .initMetadata(content)
+        .build();
+      context.fileSystem().add(inputFile);
+      files++;
+      lines += inputFile.lines();
+    }
+    phaseStart = phase("indexing", phaseStart);
+
+    PythonSensor sensor = new PythonSensor(new NoOpFileLinesContextFactory(), new CheckFactory(context.activeRules()), new NoSonarFilter());
+    sensor.execute(context);
+    phaseStart = phase("analysis", phaseStart);
+
+    issues = context.allIssues().size();
+    phase("results", phaseStart);
+
+    long wallTime = System.nanoTime() - start;
+    long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    if (profile != null) {
+      Files.copy(workDir.resolve(PROFILE_FILE_NAME), profile, StandardCopyOption.REPLACE_EXISTING);
+      readProfiledPhases(new String(Files.readAllBytes(profile), StandardCharsets.UTF_8));
+    }
+    return toJson(sources, wallTime, peakHeap, gcTime() - gcTime);
+  }
+
+  private long phase(String name, long phaseStart) {
+    long now = System.nanoTime();
+    phases.put(name, TimeUnit.NANOSECONDS.toMillis(now - phaseStart));
+    return now;
+  }
+
+  private void readProfiledPhases(String profileJson) {
+    for (Map.Entry<String, JsonElement> phase : parseObject(profileJson).getAsJsonObject("phases").entrySet()) {
+      profiledPhases.put(phase.getKey(), phase.getValue().getAsJsonObject().get("timeMs").getAsDouble());
+    }
+  }
+
+  private String toJson(Path sources, long wallTimeNanos, long peakHeap, long gcTime) {
+    double seconds = wallTimeNanos / 1e9;
+    StringWriter writer = new StringWriter();
+    try (JsonWriter json = JsonWriter.of(writer)) {
+      json.beginObject()
+        .prop("sources", sources.toString())
+        .prop("files", files)
+        .prop("lines", lines)
+        .prop("issues", issues)
+        .prop(WALL_TIME, TimeUnit.NANOSECONDS.toMillis(wallTimeNanos))
+        .prop(FILES_PER_SECOND, files / seconds)
+        .prop(LINES_PER_SECOND, lines / seconds)
+        .prop(PEAK_HEAP, peakHeap)
+        .prop(GC_TIME, gcTime)
+        .name("phases").beginObject();
+      phases.forEach(json::prop);
+      json.endObject();
+      if (!profiledPhases.isEmpty()) {
+        json.name(PROFILED_PHASES).beginObject();
+        profiledPhases.forEach(json::prop);
+        json.endObject();
+      }
+      json.endObject();
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Measures of the result which are worse than the baseline by more than the given percentage. A measure which is 0 in the
+   * baseline, e.g. the GC time of a short run, is not compared. Profiled phases are only compared when both runs were profiled.
+   */
+  static List<String> regressions(String baselineJson, String resultJson, double thresholdPercentage) {
+    JsonObject baseline = parseObject(baselineJson);
+    JsonObject result = parseObject(resultJson);
+    List<String> regressions = new ArrayList<>();
+    double factor = 1 + thresholdPercentage / 100;
+    for (String measure : new String[] {WALL_TIME, PEAK_HEAP, GC_TIME}) {
+      addIncrease(regressions, measure, measure(baseline, measure), measure(result, measure), factor);
+    }
+    for (String measure : new String[] {FILES_PER_SECOND, LINES_PER_SECOND}) {
+      double baselineValue = measure(baseline, measure);
+      double resultValue = measure(result, measure);
+      if (resultValue * factor < baselineValue) {
+        regressions.add(regression(measure, baselineValue, resultValue));
+      }
+    }
+    JsonObject baselinePhases = baseline.getAsJsonObject(PROFILED_PHASES);
+    JsonObject resultPhases = result.getAsJsonObject(PROFILED_PHASES);
+    if (baselinePhases != null && resultPhases != null) {
+      for (Map.Entry<String, JsonElement> phase : baselinePhases.entrySet()) {
+        JsonElement resultPhase = resultPhases.get(phase.getKey());
+        if (resultPhase != null) {
+          addIncrease(regressions, PROFILED_PHASES + "." + phase.getKey(), phase.getValue().getAsDouble(), resultPhase.getAsDouble(), factor);
+        }
+      }
+    }
+    return regressions;
+  }
+
+  private static void addIncrease(List<String> regressions, String measure, double baseline, double result, double factor) {
+    if (baseline > 0 && result > baseline * factor) {
+      regressions.add(regression(measure, baseline, result));
+    }
+  }
+
+  private static String regression(String measure, double baseline, double result) {
+    return String.format(Locale.ENGLISH, "Regression of %s: %.1f instead of %.1f (%+.1f%%)", measure, result, baseline, (result - baseline) * 100 / baseline);
+  }
+
+  private static double measure(JsonObject json, String name) {
+    JsonElement measure = json.get(name);
+    if (measure == null) {
+      throw new IllegalArgumentException("Measure \"" + name + "\" not found in " + json);
+    }
+    return measure.getAsDouble();
+  }
+
+  private static JsonObject parseObject(String json) {
+    return new JsonParser().parse(json).getAsJsonObject();
+  }
+
+  private static ActiveRules allRules() {
+    ActiveRulesBuilder activeRules = new ActiveRulesBuilder();
+    for (Class<?> check : CheckList.getChecks()) {
+      String key = AnnotationUtils.getAnnotation(check, Rule.class).key();
+      NewActiveRule.Builder rule = new NewActiveRule.Builder().setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, key));
+      if ("CommentRegularExpression".equals(key)) {
+        // same configuration as the ruling
+        rule.setParam("message", "The regular expression matches this comment");
+      }
+      activeRules.addRule(rule.build());
+    }
+    return activeRules.build();
+  }
+
+  private static long gcTime() {
+    return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+  }
+
+  private static List<Path> pythonFiles(Path sources) {
+    try (Stream<Path> paths = Files.walk(sources)) {
+      return paths.filter(path -> path.toString().endsWith(".py") && Files.isRegularFile(path)).sorted().collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class NoOpFileLinesContextFactory implements FileLinesContextFactory {
+    @Override
+    public FileLinesContext createFor(InputFile inputFile) {
+      return new FileLinesContext() {
+        @Override
+        public void setIntValue(String metricKey, int line, int value) {
+          // measures by line are not kept
+        }
+
+        @Override
+        public void setStringValue(String metricKey, int line, String value) {
+          // measures by line are not kept
+        }
+
+        @Override
+        public void save() {
+          // measures by line are not kept
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.net.URI;
+import org.sonar.plugins.python.api.LineIndex;
+import org.sonar.plugins.python.api.PythonFile;
+
+public class BenchmarkFile implements PythonFile {
+
+  private final String fileName;
+  private final URI uri;
+  private final String content;
+  private final LineIndex lineIndex;
+
+  BenchmarkFile(String fileName, URI uri, String content) {
+    this.fileName = fileName;
+    this.uri = uri;
+    this.content = content;
+    this.lineIndex = new LineIndex(content);
+  }
+
+  @Override
+  public String content() {
+    return content;
+  }
+
+  @Override
+  public String fileName() {
+    return fileName;
+  }
+
+  @Override
+  public URI uri() {
+    return uri;
+  }
+
+  @Override
+  public LineIndex lineIndex() {
+    return lineIndex;
+  }
+
+  public int lines() {
+    return lineIndex.lineCount();
+  }
+
+  @Override
+  public String toString() {
+    return fileName;
+  }
+}
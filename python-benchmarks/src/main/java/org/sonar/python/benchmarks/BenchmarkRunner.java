@@ -0,0 +1,62 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the JMH command line with the GC profiler, which reports the allocation rate.
+ * The "sonar.python.benchmarks.*" system properties are passed to the forked JVMs.
+ * {@link CheckBenchmark} is run for all the checks, unless some are selected on the command line.
+ */
+public final class BenchmarkRunner {
+
+  private static final String PROPERTIES_PREFIX = "sonar.python.benchmarks.";
+
+  private BenchmarkRunner() {
+  }
+
+  public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+    CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLineOptions);
+    options.addProfiler(GCProfiler.class);
+    if (!commandLineOptions.getParameter(CheckBenchmark.CHECK_PARAMETER).hasValue()) {
+      options.param(CheckBenchmark.CHECK_PARAMETER, CheckBenchmark.checkNames());
+    }
+    List<String> jvmArgs = new ArrayList<>();
+    for (Map.Entry<Object, Object> property : System.getProperties().entrySet()) {
+      String key = property.getKey().toString();
+      if (key.startsWith(PROPERTIES_PREFIX)) {
+        jvmArgs.add("-D" + key + "=" + property.getValue());
+      }
+    }
+    options.jvmArgsAppend(jvmArgs.toArray(new String[0]));
+    new Runner(options.build()).run();
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import com.sonar.sslr.api.RecognitionException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.sonar.python.parser.PythonParser;
+
+/**
+ * Python files the benchmarks run on: either a corpus of real code, or a synthetic file stressing one dimension
+ * of the analysis (see {@link SyntheticSources}).
+ * <p>
+ * The corpus is made of the ".py" files of the directories given by the "sonar.python.benchmarks.corpus" system property
+ * (comma separated), up to "sonar.python.benchmarks.corpusSize" bytes. By default, it is made of the ruling sources
+ * ("its/sources", when the git submodule is checked out) and of the test resources of the checks.
+ * Files which cannot be parsed are left out.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkSources {
+
+  public static final String CORPUS_PROPERTY = "sonar.python.benchmarks.corpus";
+  public static final String CORPUS_SIZE_PROPERTY = "sonar.python.benchmarks.corpusSize";
+  public static final String CORPUS = "corpus";
+  private static final List<String> DEFAULT_CORPUS = Arrays.asList("its/sources", "python-checks/src/test/resources");
+  private static final long DEFAULT_CORPUS_SIZE = 5_000_000L;
+
+  @Param({CORPUS, SyntheticSources.LONG_FILE, SyntheticSources.DEEP_NESTING, SyntheticSources.LARGE_CLASS, SyntheticSources.LONG_EXPRESSIONS})
+  public String source;
+
+  private List<BenchmarkFile> files;
+  private int lines;
+
+  @Setup
+  public void load() {
+    files = CORPUS.equals(source) ? corpus() : Collections.singletonList(SyntheticSources.generate(source));
+    lines = files.stream().mapToInt(BenchmarkFile::lines).sum();
+  }
+
+  public List<BenchmarkFile> files() {
+    return files;
+  }
+
+  /**
+   * Number of lines of all the files, to report throughputs in lines per second.
+   */
+  public int lines() {
+    return lines;
+  }
+
+  static List<BenchmarkFile> corpus() {
+    String directories = System.getProperty(CORPUS_PROPERTY);
+    List<Path> roots = directories == null ? defaultCorpus() : Arrays.stream(directories.split(",")).map(String::trim).map(Paths::get).collect(Collectors.toList());
+    long maxSize = Long.getLong(CORPUS_SIZE_PROPERTY, DEFAULT_CORPUS_SIZE);
+    PythonParser parser = PythonParser.create();
+    List<BenchmarkFile> result = new ArrayList<>();
+    long size = 0;
+    for (Path path : pythonFiles(roots)) {
+      if (size >= maxSize) {
+        break;
+      }
+      String content = read(path);
+      try {
+        parser.parse(content);
+      } catch (RecognitionException e) {
+        continue;
+      }
+      result.add(new BenchmarkFile(path.getFileName().toString(), path.toUri(), content));
+      size += content.length();
+    }
+    if (result.isEmpty()) {
+      throw new IllegalStateException("No Python file found in " + roots + ", set \"" + CORPUS_PROPERTY + "\" to the directories of the corpus.");
+    }
+    return result;
+  }
+
+  /**
+   * Default directories, relative to the root of the repository: benchmarks are run from it or from this module.
+   */
+  private static List<Path> defaultCorpus() {
+    List<Path> roots = new ArrayList<>();
+    for (String directory : DEFAULT_CORPUS) {
+      Stream.of(Paths.get(directory), Paths.get("..", directory))
+        .filter(Files::isDirectory)
+        .findFirst()
+        .ifPresent(roots::add);
+    }
+    return roots;
+  }
+
+  private static List<Path> pythonFiles(List<Path> roots) {
+    List<Path> result = new ArrayList<>();
+    for (Path root : roots) {
+      try (Stream<Path> paths = Files.walk(root)) {
+        paths.filter(path -> path.toString().endsWith(".py") && Files.isRegularFile(path)).sorted().forEach(result::add);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return result;
+  }
+
+  private static String read(Path path) {
+    try {
+      return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
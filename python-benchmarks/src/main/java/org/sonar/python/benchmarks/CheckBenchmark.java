@@ -0,0 +1,93 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.python.api.PythonCheck;
+import org.sonar.python.checks.CheckList;
+import org.sonar.python.checks.utils.PythonCheckBenchmark;
+
+/**
+ * Execution of a single check on the corpus, whose files are parsed and have their semantic model beforehand.
+ * {@link BenchmarkRunner} runs it for every check of {@link CheckList}, unless "-p check=..." is given.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckBenchmark {
+
+  public static final String CHECK_PARAMETER = "check";
+
+  /**
+   * Simple name of the class of the check.
+   */
+  @Param({"DeadStoreCheck"})
+  public String check;
+
+  private PythonCheckBenchmark benchmark;
+  private PythonCheck pythonCheck;
+  private int lines;
+
+  @Setup
+  public void setUp() throws ReflectiveOperationException {
+    List<BenchmarkFile> corpus = BenchmarkSources.corpus();
+    benchmark = PythonCheckBenchmark.forFiles(corpus.stream().map(file -> Paths.get(file.uri()).toString()).collect(Collectors.toList()));
+    lines = corpus.stream().mapToInt(BenchmarkFile::lines).sum();
+    Class<?> checkClass = checkClasses().stream()
+      .filter(c -> c.getSimpleName().equals(check))
+      .findFirst()
+      .orElseThrow(() -> new IllegalArgumentException("Unknown check: " + check));
+    pythonCheck = (PythonCheck) checkClass.getDeclaredConstructor().newInstance();
+  }
+
+  @Benchmark
+  public int run(LinesCounter counter) {
+    counter.add(lines);
+    return benchmark.run(pythonCheck);
+  }
+
+  static String[] checkNames() {
+    return checkClasses().stream().map(Class::getSimpleName).sorted().toArray(String[]::new);
+  }
+
+  static List<Class<?>> checkClasses() {
+    List<Class<?>> checkClasses = new ArrayList<>();
+    CheckList.getChecks().forEach(checkClasses::add);
+    return checkClasses;
+  }
+}
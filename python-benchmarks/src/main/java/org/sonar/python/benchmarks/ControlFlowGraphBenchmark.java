@@ -0,0 +1,161 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
+import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.cfg.fixpoint.DefinedVariablesAnalysis;
+import org.sonar.python.cfg.fixpoint.LiveVariablesAnalysis;
+import org.sonar.python.cfg.fixpoint.ReachingDefinitionsAnalysis;
+import org.sonar.python.semantic.SymbolTableBuilder;
+import org.sonar.python.tree.PythonTreeParser;
+import org.sonar.python.types.TypeShed;
+
+/**
+ * Control flow graphs of all the functions, and the data flow analyses run on them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ControlFlowGraphBenchmark {
+
+  private final List<Function> functions = new ArrayList<>();
+
+  @Setup
+  public void parse(BenchmarkSources sources) {
+    TypeShed.builtinSymbols();
+    PythonTreeParser parser = PythonTreeParser.create(true);
+    for (BenchmarkFile file : sources.files()) {
+      FileInput tree = parser.parse(file.content());
+      new SymbolTableBuilder(file).visitFileInput(tree);
+      for (FunctionDef functionDef : Functions.of(tree)) {
+        ControlFlowGraph cfg = ControlFlowGraph.build(functionDef, file);
+        if (cfg != null) {
+          functions.add(new Function(file, functionDef, cfg));
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void build(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (Function function : functions) {
+      blackhole.consume(ControlFlowGraph.build(function.functionDef, function.file));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void liveVariables(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (Function function : functions) {
+      blackhole.consume(LiveVariablesAnalysis.analyze(function.cfg));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void definedVariables(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (Function function : functions) {
+      blackhole.consume(DefinedVariablesAnalysis.analyze(function.cfg, function.functionDef.localVariables()));
+    }
+    counter.add(sources.lines());
+  }
+
+  /**
+   * The analysis is computed once per function, for the first name of the function which has a symbol.
+   */
+  @Benchmark
+  public void reachingDefinitions(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    ReachingDefinitionsAnalysis analysis = null;
+    BenchmarkFile currentFile = null;
+    for (Function function : functions) {
+      if (function.file != currentFile) {
+        currentFile = function.file;
+        analysis = new ReachingDefinitionsAnalysis(currentFile);
+      }
+      if (function.name != null) {
+        blackhole.consume(analysis.valuesAtLocation(function.name));
+      }
+    }
+    counter.add(sources.lines());
+  }
+
+  private static class Function {
+    private final BenchmarkFile file;
+    private final FunctionDef functionDef;
+    private final ControlFlowGraph cfg;
+    private final Name name;
+
+    private Function(BenchmarkFile file, FunctionDef functionDef, ControlFlowGraph cfg) {
+      this.file = file;
+      this.functionDef = functionDef;
+      this.cfg = cfg;
+      this.name = firstName(functionDef);
+    }
+
+    @CheckForNull
+    private static Name firstName(FunctionDef functionDef) {
+      FirstName visitor = new FirstName();
+      functionDef.body().accept(visitor);
+      return visitor.name;
+    }
+  }
+
+  private static class FirstName extends BaseTreeVisitor {
+    private Name name = null;
+
+    @Override
+    protected void scan(@Nullable Tree tree) {
+      if (name == null) {
+        super.scan(tree);
+      }
+    }
+
+    @Override
+    public void visitName(Name pyNameTree) {
+      if (name == null && pyNameTree.symbol() != null) {
+        name = pyNameTree;
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.python.cli.AnalysisDaemon;
+import org.sonar.python.cli.DaemonClient;
+
+/**
+ * Latency of the analysis of one file, with all the rules, by a warm {@link AnalysisDaemon} through its HTTP API: the
+ * request an IDE or a pre-commit hook sends when a file is saved. The daemon indexes the project once, in the setup,
+ * and each invocation analyses the next file of the project, so that the sampled times are spread over all of them.
+ * <p>
+ * The project is the directory given by the "sonar.python.benchmarks.project" system property, the test resources of
+ * the checks by default. Concurrent requests are measured with the "-t" option of JMH.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DaemonBenchmark {
+
+  public static final String PROJECT_PROPERTY = "sonar.python.benchmarks.project";
+  private static final String DEFAULT_PROJECT = "python-checks/src/test/resources/checks";
+
+  private final AtomicInteger nextFile = new AtomicInteger();
+  private Path cacheDir;
+  private AnalysisDaemon daemon;
+  private DaemonClient client;
+  private List<String> paths;
+
+  @Setup
+  public void start() throws IOException {
+    Path project = Paths.get(System.getProperty(PROJECT_PROPERTY, DEFAULT_PROJECT)).toAbsolutePath().normalize();
+    try (Stream<Path> files = Files.walk(project)) {
+      paths = files
+        .filter(file -> file.toString().endsWith(".py"))
+        .map(file -> project.relativize(file).toString().replace(File.separatorChar, '/'))
+        .sorted()
+        .collect(Collectors.toList());
+    }
+    cacheDir = Files.createTempDirectory("python-daemon-benchmark");
+    daemon = new AnalysisDaemon(project, StandardCharsets.UTF_8, CheckBenchmark.checkClasses(), Runtime.getRuntime().availableProcessors(), cacheDir);
+    daemon.start(0);
+    client = DaemonClient.of(cacheDir);
+  }
+
+  @TearDown
+  public void stop() throws IOException {
+    daemon.close();
+    try (Stream<Path> files = Files.walk(cacheDir)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @Benchmark
+  public int analyzeFile() throws IOException {
+    String path = paths.get(Math.floorMod(nextFile.getAndIncrement(), paths.size()));
+    return client.analyze(Collections.singletonList(path), "json").issues();
+  }
+}
@@ -0,0 +1,121 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.python.tree.PythonTreeParser;
+import org.sonar.python.tree.TextEdit;
+
+/**
+ * Latency of the parsing of a generated file of 10,000 lines after a small edit, as in an editor: re-parsing of the
+ * statements touched by the edit with {@link PythonTreeParser#parse(FileInput, String, TextEdit)}, compared with the
+ * parsing of the whole file. Each invocation either toggles a digit of a function in the middle of the file between "0"
+ * and "1", or alternately inserts and removes a line there, which moves the tokens of the following statements. The
+ * incremental benchmark re-parses the tree of the previous invocation. Only the direct parser parses incrementally.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IncrementalParserBenchmark {
+
+  // 20 lines per function
+  private static final int FUNCTIONS = 500;
+  private static final String EDITED_STATEMENT = "    count = 0\n";
+
+  private static final String INSERTED_LINE = "    count = 1\n";
+
+  @Param({"digit", "line"})
+  public String edit;
+
+  private PythonTreeParser parser;
+  private final String[] sources = new String[2];
+  private final TextEdit[] edits = new TextEdit[2];
+  private FileInput tree;
+  private int next = 0;
+
+  @Setup
+  public void parse() {
+    parser = PythonTreeParser.create(true);
+    String source = SyntheticSources.longFile(FUNCTIONS);
+    int functionStart = source.indexOf("def function_" + (FUNCTIONS / 2) + "(");
+    int statement = source.indexOf(EDITED_STATEMENT, functionStart);
+    int line = lineOf(source, statement);
+    sources[1] = source;
+    if ("line".equals(edit)) {
+      int nextLine = statement + EDITED_STATEMENT.length();
+      sources[0] = source.substring(0, nextLine) + INSERTED_LINE + source.substring(nextLine);
+      edits[0] = new TextEdit(line + 1, 0, line + 1, 0, INSERTED_LINE);
+      edits[1] = new TextEdit(line + 1, 0, line + 2, 0, "");
+    } else {
+      int column = EDITED_STATEMENT.indexOf('0');
+      int digit = statement + column;
+      sources[0] = source.substring(0, digit) + "1" + source.substring(digit + 1);
+      edits[0] = new TextEdit(line, column, line, column + 1, "1");
+      edits[1] = new TextEdit(line, column, line, column + 1, "0");
+    }
+    tree = parser.parse(source);
+
+    // the benchmark would be meaningless if the edit made the parser fall back to the parsing of the whole file
+    FileInput previous = tree;
+    incrementalParse();
+    if (tree.statements().statements().get(0) != previous.statements().statements().get(0)) {
+      throw new IllegalStateException("The edit is not parsed incrementally");
+    }
+  }
+
+  @Benchmark
+  public FileInput incrementalParse() {
+    tree = parser.parse(tree, sources[next], edits[next]);
+    next = 1 - next;
+    return tree;
+  }
+
+  @Benchmark
+  public FileInput fullParse() {
+    FileInput fileInput = parser.parse(sources[next]);
+    next = 1 - next;
+    return fileInput;
+  }
+
+  private static int lineOf(String source, int offset) {
+    int line = 1;
+    for (int i = 0; i < offset; i++) {
+      if (source.charAt(i) == '\n') {
+        line++;
+      }
+    }
+    return line;
+  }
+}
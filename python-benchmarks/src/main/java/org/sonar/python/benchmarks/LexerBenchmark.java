@@ -0,0 +1,70 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import com.sonar.sslr.impl.Lexer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.python.lexer.LexerState;
+import org.sonar.python.lexer.PythonLexer;
+import org.sonar.python.lexer.PythonTokenizer;
+
+/**
+ * Tokenization, by the SSLR lexer and by the hand-written tokenizer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LexerBenchmark {
+
+  private final LexerState lexerState = new LexerState();
+  private final Lexer sslrLexer = PythonLexer.create(lexerState);
+  private final PythonTokenizer tokenizer = new PythonTokenizer(lexerState);
+
+  @Benchmark
+  public void sslrLexer(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (BenchmarkFile file : sources.files()) {
+      lexerState.reset();
+      blackhole.consume(sslrLexer.lex(file.content()));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void tokenizer(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (BenchmarkFile file : sources.files()) {
+      lexerState.reset();
+      blackhole.consume(tokenizer.tokenize(file.content()));
+    }
+    counter.add(sources.lines());
+  }
+}
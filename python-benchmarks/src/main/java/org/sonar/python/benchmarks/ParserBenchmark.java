@@ -0,0 +1,93 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import com.sonar.sslr.api.AstNode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.sonar.python.parser.PythonParser;
+import org.sonar.python.tree.PythonTreeMaker;
+import org.sonar.python.tree.PythonTreeParser;
+
+/**
+ * Parsing: SSLR parsing into an AST, conversion of the AST into the syntax tree, and direct parsing into the syntax tree.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParserBenchmark {
+
+  private final PythonParser sslrParser = PythonParser.create(false);
+  private final PythonParser sslrParserWithTokenizer = PythonParser.create(true);
+  private final PythonTreeParser directParser = PythonTreeParser.create(true);
+  private List<AstNode> astNodes;
+
+  @Setup
+  public void parse(BenchmarkSources sources) {
+    astNodes = sources.files().stream().map(file -> sslrParser.parse(file.content())).collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public void sslrParser(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (BenchmarkFile file : sources.files()) {
+      blackhole.consume(sslrParser.parse(file.content()));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void sslrParserWithTokenizer(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (BenchmarkFile file : sources.files()) {
+      blackhole.consume(sslrParserWithTokenizer.parse(file.content()));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void treeMaker(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (AstNode astNode : astNodes) {
+      blackhole.consume(new PythonTreeMaker().fileInput(astNode));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void directParser(BenchmarkSources sources, LinesCounter counter, Blackhole blackhole) {
+    for (BenchmarkFile file : sources.files()) {
+      blackhole.consume(directParser.parse(file.content()));
+    }
+    counter.add(sources.lines());
+  }
+}
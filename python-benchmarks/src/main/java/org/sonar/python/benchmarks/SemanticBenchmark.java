@@ -0,0 +1,109 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.semantic.SymbolTableBuilder;
+import org.sonar.python.tree.PythonTreeParser;
+import org.sonar.python.types.OnDemandTypeInference;
+import org.sonar.python.types.TypeShed;
+
+/**
+ * Semantic model: symbol table (its three phases, run by {@link SymbolTableBuilder#visitFileInput(FileInput)})
+ * and type inference of the module and of all its functions.
+ * Both enrich the syntax tree, so each invocation runs on freshly parsed trees. Typeshed symbols are loaded beforehand.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SemanticBenchmark {
+
+  @Setup
+  public void loadTypeShed() {
+    TypeShed.builtinSymbols();
+  }
+
+  @Benchmark
+  public void symbolTable(BenchmarkSources sources, Trees trees, LinesCounter counter) {
+    List<BenchmarkFile> files = sources.files();
+    for (int i = 0; i < files.size(); i++) {
+      new SymbolTableBuilder(files.get(i)).visitFileInput(trees.trees.get(i));
+    }
+    counter.add(sources.lines());
+  }
+
+  @Benchmark
+  public void typeInference(BenchmarkSources sources, TreesWithSymbols trees, LinesCounter counter) {
+    for (Tree unit : trees.inferenceUnits) {
+      OnDemandTypeInference.ensureTypesInferred(unit);
+    }
+    counter.add(sources.lines());
+  }
+
+  @State(Scope.Thread)
+  public static class Trees {
+    private final PythonTreeParser parser = PythonTreeParser.create(true);
+    List<FileInput> trees;
+
+    @Setup(Level.Invocation)
+    public void parse(BenchmarkSources sources) {
+      trees = new ArrayList<>();
+      for (BenchmarkFile file : sources.files()) {
+        trees.add(parser.parse(file.content()));
+      }
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class TreesWithSymbols {
+    private final PythonTreeParser parser = PythonTreeParser.create(true);
+    // modules and their functions
+    List<Tree> inferenceUnits;
+
+    @Setup(Level.Invocation)
+    public void parse(BenchmarkSources sources) {
+      inferenceUnits = new ArrayList<>();
+      for (BenchmarkFile file : sources.files()) {
+        FileInput tree = parser.parse(file.content());
+        new SymbolTableBuilder(file).visitFileInput(tree);
+        inferenceUnits.add(tree);
+        inferenceUnits.addAll(Functions.of(tree));
+      }
+    }
+  }
+}
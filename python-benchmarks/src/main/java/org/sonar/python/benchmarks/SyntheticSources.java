@@ -0,0 +1,161 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.net.URI;
+
+/**
+ * Generated files, each one stressing one dimension of the analysis.
+ */
+public final class SyntheticSources {
+
+  /**
+   * Many small functions with assignments, branches, loops and calls: the most common shape of code, at scale.
+   */
+  public static final String LONG_FILE = "long_file";
+  /**
+   * Deeply nested blocks and parenthesized expressions.
+   */
+  public static final String DEEP_NESTING = "deep_nesting";
+  /**
+   * A class with many methods and instance attributes.
+   */
+  public static final String LARGE_CLASS = "large_class";
+  /**
+   * Long expressions, strings and f-strings, spanning several lines.
+   */
+  public static final String LONG_EXPRESSIONS = "long_expressions";
+
+  private static final int FUNCTIONS = 2_000;
+  private static final int NESTED_BLOCKS = 50;
+  private static final int NESTED_PARENTHESES = 100;
+  private static final int METHODS = 2_000;
+  private static final int EXPRESSIONS = 1_000;
+
+  private SyntheticSources() {
+  }
+
+  static BenchmarkFile generate(String name) {
+    String content;
+    switch (name) {
+      case LONG_FILE:
+        content = longFile(FUNCTIONS);
+        break;
+      case DEEP_NESTING:
+        content = deepNesting();
+        break;
+      case LARGE_CLASS:
+        content = largeClass();
+        break;
+      case LONG_EXPRESSIONS:
+        content = longExpressions();
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown source: " + name);
+    }
+    return new BenchmarkFile(name + ".py", URI.create("synthetic://" + name + ".py"), content);
+  }
+
+  /**
+   * The content of the "long_file" source, with the given number of functions of 20 lines each.
+   */
+  static String longFile(int functions) {
+    StringBuilder sb = new StringBuilder("import os\nfrom collections import defaultdict\n\n");
+    for (int i = 0; i < functions; i++) {
+      sb.append("def function_").append(i).append("(items, threshold=").append(i).append("):\n")
+        .append("    \"\"\"Docstring of function ").append(i).append(".\"\"\"\n")
+        .append("    result = defaultdict(list)\n")
+        .append("    count = 0\n")
+        .append("    for item in items:\n")
+        .append("        if item > threshold and item % 2 == 0:\n")
+        .append("            result[item].append(os.path.join(str(item), 'x'))\n")
+        .append("            count += 1\n")
+        .append("        elif item < 0:\n")
+        .append("            continue\n")
+        .append("        else:\n")
+        .append("            count -= 1\n")
+        .append("    while count > 0:\n")
+        .append("        count = count // 2\n")
+        .append("    try:\n")
+        .append("        value = function_").append(Math.max(0, i - 1)).append("(result.keys())\n")
+        .append("    except (ValueError, KeyError) as e:\n")
+        .append("        value = None\n")
+        .append("    return [x * 2 for x in result if x], value\n\n");
+    }
+    return sb.toString();
+  }
+
+  private static String deepNesting() {
+    StringBuilder sb = new StringBuilder();
+    for (int repetition = 0; repetition < 20; repetition++) {
+      sb.append("def nested_").append(repetition).append("(x):\n");
+      for (int depth = 1; depth <= NESTED_BLOCKS; depth++) {
+        indent(sb, depth).append(depth % 2 == 0 ? "for i" + depth + " in range(x):\n" : "if x > " + depth + ":\n");
+      }
+      indent(sb, NESTED_BLOCKS + 1).append("y = ");
+      for (int depth = 0; depth < NESTED_PARENTHESES; depth++) {
+        sb.append("(x + ");
+      }
+      sb.append("1");
+      for (int depth = 0; depth < NESTED_PARENTHESES; depth++) {
+        sb.append(")");
+      }
+      sb.append("\n");
+      indent(sb, 1).append("return y\n\n");
+    }
+    return sb.toString();
+  }
+
+  private static String largeClass() {
+    StringBuilder sb = new StringBuilder("class Large(object):\n")
+      .append("    def __init__(self):\n");
+    for (int i = 0; i < METHODS; i++) {
+      sb.append("        self.attribute_").append(i).append(" = ").append(i).append("\n");
+    }
+    for (int i = 0; i < METHODS; i++) {
+      sb.append("\n    def method_").append(i).append("(self, value):\n")
+        .append("        self.attribute_").append(i).append(" += value\n")
+        .append("        return self.method_").append((i + 1) % METHODS).append("(self.attribute_").append(i).append(")\n");
+    }
+    return sb.toString();
+  }
+
+  private static String longExpressions() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < EXPRESSIONS; i++) {
+      sb.append("value_").append(i).append(" = (a_").append(i);
+      for (int operand = 0; operand < 20; operand++) {
+        sb.append(operand % 5 == 4 ? " +\n    " : " * ").append("b_").append(operand);
+      }
+      sb.append(")\n")
+        .append("message_").append(i).append(" = f\"{value_").append(i).append("!r:>10} and {value_").append(i).append(" * 2}\" 'concatenated' \"\"\"\n")
+        .append("multi-line string ").append(i).append("\n\"\"\"\n")
+        .append("mapping_").append(i).append(" = {'key_").append(i).append("': [value_").append(i).append(", lambda x: x + 1, (1, 2, 3)], **others}\n");
+    }
+    return sb.toString();
+  }
+
+  private static StringBuilder indent(StringBuilder sb, int depth) {
+    for (int i = 0; i < depth; i++) {
+      sb.append("    ");
+    }
+    return sb;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonar.python.types.TypeShed;
+
+/**
+ * Cold start of {@link TypeShed#builtinSymbols()}: parsing and building the symbols of the builtins stubs, which
+ * happens once per analysis. The symbols are cached in static fields, so each invocation loads the classes of the
+ * frontend in a new class loader, which is part of the cold start.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class TypeShedBenchmark {
+
+  private static final URL FRONTEND = TypeShed.class.getProtectionDomain().getCodeSource().getLocation();
+
+  private URLClassLoader classLoader;
+
+  @Setup(Level.Invocation)
+  public void newClassLoader() {
+    classLoader = new FrontendClassLoader(TypeShedBenchmark.class.getClassLoader());
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeClassLoader() throws Exception {
+    classLoader.close();
+  }
+
+  @Benchmark
+  public Object builtinSymbols() throws ReflectiveOperationException {
+    return Class.forName(TypeShed.class.getName(), true, classLoader).getMethod("builtinSymbols").invoke(null);
+  }
+
+  /**
+   * Loads the classes of the frontend itself, instead of delegating to its parent.
+   */
+  private static class FrontendClassLoader extends URLClassLoader {
+
+    private FrontendClassLoader(ClassLoader parent) {
+      super(new URL[] {FRONTEND}, parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!name.startsWith("org.sonar.python.") && !name.startsWith("org.sonar.plugins.python.")) {
+        return super.loadClass(name, resolve);
+      }
+      synchronized (getClassLoadingLock(name)) {
+        Class<?> loadedClass = findLoadedClass(name);
+        if (loadedClass == null) {
+          loadedClass = findClass(name);
+        }
+        if (resolve) {
+          resolveClass(loadedClass);
+        }
+        return loadedClass;
+      }
+    }
+  }
+}
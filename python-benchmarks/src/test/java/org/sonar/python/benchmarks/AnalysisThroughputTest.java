@@ -0,0 +1,95 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.benchmarks;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AnalysisThroughputTest {
+
+  private static final String BASELINE = result(1000, 150, 1500, 2000, 100, "");
+
+  @Test
+  public void no_regression() {
+    assertThat(AnalysisThroughput.regressions(BASELINE, BASELINE, 50)).isEmpty();
+    // better results
+    assertThat(AnalysisThroughput.regressions(BASELINE, result(500, 300, 3000, 1000, 0, ""), 50)).isEmpty();
+  }
+
+  @Test
+  public void increase_threshold() {
+    // a measure reaching exactly the threshold is not a regression
+    assertThat(AnalysisThroughput.regressions(BASELINE, result(1500, 150, 1500, 3000, 150, ""), 50)).isEmpty();
+    assertThat(AnalysisThroughput.regressions(BASELINE, result(1501, 150, 1500, 3001, 151, ""), 50)).containsExactly(
+      "Regression of wallTimeMs: 1501.0 instead of 1000.0 (+50.1%)",
+      "Regression of peakHeapBytes: 3001.0 instead of 2000.0 (+50.1%)",
+      "Regression of gcTimeMs: 151.0 instead of 100.0 (+51.0%)");
+    assertThat(AnalysisThroughput.regressions(BASELINE, result(1001, 150, 1500, 2000, 100, ""), 0)).containsExactly(
+      "Regression of wallTimeMs: 1001.0 instead of 1000.0 (+0.1%)");
+  }
+
+  @Test
+  public void throughput_threshold() {
+    assertThat(AnalysisThroughput.regressions(BASELINE, result(1000, 100, 1000, 2000, 100, ""), 50)).isEmpty();
+    assertThat(AnalysisThroughput.regressions(BASELINE, result(1000, 99, 999, 2000, 100, ""), 50)).containsExactly(
+      "Regression of filesPerSecond: 99.0 instead of 150.0 (-34.0%)",
+      "Regression of linesPerSecond: 999.0 instead of 1500.0 (-33.4%)");
+  }
+
+  @Test
+  public void zero_baseline() {
+    String baseline = result(1000, 150, 1500, 2000, 0, "");
+    assertThat(AnalysisThroughput.regressions(baseline, result(1000, 150, 1500, 2000, 20, ""), 50)).isEmpty();
+  }
+
+  @Test
+  public void profiled_phases() {
+    String baseline = result(1000, 150, 1500, 2000, 100, "{\"parsing\": 200.0, \"rules\": 400.0, \"cpd\": 0.0}");
+    String result = result(1000, 150, 1500, 2000, 100, "{\"parsing\": 300.0, \"rules\": 600.5, \"cpd\": 3.0, \"metrics\": 10.0}");
+    assertThat(AnalysisThroughput.regressions(baseline, result, 50)).containsExactly(
+      "Regression of profiledPhases.rules: 600.5 instead of 400.0 (+50.1%)");
+    // phases are only compared when both runs were profiled
+    assertThat(AnalysisThroughput.regressions(BASELINE, result, 0)).isEmpty();
+    assertThat(AnalysisThroughput.regressions(baseline, BASELINE, 0)).isEmpty();
+    // a phase missing in the result is not compared
+    assertThat(AnalysisThroughput.regressions(baseline, result(1000, 150, 1500, 2000, 100, "{\"parsing\": 300.0}"), 50)).isEmpty();
+  }
+
+  @Test
+  public void missing_measure() {
+    assertThatThrownBy(() -> AnalysisThroughput.regressions("{\"wallTimeMs\": 1000}", BASELINE, 10))
+      .isInstanceOf(IllegalArgumentException.class)
+      .hasMessageStartingWith("Measure \"peakHeapBytes\" not found in ");
+  }
+
+  private static String result(long wallTime, double filesPerSecond, double linesPerSecond, long peakHeap, long gcTime, String profiledPhases) {
+    return "{\"sources\": \"its/sources\", \"files\": 150, \"lines\": 1500, \"issues\": 3"
+      + ", \"wallTimeMs\": " + wallTime
+      + ", \"filesPerSecond\": " + filesPerSecond
+      + ", \"linesPerSecond\": " + linesPerSecond
+      + ", \"peakHeapBytes\": " + peakHeap
+      + ", \"gcTimeMs\": " + gcTime
+      + ", \"phases\": {\"indexing\": 10, \"analysis\": 980, \"results\": 10}"
+      + (profiledPhases.isEmpty() ? "" : (", \"profiledPhases\": " + profiledPhases))
+      + "}";
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.checks.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.sonar.plugins.python.api.PythonCheck;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.TestPythonVisitorRunner;
+
+/**
+ * Measures the cost of a single check on a corpus of files.
+ * <p>
+ * The files are parsed and their semantic model is built once, when creating the benchmark, so that only the execution
+ * of the check is measured. Warmup runs let the JIT compile the check, and compute the types inferred on demand for it:
+ * like during an analysis, where types are shared by all the checks, they are not part of its cost.
+ * <pre>
+ * PythonCheckBenchmark benchmark = PythonCheckBenchmark.forFiles(Collections.singletonList("src/test/resources/corpus"));
+ * System.out.println(benchmark.measure(new MyCheck()));
+ * </pre>
+ */
+public class PythonCheckBenchmark {
+
+  private static final int DEFAULT_WARMUP_ITERATIONS = 5;
+  private static final int DEFAULT_ITERATIONS = 10;
+
+  private final List<PythonVisitorContext> contexts;
+  private final long nodes;
+
+  private PythonCheckBenchmark(List<PythonVisitorContext> contexts) {
+    this.contexts = contexts;
+    this.nodes = contexts.stream().mapToLong(context -> countNodes(context.rootTree())).sum();
+  }
+
+  /**
+   * @param paths Python files, or directories whose ".py" files are benchmarked
+   */
+  public static PythonCheckBenchmark forFiles(List<String> paths) {
+    List<PythonVisitorContext> contexts = paths.stream()
+      .flatMap(PythonCheckBenchmark::pythonFiles)
+      .map(TestPythonVisitorRunner::createContext)
+      .collect(Collectors.toList());
+    if (contexts.isEmpty()) {
+      throw new IllegalArgumentException("No Python file found in " + paths);
+    }
+    return new PythonCheckBenchmark(contexts);
+  }
+
+  public Result measure(PythonCheck check) {
+    return measure(check, DEFAULT_WARMUP_ITERATIONS, DEFAULT_ITERATIONS);
+  }
+
+  public Result measure(PythonCheck check, int warmupIterations, int iterations) {
+    if (iterations <= 0) {
+      throw new IllegalArgumentException("At least one iteration is required.");
+    }
+    for (int i = 0; i < warmupIterations; i++) {
+      run(check);
+    }
+    long startBytes = allocatedBytes();
+    long start = System.nanoTime();
+    int issues = 0;
+    for (int i = 0; i < iterations; i++) {
+      issues = run(check);
+    }
+    long nanos = System.nanoTime() - start;
+    long bytes = startBytes < 0 ? -1 : (allocatedBytes() - startBytes);
+    long filesAnalysed = (long) iterations * contexts.size();
+    return new Result(check, contexts.size(), nodes, issues,
+      (double) nanos / filesAnalysed, (double) nanos / (iterations * nodes), bytes < 0 ? -1 : (bytes / filesAnalysed));
+  }
+
+  /**
+   * Executes the check once on all the files, which is an operation of the benchmark for harnesses such as JMH.
+   * Issues are discarded.
+   *
+   * @return the number of issues raised by the check
+   */
+  public int run(PythonCheck check) {
+    int issues = 0;
+    for (PythonVisitorContext context : contexts) {
+      issues += PythonCheckVerifier.scanFileForIssues(check, context).size();
+      context.getIssues().clear();
+    }
+    return issues;
+  }
+
+  public int files() {
+    return contexts.size();
+  }
+
+  public long nodes() {
+    return nodes;
+  }
+
+  private static Stream<File> pythonFiles(String path) {
+    File file = new File(path);
+    if (!file.isDirectory()) {
+      return Stream.of(file);
+    }
+    try (Stream<Path> paths = Files.walk(file.toPath())) {
+      return paths.filter(p -> p.toString().endsWith(".py")).sorted().map(Path::toFile).collect(Collectors.toList()).stream();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static long countNodes(Tree root) {
+    long count = 0;
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      Tree tree = stack.pop();
+      count++;
+      tree.children().forEach(stack::push);
+    }
+    return count;
+  }
+
+  /**
+   * Bytes allocated by the current thread, or -1 when the JVM does not measure them.
+   */
+  private static long allocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean hotspotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (hotspotThreadMXBean.isThreadAllocatedMemorySupported() && hotspotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+        return hotspotThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1;
+  }
+
+  public static class Result {
+    private final PythonCheck check;
+    private final int files;
+    private final long nodes;
+    private final int issues;
+    private final double nanosPerFile;
+    private final double nanosPerNode;
+    private final long bytesPerFile;
+
+    private Result(PythonCheck check, int files, long nodes, int issues, double nanosPerFile, double nanosPerNode, long bytesPerFile) {
+      this.check = check;
+      this.files = files;
+      this.nodes = nodes;
+      this.issues = issues;
+      this.nanosPerFile = nanosPerFile;
+      this.nanosPerNode = nanosPerNode;
+      this.bytesPerFile = bytesPerFile;
+    }
+
+    public PythonCheck check() {
+      return check;
+    }
+
+    public int files() {
+      return files;
+    }
+
+    public long nodes() {
+      return nodes;
+    }
+
+    /**
+     * Number of issues raised by the check on all the files.
+     */
+    public int issues() {
+      return issues;
+    }
+
+    public double nanosPerFile() {
+      return nanosPerFile;
+    }
+
+    public double nanosPerNode() {
+      return nanosPerNode;
+    }
+
+    /**
+     * Bytes allocated by the check per file, or -1 when the JVM does not measure allocations.
+     */
+    public long bytesPerFile() {
+      return bytesPerFile;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(Locale.ENGLISH, "%s: %d files, %d nodes, %d issues, %.0f ns/file, %.2f ns/node, %s bytes/file",
+        check.getClass().getSimpleName(), files, nodes, issues, nanosPerFile, nanosPerNode, bytesPerFile < 0 ? "?" : Long.toString(bytesPerFile));
+    }
+  }
+}
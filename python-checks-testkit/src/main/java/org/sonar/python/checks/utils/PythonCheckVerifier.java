@@ -23,33 +23,61 @@ import com.google.common.base.Preconditions;
 import com.sonarsource.checks.verifier.MultiFileVerifier;
 import java.io.File;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.plugins.python.api.IssueLocation;
 import org.sonar.plugins.python.api.PythonCheck;
 import org.sonar.plugins.python.api.PythonCheck.PreciseIssue;
 import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
-import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Trivia;
 import org.sonar.python.SubscriptionVisitor;
-import org.sonar.python.TestPythonVisitorRunner;
 import org.sonar.python.tree.TreeUtils;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
-import static org.sonar.python.semantic.SymbolUtils.pythonPackageName;
 
+/**
+ * Verification of the issues of a check against the "Noncompliant" comments of its test files.
+ * <p>
+ * When the "sonar.python.verifier.cache" system property is "true", the parsed files, their semantic model and the
+ * global symbols of the files of multi-file verifications are shared by all the verifications of the JVM, instead of
+ * being computed again by each of them: useful when the same files are verified by several tests. Files are parsed
+ * again when they are modified.
+ * <p>
+ * A {@link #batch()} verifies several checks at once: each file is parsed once, all the checks verified on it are run in
+ * the same pass on its tree, and independent verifications run in parallel:
+ * <pre>
+ * PythonCheckVerifier.batch()
+ *   .verify("src/test/resources/checks/myCheck.py", new MyCheck())
+ *   .verifyNoIssue("src/test/resources/compliant.py", new MyCheck())
+ *   .verifyNoIssue("src/test/resources/compliant.py", new MyOtherCheck())
+ *   .run();
+ * </pre>
+ */
 public class PythonCheckVerifier {
 
+  public static final String CACHE_PROPERTY = "sonar.python.verifier.cache";
+
+  private static final VerifierContexts SHARED_CONTEXTS = new VerifierContexts();
+
   private PythonCheckVerifier() {
   }
 
-  private static List<PreciseIssue> scanFileForIssues(PythonCheck check, PythonVisitorContext context) {
+  static List<PreciseIssue> scanFileForIssues(PythonCheck check, PythonVisitorContext context) {
     check.scanFile(context);
     if (check instanceof PythonSubscriptionCheck) {
       SubscriptionVisitor.analyze(Collections.singletonList((PythonSubscriptionCheck) check), context);
@@ -63,48 +91,50 @@ public class PythonCheckVerifier {
   }
 
   public static void verifyNoIssue(String path, PythonCheck check) {
-    File file = new File(path);
-    createVerifier(Collections.singletonList(file), check, Collections.emptyMap(), null).assertNoIssues();
+    new Batch(contexts()).verifyNoIssue(path, check).run(1);
   }
 
   public static void verify(List<String> paths, PythonCheck check) {
-    List<File> files = paths.stream().map(File::new).collect(Collectors.toList());
-    File baseDirFile = new File(files.get(0).getParent());
-    Map<String, Set<Symbol>> globalSymbolsPerModule = TestPythonVisitorRunner.globalSymbols(files, baseDirFile);
-    createVerifier(files, check, globalSymbolsPerModule, baseDirFile).assertOneOrMoreIssues();
+    new Batch(contexts()).verify(paths, check).run(1);
   }
 
   public static void verifyNoIssue(List<String> paths, PythonCheck check) {
-    List<File> files = paths.stream().map(File::new).collect(Collectors.toList());
-    File baseDirFile = new File(files.get(0).getParent());
-    Map<String, Set<Symbol>> globalSymbolsPerModule = TestPythonVisitorRunner.globalSymbols(files, baseDirFile);
-    createVerifier(files, check, globalSymbolsPerModule, baseDirFile).assertNoIssues();
+    new Batch(contexts()).verifyNoIssue(paths, check).run(1);
+  }
+
+  /**
+   * Verifications to run together, see {@link Batch#run()}.
+   */
+  public static Batch batch() {
+    return new Batch(contexts());
   }
 
-  private static MultiFileVerifier createVerifier(List<File> files, PythonCheck check, Map<String, Set<Symbol>> globalSymbolsPerModule, @Nullable File baseDir) {
-    MultiFileVerifier multiFileVerifier = MultiFileVerifier.create(files.get(0).toPath(), UTF_8);
-    for (File file : files) {
-      PythonVisitorContext context = baseDir != null
-        ? TestPythonVisitorRunner.createContext(file, null, pythonPackageName(file, baseDir), globalSymbolsPerModule)
-        : TestPythonVisitorRunner.createContext(file);
-      addFileIssues(check, multiFileVerifier, file, context);
+  /**
+   * Releases the contexts shared when the "sonar.python.verifier.cache" system property is "true".
+   */
+  public static void clearCache() {
+    SHARED_CONTEXTS.clear();
+  }
+
+  private static VerifierContexts contexts() {
+    return Boolean.getBoolean(CACHE_PROPERTY) ? SHARED_CONTEXTS : new VerifierContexts();
+  }
+
+  private static MultiFileVerifier createVerifier(Verification verification) {
+    MultiFileVerifier multiFileVerifier = MultiFileVerifier.create(verification.files.get(0).toPath(), UTF_8);
+    for (int i = 0; i < verification.files.size(); i++) {
+      addFileIssues(multiFileVerifier, verification.files.get(i), verification.results.get(i));
     }
     return multiFileVerifier;
   }
 
-  private static void addFileIssues(PythonCheck check, MultiFileVerifier multiFileVerifier, File file, PythonVisitorContext context) {
-    for (PreciseIssue issue : scanFileForIssues(check, context)) {
-      if (!issue.check().equals(check)) {
-        throw new IllegalStateException("Verifier support only one kind of issue " + issue.check() + " != " + check);
-      }
+  private static void addFileIssues(MultiFileVerifier multiFileVerifier, File file, FileResult result) {
+    for (PreciseIssue issue : result.issues) {
       Integer cost = issue.cost();
       addPreciseIssue(file.toPath(), multiFileVerifier, issue).withGap(cost == null ? null : (double) cost);
     }
-
-    for (Token token : TreeUtils.tokens(context.rootTree())) {
-      for (Trivia trivia : token.trivia()) {
-        multiFileVerifier.addComment(file.toPath(), trivia.token().line(), trivia.token().column() + 1, trivia.value(), 1, 0);
-      }
+    for (Comment comment : result.comments) {
+      multiFileVerifier.addComment(file.toPath(), comment.line, comment.column, comment.value, 1, 0);
     }
   }
 
@@ -130,4 +160,299 @@ public class PythonCheckVerifier {
     return issueBuilder;
   }
 
+  /**
+   * Verifications run together. Verifications which share a file, with the same package name and global symbols, or a
+   * check instance are run by the same thread: the checks of a file are run in one pass on its tree, and a check is never
+   * run concurrently. Other verifications are run in parallel.
+   */
+  public static class Batch {
+
+    private final VerifierContexts contexts;
+    private final List<Verification> verifications = new ArrayList<>();
+
+    private Batch(VerifierContexts contexts) {
+      this.contexts = contexts;
+    }
+
+    /**
+     * Issues of the check on the given file, which is alone in its project.
+     */
+    public Batch verify(String path, PythonCheck check) {
+      return verify(Collections.singletonList(path), check);
+    }
+
+    /**
+     * Issues of the check on the given files of a project, whose base directory is the directory of the first one.
+     */
+    public Batch verify(List<String> paths, PythonCheck check) {
+      verifications.add(new Verification(files(paths), check, true, true));
+      return this;
+    }
+
+    /**
+     * No issue of the check on the given file, analysed without package name nor global symbols.
+     */
+    public Batch verifyNoIssue(String path, PythonCheck check) {
+      verifications.add(new Verification(files(Collections.singletonList(path)), check, false, false));
+      return this;
+    }
+
+    /**
+     * No issue of the check on the given files of a project, whose base directory is the directory of the first one.
+     */
+    public Batch verifyNoIssue(List<String> paths, PythonCheck check) {
+      verifications.add(new Verification(files(paths), check, false, true));
+      return this;
+    }
+
+    /**
+     * Runs the verifications on all the available processors.
+     */
+    public void run() {
+      run(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs the verifications on the given number of threads. When only one of them fails, its error is thrown unchanged.
+     * Otherwise, an {@link AssertionError} reports all the failures.
+     */
+    public void run(int threads) {
+      List<List<Verification>> groups = groups();
+      if (threads <= 1 || groups.size() <= 1) {
+        groups.forEach(this::runGroup);
+      } else {
+        runInParallel(groups, threads);
+      }
+      List<Verification> failedVerifications = verifications.stream().filter(v -> v.failure != null).collect(Collectors.toList());
+      if (failedVerifications.size() == 1) {
+        Throwable failure = failedVerifications.get(0).failure;
+        if (failure instanceof RuntimeException) {
+          throw (RuntimeException) failure;
+        }
+        throw (Error) failure;
+      }
+      if (!failedVerifications.isEmpty()) {
+        StringBuilder message = new StringBuilder().append(failedVerifications.size()).append(" verifications failed:");
+        for (Verification verification : failedVerifications) {
+          message.append("\n").append(verification).append(": ").append(verification.failure.getMessage());
+        }
+        AssertionError error = new AssertionError(message.toString());
+        failedVerifications.forEach(verification -> error.addSuppressed(verification.failure));
+        throw error;
+      }
+    }
+
+    private void runInParallel(List<List<Verification>> groups, int threads) {
+      AtomicInteger threadNumber = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, groups.size()), runnable -> {
+        Thread thread = new Thread(runnable, "python-verifier-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        List<Future<?>> results = new ArrayList<>();
+        for (List<Verification> group : groups) {
+          results.add(executor.submit(() -> runGroup(group)));
+        }
+        for (Future<?> result : results) {
+          result.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Verification interrupted", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("Verification failed", e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    /**
+     * Groups of verifications which share a context or a check, in the order of the verifications.
+     */
+    private List<List<Verification>> groups() {
+      int[] parents = new int[verifications.size()];
+      Map<VerifierContexts.Key, Integer> verificationsByContext = new HashMap<>();
+      Map<PythonCheck, Integer> verificationsByCheck = new IdentityHashMap<>();
+      for (int i = 0; i < verifications.size(); i++) {
+        int index = i;
+        parents[index] = index;
+        Verification verification = verifications.get(index);
+        verification.contextKeys = verification.files.stream()
+          .map(file -> VerifierContexts.key(file, verification.baseDir, verification.files))
+          .collect(Collectors.toList());
+        for (VerifierContexts.Key key : verification.contextKeys) {
+          union(parents, index, verificationsByContext.computeIfAbsent(key, k -> index));
+        }
+        union(parents, index, verificationsByCheck.computeIfAbsent(verification.check, c -> index));
+      }
+      Map<Integer, List<Verification>> groups = new LinkedHashMap<>();
+      for (int i = 0; i < verifications.size(); i++) {
+        groups.computeIfAbsent(root(parents, i), k -> new ArrayList<>()).add(verifications.get(i));
+      }
+      return new ArrayList<>(groups.values());
+    }
+
+    private static void union(int[] parents, int first, int second) {
+      parents[root(parents, first)] = root(parents, second);
+    }
+
+    private static int root(int[] parents, int index) {
+      int root = index;
+      while (parents[root] != root) {
+        root = parents[root];
+      }
+      return root;
+    }
+
+    private void runGroup(List<Verification> group) {
+      Map<VerifierContexts.Key, List<Verification>> verificationsByContext = new LinkedHashMap<>();
+      for (Verification verification : group) {
+        verification.results = new ArrayList<>(Collections.nCopies(verification.files.size(), null));
+        verification.contextKeys.forEach(key -> verificationsByContext.computeIfAbsent(key, k -> new ArrayList<>()).add(verification));
+      }
+      verificationsByContext.forEach(this::runChecks);
+      for (Verification verification : group) {
+        if (verification.failure == null) {
+          try {
+            MultiFileVerifier verifier = createVerifier(verification);
+            if (verification.expectIssues) {
+              verifier.assertOneOrMoreIssues();
+            } else {
+              verifier.assertNoIssues();
+            }
+          } catch (RuntimeException | AssertionError e) {
+            verification.failure = e;
+          }
+        }
+      }
+    }
+
+    /**
+     * Runs the checks of the verifications on a context, in one pass.
+     */
+    private void runChecks(VerifierContexts.Key key, List<Verification> contextVerifications) {
+      List<PythonCheck> checks = new ArrayList<>();
+      contextVerifications.stream().map(v -> v.check).filter(check -> checks.stream().noneMatch(c -> c == check)).forEach(checks::add);
+      Map<PythonCheck, List<PreciseIssue>> issuesByCheck = new IdentityHashMap<>();
+      List<Comment> comments = new ArrayList<>();
+      Map<PythonCheck, Throwable> failures = new IdentityHashMap<>();
+      try {
+        PythonVisitorContext context = contexts.context(key);
+        synchronized (context) {
+          context.getIssues().clear();
+          try {
+            runChecks(checks, context, failures);
+            for (PythonCheck check : checks) {
+              issuesByCheck.put(check, new ArrayList<>());
+            }
+            for (PreciseIssue issue : context.getIssues()) {
+              issuesOf(issuesByCheck, issue, checks).add(issue);
+            }
+            for (Token token : TreeUtils.tokens(context.rootTree())) {
+              for (Trivia trivia : token.trivia()) {
+                comments.add(new Comment(trivia.token().line(), trivia.token().column() + 1, trivia.value()));
+              }
+            }
+          } finally {
+            context.getIssues().clear();
+          }
+        }
+      } catch (RuntimeException | AssertionError e) {
+        checks.forEach(check -> failures.putIfAbsent(check, e));
+      }
+      for (Verification verification : contextVerifications) {
+        Throwable failure = failures.get(verification.check);
+        if (failure != null) {
+          verification.failure = verification.failure == null ? failure : verification.failure;
+        } else {
+          FileResult result = new FileResult(issuesByCheck.get(verification.check), comments);
+          for (int i = 0; i < verification.files.size(); i++) {
+            if (verification.contextKeys.get(i).equals(key)) {
+              verification.results.set(i, result);
+            }
+          }
+        }
+      }
+    }
+
+    private static void runChecks(List<PythonCheck> checks, PythonVisitorContext context, Map<PythonCheck, Throwable> failures) {
+      List<PythonSubscriptionCheck> subscriptionChecks = new ArrayList<>();
+      for (PythonCheck check : checks) {
+        try {
+          check.scanFile(context);
+          if (check instanceof PythonSubscriptionCheck) {
+            subscriptionChecks.add((PythonSubscriptionCheck) check);
+          }
+        } catch (RuntimeException | AssertionError e) {
+          failures.put(check, e);
+        }
+      }
+      try {
+        SubscriptionVisitor.analyze(subscriptionChecks, context);
+      } catch (RuntimeException | AssertionError e) {
+        // the failing check is not known
+        subscriptionChecks.forEach(check -> failures.put(check, e));
+      }
+    }
+
+    private static List<PreciseIssue> issuesOf(Map<PythonCheck, List<PreciseIssue>> issuesByCheck, PreciseIssue issue, List<PythonCheck> checks) {
+      List<PreciseIssue> issues = issuesByCheck.get(issue.check());
+      if (issues == null) {
+        String expected = checks.size() == 1 ? checks.get(0).toString() : checks.toString();
+        throw new IllegalStateException("Verifier support only one kind of issue " + issue.check() + " != " + expected);
+      }
+      return issues;
+    }
+
+    private static List<File> files(List<String> paths) {
+      return paths.stream().map(File::new).collect(Collectors.toList());
+    }
+  }
+
+  private static class Verification {
+    private final List<File> files;
+    private final PythonCheck check;
+    private final boolean expectIssues;
+    // null for a file analysed alone, without package name nor global symbols
+    private final File baseDir;
+    private List<VerifierContexts.Key> contextKeys;
+    private List<FileResult> results;
+    @CheckForNull
+    private Throwable failure;
+
+    private Verification(List<File> files, PythonCheck check, boolean expectIssues, boolean inProject) {
+      this.files = files;
+      this.check = check;
+      this.expectIssues = expectIssues;
+      this.baseDir = inProject ? new File(files.get(0).getParent()) : null;
+    }
+
+    @Override
+    public String toString() {
+      return check.getClass().getName() + " on " + files;
+    }
+  }
+
+  private static class FileResult {
+    private final List<PreciseIssue> issues;
+    private final List<Comment> comments;
+
+    private FileResult(List<PreciseIssue> issues, List<Comment> comments) {
+      this.issues = issues;
+      this.comments = comments;
+    }
+  }
+
+  private static class Comment {
+    private final int line;
+    private final int column;
+    private final String value;
+
+    private Comment(int line, int column, String value) {
+      this.line = line;
+      this.column = column;
+      this.value = value;
+    }
+  }
 }
@@ -0,0 +1,164 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.checks.utils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.TestPythonVisitorRunner;
+
+import static org.sonar.python.semantic.SymbolUtils.pythonPackageName;
+
+/**
+ * Parsed files with their semantic model, and global symbols of sets of files, shared by verifications.
+ * <p>
+ * A context is identified by its file, its package name and the files of its global symbols, each of them with its size
+ * and modification time, so that a modified file is parsed again. Contexts are shared by the checks of a verification,
+ * as the checks of an analysis share the trees and the types inferred on them: a verification synchronizes on the
+ * context it uses, and clears its issues.
+ */
+class VerifierContexts {
+
+  private final Map<Key, PythonVisitorContext> contexts = new ConcurrentHashMap<>();
+  private final Map<Project, Map<String, Set<Symbol>>> globalSymbols = new ConcurrentHashMap<>();
+
+  /**
+   * Key of the context of a file of a project, or of a file alone when the base directory is null: without package
+   * name nor global symbols.
+   */
+  static Key key(File file, @Nullable File baseDir, List<File> projectFiles) {
+    if (baseDir == null) {
+      return new Key(new FileVersion(file), "", null);
+    }
+    Project project = new Project(baseDir, projectFiles.stream().map(FileVersion::new).collect(Collectors.toList()));
+    return new Key(new FileVersion(file), pythonPackageName(file, baseDir), project);
+  }
+
+  PythonVisitorContext context(Key key) {
+    return contexts.computeIfAbsent(key, this::createContext);
+  }
+
+  void clear() {
+    contexts.clear();
+    globalSymbols.clear();
+  }
+
+  private PythonVisitorContext createContext(Key key) {
+    if (key.project == null) {
+      return TestPythonVisitorRunner.createContext(key.file.file);
+    }
+    Map<String, Set<Symbol>> projectSymbols = globalSymbols.computeIfAbsent(key.project,
+      project -> TestPythonVisitorRunner.globalSymbols(project.files.stream().map(f -> f.file).collect(Collectors.toList()), project.baseDir));
+    return TestPythonVisitorRunner.createContext(key.file.file, null, key.packageName, projectSymbols);
+  }
+
+  static class Key {
+    private final FileVersion file;
+    private final String packageName;
+    private final Project project;
+
+    private Key(FileVersion file, String packageName, @Nullable Project project) {
+      this.file = file;
+      this.packageName = packageName;
+      this.project = project;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return file.equals(key.file) && packageName.equals(key.packageName) && Objects.equals(project, key.project);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, packageName, project);
+    }
+  }
+
+  private static class Project {
+    private final File baseDir;
+    private final List<FileVersion> files;
+
+    private Project(File baseDir, List<FileVersion> files) {
+      this.baseDir = baseDir.getAbsoluteFile();
+      this.files = Collections.unmodifiableList(files);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Project project = (Project) o;
+      return baseDir.equals(project.baseDir) && files.equals(project.files);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(baseDir, files);
+    }
+  }
+
+  private static class FileVersion {
+    private final File file;
+    private final long lastModified;
+    private final long length;
+
+    private FileVersion(File file) {
+      this.file = file.getAbsoluteFile().toPath().normalize().toFile();
+      this.lastModified = file.lastModified();
+      this.length = file.length();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FileVersion that = (FileVersion) o;
+      return file.equals(that.file) && lastModified == that.lastModified && length == that.length;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, lastModified, length);
+    }
+  }
+}
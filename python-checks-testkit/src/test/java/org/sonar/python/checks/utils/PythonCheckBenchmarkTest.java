@@ -0,0 +1,90 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.checks.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.tree.Tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PythonCheckBenchmarkTest {
+
+  private static final String BASE_DIR = "src/test/resources/";
+
+  private final PythonSubscriptionCheck check = new PythonSubscriptionCheck() {
+    @Override
+    public void initialize(Context context) {
+      context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> ctx.addIssue(ctx.syntaxNode().firstToken(), "This is a function"));
+    }
+  };
+
+  @Test
+  public void measure() {
+    PythonCheckBenchmark benchmark = PythonCheckBenchmark.forFiles(Arrays.asList(BASE_DIR + "file_issue.py", BASE_DIR + "no_issue.py"));
+    assertThat(benchmark.files()).isEqualTo(2);
+    assertThat(benchmark.nodes()).isGreaterThan(10);
+
+    PythonCheckBenchmark.Result result = benchmark.measure(check, 1, 3);
+    assertThat(result.check()).isSameAs(check);
+    assertThat(result.files()).isEqualTo(2);
+    assertThat(result.nodes()).isEqualTo(benchmark.nodes());
+    assertThat(result.issues()).isEqualTo(1);
+    assertThat(result.nanosPerFile()).isPositive();
+    assertThat(result.nanosPerNode()).isPositive();
+    assertThat(result.nanosPerNode()).isLessThan(result.nanosPerFile());
+    assertThat(result.bytesPerFile()).isGreaterThanOrEqualTo(-1);
+    assertThat(result.toString()).matches(".*: 2 files, \\d+ nodes, 1 issues, \\d+ ns/file, [\\d.]+ ns/node, (\\d+|\\?) bytes/file");
+  }
+
+  @Test
+  public void issues_are_discarded() {
+    PythonCheckBenchmark benchmark = PythonCheckBenchmark.forFiles(Collections.singletonList(BASE_DIR + "file_issue.py"));
+    assertThat(benchmark.run(check)).isEqualTo(1);
+    assertThat(benchmark.run(check)).isEqualTo(1);
+    assertThat(benchmark.measure(check).issues()).isEqualTo(1);
+  }
+
+  @Test
+  public void directories() {
+    PythonCheckBenchmark benchmark = PythonCheckBenchmark.forFiles(Collections.singletonList(BASE_DIR));
+    assertThat(benchmark.files()).isGreaterThan(5);
+  }
+
+  @Test
+  public void invalid_arguments() {
+    try {
+      PythonCheckBenchmark.forFiles(Collections.emptyList());
+      fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("No Python file found in []");
+    }
+    PythonCheckBenchmark benchmark = PythonCheckBenchmark.forFiles(Collections.singletonList(BASE_DIR + "no_issue.py"));
+    try {
+      benchmark.measure(check, 1, 0);
+      fail("should have failed");
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessage("At least one iteration is required.");
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.checks.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.PythonVisitorCheck;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.tree.CallExpression;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.Tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PythonCheckVerifierBatchTest {
+
+  private static final String BASE_DIR = "src/test/resources/";
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    System.clearProperty(PythonCheckVerifier.CACHE_PROPERTY);
+    PythonCheckVerifier.clearCache();
+  }
+
+  @Test
+  public void batch() {
+    PythonCheckVerifier.batch()
+      .verify(Arrays.asList(BASE_DIR + "multi_file/main.py", BASE_DIR + "multi_file/mod.py"), new CrossModuleCallCheck())
+      .verifyNoIssue(Arrays.asList(BASE_DIR + "multi_file/compliant.py", BASE_DIR + "multi_file/mod.py"), new CrossModuleCallCheck())
+      .verify(BASE_DIR + "file_issue.py", new FileIssueCheck())
+      .verifyNoIssue(BASE_DIR + "no_issue.py", new FileIssueCheck())
+      .verifyNoIssue(BASE_DIR + "no_issue.py", new TreeRecordingCheck())
+      .run(4);
+  }
+
+  @Test
+  public void global_symbols_are_required() {
+    try {
+      PythonCheckVerifier.verify(BASE_DIR + "multi_file/main.py", new CrossModuleCallCheck());
+    } catch (AssertionError e) {
+      return;
+    }
+    fail("should have failed: the symbol of the function is not known without mod.py");
+  }
+
+  @Test
+  public void checks_of_a_file_run_in_one_pass() {
+    TreeRecordingCheck check = new TreeRecordingCheck();
+    TreeRecordingCheck otherCheck = new TreeRecordingCheck();
+    PythonCheckVerifier.batch()
+      .verifyNoIssue(BASE_DIR + "no_issue.py", check)
+      .verifyNoIssue(BASE_DIR + "no_issue.py", check)
+      .verifyNoIssue(BASE_DIR + "no_issue.py", otherCheck)
+      .verify(BASE_DIR + "file_issue.py", new FileIssueCheck())
+      .run(2);
+    assertThat(check.trees).hasSize(1);
+    assertThat(otherCheck.trees).hasSize(1);
+    assertThat(otherCheck.trees.get(0)).isSameAs(check.trees.get(0));
+  }
+
+  @Test
+  public void same_check_on_several_files() {
+    FileIssueCheck check = new FileIssueCheck();
+    PythonCheckVerifier.batch()
+      .verify(BASE_DIR + "file_issue.py", check)
+      .verifyNoIssue(BASE_DIR + "no_issue.py", check)
+      .verifyNoIssue(BASE_DIR + "multi_file/compliant.py", new TreeRecordingCheck())
+      .run();
+  }
+
+  @Test
+  public void single_failure_is_thrown_unchanged() {
+    try {
+      PythonCheckVerifier.batch()
+        .verifyNoIssue(BASE_DIR + "file_issue.py", new FileIssueCheck())
+        .verifyNoIssue(BASE_DIR + "no_issue.py", new FileIssueCheck())
+        .run(2);
+    } catch (AssertionError e) {
+      assertThat(e.getMessage()).doesNotContain("verifications failed");
+      return;
+    }
+    fail("should have failed");
+  }
+
+  @Test
+  public void all_failures_are_reported() {
+    try {
+      PythonCheckVerifier.batch()
+        .verifyNoIssue(BASE_DIR + "file_issue.py", new FileIssueCheck())
+        .verify(BASE_DIR + "no_issue.py", new FileIssueCheck())
+        .verifyNoIssue(BASE_DIR + "no_issue.py", new FailingCheck())
+        .run(2);
+    } catch (AssertionError e) {
+      assertThat(e.getMessage())
+        .startsWith("3 verifications failed:")
+        .contains(FileIssueCheck.class.getName() + " on [" + new File(BASE_DIR + "file_issue.py") + "]: ")
+        .contains(FailingCheck.class.getName() + " on [" + new File(BASE_DIR + "no_issue.py") + "]: failure of the check");
+      assertThat(e.getSuppressed()).hasSize(3);
+      assertThat(e.getSuppressed()[2]).isInstanceOf(IllegalStateException.class);
+      return;
+    }
+    fail("should have failed");
+  }
+
+  @Test
+  public void failure_of_a_check() {
+    try {
+      PythonCheckVerifier.verifyNoIssue(BASE_DIR + "no_issue.py", new FailingCheck());
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("failure of the check");
+      return;
+    }
+    fail("should have failed");
+  }
+
+  @Test
+  public void shared_contexts() {
+    TreeRecordingCheck check = new TreeRecordingCheck();
+    PythonCheckVerifier.verifyNoIssue(BASE_DIR + "no_issue.py", check);
+    PythonCheckVerifier.verifyNoIssue(BASE_DIR + "no_issue.py", check);
+    assertThat(check.trees.get(1)).isNotSameAs(check.trees.get(0));
+
+    System.setProperty(PythonCheckVerifier.CACHE_PROPERTY, "true");
+    PythonCheckVerifier.verifyNoIssue(BASE_DIR + "no_issue.py", check);
+    PythonCheckVerifier.verifyNoIssue(BASE_DIR + "no_issue.py", check);
+    PythonCheckVerifier.verifyNoIssue(Collections.singletonList(BASE_DIR + "no_issue.py"), check);
+    assertThat(check.trees.get(3)).isSameAs(check.trees.get(2));
+    // with global symbols
+    assertThat(check.trees.get(4)).isNotSameAs(check.trees.get(2));
+
+    PythonCheckVerifier.clearCache();
+    PythonCheckVerifier.verifyNoIssue(BASE_DIR + "no_issue.py", check);
+    assertThat(check.trees.get(5)).isNotSameAs(check.trees.get(2));
+  }
+
+  @Test
+  public void modified_files_are_parsed_again() throws IOException {
+    File file = temporaryFolder.newFile("mod.py");
+    Files.write(file.toPath(), Collections.singletonList("x = 1"));
+    VerifierContexts contexts = new VerifierContexts();
+    FileInput tree = contexts.context(VerifierContexts.key(file, null, Collections.emptyList())).rootTree();
+    assertThat(contexts.context(VerifierContexts.key(file, null, Collections.emptyList())).rootTree()).isSameAs(tree);
+
+    assertThat(file.setLastModified(file.lastModified() + 10_000)).isTrue();
+    assertThat(contexts.context(VerifierContexts.key(file, null, Collections.emptyList())).rootTree()).isNotSameAs(tree);
+  }
+
+  private static class CrossModuleCallCheck extends PythonSubscriptionCheck {
+    @Override
+    public void initialize(Context context) {
+      context.registerSyntaxNodeConsumer(Tree.Kind.CALL_EXPR, ctx -> {
+        Symbol symbol = ((CallExpression) ctx.syntaxNode()).calleeSymbol();
+        if (symbol != null && symbol.is(Symbol.Kind.FUNCTION) && "mod.f".equals(symbol.fullyQualifiedName())) {
+          ctx.addIssue(ctx.syntaxNode(), "Call of a function of another module.");
+        }
+      });
+    }
+  }
+
+  private static class FileIssueCheck extends PythonSubscriptionCheck {
+    @Override
+    public void initialize(Context context) {
+      context.registerSyntaxNodeConsumer(Tree.Kind.FUNCDEF, ctx -> ctx.addFileIssue("This file has a function."));
+    }
+  }
+
+  private static class TreeRecordingCheck extends PythonVisitorCheck {
+    private final List<FileInput> trees = new ArrayList<>();
+
+    @Override
+    public void visitFileInput(FileInput fileInput) {
+      trees.add(fileInput);
+      super.visitFileInput(fileInput);
+    }
+  }
+
+  private static class FailingCheck extends PythonVisitorCheck {
+    @Override
+    public void visitFileInput(FileInput fileInput) {
+      throw new IllegalStateException("failure of the check");
+    }
+  }
+}
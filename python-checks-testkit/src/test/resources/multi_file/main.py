@@ -0,0 +1,3 @@
+from mod import f
+
+f()  # Noncompliant {{Call of a function of another module.}}
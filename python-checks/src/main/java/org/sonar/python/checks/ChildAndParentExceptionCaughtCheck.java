@@ -20,7 +20,7 @@
 package org.sonar.python.checks;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.sonar.check.Rule;
@@ -40,7 +40,8 @@ public class ChildAndParentExceptionCaughtCheck extends PythonSubscriptionCheck
   public void initialize(Context context) {
     context.registerSyntaxNodeConsumer(Tree.Kind.EXCEPT_CLAUSE, ctx -> {
       ExceptClause exceptClause = (ExceptClause) ctx.syntaxNode();
-      Map<ClassSymbol, List<Expression>> caughtExceptionsBySymbol = new HashMap<>();
+      // in the order of the except clause, independently of the hash codes of the symbols
+      Map<ClassSymbol, List<Expression>> caughtExceptionsBySymbol = new LinkedHashMap<>();
       Expression exceptionExpression = exceptClause.exception();
       if (exceptionExpression == null) {
         return;
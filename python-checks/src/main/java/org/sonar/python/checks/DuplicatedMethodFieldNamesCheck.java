@@ -92,6 +92,10 @@ public class DuplicatedMethodFieldNamesCheck extends PythonSubscriptionCheck {
       return tree.firstToken().line();
     }
 
+    int getColumn() {
+      return tree.firstToken().column();
+    }
+
     String getType() {
       return type;
     }
@@ -99,7 +103,8 @@ public class DuplicatedMethodFieldNamesCheck extends PythonSubscriptionCheck {
 
   private static void lookForDuplications(SubscriptionContext ctx, List<Tree> fieldNames, List<Tree> methodNames) {
     List<TokenWithTypeInfo> allTokensWithInfo = mergeLists(fieldNames, methodNames);
-    allTokensWithInfo.sort(Comparator.comparingInt(TokenWithTypeInfo::getLine));
+    // fields are declared members, whose order is not defined: names of a same line are sorted by column
+    allTokensWithInfo.sort(Comparator.comparingInt(TokenWithTypeInfo::getLine).thenComparingInt(TokenWithTypeInfo::getColumn));
     for (int i = 1; i < allTokensWithInfo.size(); i++) {
       for (int j = i - 1; j >= 0; j--) {
         TokenWithTypeInfo token1 = allTokensWithInfo.get(j);
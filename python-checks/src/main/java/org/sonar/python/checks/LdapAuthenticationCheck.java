@@ -21,6 +21,7 @@ package org.sonar.python.checks;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import javax.annotation.Nullable;
 import org.sonar.check.Rule;
@@ -52,7 +53,8 @@ public class LdapAuthenticationCheck extends PythonSubscriptionCheck {
     context.registerSyntaxNodeConsumer(CALL_EXPR, ctx -> {
       CallExpression callExpression = (CallExpression) ctx.syntaxNode();
       Symbol calleeSymbol = callExpression.calleeSymbol();
-      Set<Tree> secondaries = new HashSet<>();
+      // in the order of the arguments, independently of the hash codes of the trees
+      Set<Tree> secondaries = new LinkedHashSet<>();
       if (calleeSymbol != null && LDAP_OBJECT_SENSITIVE_METHODS.contains(calleeSymbol.fullyQualifiedName()) && !isPasswordProvided(callExpression.argumentList(), secondaries)) {
         PreciseIssue preciseIssue = ctx.addIssue(callExpression.callee(), "Provide a password when authenticating to this LDAP server.");
         secondaries.forEach(secondary -> preciseIssue.secondary(secondary, null));
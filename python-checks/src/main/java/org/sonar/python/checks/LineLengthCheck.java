@@ -22,6 +22,7 @@ package org.sonar.python.checks;
 import java.text.MessageFormat;
 import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
+import org.sonar.plugins.python.api.LineIndex;
 import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.tree.Tree;
 
@@ -40,13 +41,13 @@ public class LineLengthCheck extends PythonSubscriptionCheck {
   @Override
   public void initialize(Context context) {
     context.registerSyntaxNodeConsumer(Tree.Kind.FILE_INPUT, ctx -> {
-      String[] lines = ctx.pythonFile().content().split("\r?\n|\r", -1);
-      for (int i = 0; i < lines.length; i++) {
-        String line = lines[i];
-        if (line.length() > maximumLineLength) {
+      LineIndex lines = ctx.pythonFile().lineIndex();
+      for (int line = 1; line <= lines.lineCount(); line++) {
+        int lineLength = lines.lineLength(line);
+        if (lineLength > maximumLineLength) {
           String message = MessageFormat.format("The line contains {0,number,integer} characters which is greater than {1,number,integer} authorized.",
-            line.length(), maximumLineLength);
-          ctx.addLineIssue(message, i + 1);
+            lineLength, maximumLineLength);
+          ctx.addLineIssue(message, line);
         }
       }
     });
@@ -20,6 +20,7 @@
 package org.sonar.python.checks;
 
 import org.sonar.check.Rule;
+import org.sonar.plugins.python.api.LineIndex;
 import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.tree.Tree;
 
@@ -30,8 +31,9 @@ public class MissingNewlineAtEndOfFileCheck extends PythonSubscriptionCheck {
   @Override
   public void initialize(Context context) {
     context.registerSyntaxNodeConsumer(Tree.Kind.FILE_INPUT, ctx -> {
-      String fileContent = ctx.pythonFile().content();
-      if (fileContent.length() > 0 && !fileContent.endsWith("\n") && !fileContent.endsWith("\r")) {
+      LineIndex lines = ctx.pythonFile().lineIndex();
+      // the last line is empty when the file is empty or ends with a line terminator
+      if (lines.lineLength(lines.lineCount()) > 0) {
         ctx.addFileIssue(String.format(MESSAGE, ctx.pythonFile().fileName()));
       }
     });
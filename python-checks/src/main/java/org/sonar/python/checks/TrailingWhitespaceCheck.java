@@ -19,9 +19,9 @@
  */
 package org.sonar.python.checks;
 
-import java.util.regex.Pattern;
 import org.sonar.check.Rule;
 import org.sonar.plugins.python.api.IssueLocation;
+import org.sonar.plugins.python.api.LineIndex;
 import org.sonar.plugins.python.api.PythonCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
 
@@ -29,16 +29,30 @@ import org.sonar.plugins.python.api.PythonVisitorContext;
 public class TrailingWhitespaceCheck implements PythonCheck {
 
   private static final String MESSAGE = "Remove the useless trailing whitespaces at the end of this line.";
-  private static final Pattern TRAILING_WS = Pattern.compile("\\s$");
 
   @Override
   public void scanFile(PythonVisitorContext ctx) {
-    String[] lines = ctx.pythonFile().content().split("\r\n|\n|\r", -1);
-    for (int i = 0; i < lines.length; i++) {
-      if (TRAILING_WS.matcher(lines[i]).find()) {
-        ctx.addIssue(new PreciseIssue(this, IssueLocation.atLineLevel(MESSAGE, i + 1)));
+    String content = ctx.pythonFile().content();
+    LineIndex lines = ctx.pythonFile().lineIndex();
+    for (int line = 1; line <= lines.lineCount(); line++) {
+      int start = lines.lineStart(line);
+      if (endsWithWhitespace(content, start, start + lines.lineLength(line))) {
+        ctx.addIssue(new PreciseIssue(this, IssueLocation.atLineLevel(MESSAGE, line)));
       }
     }
   }
+
+  private static boolean endsWithWhitespace(String content, int start, int end) {
+    int last = end - 1;
+    if (last > start && isUnicodeLineTerminator(content.charAt(last))) {
+      // unicode line terminators do not break Python lines, but whitespace before a final one is still reported
+      last--;
+    }
+    return last >= start && " \t\u000B\f".indexOf(content.charAt(last)) >= 0;
+  }
+
+  private static boolean isUnicodeLineTerminator(char c) {
+    return c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
 }
 
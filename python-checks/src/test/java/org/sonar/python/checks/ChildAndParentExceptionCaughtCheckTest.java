@@ -19,9 +19,20 @@
  */
 package org.sonar.python.checks;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 import org.junit.Test;
+import org.sonar.plugins.python.api.IssueLocation;
+import org.sonar.plugins.python.api.PythonCheck.PreciseIssue;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.python.SubscriptionVisitor;
+import org.sonar.python.TestPythonVisitorRunner;
 import org.sonar.python.checks.utils.PythonCheckVerifier;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class ChildAndParentExceptionCaughtCheckTest {
 
   @Test
@@ -29,4 +40,15 @@ public class ChildAndParentExceptionCaughtCheckTest {
     PythonCheckVerifier.verify("src/test/resources/checks/childAndParentExceptionCaughtCheck.py", new ChildAndParentExceptionCaughtCheck());
   }
 
+  @Test
+  public void locations_order() {
+    PythonVisitorContext context = TestPythonVisitorRunner.createContext(new File("src/test/resources/checks/childAndParentExceptionCaughtCheck.py"));
+    SubscriptionVisitor.analyze(Collections.singletonList(new ChildAndParentExceptionCaughtCheck()), context);
+    // except (UnicodeDecodeError, UnicodeError, ValueError)
+    List<PreciseIssue> issues = context.getIssues().stream().filter(issue -> issue.primaryLocation().startLine() == 26).collect(Collectors.toList());
+    assertThat(issues).extracting(issue -> issue.primaryLocation().startLineOffset()).containsExactly(10, 30);
+    assertThat(issues.get(0).secondaryLocations()).extracting(IssueLocation::startLineOffset).containsExactly(30, 44);
+    assertThat(issues.get(1).secondaryLocations()).extracting(IssueLocation::startLineOffset).containsExactly(44);
+  }
+
 }
@@ -19,13 +19,40 @@
  */
 package org.sonar.python.checks;
 
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.Test;
+import org.sonar.plugins.python.api.IssueLocation;
+import org.sonar.plugins.python.api.PythonCheck.PreciseIssue;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.SubscriptionVisitor;
+import org.sonar.python.TestPythonVisitorRunner;
 import org.sonar.python.checks.utils.PythonCheckVerifier;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 public class LdapAuthenticationCheckTest {
 
   @Test
   public void test() {
     PythonCheckVerifier.verify("src/test/resources/checks/ldapAuthentication.py", new LdapAuthenticationCheck());
   }
+
+  @Test
+  public void secondary_locations_order() {
+    File file = new File("src/test/resources/checks/ldapAuthentication.py");
+    // with the symbols of the "ldap" module
+    Map<String, Set<Symbol>> globalSymbols = TestPythonVisitorRunner.globalSymbols(Collections.singletonList(file), file.getParentFile());
+    PythonVisitorContext context = TestPythonVisitorRunner.createContext(file, null, "", globalSymbols);
+    SubscriptionVisitor.analyze(Collections.singletonList(new LdapAuthenticationCheck()), context);
+    List<PreciseIssue> issues = context.getIssues().stream().filter(issue -> issue.primaryLocation().startLine() == 21).collect(Collectors.toList());
+    assertThat(issues).hasSize(1);
+    // the empty string assigned to the variable, then the argument
+    assertThat(issues.get(0).secondaryLocations()).extracting(IssueLocation::startLine).containsExactly(19, 21);
+  }
 }
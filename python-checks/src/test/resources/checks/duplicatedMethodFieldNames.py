@@ -65,6 +65,10 @@ class Dup:
     def other(self):
         print(self.L)
 
+class SameLine:
+    xY = Xy = 1        # Noncompliant {{Rename field "Xy" to prevent any misunderstanding/clash with field "xY" defined on line 69}}
+#        ^^
+
 class Redefined:
     def m(self): pass
     def M(self): pass
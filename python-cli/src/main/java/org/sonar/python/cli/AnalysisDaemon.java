@@ -0,0 +1,437 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.plugins.python.api.symbols.Symbol;
+
+/**
+ * Long-lived analysis of a project: the typeshed symbols, the JIT-compiled parser and checks, and the global symbols of
+ * all the modules of the project stay in memory, so that an analysis only parses and analyses the requested files.
+ * <p>
+ * The daemon is served over HTTP on the loopback interface. Its port and a random token, which every request must send
+ * in the {@value #TOKEN_HEADER} header, are written to the {@value #PORT_FILE_NAME} file of the cache directory, where
+ * {@link DaemonClient} finds them:
+ * <ul>
+ *   <li>GET /status: base directory, number of indexed files and rule keys of the daemon, as JSON</li>
+ *   <li>POST /analyze?format=json|sarif: analysis of the files whose paths, relative to the base directory, are the
+ *   lines of the request body. The response body is the report, and the counts of the summary are response headers.</li>
+ *   <li>POST /analyze-project?format=json|sarif: analysis of all the files of the project</li>
+ *   <li>POST /changed: notification of the files, one path per line, which have been created, modified or deleted</li>
+ *   <li>POST /shutdown</li>
+ * </ul>
+ * Requests are served concurrently. The index is updated on notifications, and before each analysis for the analysed
+ * files and the modules they depend on when they have been modified since they were indexed: notifications are only
+ * needed for the new modules which are imported by files which did not change.
+ */
+public class AnalysisDaemon implements AutoCloseable {
+
+  static final String PORT_FILE_NAME = "daemon.port";
+  static final String TOKEN_HEADER = "X-Analysis-Token";
+  static final String ANALYSED_FILES_HEADER = "X-Analysed-Files";
+  static final String INDEXED_FILES_HEADER = "X-Indexed-Files";
+  static final String ISSUES_HEADER = "X-Issues";
+  static final String ERRORS_HEADER = "X-Errors";
+  static final String DURATION_HEADER = "X-Duration-Millis";
+
+  private static final Logger LOG = Loggers.get(AnalysisDaemon.class);
+
+  private final Path baseDir;
+  private final Path cacheDir;
+  private final Collection<String> ruleKeys;
+  private final ProjectAnalysis analysis;
+  private final String token = new BigInteger(130, new SecureRandom()).toString(32);
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  // analyses share the read lock, updates of the index take the write lock
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ProjectIndex index;
+  private final Map<String, Set<Symbol>> symbolsByPath = new HashMap<>();
+  private final Map<String, FileTime> modificationTimes = new HashMap<>();
+  private Map<String, Set<Symbol>> globalSymbols;
+
+  private HttpServer server;
+  private ExecutorService requestExecutor;
+
+  public AnalysisDaemon(Path baseDir, Charset charset, Collection<Class<?>> checkClasses, int threads, Path cacheDir) {
+    this.baseDir = baseDir.toAbsolutePath().normalize();
+    this.cacheDir = cacheDir;
+    this.ruleKeys = checkClasses.stream().map(ProjectAnalysis::ruleKey).collect(Collectors.toCollection(TreeSet::new));
+    this.analysis = new ProjectAnalysis(this.baseDir, charset, checkClasses, threads);
+    this.index = new ProjectIndex(this.baseDir);
+  }
+
+  /**
+   * Indexes all the files of the project, then serves requests on the given port of the loopback interface, or on a
+   * free port when it is 0.
+   */
+  public void start(int port) throws IOException {
+    long start = System.nanoTime();
+    List<Path> files = CommandLineAnalyzer.pythonFiles(baseDir);
+    lock.writeLock().lock();
+    try {
+      update(files);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    LOG.info("{} file(s) indexed in {} ms", index.modules().size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/", this::handle);
+    AtomicInteger threadNumber = new AtomicInteger();
+    requestExecutor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "python-daemon-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(requestExecutor);
+    server.start();
+    writePortFile();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Waits until the daemon is closed, by a shutdown request or by {@link #close()}.
+   */
+  public void awaitShutdown() throws InterruptedException {
+    stopped.await();
+  }
+
+  /**
+   * Analysis of the given files, after their global symbols and the ones of the modules they depend on have been
+   * updated. Files which do not exist are removed from the index and not analysed.
+   */
+  AnalysisResult analyze(List<Path> files) {
+    long start = System.nanoTime();
+    List<Path> existingFiles;
+    lock.writeLock().lock();
+    try {
+      existingFiles = updateDependencies(files);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return analyzeIndexedFiles(existingFiles, start);
+  }
+
+  /**
+   * Analysis of all the files of the project, after the index has been updated with the created, modified and deleted files.
+   */
+  AnalysisResult analyzeProject() throws IOException {
+    long start = System.nanoTime();
+    List<Path> files = CommandLineAnalyzer.pythonFiles(baseDir);
+    lock.writeLock().lock();
+    try {
+      Set<String> paths = files.stream().map(this::path).collect(Collectors.toSet());
+      List<Path> deletedFiles = modificationTimes.keySet().stream()
+        .filter(path -> !paths.contains(path))
+        .map(baseDir::resolve)
+        .collect(Collectors.toList());
+      update(deletedFiles);
+      update(files);
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return analyzeIndexedFiles(files, start);
+  }
+
+  /**
+   * Indexes again the given files which have been created, modified or deleted since they were indexed.
+   * Returns the number of indexed files.
+   */
+  int filesChanged(List<Path> files) {
+    lock.writeLock().lock();
+    try {
+      update(files);
+      return index.modules().size();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private AnalysisResult analyzeIndexedFiles(List<Path> files, long start) {
+    lock.readLock().lock();
+    try {
+      List<String> errors = new ArrayList<>();
+      List<Issue> issues = analysis.analyze(files, index, globalSymbols, errors);
+      return new AnalysisResult(files.size(), index.modules().size(), issues, errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private List<Path> updateDependencies(List<Path> files) {
+    update(files);
+    Set<String> paths = files.stream().map(this::path).collect(Collectors.toSet());
+    Set<String> checkedPaths = new HashSet<>(paths);
+    Set<String> dependencies = index.dependencies(paths);
+    // dependencies which were modified are indexed again, and their imports may have changed too
+    while (!checkedPaths.containsAll(dependencies)) {
+      List<Path> toCheck = dependencies.stream()
+        .filter(path -> !checkedPaths.contains(path))
+        .map(baseDir::resolve)
+        .collect(Collectors.toList());
+      dependencies.forEach(checkedPaths::add);
+      update(toCheck);
+      dependencies = index.dependencies(paths);
+    }
+    return files.stream().filter(Files::isRegularFile).collect(Collectors.toList());
+  }
+
+  /**
+   * Indexes the files whose modification time changed, and removes the deleted ones. Must be called with the write lock.
+   */
+  private void update(Collection<Path> files) {
+    List<Path> modifiedFiles = new ArrayList<>();
+    boolean changed = false;
+    for (Path file : files) {
+      String path = path(file);
+      FileTime modificationTime = modificationTime(file);
+      if (modificationTime == null) {
+        changed |= modificationTimes.remove(path) != null;
+        index.remove(path);
+        symbolsByPath.remove(path);
+      } else if (!modificationTime.equals(modificationTimes.get(path))) {
+        modificationTimes.put(path, modificationTime);
+        modifiedFiles.add(file);
+      }
+    }
+    if (!modifiedFiles.isEmpty()) {
+      LOG.debug("Indexing {} file(s)", modifiedFiles.size());
+      analysis.index(index, modifiedFiles, symbolsByPath);
+      changed = true;
+    }
+    if (changed || globalSymbols == null) {
+      globalSymbols = ProjectAnalysis.globalSymbols(index, symbolsByPath);
+    }
+  }
+
+  @CheckForNull
+  private static FileTime modificationTime(Path file) {
+    try {
+      return Files.isRegularFile(file) ? Files.getLastModifiedTime(file) : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private String path(Path file) {
+    return ProjectIndex.relativePath(baseDir, file);
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!token.equals(exchange.getRequestHeaders().getFirst(TOKEN_HEADER))) {
+        respond(exchange, 403, "Invalid token");
+        return;
+      }
+      String route = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+      switch (route) {
+        case "GET /status":
+          respond(exchange, 200, status());
+          break;
+        case "POST /analyze":
+          respondReport(exchange, analyze(files(exchange)));
+          break;
+        case "POST /analyze-project":
+          respondReport(exchange, analyzeProject());
+          break;
+        case "POST /changed":
+          exchange.getResponseHeaders().set(INDEXED_FILES_HEADER, Integer.toString(filesChanged(files(exchange))));
+          respond(exchange, 204, null);
+          break;
+        case "POST /shutdown":
+          respond(exchange, 204, null);
+          new Thread(this::close, "python-daemon-shutdown").start();
+          break;
+        default:
+          respond(exchange, 404, "Unknown request: " + route);
+      }
+    } catch (IllegalArgumentException e) {
+      respond(exchange, 400, e.getMessage());
+    } catch (IOException | RuntimeException e) {
+      LOG.error("Request failed: " + exchange.getRequestURI(), e);
+      respond(exchange, 500, String.valueOf(e));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private String status() {
+    StringWriter writer = new StringWriter();
+    lock.readLock().lock();
+    try (JsonWriter json = JsonWriter.of(writer)) {
+      json.beginObject()
+        .prop("baseDir", baseDir.toString())
+        .prop("files", index.modules().size())
+        .name("rules").beginArray().values(ruleKeys).endArray()
+        .endObject();
+    } finally {
+      lock.readLock().unlock();
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Files of the project whose paths are the lines of the request body.
+   */
+  private List<Path> files(HttpExchange exchange) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (String line : DaemonClient.read(exchange.getRequestBody()).split("\n")) {
+      String path = line.trim();
+      if (path.isEmpty()) {
+        continue;
+      }
+      Path file = baseDir.resolve(path).normalize();
+      if (!file.startsWith(baseDir) || !path.endsWith(".py")) {
+        throw new IllegalArgumentException("Not a Python file of the project: " + path);
+      }
+      files.add(file);
+    }
+    return files;
+  }
+
+  private void respondReport(HttpExchange exchange, AnalysisResult result) throws IOException {
+    IssueReport report = IssueReport.of(formatParameter(exchange.getRequestURI()));
+    StringWriter writer = new StringWriter();
+    report.write(result, ruleKeys, baseDir, writer);
+    exchange.getResponseHeaders().set(ANALYSED_FILES_HEADER, Integer.toString(result.analysedFiles()));
+    exchange.getResponseHeaders().set(INDEXED_FILES_HEADER, Integer.toString(result.indexedFiles()));
+    exchange.getResponseHeaders().set(ISSUES_HEADER, Integer.toString(result.issues().size()));
+    exchange.getResponseHeaders().set(ERRORS_HEADER, Integer.toString(result.errors().size()));
+    exchange.getResponseHeaders().set(DURATION_HEADER, Long.toString(result.durationMillis()));
+    respond(exchange, 200, writer.toString());
+  }
+
+  private static String formatParameter(URI uri) {
+    String query = uri.getQuery();
+    if (query != null) {
+      for (String parameter : query.split("&")) {
+        if (parameter.startsWith("format=")) {
+          return parameter.substring("format=".length());
+        }
+      }
+    }
+    return IssueReport.JSON.fileExtension();
+  }
+
+  private static void respond(HttpExchange exchange, int status, @Nullable String body) throws IOException {
+    if (body == null) {
+      exchange.sendResponseHeaders(status, -1);
+      return;
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", status == 200 ? "application/json; charset=utf-8" : "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private void writePortFile() throws IOException {
+    Files.createDirectories(cacheDir);
+    Path temporaryFile = cacheDir.resolve(PORT_FILE_NAME + ".tmp");
+    Files.deleteIfExists(temporaryFile);
+    Files.createFile(temporaryFile);
+    try {
+      // only readable by the user, who is the only one allowed to send requests
+      Files.setPosixFilePermissions(temporaryFile, PosixFilePermissions.fromString("rw-------"));
+    } catch (UnsupportedOperationException e) {
+      // not a POSIX file system
+    }
+    try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temporaryFile), StandardCharsets.UTF_8)) {
+      writer.write(port() + "\n" + token + "\n");
+    }
+    Files.move(temporaryFile, cacheDir.resolve(PORT_FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Stops the server, and saves the index to the cache directory.
+   */
+  @Override
+  public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      if (server != null) {
+        server.stop(0);
+        requestExecutor.shutdownNow();
+        Files.deleteIfExists(cacheDir.resolve(PORT_FILE_NAME));
+      }
+      lock.writeLock().lock();
+      try {
+        // not indexed when the daemon was not started
+        if (globalSymbols != null) {
+          index.save(cacheDir);
+        }
+      } finally {
+        lock.writeLock().unlock();
+      }
+    } catch (IOException e) {
+      LOG.warn("Unable to save the project index to " + cacheDir, e);
+    } finally {
+      analysis.close();
+      stopped.countDown();
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Issues of the analysed files, sorted by file and location, and the files which could not be analysed.
+ */
+class AnalysisResult {
+
+  private final int analysedFiles;
+  private final int indexedFiles;
+  private final List<Issue> issues;
+  private final List<String> errors;
+  private final long durationMillis;
+
+  AnalysisResult(int analysedFiles, int indexedFiles, List<Issue> issues, List<String> errors, long durationMillis) {
+    this.analysedFiles = analysedFiles;
+    this.indexedFiles = indexedFiles;
+    List<Issue> sortedIssues = new ArrayList<>(issues);
+    sortedIssues.sort(Issue.ORDER);
+    this.issues = Collections.unmodifiableList(sortedIssues);
+    this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+    this.durationMillis = durationMillis;
+  }
+
+  int analysedFiles() {
+    return analysedFiles;
+  }
+
+  /**
+   * Number of files parsed to compute global symbols.
+   */
+  int indexedFiles() {
+    return indexedFiles;
+  }
+
+  List<Issue> issues() {
+    return issues;
+  }
+
+  List<String> errors() {
+    return errors;
+  }
+
+  long durationMillis() {
+    return durationMillis;
+  }
+}
@@ -0,0 +1,345 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.sonar.python.checks.CheckList;
+import org.sonarsource.analyzer.commons.BuiltInQualityProfileJsonLoader;
+
+/**
+ * Analysis of a directory by the rules of python-checks, without SonarQube server, on all the available cores:
+ * <pre>
+ * java -jar python-cli.jar [project directory] [-r rule keys|all] [-f json|sarif] [-o report file] [-t threads]
+ *   [--changed-files file1,file2] [--cache directory] [-e encoding]
+ * </pre>
+ * The rules are the ones of the "Sonar way" profile by default, with their default parameters. With "--changed-files",
+ * only the given files, relative to the project directory as listed by "git diff --name-only", are analysed, with the global symbols of the modules they depend on, found in the project index
+ * saved in the cache directory by the previous analysis.
+ * <p>
+ * With "--daemon", the project is indexed once and analysed on demand by an {@link AnalysisDaemon}, until "--stop". The
+ * analyses run with "--connect" are then done by the daemon, when it is running, with its rules.
+ */
+public class CommandLineAnalyzer {
+
+  static final String SONAR_WAY_PROFILE = "org/sonar/l10n/py/rules/python/Sonar_way_profile.json";
+  static final String DEFAULT_CACHE_DIRECTORY = ".sonar-python-cache";
+  private static final String USAGE = "Usage: java -jar python-cli.jar [project directory] [-r rule keys|all] [-f json|sarif] [-o report file]"
+    + " [-t threads] [--changed-files file1,file2] [--cache directory] [-e encoding] [--daemon [--port port] | --connect | --stop]";
+
+  private enum Mode {
+    ANALYSIS, DAEMON, CONNECT, STOP
+  }
+
+  private Path baseDir = Paths.get("");
+  private String rules = null;
+  private IssueReport report = IssueReport.JSON;
+  private Path output = null;
+  private int threads = Runtime.getRuntime().availableProcessors();
+  private List<Path> changedFiles = null;
+  private Path cacheDir = null;
+  private Charset charset = StandardCharsets.UTF_8;
+  private Mode mode = Mode.ANALYSIS;
+  private int port = 0;
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    CommandLineAnalyzer analyzer = new CommandLineAnalyzer();
+    Map<String, Class<?>> checks;
+    try {
+      analyzer.parseArguments(args);
+      checks = analyzer.checks();
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return 2;
+    }
+    try {
+      switch (analyzer.mode) {
+        case DAEMON:
+          analyzer.serve(checks, out);
+          break;
+        case STOP:
+          analyzer.stopDaemon(out);
+          break;
+        default:
+          analyzer.analyzeAndReport(checks, out, err);
+      }
+      return 0;
+    } catch (IOException | UncheckedIOException e) {
+      err.println("Analysis failed: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  void parseArguments(String[] args) {
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      switch (arg) {
+        case "-r":
+        case "--rules":
+          rules = value(args, ++i, arg);
+          break;
+        case "-f":
+        case "--format":
+          report = IssueReport.of(value(args, ++i, arg));
+          break;
+        case "-o":
+        case "--output":
+          output = Paths.get(value(args, ++i, arg));
+          break;
+        case "-t":
+        case "--threads":
+          threads = threads(value(args, ++i, arg));
+          break;
+        case "--changed-files":
+          changedFiles = Arrays.stream(value(args, ++i, arg).split(",")).filter(s -> !s.isEmpty()).map(Paths::get).collect(Collectors.toList());
+          break;
+        case "--cache":
+          cacheDir = Paths.get(value(args, ++i, arg));
+          break;
+        case "-e":
+        case "--encoding":
+          charset = Charset.forName(value(args, ++i, arg));
+          break;
+        case "--daemon":
+          mode(Mode.DAEMON);
+          break;
+        case "--connect":
+          mode(Mode.CONNECT);
+          break;
+        case "--stop":
+          mode(Mode.STOP);
+          break;
+        case "--port":
+          port = port(value(args, ++i, arg));
+          break;
+        default:
+          if (arg.startsWith("-")) {
+            throw new IllegalArgumentException("Unknown option: " + arg);
+          }
+          baseDir = Paths.get(arg);
+      }
+    }
+    baseDir = baseDir.toAbsolutePath().normalize();
+    if (!Files.isDirectory(baseDir)) {
+      throw new IllegalArgumentException("Not a directory: " + baseDir);
+    }
+  }
+
+  private static String value(String[] args, int index, String option) {
+    if (index >= args.length) {
+      throw new IllegalArgumentException("Missing value of option " + option);
+    }
+    return args[index];
+  }
+
+  private void mode(Mode newMode) {
+    if (mode != Mode.ANALYSIS) {
+      throw new IllegalArgumentException("Options --daemon, --connect and --stop are exclusive");
+    }
+    mode = newMode;
+  }
+
+  private static int port(String value) {
+    try {
+      int port = Integer.parseInt(value);
+      if (port >= 0 && port <= 0xFFFF) {
+        return port;
+      }
+    } catch (NumberFormatException e) {
+      // invalid value, reported below
+    }
+    throw new IllegalArgumentException("Invalid port: " + value);
+  }
+
+  private static int threads(String value) {
+    try {
+      int threads = Integer.parseInt(value);
+      if (threads > 0) {
+        return threads;
+      }
+    } catch (NumberFormatException e) {
+      // invalid value, reported below
+    }
+    throw new IllegalArgumentException("Invalid number of threads: " + value);
+  }
+
+  private void analyzeAndReport(Map<String, Class<?>> checks, PrintStream out, PrintStream err) throws IOException {
+    if (mode == Mode.CONNECT) {
+      DaemonClient client = DaemonClient.of(cacheDir());
+      if (client != null) {
+        try {
+          DaemonClient.Report daemonReport = changedFiles == null
+            ? client.analyzeProject(report.fileExtension())
+            : client.analyze(changedPythonFiles().stream().map(file -> ProjectIndex.relativePath(baseDir, file)).collect(Collectors.toList()),
+              report.fileExtension());
+          Files.write(createOutput(), daemonReport.content().getBytes(StandardCharsets.UTF_8));
+          out.println(summary(daemonReport.analysedFiles(), daemonReport.indexedFiles(), daemonReport.issues(), daemonReport.errors(),
+            daemonReport.durationMillis()));
+          return;
+        } catch (ConnectException e) {
+          // the daemon was killed: its port file is left behind
+        }
+      }
+      err.println("No analysis daemon is running for " + baseDir + ": the files are analysed without it");
+    }
+    AnalysisResult result = analyze(checks);
+    out.println(summary(result.analysedFiles(), result.indexedFiles(), result.issues().size(), result.errors().size(), result.durationMillis()));
+  }
+
+  private String summary(int analysedFiles, int indexedFiles, int issues, int errors, long durationMillis) {
+    return String.format("%d file(s) analysed, %d file(s) indexed, %d issue(s), %d error(s) in %d ms: %s", analysedFiles, indexedFiles, issues,
+      errors, durationMillis, output());
+  }
+
+  AnalysisResult analyze(Map<String, Class<?>> checks) throws IOException {
+    AnalysisResult result;
+    try (ProjectAnalysis analysis = new ProjectAnalysis(baseDir, charset, checks.values(), threads)) {
+      if (changedFiles == null) {
+        result = analysis.analyze(pythonFiles(baseDir), cacheDir());
+      } else {
+        result = analysis.analyzeChangedFiles(changedPythonFiles(), cacheDir(), pythonFiles(baseDir));
+      }
+    }
+    try (Writer writer = Files.newBufferedWriter(createOutput(), StandardCharsets.UTF_8)) {
+      report.write(result, checks.keySet(), baseDir, writer);
+    }
+    return result;
+  }
+
+  private List<Path> changedPythonFiles() {
+    return changedFiles.stream()
+      .map(baseDir::resolve)
+      .map(Path::normalize)
+      .filter(file -> file.toString().endsWith(".py"))
+      .collect(Collectors.toList());
+  }
+
+  private Path createOutput() throws IOException {
+    Path reportFile = output();
+    if (reportFile.getParent() != null) {
+      Files.createDirectories(reportFile.getParent());
+    }
+    return reportFile;
+  }
+
+  /**
+   * Runs an analysis daemon until it is stopped by a shutdown request or by the termination of the process.
+   */
+  private void serve(Map<String, Class<?>> checks, PrintStream out) throws IOException {
+    AnalysisDaemon daemon = new AnalysisDaemon(baseDir, charset, checks.values(), threads, cacheDir());
+    Runtime.getRuntime().addShutdownHook(new Thread(daemon::close, "python-daemon-shutdown-hook"));
+    try {
+      daemon.start(port);
+      out.println(String.format("Analysis daemon of %s listening on port %d", baseDir, daemon.port()));
+      daemon.awaitShutdown();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      daemon.close();
+    }
+  }
+
+  private void stopDaemon(PrintStream out) throws IOException {
+    DaemonClient client = DaemonClient.of(cacheDir());
+    if (client == null) {
+      throw new IOException("No analysis daemon is running for " + baseDir);
+    }
+    client.shutdown();
+    out.println("Analysis daemon of " + baseDir + " stopped");
+  }
+
+  /**
+   * Checks of the selected rules, by rule key.
+   */
+  Map<String, Class<?>> checks() {
+    Map<String, Class<?>> checks = ProjectAnalysis.checksByRuleKey(CheckList.getChecks());
+    if ("all".equals(rules)) {
+      return checks;
+    }
+    Collection<String> ruleKeys = rules == null
+      ? BuiltInQualityProfileJsonLoader.loadActiveKeysFromJsonProfile(SONAR_WAY_PROFILE)
+      : Arrays.stream(rules.split(",")).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+    List<String> unknownRules = ruleKeys.stream().filter(key -> !checks.containsKey(key)).collect(Collectors.toList());
+    if (!unknownRules.isEmpty()) {
+      throw new IllegalArgumentException("Unknown rule(s): " + String.join(", ", unknownRules));
+    }
+    checks.keySet().retainAll(new HashSet<>(ruleKeys));
+    return checks;
+  }
+
+  /**
+   * Python files of the project, sorted by path. Hidden directories, such as the cache directory, are skipped.
+   */
+  static List<Path> pythonFiles(Path baseDir) throws IOException {
+    try (Stream<Path> files = Files.walk(baseDir)) {
+      return files
+        .filter(file -> file.toString().endsWith(".py") && Files.isRegularFile(file))
+        .filter(file -> !isInHiddenDirectory(baseDir.relativize(file)))
+        .sorted()
+        .collect(Collectors.toCollection(ArrayList::new));
+    }
+  }
+
+  private static boolean isInHiddenDirectory(Path relativePath) {
+    for (int i = 0; i < relativePath.getNameCount() - 1; i++) {
+      if (relativePath.getName(i).toString().startsWith(".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  Path cacheDir() {
+    return cacheDir != null ? cacheDir : baseDir.resolve(DEFAULT_CACHE_DIRECTORY);
+  }
+
+  Path output() {
+    return output != null ? output : Paths.get("python-issues." + report.fileExtension());
+  }
+
+  Path baseDir() {
+    return baseDir;
+  }
+
+  int threads() {
+    return threads;
+  }
+}
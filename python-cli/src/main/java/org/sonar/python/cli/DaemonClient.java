@@ -0,0 +1,196 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+/**
+ * Client of the {@link AnalysisDaemon} of a project, found through the port file of its cache directory.
+ */
+public class DaemonClient {
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 1000;
+
+  private final URL baseUrl;
+  private final String token;
+
+  DaemonClient(int port, String token) throws IOException {
+    this.baseUrl = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), port, "/");
+    this.token = token;
+  }
+
+  /**
+   * Client of the daemon whose port file is in the given cache directory, or null when there is none. The daemon may
+   * not be running anymore if it was killed: requests then fail with a {@link java.net.ConnectException}.
+   */
+  @CheckForNull
+  public static DaemonClient of(Path cacheDir) {
+    Path portFile = cacheDir.resolve(AnalysisDaemon.PORT_FILE_NAME);
+    try {
+      List<String> lines = Files.readAllLines(portFile, StandardCharsets.UTF_8);
+      return lines.size() < 2 ? null : new DaemonClient(Integer.parseInt(lines.get(0)), lines.get(1));
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Analysis of the given files, whose paths are relative to the base directory of the daemon, in the given format.
+   */
+  public Report analyze(Collection<String> paths, String format) throws IOException {
+    return report(request("POST", "analyze?format=" + format, String.join("\n", paths)));
+  }
+
+  /**
+   * Analysis of all the files of the project, in the given format.
+   */
+  public Report analyzeProject(String format) throws IOException {
+    return report(request("POST", "analyze-project?format=" + format, ""));
+  }
+
+  /**
+   * Notification of created, modified or deleted files. Returns the number of files indexed by the daemon.
+   */
+  public int filesChanged(Collection<String> paths) throws IOException {
+    HttpURLConnection connection = request("POST", "changed", String.join("\n", paths));
+    return intHeader(connection, AnalysisDaemon.INDEXED_FILES_HEADER);
+  }
+
+  /**
+   * Base directory, number of indexed files and rule keys of the daemon, as JSON.
+   */
+  public String status() throws IOException {
+    HttpURLConnection connection = request("GET", "status", null);
+    try (InputStream in = connection.getInputStream()) {
+      return read(in);
+    }
+  }
+
+  public void shutdown() throws IOException {
+    request("POST", "shutdown", "");
+  }
+
+  private HttpURLConnection request(String method, String path, @Nullable String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl, path).openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+    connection.setRequestMethod(method);
+    connection.setRequestProperty(AnalysisDaemon.TOKEN_HEADER, token);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    int status = connection.getResponseCode();
+    if (status >= 400) {
+      InputStream errorStream = connection.getErrorStream();
+      String message = errorStream == null ? "" : read(errorStream);
+      throw new IOException("Request to the analysis daemon failed with status " + status + ": " + message);
+    }
+    return connection;
+  }
+
+  private static Report report(HttpURLConnection connection) throws IOException {
+    String content;
+    try (InputStream in = connection.getInputStream()) {
+      content = read(in);
+    }
+    return new Report(content, intHeader(connection, AnalysisDaemon.ANALYSED_FILES_HEADER), intHeader(connection, AnalysisDaemon.INDEXED_FILES_HEADER),
+      intHeader(connection, AnalysisDaemon.ISSUES_HEADER), intHeader(connection, AnalysisDaemon.ERRORS_HEADER),
+      Long.parseLong(connection.getHeaderField(AnalysisDaemon.DURATION_HEADER)));
+  }
+
+  private static int intHeader(HttpURLConnection connection, String name) throws IOException {
+    String value = connection.getHeaderField(name);
+    if (value == null) {
+      throw new IOException("Missing header in the response of the analysis daemon: " + name);
+    }
+    return Integer.parseInt(value);
+  }
+
+  static String read(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int length;
+    while ((length = in.read(buffer)) >= 0) {
+      bytes.write(buffer, 0, length);
+    }
+    return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Report of an analysis by the daemon, with the counts of its summary.
+   */
+  public static class Report {
+    private final String content;
+    private final int analysedFiles;
+    private final int indexedFiles;
+    private final int issues;
+    private final int errors;
+    private final long durationMillis;
+
+    Report(String content, int analysedFiles, int indexedFiles, int issues, int errors, long durationMillis) {
+      this.content = content;
+      this.analysedFiles = analysedFiles;
+      this.indexedFiles = indexedFiles;
+      this.issues = issues;
+      this.errors = errors;
+      this.durationMillis = durationMillis;
+    }
+
+    public String content() {
+      return content;
+    }
+
+    public int analysedFiles() {
+      return analysedFiles;
+    }
+
+    public int indexedFiles() {
+      return indexedFiles;
+    }
+
+    public int issues() {
+      return issues;
+    }
+
+    public int errors() {
+      return errors;
+    }
+
+    public long durationMillis() {
+      return durationMillis;
+    }
+  }
+}
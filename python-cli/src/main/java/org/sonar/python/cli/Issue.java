@@ -0,0 +1,171 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.IssueLocation;
+
+/**
+ * Issue raised by a rule, with paths relative to the base directory of the project.
+ */
+class Issue {
+
+  static final Comparator<Issue> ORDER = Comparator.comparing((Issue issue) -> issue.primaryLocation.path)
+    .thenComparingInt(issue -> issue.primaryLocation.startLine)
+    .thenComparingInt(issue -> issue.primaryLocation.startColumn)
+    .thenComparing(issue -> issue.ruleKey)
+    .thenComparing(issue -> Objects.toString(issue.primaryLocation.message, ""));
+
+  private final String ruleKey;
+  private final Location primaryLocation;
+  private final Integer gap;
+  private final List<Location> secondaryLocations;
+
+  Issue(String ruleKey, Location primaryLocation, @Nullable Integer gap, List<Location> secondaryLocations) {
+    this.ruleKey = ruleKey;
+    this.primaryLocation = primaryLocation;
+    this.gap = gap;
+    this.secondaryLocations = Collections.unmodifiableList(secondaryLocations);
+  }
+
+  String ruleKey() {
+    return ruleKey;
+  }
+
+  Location primaryLocation() {
+    return primaryLocation;
+  }
+
+  @CheckForNull
+  Integer gap() {
+    return gap;
+  }
+
+  List<Location> secondaryLocations() {
+    return secondaryLocations;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    Issue issue = (Issue) o;
+    return ruleKey.equals(issue.ruleKey) && primaryLocation.equals(issue.primaryLocation) && Objects.equals(gap, issue.gap)
+      && secondaryLocations.equals(issue.secondaryLocations);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(ruleKey, primaryLocation, gap, secondaryLocations);
+  }
+
+  @Override
+  public String toString() {
+    return ruleKey + " " + primaryLocation;
+  }
+
+  /**
+   * Location of an issue. Lines start at 1 and columns at 0, as in {@link IssueLocation}: the start line is
+   * {@link IssueLocation#UNDEFINED_LINE} for the issues on a whole file, and the columns are
+   * {@link IssueLocation#UNDEFINED_OFFSET} for the issues on a whole line.
+   */
+  static class Location {
+    private final String path;
+    private final String message;
+    private final int startLine;
+    private final int startColumn;
+    private final int endLine;
+    private final int endColumn;
+
+    Location(String path, @Nullable String message, int startLine, int startColumn, int endLine, int endColumn) {
+      this.path = path;
+      this.message = message;
+      this.startLine = startLine;
+      this.startColumn = startColumn;
+      this.endLine = endLine;
+      this.endColumn = endColumn;
+    }
+
+    String path() {
+      return path;
+    }
+
+    @CheckForNull
+    String message() {
+      return message;
+    }
+
+    int startLine() {
+      return startLine;
+    }
+
+    int startColumn() {
+      return startColumn;
+    }
+
+    int endLine() {
+      return endLine;
+    }
+
+    int endColumn() {
+      return endColumn;
+    }
+
+    boolean isFileLevel() {
+      return startLine == IssueLocation.UNDEFINED_LINE;
+    }
+
+    boolean isLineLevel() {
+      return !isFileLevel() && startColumn == IssueLocation.UNDEFINED_OFFSET;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Location location = (Location) o;
+      return startLine == location.startLine && startColumn == location.startColumn && endLine == location.endLine && endColumn == location.endColumn
+        && path.equals(location.path) && Objects.equals(message, location.message);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, message, startLine, startColumn, endLine, endColumn);
+    }
+
+    @Override
+    public String toString() {
+      return path + ":" + startLine + ":" + startColumn + " " + message;
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.python.checks.CheckList;
+
+/**
+ * Report of the issues of an analysis, in a JSON format of its own or in SARIF 2.1.0 (https://sarifweb.azurewebsites.net/).
+ */
+enum IssueReport {
+
+  JSON {
+    @Override
+    void write(AnalysisResult result, Collection<String> ruleKeys, Path baseDir, Writer writer) {
+      try (JsonWriter json = JsonWriter.of(writer)) {
+        json.beginObject()
+          .prop("files", result.analysedFiles())
+          .prop("indexedFiles", result.indexedFiles())
+          .name("issues").beginArray();
+        for (Issue issue : result.issues()) {
+          json.beginObject().prop("rule", CheckList.REPOSITORY_KEY + ":" + issue.ruleKey());
+          writeLocation(json, issue.primaryLocation());
+          json.prop("gap", issue.gap());
+          if (!issue.secondaryLocations().isEmpty()) {
+            json.name("secondaryLocations").beginArray();
+            for (Issue.Location location : issue.secondaryLocations()) {
+              writeLocation(json.beginObject(), location);
+              json.endObject();
+            }
+            json.endArray();
+          }
+          json.endObject();
+        }
+        json.endArray()
+          .name("errors").beginArray().values(result.errors()).endArray()
+          .endObject();
+      }
+    }
+
+    private void writeLocation(JsonWriter json, Issue.Location location) {
+      json.prop("file", location.path()).prop("message", location.message());
+      if (!location.isFileLevel()) {
+        json.prop("line", location.startLine());
+        if (!location.isLineLevel()) {
+          json.prop("column", location.startColumn())
+            .prop("endLine", location.endLine())
+            .prop("endColumn", location.endColumn());
+        }
+      }
+    }
+  },
+
+  SARIF {
+    private static final String SOURCE_ROOT = "SRCROOT";
+
+    @Override
+    void write(AnalysisResult result, Collection<String> ruleKeys, Path baseDir, Writer writer) {
+      try (JsonWriter json = JsonWriter.of(writer)) {
+        json.beginObject()
+          .prop("$schema", "https://json.schemastore.org/sarif-2.1.0.json")
+          .prop("version", "2.1.0")
+          .name("runs").beginArray().beginObject();
+        json.name("tool").beginObject().name("driver").beginObject()
+          .prop("name", "SonarPython")
+          .prop("informationUri", "https://www.sonarsource.com/python/")
+          .name("rules").beginArray();
+        Map<String, Integer> ruleIndexes = new HashMap<>();
+        for (String ruleKey : ruleKeys) {
+          ruleIndexes.put(ruleKey, ruleIndexes.size());
+          json.beginObject().prop("id", ruleKey).endObject();
+        }
+        json.endArray().endObject().endObject();
+        json.name("originalUriBaseIds").beginObject()
+          .name(SOURCE_ROOT).beginObject().prop("uri", baseDir.toUri().toString()).endObject()
+          .endObject();
+        json.name("results").beginArray();
+        for (Issue issue : result.issues()) {
+          writeResult(json, issue, ruleIndexes.get(issue.ruleKey()));
+        }
+        json.endArray();
+        writeNotifications(json, result.errors());
+        json.endObject().endArray().endObject();
+      }
+    }
+
+    private void writeResult(JsonWriter json, Issue issue, Integer ruleIndex) {
+      Issue.Location primaryLocation = issue.primaryLocation();
+      json.beginObject()
+        .prop("ruleId", issue.ruleKey())
+        .prop("ruleIndex", ruleIndex)
+        .prop("level", "warning");
+      json.name("message").beginObject().prop("text", primaryLocation.message() == null ? issue.ruleKey() : primaryLocation.message()).endObject();
+      json.name("locations").beginArray().beginObject();
+      writePhysicalLocation(json, primaryLocation);
+      json.endObject().endArray();
+      List<Issue.Location> secondaryLocations = issue.secondaryLocations();
+      if (!secondaryLocations.isEmpty()) {
+        json.name("relatedLocations").beginArray();
+        for (int i = 0; i < secondaryLocations.size(); i++) {
+          Issue.Location location = secondaryLocations.get(i);
+          json.beginObject().prop("id", i);
+          if (location.message() != null) {
+            json.name("message").beginObject().prop("text", location.message()).endObject();
+          }
+          writePhysicalLocation(json, location);
+          json.endObject();
+        }
+        json.endArray();
+      }
+      json.endObject();
+    }
+
+    /**
+     * SARIF lines and columns start at 1, and the end column is the one after the last character of the region.
+     */
+    private void writePhysicalLocation(JsonWriter json, Issue.Location location) {
+      json.name("physicalLocation").beginObject()
+        .name("artifactLocation").beginObject().prop("uri", location.path()).prop("uriBaseId", SOURCE_ROOT).endObject();
+      if (!location.isFileLevel()) {
+        json.name("region").beginObject().prop("startLine", location.startLine());
+        if (location.isLineLevel()) {
+          json.prop("endLine", location.endLine());
+        } else {
+          json.prop("startColumn", location.startColumn() + 1)
+            .prop("endLine", location.endLine())
+            .prop("endColumn", location.endColumn() + 1);
+        }
+        json.endObject();
+      }
+      json.endObject();
+    }
+
+    private void writeNotifications(JsonWriter json, List<String> errors) {
+      if (errors.isEmpty()) {
+        return;
+      }
+      json.name("invocations").beginArray().beginObject()
+        .prop("executionSuccessful", true)
+        .name("toolExecutionNotifications").beginArray();
+      for (String error : errors) {
+        json.beginObject().prop("level", "error").name("message").beginObject().prop("text", error).endObject().endObject();
+      }
+      json.endArray().endObject().endArray();
+    }
+  };
+
+  abstract void write(AnalysisResult result, Collection<String> ruleKeys, Path baseDir, Writer writer);
+
+  String fileExtension() {
+    return name().toLowerCase(Locale.ENGLISH);
+  }
+
+  static IssueReport of(String format) {
+    for (IssueReport report : values()) {
+      if (report.fileExtension().equals(format.toLowerCase(Locale.ENGLISH))) {
+        return report;
+      }
+    }
+    throw new IllegalArgumentException("Unknown report format: " + format + " (expected \"json\" or \"sarif\")");
+  }
+}
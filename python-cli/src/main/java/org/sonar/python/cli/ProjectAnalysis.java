@@ -0,0 +1,335 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import com.sonar.sslr.api.RecognitionException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.AnnotationUtils;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.check.Rule;
+import org.sonar.plugins.python.api.IssueLocation;
+import org.sonar.plugins.python.api.PythonCheck;
+import org.sonar.plugins.python.api.PythonCheck.PreciseIssue;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.python.SubscriptionVisitor;
+import org.sonar.python.semantic.SymbolUtils;
+import org.sonar.python.tree.PythonTreeParser;
+
+/**
+ * Analysis of the files of a project by a set of rules, in parallel: files are indexed and their global symbols computed
+ * by a first pass, then the rules are executed on each file by a second pass. Parsers and checks are not thread-safe:
+ * each thread has its own instances.
+ * <p>
+ * Results do not depend on the number of threads: the global symbols are assembled in the order of the paths of their
+ * files, and the issues are sorted.
+ */
+class ProjectAnalysis implements AutoCloseable {
+
+  private static final Logger LOG = Loggers.get(ProjectAnalysis.class);
+
+  private final Path baseDir;
+  private final Charset charset;
+  private final Map<Class<?>, String> ruleKeys;
+  private final ExecutorService executor;
+  private final ThreadLocal<PythonTreeParser> parsers = ThreadLocal.withInitial(PythonTreeParser::create);
+  private final ThreadLocal<List<PythonCheck>> checks = ThreadLocal.withInitial(this::newChecks);
+
+  ProjectAnalysis(Path baseDir, Charset charset, Collection<Class<?>> checkClasses, int threads) {
+    this.baseDir = baseDir.toAbsolutePath().normalize();
+    this.charset = charset;
+    this.ruleKeys = checkClasses.stream().collect(Collectors.toMap(Function.identity(), ProjectAnalysis::ruleKey));
+    AtomicInteger threadNumber = new AtomicInteger();
+    this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "python-analysis-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Checks of the rules of the repository, by rule key.
+   */
+  static Map<String, Class<?>> checksByRuleKey(Iterable<Class> checkClasses) {
+    Map<String, Class<?>> checksByRuleKey = new TreeMap<>();
+    for (Class<?> checkClass : checkClasses) {
+      checksByRuleKey.put(ruleKey(checkClass), checkClass);
+    }
+    return checksByRuleKey;
+  }
+
+  static String ruleKey(Class<?> checkClass) {
+    Rule rule = AnnotationUtils.getAnnotation(checkClass, Rule.class);
+    if (rule == null) {
+      throw new IllegalStateException("No @Rule annotation on " + checkClass.getName());
+    }
+    return rule.key();
+  }
+
+  /**
+   * Analysis of all the given files, whose index is saved in the cache directory.
+   */
+  AnalysisResult analyze(List<Path> files, Path cacheDir) throws IOException {
+    long start = System.nanoTime();
+    ProjectIndex index = new ProjectIndex(baseDir);
+    Map<String, Set<Symbol>> symbolsByPath = new HashMap<>();
+    index(index, files, symbolsByPath);
+    List<String> errors = new ArrayList<>();
+    List<Issue> issues = analyze(files, index, globalSymbols(index, symbolsByPath), errors);
+    index.save(cacheDir);
+    return new AnalysisResult(files.size(), files.size(), issues, errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * Analysis of the given files only, with the global symbols of the modules they depend on. The index saved in the cache
+   * directory by a previous analysis is used to find these modules: when there is none, all the project files are indexed.
+   */
+  AnalysisResult analyzeChangedFiles(List<Path> changedFiles, Path cacheDir, Collection<Path> projectFiles) throws IOException {
+    long start = System.nanoTime();
+    ProjectIndex index = ProjectIndex.load(cacheDir, baseDir);
+    Map<String, Set<Symbol>> symbolsByPath = new HashMap<>();
+    if (index.modules().isEmpty()) {
+      LOG.info("No project index in {}: all the files of the project are indexed", cacheDir);
+      index(index, new ArrayList<>(projectFiles), symbolsByPath);
+    }
+    List<Path> existingFiles = new ArrayList<>();
+    for (Path file : changedFiles) {
+      if (Files.isRegularFile(file)) {
+        existingFiles.add(file);
+      } else {
+        index.remove(ProjectIndex.relativePath(baseDir, file));
+      }
+    }
+    index(index, existingFiles.stream().filter(file -> !symbolsByPath.containsKey(path(file))).collect(Collectors.toList()), symbolsByPath);
+    Set<String> changedPaths = existingFiles.stream().map(this::path).collect(Collectors.toSet());
+    // dependencies are indexed again: their imports may have changed
+    Set<String> dependencies = index.dependencies(changedPaths);
+    while (!symbolsByPath.keySet().containsAll(dependencies)) {
+      List<Path> toIndex = dependencies.stream()
+        .filter(path -> !symbolsByPath.containsKey(path))
+        .map(baseDir::resolve)
+        .collect(Collectors.toList());
+      index(index, toIndex, symbolsByPath);
+      dependencies = index.dependencies(changedPaths);
+    }
+    Map<String, Set<Symbol>> dependenciesSymbols = new HashMap<>();
+    dependencies.forEach(path -> dependenciesSymbols.put(path, symbolsByPath.get(path)));
+    List<String> errors = new ArrayList<>();
+    List<Issue> issues = analyze(existingFiles, index, globalSymbols(index, dependenciesSymbols), errors);
+    index.save(cacheDir);
+    return new AnalysisResult(existingFiles.size(), symbolsByPath.size(), issues, errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * Indexes the files and computes their global symbols. Files which cannot be read are removed from the index, and files
+   * which cannot be parsed have no global symbols.
+   */
+  void index(ProjectIndex index, List<Path> files, Map<String, Set<Symbol>> symbolsByPath) {
+    List<Future<IndexedFile>> results = new ArrayList<>();
+    for (Path file : files) {
+      results.add(executor.submit(() -> index(file)));
+    }
+    for (int i = 0; i < files.size(); i++) {
+      String path = path(files.get(i));
+      IndexedFile indexedFile = get(results.get(i), files.get(i));
+      if (indexedFile == null) {
+        index.remove(path);
+        // not indexed again
+        symbolsByPath.put(path, null);
+      } else {
+        index.put(indexedFile.module);
+        symbolsByPath.put(path, indexedFile.globalSymbols);
+      }
+    }
+  }
+
+  @CheckForNull
+  private IndexedFile index(Path file) {
+    SourceFile sourceFile = new SourceFile(file, charset);
+    String packageName = SymbolUtils.pythonPackageName(file.toFile(), baseDir.toFile());
+    FileInput fileInput;
+    try {
+      fileInput = parsers.get().parse(sourceFile.content());
+    } catch (UncheckedIOException e) {
+      LOG.debug("Unable to read file: {}", file);
+      return null;
+    } catch (RecognitionException e) {
+      LOG.debug("Unable to construct project-level symbol table for file: {}", file);
+      return new IndexedFile(ProjectIndex.Module.of(baseDir, file, null, packageName), null);
+    }
+    ProjectIndex.Module module = ProjectIndex.Module.of(baseDir, file, fileInput, packageName);
+    return new IndexedFile(module, SymbolUtils.globalSymbols(fileInput, packageName, sourceFile));
+  }
+
+  /**
+   * Global symbols of the given files, by module name. When several files have the same module name, the symbols of the
+   * last one in the order of their paths are kept.
+   */
+  static Map<String, Set<Symbol>> globalSymbols(ProjectIndex index, Map<String, Set<Symbol>> symbolsByPath) {
+    Map<String, Set<Symbol>> globalSymbols = SymbolUtils.externalModulesSymbols();
+    for (String path : new TreeSet<>(symbolsByPath.keySet())) {
+      Set<Symbol> symbols = symbolsByPath.get(path);
+      ProjectIndex.Module module = index.module(path);
+      if (symbols != null && module != null) {
+        globalSymbols.put(module.moduleName(), symbols);
+      }
+    }
+    return globalSymbols;
+  }
+
+  List<Issue> analyze(List<Path> files, ProjectIndex index, Map<String, Set<Symbol>> globalSymbols, List<String> errors) {
+    List<Future<List<Issue>>> results = new ArrayList<>();
+    for (Path file : files) {
+      ProjectIndex.Module module = index.module(path(file));
+      String packageName = module == null ? "" : module.packageName;
+      results.add(executor.submit(() -> analyze(file, packageName, globalSymbols)));
+    }
+    List<Issue> issues = new ArrayList<>();
+    for (int i = 0; i < files.size(); i++) {
+      try {
+        issues.addAll(results.get(i).get());
+      } catch (ExecutionException e) {
+        LOG.warn("Unable to analyze file: " + files.get(i), e.getCause());
+        errors.add(path(files.get(i)) + ": " + e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Analysis interrupted", e);
+      }
+    }
+    return issues;
+  }
+
+  private List<Issue> analyze(Path file, String packageName, Map<String, Set<Symbol>> globalSymbols) {
+    SourceFile sourceFile = new SourceFile(file, charset);
+    PythonVisitorContext visitorContext;
+    try {
+      FileInput fileInput = parsers.get().parse(sourceFile.content());
+      visitorContext = new PythonVisitorContext(fileInput, sourceFile, null, packageName, globalSymbols);
+    } catch (RecognitionException e) {
+      LOG.error("Unable to parse file: " + file);
+      LOG.error(e.getMessage());
+      visitorContext = new PythonVisitorContext(sourceFile, e);
+    }
+    List<PythonSubscriptionCheck> checksBasedOnTree = new ArrayList<>();
+    for (PythonCheck check : checks.get()) {
+      if (check instanceof PythonSubscriptionCheck) {
+        checksBasedOnTree.add((PythonSubscriptionCheck) check);
+      } else {
+        check.scanFile(visitorContext);
+      }
+    }
+    SubscriptionVisitor.analyze(checksBasedOnTree, visitorContext);
+    String path = path(file);
+    return visitorContext.getIssues().stream().map(issue -> issue(path, issue)).collect(Collectors.toList());
+  }
+
+  private Issue issue(String path, PreciseIssue preciseIssue) {
+    List<Issue.Location> secondaryLocations = new ArrayList<>();
+    for (IssueLocation secondaryLocation : preciseIssue.secondaryLocations()) {
+      String fileId = secondaryLocation.fileId();
+      secondaryLocations.add(location(fileId == null ? path : pathOfFileId(fileId), secondaryLocation));
+    }
+    return new Issue(ruleKeys.get(preciseIssue.check().getClass()), location(path, preciseIssue.primaryLocation()), preciseIssue.cost(), secondaryLocations);
+  }
+
+  private String pathOfFileId(String fileId) {
+    try {
+      return ProjectIndex.relativePath(baseDir, Paths.get(fileId));
+    } catch (IllegalArgumentException e) {
+      // invalid path, or path which cannot be relative to the base directory
+      return fileId;
+    }
+  }
+
+  private static Issue.Location location(String path, IssueLocation location) {
+    return new Issue.Location(path, location.message(), location.startLine(), location.startLineOffset(), location.endLine(), location.endLineOffset());
+  }
+
+  private String path(Path file) {
+    return ProjectIndex.relativePath(baseDir, file);
+  }
+
+  private List<PythonCheck> newChecks() {
+    List<PythonCheck> instances = new ArrayList<>();
+    for (Class<?> checkClass : ruleKeys.keySet()) {
+      try {
+        instances.add((PythonCheck) checkClass.getDeclaredConstructor().newInstance());
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("Cannot instantiate " + checkClass.getName(), e);
+      }
+    }
+    return instances;
+  }
+
+  @CheckForNull
+  private static <T> T get(Future<T> future, Path file) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      LOG.debug("Unable to index file: " + file, e.getCause());
+      return null;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Analysis interrupted", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private static class IndexedFile {
+    private final ProjectIndex.Module module;
+    // null when the file cannot be parsed
+    private final Set<Symbol> globalSymbols;
+
+    private IndexedFile(ProjectIndex.Module module, @Nullable Set<Symbol> globalSymbols) {
+      this.module = module;
+      this.globalSymbols = globalSymbols;
+    }
+  }
+}
@@ -0,0 +1,294 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.python.api.tree.AliasedName;
+import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.ImportFrom;
+import org.sonar.plugins.python.api.tree.ImportName;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.python.semantic.SymbolUtils;
+
+/**
+ * Index of the modules of a project: package and imported names of each file. It is saved in the cache directory
+ * between two analyses.
+ * <p>
+ * The global symbols of a module only depend on the content of its file. The analysis of a file only reads the global
+ * symbols of the modules it imports, and of the modules they import to resolve the super classes of their classes: when
+ * only some files are analysed, the global symbols of the transitive closure of their imports are enough. The files of
+ * this closure are indexed again when their global symbols are computed, so that a modified file which is not analysed
+ * is still taken into account.
+ */
+class ProjectIndex {
+
+  private static final Logger LOG = Loggers.get(ProjectIndex.class);
+
+  static final String FILE_NAME = "project-index.txt";
+  private static final String HEADER = "python-cli project index 1";
+  private static final String SEPARATOR = "\t";
+  private static final String NAMES_SEPARATOR = ",";
+
+  private final Path baseDir;
+  // by path relative to the base directory
+  private final Map<String, Module> modules = new TreeMap<>();
+
+  ProjectIndex(Path baseDir) {
+    this.baseDir = baseDir;
+  }
+
+  /**
+   * Index saved by a previous analysis of the same base directory, or an empty index when there is none.
+   */
+  static ProjectIndex load(Path cacheDir, Path baseDir) {
+    ProjectIndex index = new ProjectIndex(baseDir);
+    Path file = cacheDir.resolve(FILE_NAME);
+    if (!Files.isRegularFile(file)) {
+      return index;
+    }
+    try {
+      List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+      if (lines.size() < 2 || !HEADER.equals(lines.get(0)) || !baseDir.toString().equals(lines.get(1))) {
+        LOG.info("Ignoring the project index of another version or of another project: {}", file);
+        return index;
+      }
+      for (String line : lines.subList(2, lines.size())) {
+        Module module = Module.parse(line);
+        index.modules.put(module.path, module);
+      }
+    } catch (IOException | RuntimeException e) {
+      LOG.warn("Ignoring the project index which cannot be read: " + file, e);
+      return new ProjectIndex(baseDir);
+    }
+    return index;
+  }
+
+  void save(Path cacheDir) throws IOException {
+    Files.createDirectories(cacheDir);
+    Path file = cacheDir.resolve(FILE_NAME);
+    Path temporaryFile = cacheDir.resolve(FILE_NAME + ".tmp");
+    try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, StandardCharsets.UTF_8)) {
+      writer.write(HEADER);
+      writer.newLine();
+      writer.write(baseDir.toString());
+      writer.newLine();
+      for (Module module : modules.values()) {
+        writer.write(module.format());
+        writer.newLine();
+      }
+    }
+    Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  Collection<Module> modules() {
+    return Collections.unmodifiableCollection(modules.values());
+  }
+
+  @CheckForNull
+  Module module(String path) {
+    return modules.get(path);
+  }
+
+  void put(Module module) {
+    modules.put(module.path, module);
+  }
+
+  void remove(String path) {
+    modules.remove(path);
+  }
+
+  /**
+   * Paths of the given files and of the files of the modules they import, transitively.
+   */
+  Set<String> dependencies(Collection<String> paths) {
+    Map<String, List<Module>> modulesByName = new HashMap<>();
+    for (Module module : modules.values()) {
+      modulesByName.computeIfAbsent(module.moduleName(), k -> new ArrayList<>()).add(module);
+    }
+    Set<String> dependencies = new TreeSet<>();
+    Deque<Module> toVisit = new ArrayDeque<>();
+    for (String path : paths) {
+      Module module = modules.get(path);
+      if (module != null && dependencies.add(path)) {
+        toVisit.add(module);
+      }
+    }
+    while (!toVisit.isEmpty()) {
+      Module module = toVisit.poll();
+      for (String referencedName : module.referencedNames) {
+        // a module is referenced by its name, or by the name of one of its symbols
+        int end = referencedName.indexOf('.');
+        while (true) {
+          String moduleName = end < 0 ? referencedName : referencedName.substring(0, end);
+          for (Module dependency : modulesByName.getOrDefault(moduleName, Collections.emptyList())) {
+            if (dependencies.add(dependency.path)) {
+              toVisit.add(dependency);
+            }
+          }
+          if (end < 0) {
+            break;
+          }
+          end = referencedName.indexOf('.', end + 1);
+        }
+      }
+    }
+    return dependencies;
+  }
+
+  /**
+   * Fully qualified names of the modules and symbols imported by a file, as resolved by the symbol table.
+   */
+  static Set<String> referencedNames(FileInput fileInput, String packageName, String fileName) {
+    ImportVisitor visitor = new ImportVisitor(packageName, fileName);
+    fileInput.accept(visitor);
+    return visitor.referencedNames;
+  }
+
+  private static class ImportVisitor extends BaseTreeVisitor {
+
+    private final List<String> filePath;
+    private final Set<String> referencedNames = new TreeSet<>();
+
+    private ImportVisitor(String packageName, String fileName) {
+      int extensionIndex = fileName.lastIndexOf('.');
+      filePath = new ArrayList<>(Arrays.asList(packageName.split("\\.")));
+      filePath.add(extensionIndex > 0 ? fileName.substring(0, extensionIndex) : fileName);
+    }
+
+    @Override
+    public void visitImportName(ImportName importName) {
+      for (AliasedName module : importName.modules()) {
+        referencedNames.add(dottedName(module.dottedName().names()));
+      }
+      super.visitImportName(importName);
+    }
+
+    @Override
+    public void visitImportFrom(ImportFrom importFrom) {
+      String moduleName = importFrom.module() == null ? null : dottedName(importFrom.module().names());
+      List<Token> dottedPrefix = importFrom.dottedPrefixForModule();
+      if (moduleName != null) {
+        String fullyQualifiedModuleName = dottedPrefix.isEmpty() ? moduleName : resolveRelativeImport(dottedPrefix, moduleName);
+        if (fullyQualifiedModuleName != null) {
+          referencedNames.add(fullyQualifiedModuleName);
+        }
+      }
+      for (AliasedName importedName : importFrom.importedNames()) {
+        String name = importedName.dottedName().names().get(0).name();
+        String fullyQualifiedName = moduleName != null ? (moduleName + "." + name) : name;
+        if (!dottedPrefix.isEmpty()) {
+          fullyQualifiedName = resolveRelativeImport(dottedPrefix, fullyQualifiedName);
+        }
+        if (fullyQualifiedName != null) {
+          referencedNames.add(fullyQualifiedName);
+        }
+      }
+      super.visitImportFrom(importFrom);
+    }
+
+    /**
+     * Same resolution as SymbolTableBuilder, so that the referenced names are the ones looked up in the global symbols.
+     */
+    @CheckForNull
+    private String resolveRelativeImport(List<Token> dottedPrefix, String name) {
+      if (dottedPrefix.size() > filePath.size()) {
+        return null;
+      }
+      String resolvedPackageName = String.join("", filePath.subList(0, filePath.size() - dottedPrefix.size()));
+      return resolvedPackageName.isEmpty() ? name : (resolvedPackageName + "." + name);
+    }
+
+    private static String dottedName(List<Name> names) {
+      return names.stream().map(Name::name).collect(Collectors.joining("."));
+    }
+  }
+
+  static class Module {
+    final String path;
+    final String packageName;
+    final Set<String> referencedNames;
+
+    Module(String path, String packageName, Set<String> referencedNames) {
+      this.path = path;
+      this.packageName = packageName;
+      this.referencedNames = Collections.unmodifiableSet(new LinkedHashSet<>(referencedNames));
+    }
+
+    String fileName() {
+      int index = path.lastIndexOf('/');
+      return index < 0 ? path : path.substring(index + 1);
+    }
+
+    String moduleName() {
+      return SymbolUtils.fullyQualifiedModuleName(packageName, fileName());
+    }
+
+    private String format() {
+      return String.join(SEPARATOR, path, packageName, String.join(NAMES_SEPARATOR, referencedNames));
+    }
+
+    private static Module parse(String line) {
+      String[] fields = line.split(SEPARATOR, -1);
+      if (fields.length != 3) {
+        throw new IllegalStateException("Invalid line: " + line);
+      }
+      Set<String> referencedNames = fields[2].isEmpty() ? Collections.emptySet() : new LinkedHashSet<>(Arrays.asList(fields[2].split(NAMES_SEPARATOR)));
+      return new Module(fields[0], fields[1], referencedNames);
+    }
+
+    /**
+     * Module of a file, whose imports are not known when it cannot be parsed.
+     */
+    static Module of(Path baseDir, Path file, @Nullable FileInput fileInput, String packageName) {
+      Set<String> referencedNames = fileInput == null ? Collections.emptySet() : referencedNames(fileInput, packageName, file.getFileName().toString());
+      return new Module(relativePath(baseDir, file), packageName, referencedNames);
+    }
+  }
+
+  static String relativePath(Path baseDir, Path file) {
+    return baseDir.relativize(file).toString().replace(File.separatorChar, '/');
+  }
+}
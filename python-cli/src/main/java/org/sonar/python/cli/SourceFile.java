@@ -0,0 +1,74 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.sonar.plugins.python.api.PythonFile;
+
+/**
+ * File of the analysed project, read once.
+ */
+class SourceFile implements PythonFile {
+
+  private final Path path;
+  private final Charset charset;
+  private String content;
+
+  SourceFile(Path path, Charset charset) {
+    this.path = path;
+    this.charset = charset;
+  }
+
+  Path path() {
+    return path;
+  }
+
+  @Override
+  public String content() {
+    if (content == null) {
+      try {
+        content = new String(Files.readAllBytes(path), charset);
+      } catch (IOException e) {
+        throw new UncheckedIOException("Cannot read " + path, e);
+      }
+    }
+    return content;
+  }
+
+  @Override
+  public String fileName() {
+    return path.getFileName().toString();
+  }
+
+  @Override
+  public URI uri() {
+    return path.toUri();
+  }
+
+  @Override
+  public String toString() {
+    return path.toString();
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.python.checks.ArgumentNumberCheck;
+import org.sonar.python.checks.ParsingErrorCheck;
+import org.sonar.python.checks.UnusedLocalVariableCheck;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AnalysisDaemonTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path baseDir;
+  private Path cacheDir;
+  private AnalysisDaemon daemon;
+  private DaemonClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = ProjectAnalysisTest.copyProject(temporaryFolder.newFolder("project").toPath());
+    cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+    List<Class<?>> checks = Arrays.asList(ArgumentNumberCheck.class, ParsingErrorCheck.class, UnusedLocalVariableCheck.class);
+    daemon = new AnalysisDaemon(baseDir, StandardCharsets.UTF_8, checks, 2, cacheDir);
+    daemon.start(0);
+    client = DaemonClient.of(cacheDir);
+  }
+
+  @After
+  public void tearDown() {
+    daemon.close();
+  }
+
+  @Test
+  public void status() throws IOException {
+    assertThat(client).isNotNull();
+    assertThat(client.status()).contains("\"files\":6").contains("\"rules\":[\"ParsingError\",\"S1481\",\"S930\"]");
+  }
+
+  @Test
+  public void analysis_of_files() throws IOException {
+    DaemonClient.Report report = client.analyze(Arrays.asList("main.py", "pkg/relative.py"), "json");
+    assertThat(report.analysedFiles()).isEqualTo(2);
+    assertThat(report.indexedFiles()).isEqualTo(6);
+    assertThat(report.issues()).isEqualTo(3);
+    assertThat(report.errors()).isZero();
+    assertThat(report.content()).startsWith("{\"files\":2,\"indexedFiles\":6,\"issues\":[{\"rule\":\"python:S1481\",\"file\":\"main.py\"");
+
+    assertThat(client.analyze(Collections.singletonList("main.py"), "sarif").content()).contains("\"version\":\"2.1.0\"");
+    assertThat(client.analyze(Collections.emptyList(), "json").analysedFiles()).isZero();
+  }
+
+  @Test
+  public void same_issues_as_command_line_analysis() throws IOException {
+    AnalysisResult result;
+    try (ProjectAnalysis analysis = new ProjectAnalysis(baseDir, StandardCharsets.UTF_8, Arrays.asList(ArgumentNumberCheck.class,
+      ParsingErrorCheck.class, UnusedLocalVariableCheck.class), 1)) {
+      result = analysis.analyze(CommandLineAnalyzer.pythonFiles(baseDir), temporaryFolder.newFolder().toPath());
+    }
+    assertThat(daemon.analyzeProject().issues()).isEqualTo(result.issues());
+  }
+
+  @Test
+  public void modified_dependencies_are_indexed_again() throws IOException {
+    Path util = baseDir.resolve("pkg/util.py");
+    Files.write(util, Collections.singletonList("def f(a, b, c): return a"), StandardCharsets.UTF_8);
+    touch(util);
+    assertThat(client.analyze(Collections.singletonList("main.py"), "json").issues()).isEqualTo(1);
+  }
+
+  @Test
+  public void notifications_of_changes() throws IOException {
+    Path main = baseDir.resolve("main.py");
+    Files.write(main, Collections.singletonList("from pkg.helper import f\nf(1, 2)"), StandardCharsets.UTF_8);
+    touch(main);
+    assertThat(client.analyze(Collections.singletonList("main.py"), "json").issues()).isZero();
+
+    Files.write(baseDir.resolve("pkg/helper.py"), Collections.singletonList("def f(): pass"), StandardCharsets.UTF_8);
+    assertThat(client.filesChanged(Collections.singletonList("pkg/helper.py"))).isEqualTo(7);
+    assertThat(client.analyze(Collections.singletonList("main.py"), "json").issues()).isEqualTo(1);
+
+    Files.delete(baseDir.resolve("pkg/helper.py"));
+    assertThat(client.filesChanged(Collections.singletonList("pkg/helper.py"))).isEqualTo(6);
+    assertThat(client.analyze(Collections.singletonList("main.py"), "json").issues()).isZero();
+  }
+
+  @Test
+  public void deleted_files() throws IOException {
+    Files.delete(baseDir.resolve("independent.py"));
+    DaemonClient.Report report = client.analyze(Collections.singletonList("independent.py"), "json");
+    assertThat(report.analysedFiles()).isZero();
+    assertThat(report.indexedFiles()).isEqualTo(5);
+
+    Files.delete(baseDir.resolve("broken.py"));
+    report = client.analyzeProject("json");
+    assertThat(report.analysedFiles()).isEqualTo(4);
+    assertThat(report.indexedFiles()).isEqualTo(4);
+  }
+
+  @Test
+  public void concurrent_requests() throws Exception {
+    String expected = client.analyzeProject("json").content();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> reports = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        reports.add(executor.submit(() -> client.analyzeProject("json").content()));
+        reports.add(executor.submit(() -> Integer.toString(client.filesChanged(Collections.singletonList("main.py")))));
+      }
+      for (int i = 0; i < reports.size(); i += 2) {
+        assertThat(reports.get(i).get()).isEqualTo(expected);
+        assertThat(reports.get(i + 1).get()).isEqualTo("6");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void invalid_requests() throws IOException {
+    assertThatThrownBy(() -> client.analyze(Collections.singletonList("../outside.py"), "json"))
+      .isInstanceOf(IOException.class).hasMessageContaining("400").hasMessageContaining("Not a Python file of the project: ../outside.py");
+    assertThatThrownBy(() -> client.analyze(Collections.singletonList("main.py"), "xml"))
+      .isInstanceOf(IOException.class).hasMessageContaining("400");
+    DaemonClient otherClient = new DaemonClient(daemon.port(), "invalid");
+    assertThatThrownBy(otherClient::status).isInstanceOf(IOException.class).hasMessageContaining("403");
+  }
+
+  @Test
+  public void shutdown() throws Exception {
+    client.shutdown();
+    daemon.awaitShutdown();
+    assertThat(cacheDir.resolve(AnalysisDaemon.PORT_FILE_NAME)).doesNotExist();
+    assertThat(DaemonClient.of(cacheDir)).isNull();
+    assertThat(ProjectIndex.load(cacheDir, baseDir).modules()).hasSize(6);
+  }
+
+  private static void touch(Path file) throws IOException {
+    // the modification time may have a coarse resolution
+    Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CommandLineAnalyzerTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+  @Test
+  public void analysis() throws IOException {
+    Path baseDir = ProjectAnalysisTest.copyProject(temporaryFolder.newFolder("project").toPath());
+    Path output = temporaryFolder.getRoot().toPath().resolve("reports/issues.sarif");
+
+    assertThat(run(baseDir.toString(), "-r", "S930,S1481", "-f", "sarif", "-o", output.toString(), "-t", "2")).isEqualTo(0);
+    assertThat(out.toString()).startsWith("6 file(s) analysed, 6 file(s) indexed, 3 issue(s), 0 error(s) in ").endsWith(output + System.lineSeparator());
+    assertThat(new String(Files.readAllBytes(output), StandardCharsets.UTF_8)).contains("\"ruleId\":\"S930\"").contains("\"ruleId\":\"S1481\"");
+    assertThat(baseDir.resolve(CommandLineAnalyzer.DEFAULT_CACHE_DIRECTORY).resolve(ProjectIndex.FILE_NAME)).exists();
+
+    out.reset();
+    assertThat(run(baseDir.toString(), "-r", "S930,S1481", "-o", output.toString(), "--changed-files", "main.py,README.md")).isEqualTo(0);
+    assertThat(out.toString()).startsWith("1 file(s) analysed, 3 file(s) indexed, 2 issue(s), 0 error(s) in ");
+  }
+
+  @Test
+  public void arguments() throws IOException {
+    Path baseDir = temporaryFolder.getRoot().toPath();
+    CommandLineAnalyzer analyzer = new CommandLineAnalyzer();
+    analyzer.parseArguments(new String[] {baseDir.toString(), "--threads", "3", "--cache", "cache", "-e", "ISO-8859-1", "-f", "sarif"});
+    assertThat(analyzer.baseDir()).isEqualTo(baseDir.toAbsolutePath().normalize());
+    assertThat(analyzer.threads()).isEqualTo(3);
+    assertThat(analyzer.cacheDir()).hasFileName("cache");
+    assertThat(analyzer.output()).hasFileName("python-issues.sarif");
+
+    analyzer = new CommandLineAnalyzer();
+    analyzer.parseArguments(new String[] {baseDir.toString()});
+    assertThat(analyzer.cacheDir()).isEqualTo(analyzer.baseDir().resolve(CommandLineAnalyzer.DEFAULT_CACHE_DIRECTORY));
+    assertThat(analyzer.output()).hasFileName("python-issues.json");
+  }
+
+  @Test
+  public void rules() {
+    CommandLineAnalyzer analyzer = analyzer();
+    assertThat(analyzer.checks()).containsKey("S930").doesNotContainKey("S1523");
+
+    analyzer = analyzer("-r", "all");
+    assertThat(analyzer.checks()).containsKeys("S930", "S1523");
+
+    analyzer = analyzer("-r", "S930,S1481");
+    assertThat(analyzer.checks()).containsOnlyKeys("S930", "S1481");
+
+    CommandLineAnalyzer unknownRules = analyzer("-r", "S930,S0,S00");
+    assertThatThrownBy(unknownRules::checks).isInstanceOf(IllegalArgumentException.class).hasMessage("Unknown rule(s): S0, S00");
+  }
+
+  @Test
+  public void invalid_arguments() {
+    String baseDir = temporaryFolder.getRoot().toString();
+    assertThat(run(baseDir, "--unknown")).isEqualTo(2);
+    assertThat(err.toString()).startsWith("Unknown option: --unknown").contains("Usage: java -jar python-cli.jar");
+
+    assertThat(run(baseDir, "-t", "0")).isEqualTo(2);
+    assertThat(run(baseDir, "-t", "many")).isEqualTo(2);
+    assertThat(run(baseDir, "-f", "xml")).isEqualTo(2);
+    assertThat(run(baseDir, "-o")).isEqualTo(2);
+    assertThat(run(baseDir, "-r", "S0")).isEqualTo(2);
+    assertThat(run(baseDir + "/missing")).isEqualTo(2);
+    assertThat(run(baseDir, "--port", "65536")).isEqualTo(2);
+    assertThat(run(baseDir, "--daemon", "--stop")).isEqualTo(2);
+    assertThat(err.toString()).contains("Invalid number of threads: many").contains("Missing value of option -o").contains("Not a directory: ")
+      .contains("Invalid port: 65536").contains("Options --daemon, --connect and --stop are exclusive");
+    assertThat(out.toString()).isEmpty();
+  }
+
+  @Test
+  public void analysis_failure() throws IOException {
+    Path baseDir = temporaryFolder.newFolder("project").toPath();
+    // the cache directory cannot be created
+    Files.createFile(baseDir.resolve("cache"));
+    assertThat(run(baseDir.toString(), "--cache", baseDir.resolve("cache").toString(), "-o", baseDir.resolve("issues.json").toString())).isEqualTo(1);
+    assertThat(err.toString()).startsWith("Analysis failed: ");
+  }
+
+  @Test
+  public void daemon() throws Exception {
+    Path baseDir = ProjectAnalysisTest.copyProject(temporaryFolder.newFolder("project").toPath());
+    Path output = temporaryFolder.getRoot().toPath().resolve("issues.json");
+    Path portFile = baseDir.resolve(CommandLineAnalyzer.DEFAULT_CACHE_DIRECTORY).resolve(AnalysisDaemon.PORT_FILE_NAME);
+
+    ByteArrayOutputStream daemonOut = new ByteArrayOutputStream();
+    PrintStream daemonPrintStream = new PrintStream(daemonOut, true);
+    Thread daemon = new Thread(() -> CommandLineAnalyzer.run(new String[] {baseDir.toString(), "-r", "S930", "--daemon"}, daemonPrintStream, daemonPrintStream));
+    daemon.start();
+    for (int i = 0; i < 300 && !Files.exists(portFile); i++) {
+      Thread.sleep(100);
+    }
+    assertThat(daemonOut.toString()).startsWith("Analysis daemon of " + baseDir + " listening on port ");
+
+    // rules of the daemon
+    assertThat(run(baseDir.toString(), "--connect", "--changed-files", "main.py", "-o", output.toString())).isEqualTo(0);
+    assertThat(out.toString()).startsWith("1 file(s) analysed, 6 file(s) indexed, 1 issue(s), 0 error(s) in ");
+    assertThat(new String(Files.readAllBytes(output), StandardCharsets.UTF_8)).contains("\"rule\":\"python:S930\",\"file\":\"main.py\"");
+
+    out.reset();
+    assertThat(run(baseDir.toString(), "--connect", "-o", output.toString())).isEqualTo(0);
+    assertThat(out.toString()).startsWith("6 file(s) analysed, 6 file(s) indexed, 2 issue(s), 0 error(s) in ");
+
+    out.reset();
+    assertThat(run(baseDir.toString(), "--stop")).isEqualTo(0);
+    assertThat(out.toString()).isEqualTo("Analysis daemon of " + baseDir + " stopped" + System.lineSeparator());
+    daemon.join(10_000);
+    assertThat(daemon.isAlive()).isFalse();
+    assertThat(portFile).doesNotExist();
+    assertThat(err.toString()).isEmpty();
+  }
+
+  @Test
+  public void connect_without_daemon() throws IOException {
+    Path baseDir = ProjectAnalysisTest.copyProject(temporaryFolder.newFolder("project").toPath());
+    Path output = temporaryFolder.getRoot().toPath().resolve("issues.json");
+    assertThat(run(baseDir.toString(), "--connect", "-r", "S930", "--changed-files", "main.py", "-o", output.toString())).isEqualTo(0);
+    assertThat(err.toString()).startsWith("No analysis daemon is running for " + baseDir + ": the files are analysed without it");
+    assertThat(out.toString()).startsWith("1 file(s) analysed, 6 file(s) indexed, 1 issue(s), 0 error(s) in ");
+
+    assertThat(run(baseDir.toString(), "--stop")).isEqualTo(1);
+    assertThat(err.toString()).contains("No analysis daemon is running for " + baseDir + System.lineSeparator());
+  }
+
+  private CommandLineAnalyzer analyzer(String... args) {
+    CommandLineAnalyzer analyzer = new CommandLineAnalyzer();
+    String[] allArgs = new String[args.length + 1];
+    allArgs[0] = temporaryFolder.getRoot().toString();
+    System.arraycopy(args, 0, allArgs, 1, args.length);
+    analyzer.parseArguments(allArgs);
+    return analyzer;
+  }
+
+  private int run(String... args) {
+    return CommandLineAnalyzer.run(args, new PrintStream(out, true), new PrintStream(err, true));
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IssueReportTest {
+
+  private final Path baseDir = Paths.get("src/test/resources/project").toAbsolutePath();
+
+  private final AnalysisResult result = new AnalysisResult(2, 3, Arrays.asList(
+    new Issue("S930", new Issue.Location("main.py", "Remove 2 unexpected arguments.", 6, 11, 6, 12), null,
+      Collections.singletonList(new Issue.Location("pkg/util.py", "Function definition.", 1, 4, 1, 5))),
+    new Issue("ParsingError", new Issue.Location("broken.py", "Parse error", 1, -1, 1, -1), 2, Collections.emptyList())),
+    Collections.singletonList("other.py: java.lang.IllegalStateException"), 42);
+
+  @Test
+  public void json() {
+    String json = write(IssueReport.JSON);
+    assertThat(json)
+      .startsWith("{\"files\":2,\"indexedFiles\":3,\"issues\":[")
+      .contains("{\"rule\":\"python:ParsingError\",\"file\":\"broken.py\",\"message\":\"Parse error\",\"line\":1,\"gap\":2}")
+      .contains("{\"rule\":\"python:S930\",\"file\":\"main.py\",\"message\":\"Remove 2 unexpected arguments.\",\"line\":6,\"column\":11,\"endLine\":6,"
+        + "\"endColumn\":12,\"secondaryLocations\":[{\"file\":\"pkg/util.py\",\"message\":\"Function definition.\",\"line\":1,\"column\":4,"
+        + "\"endLine\":1,\"endColumn\":5}]}")
+      .endsWith("\"errors\":[\"other.py: java.lang.IllegalStateException\"]}");
+    // sorted by path
+    assertThat(json.indexOf("broken.py")).isLessThan(json.indexOf("main.py"));
+  }
+
+  @Test
+  public void sarif() {
+    String sarif = write(IssueReport.SARIF);
+    assertThat(sarif)
+      .contains("\"version\":\"2.1.0\"")
+      .contains("\"rules\":[{\"id\":\"ParsingError\"},{\"id\":\"S930\"}]")
+      .contains("\"originalUriBaseIds\":{\"SRCROOT\":{\"uri\":\"" + baseDir.toUri() + "\"}}")
+      .contains("{\"ruleId\":\"S930\",\"ruleIndex\":1,\"level\":\"warning\",\"message\":{\"text\":\"Remove 2 unexpected arguments.\"}")
+      .contains("\"region\":{\"startLine\":6,\"startColumn\":12,\"endLine\":6,\"endColumn\":13}")
+      .contains("\"relatedLocations\":[{\"id\":0,\"message\":{\"text\":\"Function definition.\"},\"physicalLocation\":{\"artifactLocation\":"
+        + "{\"uri\":\"pkg/util.py\",\"uriBaseId\":\"SRCROOT\"}")
+      .contains("{\"ruleId\":\"ParsingError\",\"ruleIndex\":0")
+      .contains("\"region\":{\"startLine\":1,\"endLine\":1}")
+      .contains("\"toolExecutionNotifications\":[{\"level\":\"error\",\"message\":{\"text\":\"other.py: java.lang.IllegalStateException\"}}]");
+  }
+
+  @Test
+  public void sarif_without_errors() {
+    AnalysisResult resultWithoutErrors = new AnalysisResult(0, 0, Collections.emptyList(), Collections.emptyList(), 0);
+    StringWriter writer = new StringWriter();
+    IssueReport.SARIF.write(resultWithoutErrors, Collections.singletonList("S930"), baseDir, writer);
+    assertThat(writer.toString()).contains("\"results\":[]").doesNotContain("invocations");
+  }
+
+  @Test
+  public void formats() {
+    assertThat(IssueReport.of("json")).isEqualTo(IssueReport.JSON);
+    assertThat(IssueReport.of("SARIF")).isEqualTo(IssueReport.SARIF);
+    assertThat(IssueReport.SARIF.fileExtension()).isEqualTo("sarif");
+    assertThatThrownBy(() -> IssueReport.of("xml")).isInstanceOf(IllegalArgumentException.class).hasMessageContaining("xml");
+  }
+
+  private String write(IssueReport report) {
+    StringWriter writer = new StringWriter();
+    report.write(result, Arrays.asList("ParsingError", "S930"), baseDir, writer);
+    return writer.toString();
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.python.checks.ArgumentNumberCheck;
+import org.sonar.python.checks.ParsingErrorCheck;
+import org.sonar.python.checks.UnusedLocalVariableCheck;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectAnalysisTest {
+
+  private static final List<Class<?>> CHECKS = Arrays.asList(ArgumentNumberCheck.class, ParsingErrorCheck.class, UnusedLocalVariableCheck.class);
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private Path baseDir;
+  private Path cacheDir;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = copyProject(temporaryFolder.newFolder("project").toPath());
+    cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+  }
+
+  @Test
+  public void analysis() throws IOException {
+    AnalysisResult result = analyze(2);
+    assertThat(result.analysedFiles()).isEqualTo(6);
+    assertThat(result.indexedFiles()).isEqualTo(6);
+    assertThat(result.errors()).isEmpty();
+    assertThat(result.issues()).extracting(issue -> issue.ruleKey() + " " + issue.primaryLocation().path() + ":" + issue.primaryLocation().startLine())
+      .containsExactly("ParsingError broken.py:1", "S1481 main.py:5", "S930 main.py:6", "S930 pkg/relative.py:5");
+    Issue crossFileIssue = result.issues().get(2);
+    assertThat(crossFileIssue.secondaryLocations()).extracting(Issue.Location::path).containsExactly("pkg/util.py");
+    assertThat(ProjectIndex.load(cacheDir, baseDir).modules()).hasSize(6);
+  }
+
+  @Test
+  public void results_do_not_depend_on_threads() throws IOException {
+    assertThat(analyze(4).issues()).isEqualTo(analyze(1).issues());
+  }
+
+  @Test
+  public void changed_files() throws IOException {
+    AnalysisResult fullResult = analyze(2);
+    AnalysisResult result = analyzeChangedFiles("main.py");
+    assertThat(result.analysedFiles()).isEqualTo(1);
+    // main.py and its dependencies: pkg/__init__.py and pkg/util.py
+    assertThat(result.indexedFiles()).isEqualTo(3);
+    assertThat(result.issues()).isEqualTo(issuesOf(fullResult, "main.py"));
+
+    assertThat(analyzeChangedFiles("pkg/relative.py").issues()).isEqualTo(issuesOf(fullResult, "pkg/relative.py"));
+  }
+
+  @Test
+  public void changed_files_without_index() throws IOException {
+    AnalysisResult result = analyzeChangedFiles("main.py", "independent.py");
+    assertThat(result.analysedFiles()).isEqualTo(2);
+    assertThat(result.indexedFiles()).isEqualTo(6);
+    assertThat(result.issues()).extracting(issue -> issue.ruleKey() + " " + issue.primaryLocation().path())
+      .containsExactly("S1481 main.py", "S930 main.py");
+    assertThat(ProjectIndex.load(cacheDir, baseDir).modules()).hasSize(6);
+  }
+
+  @Test
+  public void changed_dependencies() throws IOException {
+    analyze(2);
+    Files.write(baseDir.resolve("pkg/util.py"), Collections.singletonList("def f(a, b, c): return a"), StandardCharsets.UTF_8);
+    assertThat(analyzeChangedFiles("main.py").issues()).extracting(Issue::ruleKey).containsExactly("S1481");
+
+    Files.write(baseDir.resolve("main.py"), Collections.singletonList("from pkg.helper import f\nf(1, 2)"), StandardCharsets.UTF_8);
+    Files.write(baseDir.resolve("pkg/helper.py"), Collections.singletonList("def f(): pass"), StandardCharsets.UTF_8);
+    AnalysisResult result = analyzeChangedFiles("main.py", "pkg/helper.py");
+    assertThat(result.issues()).extracting(issue -> issue.ruleKey() + " " + issue.primaryLocation().path()).containsExactly("S930 main.py");
+    assertThat(ProjectIndex.load(cacheDir, baseDir).module("pkg/helper.py")).isNotNull();
+  }
+
+  @Test
+  public void deleted_files() throws IOException {
+    analyze(2);
+    Files.delete(baseDir.resolve("pkg/util.py"));
+    AnalysisResult result = analyzeChangedFiles("pkg/util.py", "main.py");
+    assertThat(result.analysedFiles()).isEqualTo(1);
+    assertThat(result.issues()).extracting(Issue::ruleKey).containsExactly("S1481");
+    assertThat(ProjectIndex.load(cacheDir, baseDir).module("pkg/util.py")).isNull();
+  }
+
+  @Test
+  public void checks_by_rule_key() {
+    assertThat(ProjectAnalysis.checksByRuleKey(Arrays.asList(UnusedLocalVariableCheck.class, ArgumentNumberCheck.class)))
+      .containsOnlyKeys("S930", "S1481");
+  }
+
+  private AnalysisResult analyze(int threads) throws IOException {
+    try (ProjectAnalysis analysis = new ProjectAnalysis(baseDir, StandardCharsets.UTF_8, CHECKS, threads)) {
+      return analysis.analyze(pythonFiles(baseDir), cacheDir);
+    }
+  }
+
+  private AnalysisResult analyzeChangedFiles(String... paths) throws IOException {
+    List<Path> changedFiles = Arrays.stream(paths).map(baseDir::resolve).collect(Collectors.toList());
+    try (ProjectAnalysis analysis = new ProjectAnalysis(baseDir, StandardCharsets.UTF_8, CHECKS, 2)) {
+      return analysis.analyzeChangedFiles(changedFiles, cacheDir, pythonFiles(baseDir));
+    }
+  }
+
+  private static List<Issue> issuesOf(AnalysisResult result, String path) {
+    return result.issues().stream().filter(issue -> issue.primaryLocation().path().equals(path)).collect(Collectors.toList());
+  }
+
+  private static List<Path> pythonFiles(Path baseDir) throws IOException {
+    try (Stream<Path> files = Files.walk(baseDir)) {
+      return files.filter(file -> file.toString().endsWith(".py")).sorted().collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Copy of the test project, which is modified by the tests.
+   */
+  static Path copyProject(Path target) throws IOException {
+    Path source = Paths.get("src/test/resources/project");
+    try (Stream<Path> files = Files.walk(source)) {
+      for (Path file : files.sorted().collect(Collectors.toList())) {
+        Path copy = target.resolve(source.relativize(file).toString());
+        if (Files.isDirectory(file)) {
+          Files.createDirectories(copy);
+        } else {
+          Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+    }
+    return target.toAbsolutePath().normalize();
+  }
+}
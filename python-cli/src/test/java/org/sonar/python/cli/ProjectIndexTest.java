@@ -0,0 +1,123 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.python.tree.PythonTreeParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ProjectIndexTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private final Path baseDir = Paths.get("src/test/resources/project").toAbsolutePath();
+
+  @Test
+  public void referenced_names() {
+    assertThat(referencedNames("import a.b, c as d", "", "mod.py")).containsExactly("a.b", "c");
+    assertThat(referencedNames("from a.b import c, d as e", "", "mod.py")).containsExactly("a.b", "a.b.c", "a.b.d");
+    assertThat(referencedNames("def f():\n  from a import b", "", "mod.py")).containsExactly("a", "a.b");
+  }
+
+  @Test
+  public void referenced_names_of_relative_imports() {
+    assertThat(referencedNames("from .util import f", "pkg", "mod.py")).containsExactly("pkg.util", "pkg.util.f");
+    assertThat(referencedNames("from . import util", "pkg", "mod.py")).containsExactly("pkg.util");
+    assertThat(referencedNames("from .. import util", "pkg.sub", "mod.py")).containsExactly("pkg.util");
+    // beyond the top-level package: not resolved
+    assertThat(referencedNames("from ... import util", "pkg", "mod.py")).isEmpty();
+  }
+
+  @Test
+  public void save_and_load() throws IOException {
+    Path cacheDir = temporaryFolder.getRoot().toPath().resolve("cache");
+    ProjectIndex index = new ProjectIndex(baseDir);
+    index.put(new ProjectIndex.Module("main.py", "", new TreeSet<>(Arrays.asList("pkg.util", "pkg.util.f"))));
+    index.put(new ProjectIndex.Module("pkg/__init__.py", "pkg", Collections.emptySet()));
+    index.save(cacheDir);
+
+    ProjectIndex loaded = ProjectIndex.load(cacheDir, baseDir);
+    assertThat(loaded.modules()).extracting(module -> module.path).containsExactly("main.py", "pkg/__init__.py");
+    assertThat(loaded.module("main.py").referencedNames).containsExactly("pkg.util", "pkg.util.f");
+    assertThat(loaded.module("main.py").moduleName()).isEqualTo("main");
+    assertThat(loaded.module("pkg/__init__.py").referencedNames).isEmpty();
+    assertThat(loaded.module("pkg/__init__.py").moduleName()).isEqualTo("pkg");
+
+    assertThat(ProjectIndex.load(cacheDir, temporaryFolder.getRoot().toPath()).modules()).isEmpty();
+    assertThat(ProjectIndex.load(temporaryFolder.getRoot().toPath().resolve("missing"), baseDir).modules()).isEmpty();
+  }
+
+  @Test
+  public void load_invalid_index() throws IOException {
+    Path cacheDir = temporaryFolder.newFolder().toPath();
+    List<String> lines = Arrays.asList("python-cli project index 1", baseDir.toString(), "invalid line");
+    Files.write(cacheDir.resolve(ProjectIndex.FILE_NAME), lines, StandardCharsets.UTF_8);
+    assertThat(ProjectIndex.load(cacheDir, baseDir).modules()).isEmpty();
+
+    Files.write(cacheDir.resolve(ProjectIndex.FILE_NAME), Collections.singletonList("python-cli project index 0"), StandardCharsets.UTF_8);
+    assertThat(ProjectIndex.load(cacheDir, baseDir).modules()).isEmpty();
+  }
+
+  @Test
+  public void dependencies() {
+    ProjectIndex index = new ProjectIndex(baseDir);
+    index.put(module("main.py", "", "pkg.util", "pkg.util.f"));
+    index.put(module("pkg/__init__.py", "pkg"));
+    index.put(module("pkg/util.py", "pkg", "pkg.helper"));
+    index.put(module("pkg/helper.py", "pkg"));
+    index.put(module("pkg/relative.py", "pkg", "pkg.util", "pkg.util.f"));
+    index.put(module("independent.py", ""));
+
+    assertThat(index.dependencies(Collections.singletonList("main.py")))
+      .containsExactlyInAnyOrder("main.py", "pkg/__init__.py", "pkg/util.py", "pkg/helper.py");
+    assertThat(index.dependencies(Collections.singletonList("pkg/helper.py"))).containsExactly("pkg/helper.py");
+    assertThat(index.dependencies(Arrays.asList("independent.py", "unknown.py"))).containsExactly("independent.py");
+
+    index.remove("pkg/util.py");
+    assertThat(index.dependencies(Collections.singletonList("main.py"))).containsExactlyInAnyOrder("main.py", "pkg/__init__.py");
+  }
+
+  @Test
+  public void relative_path() {
+    assertThat(ProjectIndex.relativePath(baseDir, baseDir.resolve("pkg").resolve("util.py"))).isEqualTo("pkg/util.py");
+  }
+
+  private static ProjectIndex.Module module(String path, String packageName, String... referencedNames) {
+    return new ProjectIndex.Module(path, packageName, new TreeSet<>(Arrays.asList(referencedNames)));
+  }
+
+  private static Set<String> referencedNames(String code, String packageName, String fileName) {
+    return ProjectIndex.referencedNames(PythonTreeParser.create().parse(code), packageName, fileName);
+  }
+}
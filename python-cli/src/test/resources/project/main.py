@@ -0,0 +1,6 @@
+from pkg.util import f
+
+
+def main():
+    unused = 1
+    return f(1, 2, 3)
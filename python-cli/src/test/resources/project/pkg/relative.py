@@ -0,0 +1,5 @@
+from .util import f
+
+
+def g():
+    return f(1, 2)
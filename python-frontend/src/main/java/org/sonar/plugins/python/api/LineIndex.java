@@ -0,0 +1,108 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python.api;
+
+import java.util.Arrays;
+
+/**
+ * Offsets of the lines of a file content, so that line-oriented rules do not have to split the content.
+ * Lines are separated by "\n", "\r\n" or "\r" and start at 1. A content ending with a line terminator has a last empty line.
+ */
+public final class LineIndex {
+
+  public enum LineTerminator {
+    NONE, LF, CR, CRLF
+  }
+
+  private final int[] lineStarts;
+  private final int contentLength;
+  private final LineTerminator[] lineTerminators;
+
+  public LineIndex(String content) {
+    int[] starts = new int[16];
+    LineTerminator[] terminators = new LineTerminator[16];
+    int count = 0;
+    int start = 0;
+    int length = content.length();
+    int i = 0;
+    while (i <= length) {
+      LineTerminator terminator = LineTerminator.NONE;
+      int next = i + 1;
+      if (i < length) {
+        char c = content.charAt(i);
+        if (c == '\n') {
+          terminator = LineTerminator.LF;
+        } else if (c == '\r') {
+          boolean crlf = i + 1 < length && content.charAt(i + 1) == '\n';
+          terminator = crlf ? LineTerminator.CRLF : LineTerminator.CR;
+          next = crlf ? (i + 2) : next;
+        }
+      }
+      if (terminator != LineTerminator.NONE || i == length) {
+        if (count == starts.length) {
+          starts = Arrays.copyOf(starts, count * 2);
+          terminators = Arrays.copyOf(terminators, count * 2);
+        }
+        starts[count] = start;
+        terminators[count] = terminator;
+        count++;
+        start = next;
+      }
+      i = next;
+    }
+    this.lineStarts = Arrays.copyOf(starts, count);
+    this.lineTerminators = Arrays.copyOf(terminators, count);
+    this.contentLength = length;
+  }
+
+  public int lineCount() {
+    return lineStarts.length;
+  }
+
+  /**
+   * Offset in the content of the first character of the given line.
+   */
+  public int lineStart(int line) {
+    return lineStarts[index(line)];
+  }
+
+  /**
+   * Number of characters of the given line, without its line terminator.
+   */
+  public int lineLength(int line) {
+    int index = index(line);
+    if (index == lineStarts.length - 1) {
+      return contentLength - lineStarts[index];
+    }
+    int terminatorLength = lineTerminators[index] == LineTerminator.CRLF ? 2 : 1;
+    return lineStarts[index + 1] - terminatorLength - lineStarts[index];
+  }
+
+  public LineTerminator lineTerminator(int line) {
+    return lineTerminators[index(line)];
+  }
+
+  private int index(int line) {
+    if (line < 1 || line > lineStarts.length) {
+      throw new IllegalArgumentException("Line " + line + " does not exist: there are " + lineStarts.length + " lines.");
+    }
+    return line - 1;
+  }
+}
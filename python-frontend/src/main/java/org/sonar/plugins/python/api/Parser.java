@@ -19,21 +19,18 @@
  */
 package org.sonar.plugins.python.api;
 
-import com.sonar.sslr.api.AstNode;
 import org.sonar.plugins.python.api.tree.FileInput;
-import org.sonar.python.parser.PythonParser;
-import org.sonar.python.tree.PythonTreeMaker;
+import org.sonar.python.tree.PythonTreeParser;
 
 /**
  * Use this class to parse Python module
  */
 public class Parser {
 
-  private PythonParser astParser = PythonParser.create();
+  private PythonTreeParser treeParser = PythonTreeParser.create();
 
   public FileInput parse(String code)  {
-    AstNode astNode = astParser.parse(code);
-    return new PythonTreeMaker().fileInput(astNode);
+    return treeParser.parse(code);
   }
 
 }
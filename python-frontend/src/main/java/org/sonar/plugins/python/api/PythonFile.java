@@ -29,4 +29,11 @@ public interface PythonFile {
 
   URI uri();
 
+  /**
+   * Line offsets of {@link #content()}. Implementations analysing a file several times should compute it only once.
+   */
+  default LineIndex lineIndex() {
+    return new LineIndex(content());
+  }
+
 }
@@ -58,6 +58,16 @@ public class PythonVisitorContext {
     new SymbolTableBuilder(packageName, pythonFile, globalSymbols).visitFileInput(rootTree);
   }
 
+  /**
+   * Context without semantic model, for analyses which only need the syntax tree: symbols of its names are not computed.
+   */
+  public PythonVisitorContext(FileInput rootTree, PythonFile pythonFile, @Nullable File workingDirectory) {
+    this.rootTree = rootTree;
+    this.pythonFile = pythonFile;
+    this.workingDirectory = workingDirectory;
+    this.parsingException = null;
+  }
+
   public PythonVisitorContext(PythonFile pythonFile, RecognitionException parsingException) {
     this.rootTree = null;
     this.pythonFile = pythonFile;
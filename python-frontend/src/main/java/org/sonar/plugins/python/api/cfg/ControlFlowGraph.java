@@ -49,7 +49,8 @@ public class ControlFlowGraph {
   private final CfgBlock end;
 
   // we shouldn't prevent trees from being garbage collected
-  private static Set<Tree> treesWithCfgErrors = Collections.newSetFromMap(new WeakHashMap<>());
+  // shared by concurrent analyses
+  private static final Set<Tree> treesWithCfgErrors = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
   public ControlFlowGraph(Set<CfgBlock> blocks, CfgBlock start, CfgBlock end) {
     this.blocks = blocks;
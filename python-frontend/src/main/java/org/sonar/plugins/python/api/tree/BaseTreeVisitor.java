@@ -21,10 +21,16 @@ package org.sonar.plugins.python.api.tree;
 
 import java.util.List;
 import javax.annotation.Nullable;
+import org.sonar.python.AnalysisCancellation;
 import org.sonar.python.tree.DictCompExpressionImpl;
 
 /**
  * Default implementation of {@link TreeVisitor}.
+ * <p>
+ * Trees are visited recursively, each nested tree using a few frames of the stack of the thread. Long chains of binary
+ * operators, member accesses, calls and subscriptions, e.g. "x + x + ... + x" as in generated code, give trees as deep as
+ * the chains are long: on a 512 KB stack, the deepest chain which can be visited has about 1,300 binary operators while
+ * the visitor is interpreted, and about 3,700 once it is compiled. Deeper trees throw a {@link StackOverflowError}.
  */
 public class BaseTreeVisitor implements TreeVisitor {
 
@@ -49,6 +55,8 @@ public class BaseTreeVisitor implements TreeVisitor {
 
   @Override
   public void visitStatementList(StatementList statementList) {
+    // visitors are stopped between two blocks when the analysis of the file is cancelled
+    AnalysisCancellation.current().check();
     scan(statementList.statements());
   }
 
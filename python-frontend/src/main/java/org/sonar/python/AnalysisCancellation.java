@@ -0,0 +1,93 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python;
+
+import java.util.function.Supplier;
+
+/**
+ * Cooperative cancellation of the analysis of a file. The thread analysing the file registers a cancellation,
+ * which another thread can trigger. The tokenizers and the regular expressions of the SSLR lexer, the parsers, the tree
+ * maker, {@link org.sonar.plugins.python.api.tree.BaseTreeVisitor} (hence the symbol table, the type inference and the
+ * visitor checks) and {@link SubscriptionVisitor} regularly check the cancellation of their thread and stop by throwing
+ * {@link AnalysisCancelledException}.
+ */
+public final class AnalysisCancellation {
+
+  private static final ThreadLocal<AnalysisCancellation> CURRENT = new ThreadLocal<>();
+  private static final AnalysisCancellation NONE = new AnalysisCancellation();
+
+  private volatile boolean cancelled = false;
+
+  private AnalysisCancellation() {
+  }
+
+  /**
+   * Registers a new cancellation for the analysis run by the current thread.
+   */
+  public static AnalysisCancellation register() {
+    AnalysisCancellation cancellation = new AnalysisCancellation();
+    CURRENT.set(cancellation);
+    return cancellation;
+  }
+
+  public static void unregister() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Returns the cancellation registered by the current thread, or a cancellation which is never triggered.
+   */
+  public static AnalysisCancellation current() {
+    AnalysisCancellation cancellation = CURRENT.get();
+    return cancellation == null ? NONE : cancellation;
+  }
+
+  /**
+   * Runs the given task without checking the cancellation of the current thread, e.g. to load data shared by the analyses
+   * of all the files, which must not be left incomplete.
+   */
+  public static <T> T uncancellable(Supplier<T> task) {
+    AnalysisCancellation cancellation = CURRENT.get();
+    CURRENT.remove();
+    try {
+      return task.get();
+    } finally {
+      if (cancellation != null) {
+        CURRENT.set(cancellation);
+      }
+    }
+  }
+
+  public void cancel() {
+    if (this != NONE) {
+      cancelled = true;
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  public void check() {
+    if (cancelled) {
+      throw new AnalysisCancelledException();
+    }
+  }
+}
@@ -0,0 +1,315 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.PythonCheck;
+import org.sonar.python.semantic.MemoryFootprint;
+
+/**
+ * Measures the time spent and the memory allocated by the phases of the analysis of a file, and by each rule.
+ * Like {@link AnalysisCancellation}, a profiler is registered by the thread analysing the file: {@link org.sonar.python.tree.PythonTreeParser},
+ * the type inference and {@link SubscriptionVisitor} report to the profiler of their thread. When no profiler is registered,
+ * the current one is disabled and measures nothing.
+ * <p>
+ * Measures are exclusive: a phase started while another one runs, like the type inference requested by a rule, pauses the
+ * enclosing phase until it stops.
+ * <p>
+ * Rules are measured by entry point: the {@link org.sonar.plugins.python.api.tree.Tree.Kind} of the nodes their consumers
+ * subscribed to, or {@link #INITIALIZE}, {@link #SCAN_FILE} and {@link #LEAVE_FILE}. When the profiler has a rule time budget,
+ * the rules which exceeded it on the file are reported by {@link #isOverBudget(PythonCheck)}.
+ * <p>
+ * The profiler also holds the estimated {@link MemoryFootprint} of the tree and the semantic model of the file, which the
+ * analysis adds once they are complete.
+ */
+public final class AnalysisProfiler {
+
+  public enum Phase {
+    READING, PARSING, TREE_MAKING, SYMBOL_TABLE, TYPE_INFERENCE, RULES, METRICS, CPD, HIGHLIGHTING, SYMBOL_EXPORT, ISSUE_SAVING
+  }
+
+  public static final String INITIALIZE = "initialize";
+  public static final String SCAN_FILE = "scanFile";
+  public static final String LEAVE_FILE = "leaveFile";
+
+  private static final ThreadLocal<AnalysisProfiler> CURRENT = new ThreadLocal<>();
+  private static final AnalysisProfiler DISABLED = new AnalysisProfiler(false, 0L);
+  private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationsBean();
+
+  private final boolean enabled;
+  private final Map<Phase, Measure> phases = new EnumMap<>(Phase.class);
+  private final Map<PythonCheck, RuleMeasure> rules = new LinkedHashMap<>();
+  private final MemoryFootprint footprint = new MemoryFootprint();
+  // 0 when rules have no time budget
+  private final long ruleBudgetNanos;
+  private final Deque<Frame> running = new ArrayDeque<>();
+  private long lastNanos;
+  private long lastAllocatedBytes;
+
+  private AnalysisProfiler(boolean enabled, long ruleBudgetNanos) {
+    this.enabled = enabled;
+    this.ruleBudgetNanos = ruleBudgetNanos;
+  }
+
+  /**
+   * Registers a new profiler for the analysis run by the current thread.
+   */
+  public static AnalysisProfiler register() {
+    return register(0L);
+  }
+
+  /**
+   * Registers a new profiler for the analysis run by the current thread, with a time budget for each rule.
+   *
+   * @param ruleBudgetNanos time budget of each rule on the file, 0 for no budget
+   */
+  public static AnalysisProfiler register(long ruleBudgetNanos) {
+    AnalysisProfiler profiler = new AnalysisProfiler(true, ruleBudgetNanos);
+    CURRENT.set(profiler);
+    return profiler;
+  }
+
+  public static void unregister() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Returns the profiler registered by the current thread, or a disabled profiler.
+   */
+  public static AnalysisProfiler current() {
+    AnalysisProfiler profiler = CURRENT.get();
+    return profiler == null ? DISABLED : profiler;
+  }
+
+  /**
+   * Creates a profiler which is not registered by any thread, to aggregate the measures of other profilers.
+   */
+  public static AnalysisProfiler aggregate() {
+    return new AnalysisProfiler(true, 0L);
+  }
+
+  /**
+   * Whether the JVM measures the memory allocated by each thread. When it does not, allocated bytes are always 0.
+   */
+  public static boolean measuresAllocations() {
+    return ALLOCATIONS != null;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void start(Phase phase) {
+    if (enabled) {
+      charge();
+      running.push(new Frame(phase, measure(phase), null, null));
+    }
+  }
+
+  /**
+   * Starts measuring the execution of a rule, which is part of the {@link Phase#RULES} phase.
+   *
+   * @param entryPoint name of the kind of node the rule visits, or {@link #INITIALIZE}, {@link #SCAN_FILE} or {@link #LEAVE_FILE}
+   */
+  public void startRule(PythonCheck check, String entryPoint) {
+    if (enabled) {
+      charge();
+      RuleMeasure rule = rules.computeIfAbsent(check, c -> new RuleMeasure());
+      running.push(new Frame(Phase.RULES, measure(Phase.RULES), rule, rule.entryPoint(entryPoint)));
+    }
+  }
+
+  /**
+   * Whether the given rule spent more than the rule time budget on the file.
+   */
+  public boolean isOverBudget(PythonCheck check) {
+    if (ruleBudgetNanos <= 0) {
+      return false;
+    }
+    RuleMeasure rule = rules.get(check);
+    return rule != null && rule.nanos() > ruleBudgetNanos;
+  }
+
+  /**
+   * Whether the phase or the rule started last, and not stopped yet, is part of the given phase.
+   */
+  public boolean isRunning(Phase phase) {
+    Frame frame = running.peek();
+    return frame != null && frame.phase == phase;
+  }
+
+  /**
+   * Stops the phase or the rule started last.
+   */
+  public void stop() {
+    if (enabled && !running.isEmpty()) {
+      charge();
+      running.pop();
+    }
+  }
+
+  /**
+   * Stops all phases and rules still running, for instance after a failure.
+   */
+  public void stopAll() {
+    while (!running.isEmpty()) {
+      stop();
+    }
+  }
+
+  /**
+   * Adds the measures of another profiler, like the one of a thread which parsed the file ahead of its analysis.
+   */
+  public void add(AnalysisProfiler other) {
+    other.phases.forEach((phase, measure) -> measure(phase).add(measure));
+    other.rules.forEach((check, measure) -> rules.computeIfAbsent(check, c -> new RuleMeasure()).add(measure));
+    footprint.add(other.footprint);
+  }
+
+  /**
+   * Estimated heap retained by the trees and the semantic models of the profiled files.
+   */
+  public MemoryFootprint footprint() {
+    return footprint;
+  }
+
+  public Measure measure(Phase phase) {
+    return phases.computeIfAbsent(phase, p -> new Measure());
+  }
+
+  public Map<PythonCheck, RuleMeasure> rules() {
+    return Collections.unmodifiableMap(rules);
+  }
+
+  public long totalNanos() {
+    return phases.values().stream().mapToLong(Measure::nanos).sum();
+  }
+
+  public long totalAllocatedBytes() {
+    return phases.values().stream().mapToLong(Measure::allocatedBytes).sum();
+  }
+
+  private void charge() {
+    long nanos = System.nanoTime();
+    long allocatedBytes = ALLOCATIONS == null ? 0L : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    Frame frame = running.peek();
+    if (frame != null) {
+      frame.charge(nanos - lastNanos, allocatedBytes - lastAllocatedBytes);
+    }
+    lastNanos = nanos;
+    lastAllocatedBytes = allocatedBytes;
+  }
+
+  @Nullable
+  private static com.sun.management.ThreadMXBean allocationsBean() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean hotspotThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+      if (hotspotThreadMXBean.isThreadAllocatedMemorySupported() && hotspotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+        return hotspotThreadMXBean;
+      }
+    }
+    return null;
+  }
+
+  public static class Measure {
+    private long nanos;
+    private long allocatedBytes;
+    private long invocations;
+
+    private void add(long nanos, long allocatedBytes) {
+      this.nanos += nanos;
+      this.allocatedBytes += allocatedBytes;
+    }
+
+    public void add(Measure other) {
+      add(other.nanos, other.allocatedBytes);
+      invocations += other.invocations;
+    }
+
+    public long nanos() {
+      return nanos;
+    }
+
+    public long allocatedBytes() {
+      return allocatedBytes;
+    }
+
+    /**
+     * Number of times the phase or the rule was started.
+     */
+    public long invocations() {
+      return invocations;
+    }
+  }
+
+  public static class RuleMeasure extends Measure {
+    private final Map<String, Measure> entryPoints = new LinkedHashMap<>();
+
+    private Measure entryPoint(String name) {
+      return entryPoints.computeIfAbsent(name, n -> new Measure());
+    }
+
+    public void add(RuleMeasure other) {
+      super.add(other);
+      other.entryPoints.forEach((name, measure) -> entryPoint(name).add(measure));
+    }
+
+    public Map<String, Measure> entryPoints() {
+      return Collections.unmodifiableMap(entryPoints);
+    }
+  }
+
+  private static class Frame {
+    private final Phase phase;
+    private final Measure phaseMeasure;
+    // null when the frame is not the execution of a rule
+    private final Measure rule;
+    private final Measure entryPoint;
+
+    private Frame(Phase phase, Measure phaseMeasure, @Nullable Measure rule, @Nullable Measure entryPoint) {
+      this.phase = phase;
+      this.phaseMeasure = phaseMeasure;
+      this.rule = rule;
+      this.entryPoint = entryPoint;
+      phaseMeasure.invocations++;
+      if (rule != null) {
+        rule.invocations++;
+        entryPoint.invocations++;
+      }
+    }
+
+    private void charge(long nanos, long allocatedBytes) {
+      phaseMeasure.add(nanos, allocatedBytes);
+      if (rule != null) {
+        rule.add(nanos, allocatedBytes);
+        entryPoint.add(nanos, allocatedBytes);
+      }
+    }
+  }
+}
@@ -46,6 +46,9 @@ public class SubscriptionVisitor {
 
   private final EnumMap<Kind, List<SubscriptionContextImpl>> consumers = new EnumMap<>(Kind.class);
   private final PythonVisitorContext pythonVisitorContext;
+  private final AnalysisProfiler profiler = AnalysisProfiler.current();
+  // false for the visitors computing metrics, which are not rules
+  private final boolean measuresRules = profiler.isRunning(AnalysisProfiler.Phase.RULES);
   private Tree currentElement;
 
   public static void analyze(Collection<PythonSubscriptionCheck> checks, PythonVisitorContext pythonVisitorContext) {
@@ -53,24 +56,40 @@ public class SubscriptionVisitor {
     FileInput rootTree = pythonVisitorContext.rootTree();
     if (rootTree != null) {
       subscriptionVisitor.scan(rootTree);
-      checks.forEach(PythonSubscriptionCheck::leaveFile);
+      // rules over budget still leave the file, to reset their state
+      checks.forEach(check -> subscriptionVisitor.measured(check, AnalysisProfiler.LEAVE_FILE, check::leaveFile));
     }
   }
 
   private SubscriptionVisitor(Collection<PythonSubscriptionCheck> checks, PythonVisitorContext pythonVisitorContext) {
     this.pythonVisitorContext = pythonVisitorContext;
     for (PythonSubscriptionCheck check : checks) {
-      check.initialize((elementType, consumer) -> {
+      measured(check, AnalysisProfiler.INITIALIZE, () -> check.initialize((elementType, consumer) -> {
         List<SubscriptionContextImpl> elementConsumers = consumers.computeIfAbsent(elementType, c -> new ArrayList<>());
-        elementConsumers.add(new SubscriptionContextImpl(check, consumer));
-      });
+        elementConsumers.add(new SubscriptionContextImpl(check, elementType, consumer));
+      }));
+    }
+  }
+
+  private void measured(PythonCheck check, String entryPoint, Runnable execution) {
+    if (!measuresRules) {
+      execution.run();
+      return;
+    }
+    profiler.startRule(check, entryPoint);
+    try {
+      execution.run();
+    } finally {
+      profiler.stop();
     }
   }
 
   private void scan(Tree element) {
+    AnalysisCancellation cancellation = AnalysisCancellation.current();
     Deque<Tree> stack = new ArrayDeque<>();
     stack.push(element);
     while (!stack.isEmpty()) {
+      cancellation.check();
       currentElement = stack.pop();
       consumers.getOrDefault(currentElement.getKind(), Collections.emptyList()).forEach(SubscriptionContextImpl::execute);
       for (int i = currentElement.children().size() - 1; i >= 0; i--) {
@@ -83,15 +102,25 @@ public class SubscriptionVisitor {
 
   private class SubscriptionContextImpl implements SubscriptionContext {
     private final PythonCheck check;
+    private final String entryPoint;
     private final Consumer<SubscriptionContext> consumer;
 
-    SubscriptionContextImpl(PythonCheck check, Consumer<SubscriptionContext> consumer) {
+    SubscriptionContextImpl(PythonCheck check, Kind elementType, Consumer<SubscriptionContext> consumer) {
       this.check = check;
+      this.entryPoint = elementType.name();
       this.consumer = consumer;
     }
 
     public void execute() {
-      consumer.accept(this);
+      // called for each node: no lambda is allocated when rules are not measured
+      if (measuresRules) {
+        // a rule over budget is not executed anymore on the file
+        if (!profiler.isOverBudget(check)) {
+          measured(check, entryPoint, () -> consumer.accept(this));
+        }
+      } else {
+        consumer.accept(this);
+      }
     }
 
     @Override
@@ -43,6 +43,9 @@ import static org.sonar.python.semantic.SymbolUtils.pythonPackageName;
 
 public class TestPythonVisitorRunner {
 
+  // a parser is not thread-safe, and creating one builds its grammar: each thread reuses its own
+  private static final ThreadLocal<PythonParser> PARSER = ThreadLocal.withInitial(PythonParser::create);
+
   private TestPythonVisitorRunner() {
   }
 
@@ -63,9 +66,8 @@ public class TestPythonVisitorRunner {
   }
 
   public static PythonVisitorContext createContext(File file, @Nullable File workingDirectory, String packageName, Map<String, Set<Symbol>> globalSymbols) {
-    PythonParser parser = PythonParser.create();
     TestPythonFile pythonFile = new TestPythonFile(file);
-    AstNode astNode = parser.parse(pythonFile.content());
+    AstNode astNode = PARSER.get().parse(pythonFile.content());
     FileInput rootTree = new PythonTreeMaker().fileInput(astNode);
     return new PythonVisitorContext(rootTree, pythonFile, workingDirectory, packageName, globalSymbols);
   }
@@ -74,7 +76,7 @@ public class TestPythonVisitorRunner {
     Map<String, Set<Symbol>> globalSymbols = SymbolUtils.externalModulesSymbols();
     for (File file : files) {
       TestPythonFile pythonFile = new TestPythonFile(file);
-      AstNode astNode = PythonParser.create().parse(pythonFile.content());
+      AstNode astNode = PARSER.get().parse(pythonFile.content());
       FileInput astRoot = new PythonTreeMaker().fileInput(astNode);
       String packageName = pythonPackageName(file, baseDir);
       String fullyQualifiedModuleName = SymbolUtils.fullyQualifiedModuleName(packageName, pythonFile.fileName());
@@ -86,6 +88,7 @@ public class TestPythonVisitorRunner {
   private static class TestPythonFile implements PythonFile {
 
     private final File file;
+    private String content;
 
     public TestPythonFile(File file) {
       this.file = file;
@@ -93,11 +96,14 @@ public class TestPythonVisitorRunner {
 
     @Override
     public String content() {
-      try {
-        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
-      } catch (IOException e) {
-        throw new IllegalStateException("Cannot read " + file, e);
+      if (content == null) {
+        try {
+          content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+          throw new IllegalStateException("Cannot read " + file, e);
+        }
       }
+      return content;
     }
 
     @Override
@@ -26,20 +26,20 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import org.sonar.plugins.python.api.PythonFile;
 import org.sonar.plugins.python.api.cfg.CfgBlock;
 import org.sonar.plugins.python.api.cfg.ControlFlowGraph;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.symbols.Usage;
 import org.sonar.plugins.python.api.tree.AssignmentStatement;
-import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
 import org.sonar.plugins.python.api.tree.Expression;
 import org.sonar.plugins.python.api.tree.FunctionDef;
 import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.tree.DeepTreeVisitor;
 import org.sonar.python.tree.TreeUtils;
 
 import static org.sonar.plugins.python.api.tree.Tree.Kind.ASSIGNMENT_STMT;
@@ -52,12 +52,17 @@ import static org.sonar.plugins.python.api.tree.Tree.Kind.TRY_STMT;
  * Program state is represented by a map where:
  *  - key is symbol
  *  - value is set of possible expressions that symbol may have been assigned to
+ *
+ * Program states are only computed at block boundaries: the state entering a block joins the states of its predecessors
+ * (like a phi node in SSA form). Each name is then linked either to the last definition preceding it in its block
+ * or to the state entering the block, so no program state is materialized per element.
  */
 public class ReachingDefinitionsAnalysis {
   private final Map<CfgBlock, ProgramStateAtBlock> programStateByBlock = new HashMap<>();
   private final Map<Name, Set<Expression>> assignedExpressionByName = new HashMap<>();
   private final PythonFile pythonFile;
   private final Map<Symbol, Set<Name>> assignedNamesBySymbol = new HashMap<>();
+  private final Map<Symbol, Boolean> hasMissingBindingUsageBySymbol = new HashMap<>();
 
   public ReachingDefinitionsAnalysis(PythonFile pythonFile) {
     this.pythonFile = pythonFile;
@@ -81,32 +86,34 @@ public class ReachingDefinitionsAnalysis {
     if (cfg == null) {
       return Collections.emptySet();
     }
-    compute(cfg, enclosingFunction.localVariables());
+    compute(cfg);
     return assignedExpressionByName.getOrDefault(variable, Collections.emptySet());
   }
 
-  private Set<Expression> getAssignedExpressions(Name variable, ProgramStateAtElement programStateAtElement) {
+  private Set<Expression> getAssignedExpressions(Name variable, Map<Symbol, Set<Expression>> blockDefinitions, Map<Symbol, Set<Expression>> blockInput) {
     Symbol symbol = variable.symbol();
-    if (symbol == null) {
+    if (symbol == null || hasMissingBindingUsage(symbol)) {
       return Collections.emptySet();
     }
-    boolean hasMissingBindingUsage = symbol.usages().stream()
-      .filter(Usage::isBindingUsage)
-      .anyMatch(u -> !assignedNamesBySymbol.getOrDefault(symbol, Collections.emptySet()).contains(u.tree()));
-    if (hasMissingBindingUsage) {
-      return Collections.emptySet();
+    Set<Expression> localDefinition = blockDefinitions.get(symbol);
+    if (localDefinition != null) {
+      return localDefinition;
     }
-    return Optional.ofNullable(programStateAtElement.out.get(symbol))
-      .orElse(Collections.emptySet());
+    return blockInput.getOrDefault(symbol, Collections.emptySet());
   }
 
-  private void compute(ControlFlowGraph cfg, Set<Symbol> localVariables) {
-    Map<Symbol, Set<Expression>> initialState = new HashMap<>();
-    for (Symbol variable : localVariables) {
-      initialState.put(variable, new HashSet<>());
-    }
+  private boolean hasMissingBindingUsage(Symbol symbol) {
+    return hasMissingBindingUsageBySymbol.computeIfAbsent(symbol, s -> {
+      Set<Name> assignedNames = assignedNamesBySymbol.getOrDefault(s, Collections.emptySet());
+      return s.usages().stream()
+        .filter(Usage::isBindingUsage)
+        .anyMatch(u -> !assignedNames.contains(u.tree()));
+    });
+  }
+
+  private void compute(ControlFlowGraph cfg) {
     Set<CfgBlock> blocks = cfg.blocks();
-    blocks.forEach(block -> programStateByBlock.put(block, new ProgramStateAtBlock(block, initialState)));
+    blocks.forEach(block -> programStateByBlock.put(block, new ProgramStateAtBlock(block)));
     Deque<CfgBlock> workList = new ArrayDeque<>(blocks);
     while (!workList.isEmpty()) {
       CfgBlock currentBlock = workList.pop();
@@ -116,25 +123,33 @@ public class ReachingDefinitionsAnalysis {
         currentBlock.successors().forEach(workList::push);
       }
     }
-    updateProgramStateByElement(cfg);
+    // the assigned names of the symbols grow with each computation: what was missing for a previous one may not be anymore
+    hasMissingBindingUsageBySymbol.clear();
+    linkNamesToDefinitions(cfg);
   }
 
-  private void updateProgramStateByElement(ControlFlowGraph cfg) {
+  /**
+   * Names of an element are linked to the state after that element, as the definition of the element itself is visible to them.
+   */
+  private void linkNamesToDefinitions(ControlFlowGraph cfg) {
     for (CfgBlock block : cfg.blocks()) {
-      Map<Symbol, Set<Expression>> inputState = programStateByBlock.get(block).in;
+      Map<Symbol, Set<Expression>> blockInput = programStateByBlock.get(block).in;
+      Map<Symbol, Set<Expression>> blockDefinitions = new HashMap<>();
       for (Tree element : block.elements()) {
-        ProgramStateAtElement programStateAtElement = new ProgramStateAtElement(inputState, element);
-        element.accept(new BaseTreeVisitor() {
+        Definition definition = definition(element);
+        if (definition != null) {
+          blockDefinitions.put(definition.symbol, Collections.singleton(definition.assignedValue));
+        }
+        element.accept(new DeepTreeVisitor() {
           @Override
           public void visitFunctionDef(FunctionDef pyFunctionDefTree) {
             // skip inner functions
           }
           @Override
           public void visitName(Name name) {
-            assignedExpressionByName.put(name, getAssignedExpressions(name, programStateAtElement));
+            assignedExpressionByName.put(name, getAssignedExpressions(name, blockDefinitions, blockInput));
           }
         });
-        inputState = programStateAtElement.out;
       }
     }
   }
@@ -142,13 +157,23 @@ public class ReachingDefinitionsAnalysis {
   private class ProgramStateAtBlock {
 
     private final CfgBlock block;
-    private Map<Symbol, Set<Expression>> in;
-    private Map<Symbol, Set<Expression>> out = new HashMap<>();
+    /**
+     * last definition of each symbol assigned in the block
+     */
+    private final Map<Symbol, Set<Expression>> gen = new HashMap<>();
+    private Map<Symbol, Set<Expression>> in = Collections.emptyMap();
+    private Map<Symbol, Set<Expression>> out = Collections.emptyMap();
 
-    private ProgramStateAtBlock(CfgBlock block, Map<Symbol, Set<Expression>> initialState) {
+    private ProgramStateAtBlock(CfgBlock block) {
       this.block = block;
-      this.in = initialState;
-      this.block.elements().forEach(element -> updateProgramState(element, out));
+      for (Tree element : block.elements()) {
+        Definition definition = definition(element);
+        if (definition != null) {
+          assignedNamesBySymbol.computeIfAbsent(definition.symbol, s -> new HashSet<>()).add(definition.name);
+          // performing a strong update
+          gen.put(definition.symbol, Collections.singleton(definition.assignedValue));
+        }
+      }
     }
 
     /**
@@ -157,55 +182,56 @@ public class ReachingDefinitionsAnalysis {
     private boolean propagate() {
       block.predecessors().forEach(predecessor -> in = join(in, programStateByBlock.get(predecessor).out));
       Map<Symbol, Set<Expression>> newOut = new HashMap<>(in);
-      block.elements().forEach(element -> updateProgramState(element, newOut));
+      newOut.putAll(gen);
       boolean outHasChanged = !newOut.equals(out);
       out = newOut;
       return outHasChanged;
     }
   }
 
-  private class ProgramStateAtElement {
-    private final Map<Symbol, Set<Expression>> out;
-
-    public ProgramStateAtElement(Map<Symbol, Set<Expression>> in, Tree element) {
-      out = join(in, Collections.emptyMap());
-      updateProgramState(element, out);
-    }
+  private static Map<Symbol, Set<Expression>> join(Map<Symbol, Set<Expression>> programState1, Map<Symbol, Set<Expression>> programState2) {
+    Map<Symbol, Set<Expression>> result = new HashMap<>(programState1);
+    programState2.forEach((key, values) -> result.merge(key, values, (values1, values2) -> {
+      if (values1.containsAll(values2)) {
+        return values1;
+      }
+      Set<Expression> union = new HashSet<>(values1);
+      union.addAll(values2);
+      return union;
+    }));
+    return result;
   }
 
-  private static Map<Symbol, Set<Expression>> join(Map<Symbol, Set<Expression>> programState1, Map<Symbol, Set<Expression>> programState2) {
-    Map<Symbol, Set<Expression>> result = new HashMap<>();
-    Set<Symbol> allKeys = new HashSet<>(programState1.keySet());
-    allKeys.addAll(programState2.keySet());
-    for (Symbol key : allKeys) {
-      Set<Expression> union = new HashSet<>();
-      union.addAll(programState1.getOrDefault(key, Collections.emptySet()));
-      union.addAll(programState2.getOrDefault(key, Collections.emptySet()));
-      result.put(key, union);
+  @CheckForNull
+  private static Definition definition(Tree element) {
+    if (!element.is(ASSIGNMENT_STMT)) {
+      return null;
     }
-    return result;
+    AssignmentStatement assignmentStatement = (AssignmentStatement) element;
+    List<Expression> lhsExpressions = assignmentStatement.lhsExpressions().stream()
+      .flatMap(exprList -> exprList.expressions().stream())
+      .collect(Collectors.toList());
+    if (lhsExpressions.size() != 1) {
+      return null;
+    }
+    Expression lhsExpression = lhsExpressions.get(0);
+    if (!lhsExpression.is(Tree.Kind.NAME)) {
+      return null;
+    }
+    Name name = (Name) lhsExpression;
+    Symbol symbol = name.symbol();
+    return symbol == null ? null : new Definition(symbol, name, assignmentStatement.assignedValue());
   }
 
-  private void updateProgramState(Tree element, Map<Symbol, Set<Expression>> programState) {
-    if (element.is(ASSIGNMENT_STMT)) {
-      AssignmentStatement assignmentStatement = (AssignmentStatement) element;
-      List<Expression> lhsExpressions = assignmentStatement.lhsExpressions().stream()
-        .flatMap(exprList -> exprList.expressions().stream())
-        .collect(Collectors.toList());
-      if (lhsExpressions.size() != 1) {
-        return;
-      }
-      Expression lhsExpression = lhsExpressions.get(0);
-      if (!lhsExpression.is(Tree.Kind.NAME)) {
-        return;
-      }
-      TreeUtils.getSymbolFromTree(lhsExpression).ifPresent(symbol -> {
-        assignedNamesBySymbol.computeIfAbsent(symbol, s -> new HashSet<>()).add(((Name) lhsExpression));
-        Set<Expression> assignedValues = new HashSet<>();
-        assignedValues.add(assignmentStatement.assignedValue());
-        // performing a strong update
-        programState.put(symbol, assignedValues);
-      });
+  private static class Definition {
+    private final Symbol symbol;
+    private final Name name;
+    private final Expression assignedValue;
+
+    private Definition(Symbol symbol, Name name, Expression assignedValue) {
+      this.symbol = symbol;
+      this.name = name;
+      this.assignedValue = assignedValue;
     }
   }
 }
@@ -0,0 +1,111 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.impl.Lexer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.sonar.python.AnalysisCancellation;
+import org.sonar.sslr.channel.Channel;
+import org.sonar.sslr.channel.ChannelException;
+import org.sonar.sslr.channel.CodeReader;
+
+/**
+ * Same as {@link com.sonar.sslr.impl.channel.RegexpChannel}, except that the characters read by the regular expression
+ * go through a sequence which regularly checks the {@link AnalysisCancellation} of the current thread: the matching of a
+ * single token, e.g. with a lot of backtracking, can then be interrupted.
+ */
+public class CancellableRegexpChannel extends Channel<Lexer> {
+
+  private static final int READS_BETWEEN_CHECKS = 1024;
+
+  private final TokenType type;
+  private final Matcher matcher;
+  private final CancellableCharSequence input = new CancellableCharSequence();
+  private final StringBuilder value = new StringBuilder();
+
+  public CancellableRegexpChannel(TokenType type, String regexp) {
+    this.type = type;
+    this.matcher = Pattern.compile(regexp).matcher("");
+  }
+
+  @Override
+  public boolean consume(CodeReader code, Lexer lexer) {
+    input.code = code;
+    try {
+      if (!matcher.reset(input).lookingAt()) {
+        return false;
+      }
+      int line = code.getLinePosition();
+      int column = code.getColumnPosition();
+      for (int i = 0; i < matcher.end(); i++) {
+        value.append((char) code.pop());
+      }
+      lexer.addToken(Token.builder()
+        .setType(type)
+        .setValueAndOriginalValue(value.toString())
+        .setURI(lexer.getURI())
+        .setLine(line)
+        .setColumn(column)
+        .build());
+      value.setLength(0);
+      return true;
+    } catch (StackOverflowError e) {
+      throw new ChannelException("Unable to apply regular expression '" + matcher.pattern().pattern() + "' at line "
+        + code.getLinePosition() + " and column " + code.getColumnPosition(), e);
+    } finally {
+      matcher.reset("");
+      input.code = null;
+    }
+  }
+
+  private static class CancellableCharSequence implements CharSequence {
+
+    private CharSequence code;
+    private int reads = 0;
+
+    @Override
+    public char charAt(int index) {
+      reads++;
+      if (reads == READS_BETWEEN_CHECKS) {
+        reads = 0;
+        AnalysisCancellation.current().check();
+      }
+      return code.charAt(index);
+    }
+
+    @Override
+    public int length() {
+      return code.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return code.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return code.toString();
+    }
+  }
+}
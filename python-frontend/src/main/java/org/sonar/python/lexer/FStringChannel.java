@@ -54,7 +54,9 @@ public class FStringChannel extends Channel<Lexer> {
       int column = code.getColumnPosition();
       while (code.charAt(0) != EOF) {
         char c = code.charAt(0);
-        if (c != '{') {
+        if (c == '\\' && !lexerState.rawFString) {
+          consumeEscapeSequence(code);
+        } else if (c != '{') {
           sb.append((char) code.pop());
         } else if (code.charAt(1) == '{') {
           sb.append((char) code.pop());
@@ -72,6 +74,23 @@ public class FStringChannel extends Channel<Lexer> {
     return false;
   }
 
+  /**
+   * The braces of a named unicode character, e.g. "\N{BULLET}", do not delimit an expression.
+   */
+  private void consumeEscapeSequence(CodeReader code) {
+    sb.append((char) code.pop());
+    if (code.charAt(0) == 'N' && code.charAt(1) == '{') {
+      while (code.charAt(0) != EOF && code.charAt(0) != '}') {
+        sb.append((char) code.pop());
+      }
+      if (code.charAt(0) == '}') {
+        sb.append((char) code.pop());
+      }
+    } else if (code.charAt(0) == '\\') {
+      sb.append((char) code.pop());
+    }
+  }
+
   private static void addUnknownCharToken(String value, Lexer output, int line, int column) {
     output.addToken(Token.builder()
       .setType(GenericTokenType.UNKNOWN_CHAR)
@@ -30,6 +30,7 @@ public class LexerState {
   boolean joined;
   int initialLine = 1;
   int initialColumn = 0;
+  boolean rawFString;
 
   public void reset() {
     indentationStack.clear();
@@ -40,8 +41,13 @@ public class LexerState {
   }
 
   public void reset(int initialLine, int initialColumn) {
+    reset(initialLine, initialColumn, false);
+  }
+
+  public void reset(int initialLine, int initialColumn, boolean rawFString) {
     reset();
     this.initialLine = initialLine;
     this.initialColumn = initialColumn;
+    this.rawFString = rawFString;
   }
 }
@@ -19,11 +19,16 @@
  */
 package org.sonar.python.lexer;
 
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
 import com.sonar.sslr.impl.Lexer;
+import com.sonar.sslr.impl.LexerException;
 import com.sonar.sslr.impl.channel.BlackHoleChannel;
 import com.sonar.sslr.impl.channel.IdentifierAndKeywordChannel;
 import com.sonar.sslr.impl.channel.PunctuatorChannel;
 import com.sonar.sslr.impl.channel.UnknownCharacterChannel;
+import java.util.List;
+import org.sonar.python.AnalysisCancelledException;
 import org.sonar.python.api.PythonKeyword;
 import org.sonar.python.api.PythonPunctuator;
 import org.sonar.python.api.PythonTokenType;
@@ -31,7 +36,6 @@ import org.sonar.python.api.PythonTokenType;
 import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.and;
 import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.commentRegexp;
 import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.o2n;
-import static com.sonar.sslr.impl.channel.RegexpChannelBuilder.regexp;
 
 public final class PythonLexer {
 
@@ -52,6 +56,23 @@ public final class PythonLexer {
     return builder.build();
   }
 
+  /**
+   * Returns the tokens of the given source. The exceptions thrown by the channels are wrapped by the lexer, except the
+   * {@link AnalysisCancelledException} thrown when the analysis of the file is cancelled.
+   */
+  public static List<Token> lex(Lexer lexer, String source) {
+    try {
+      return lexer.lex(source);
+    } catch (LexerException e) {
+      for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+        if (cause instanceof AnalysisCancelledException) {
+          throw (AnalysisCancelledException) cause;
+        }
+      }
+      throw e;
+    }
+  }
+
   public static Lexer fStringLexer(LexerState lexerState) {
     Lexer.Builder builder = Lexer.builder().withFailIfNoChannelToConsumeOneCharacter(true);
     builder.withChannel(new FStringChannel(lexerState));
@@ -106,4 +127,8 @@ public final class PythonLexer {
 
         .withChannel(new UnknownCharacterChannel());
   }
+
+  private static CancellableRegexpChannel regexp(TokenType type, String regexp) {
+    return new CancellableRegexpChannel(type, regexp);
+  }
 }
@@ -0,0 +1,654 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.TokenType;
+import com.sonar.sslr.api.Trivia;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.python.AnalysisCancellation;
+import org.sonar.python.api.PythonKeyword;
+import org.sonar.python.api.PythonPunctuator;
+import org.sonar.python.api.PythonTokenType;
+
+/**
+ * Single-pass alternative to the channel chain built by {@link PythonLexer#create(LexerState)}.
+ * <p>
+ * The SSLR lexer tries every channel, in order, at each character position and most of them are regular expressions.
+ * This tokenizer dispatches on the current character instead, but it replicates the observable behavior of each channel
+ * (including their corner cases) so that both produce exactly the same token stream:
+ * NEWLINE and line joining ({@link NewLineChannel}), INDENT/DEDENT ({@link IndentationChannel}), comments as trivia,
+ * strings ({@link StringLiteralsChannel} and the bytes/f-string regular expressions), numbers, identifiers and keywords,
+ * punctuators (longest match first) and unknown characters.
+ * <p>
+ * Like the SSLR lexer, this class is stateful and not thread-safe.
+ */
+public class PythonTokenizer {
+
+  private static final URI URI_VALUE = URI.create("tests://unittest");
+  private static final char EOF = (char) -1;
+  private static final String PREFIX_CHARS = "RFUB";
+  private static final String RAW_PREFIX = "rR";
+  private static final String BYTES_PREFIX = "bB";
+  private static final String FORMATTED_STRING_PREFIX = "fF";
+  private static final char[] QUOTES = {'\'', '"'};
+
+  private static final Map<String, TokenType> KEYWORDS = new HashMap<>();
+  /**
+   * Punctuators indexed by their first character, longest first.
+   */
+  private static final PythonPunctuator[][] PUNCTUATORS_BY_FIRST_CHAR = new PythonPunctuator[128][];
+
+  static {
+    for (PythonKeyword keyword : PythonKeyword.values()) {
+      KEYWORDS.put(keyword.getValue(), keyword);
+    }
+    PythonPunctuator[] sorted = PythonPunctuator.values();
+    Arrays.sort(sorted, Comparator.comparingInt((PythonPunctuator p) -> p.getValue().length()).reversed());
+    for (PythonPunctuator punctuator : sorted) {
+      char first = punctuator.getValue().charAt(0);
+      PythonPunctuator[] current = PUNCTUATORS_BY_FIRST_CHAR[first];
+      if (current == null) {
+        PUNCTUATORS_BY_FIRST_CHAR[first] = new PythonPunctuator[] {punctuator};
+      } else {
+        PythonPunctuator[] extended = Arrays.copyOf(current, current.length + 1);
+        extended[current.length] = punctuator;
+        PUNCTUATORS_BY_FIRST_CHAR[first] = extended;
+      }
+    }
+  }
+
+  private final LexerState lexerState;
+  private final List<Trivia> trivia = new ArrayList<>();
+
+  private String source;
+  private int length;
+  private int position;
+  private int line;
+  private int column;
+  private List<Token> tokens;
+
+  public PythonTokenizer(LexerState lexerState) {
+    this.lexerState = lexerState;
+  }
+
+  /**
+   * Returns the tokens of the given source, terminated by an EOF token. As with the SSLR lexer, the DEDENT tokens
+   * closing the blocks still open at the end of the source are not added: they can be computed from {@link LexerState#indentationStack}.
+   */
+  public List<Token> tokenize(String source) {
+    return tokenize(source, 1);
+  }
+
+  /**
+   * Same as {@link #tokenize(String)}, for a source starting at the given line of a file.
+   */
+  public List<Token> tokenize(String source, int firstLine) {
+    this.source = source;
+    this.length = source.length();
+    this.position = 0;
+    this.line = firstLine;
+    this.column = 0;
+    this.tokens = new ArrayList<>();
+    this.trivia.clear();
+    AnalysisCancellation cancellation = AnalysisCancellation.current();
+    while (position < length) {
+      cancellation.check();
+      dispatch();
+    }
+    addToken(GenericTokenType.EOF, "EOF", line, column);
+    List<Token> result = tokens;
+    this.tokens = null;
+    this.source = null;
+    return result;
+  }
+
+  private void dispatch() {
+    char ch = source.charAt(position);
+    if (consumeNewLine(ch) || consumeIndentation()) {
+      return;
+    }
+    if (ch == ' ' || ch == '\t' || ch == '\u000B' || ch == '\f') {
+      pop();
+    } else if (ch == '#') {
+      consumeComment();
+    } else if (!consumeString() && !consumeNumber() && !consumeIdentifierOrKeyword() && !consumePunctuator()) {
+      int tokenLine = line;
+      int tokenColumn = column;
+      pop();
+      addToken(GenericTokenType.UNKNOWN_CHAR, String.valueOf(ch), tokenLine, tokenColumn);
+    }
+  }
+
+  private boolean consumeNewLine(char ch) {
+    checkForBrackets(ch);
+    if (ch == '\\' && isNewLine(charAt(1))) {
+      // Explicit line joining
+      pop();
+      consumeEOL();
+      lexerState.joined = true;
+      return true;
+    }
+    if (!isNewLine(ch)) {
+      return false;
+    }
+    if (lexerState.brackets > 0) {
+      // Implicit line joining
+      while (position < length && Character.isWhitespace(source.charAt(position))) {
+        pop();
+      }
+      lexerState.joined = true;
+    } else if (tokens.isEmpty() || tokens.get(tokens.size() - 1).getType() == PythonTokenType.NEWLINE) {
+      // Blank line
+      consumeEOL();
+    } else {
+      tokens.add(withTrivia(Token.builder()
+        .setLine(line)
+        .setColumn(column)
+        .setURI(URI_VALUE)
+        .setType(PythonTokenType.NEWLINE)
+        .setValueAndOriginalValue("\n")
+        .setGeneratedCode(true)));
+      consumeEOL();
+    }
+    return true;
+  }
+
+  private void checkForBrackets(char ch) {
+    if (ch == '(' || ch == '[' || ch == '{') {
+      lexerState.brackets++;
+    } else if (ch == ')' || ch == ']' || ch == '}') {
+      lexerState.brackets--;
+    }
+  }
+
+  private void consumeEOL() {
+    if (charAt(0) == '\r' && charAt(1) == '\n') {
+      pop();
+    }
+    pop();
+  }
+
+  private boolean consumeIndentation() {
+    if (lexerState.joined) {
+      lexerState.joined = false;
+      return false;
+    }
+    if (column != 0) {
+      return false;
+    }
+    int whiteSpaceIndex = 0;
+    char ch = charAt(whiteSpaceIndex);
+    while (ch == ' ' || ch == '\t') {
+      whiteSpaceIndex++;
+      ch = charAt(whiteSpaceIndex);
+    }
+    if (ch == '\n' || ch == '\r' || ch == '#' || ch == EOF) {
+      return false;
+    }
+    int tokenLine = line;
+    int tokenColumn = column;
+    int indentationLevel = 0;
+    for (int i = 0; i < whiteSpaceIndex; i++) {
+      indentationLevel += source.charAt(position + i) == '\t' ? (8 - indentationLevel % 8) : 1;
+    }
+    String indentation = source.substring(position, position + whiteSpaceIndex);
+    pop(whiteSpaceIndex);
+
+    if (indentationLevel > lexerState.indentationStack.peek()) {
+      lexerState.indentationStack.push(indentationLevel);
+      addToken(PythonTokenType.INDENT, indentation, tokenLine, tokenColumn);
+    } else {
+      while (indentationLevel < lexerState.indentationStack.peek()) {
+        lexerState.indentationStack.pop();
+        addToken(PythonTokenType.DEDENT, indentation, tokenLine, tokenColumn);
+      }
+    }
+    return whiteSpaceIndex != 0;
+  }
+
+  private void consumeComment() {
+    int end = position;
+    while (end < length && !isNewLine(source.charAt(end))) {
+      end++;
+    }
+    Token comment = Token.builder()
+      .setType(GenericTokenType.COMMENT)
+      .setValueAndOriginalValue(source.substring(position, end))
+      .setURI(URI_VALUE)
+      .setLine(line)
+      .setColumn(column)
+      .build();
+    trivia.add(Trivia.createComment(comment));
+    pop(end - position);
+  }
+
+  private boolean consumeString() {
+    int end = stringLiteralEnd();
+    if (end < 0) {
+      end = quotedLiteralEnd(BYTES_PREFIX);
+    }
+    if (end < 0) {
+      end = quotedLiteralEnd(FORMATTED_STRING_PREFIX);
+    }
+    return end >= 0 && consumeToken(PythonTokenType.STRING, end);
+  }
+
+  /**
+   * Same logic as {@link StringLiteralsChannel}: up to two prefix characters, no check of newlines in short strings.
+   */
+  private int stringLiteralEnd() {
+    int index = 0;
+    char ch = Character.toUpperCase(charAt(index));
+    if (PREFIX_CHARS.indexOf(ch) >= 0) {
+      index++;
+      ch = Character.toUpperCase(charAt(index));
+    }
+    if (PREFIX_CHARS.indexOf(ch) >= 0) {
+      index++;
+      ch = charAt(index);
+    }
+    if (ch != '\'' && ch != '"') {
+      return -1;
+    }
+    boolean isLongString = isLookingOnLongString(ch, index);
+    index += isLongString ? 3 : 1;
+    while (isLongString ? !isLookingOnLongString(ch, index) : (charAt(index) != ch)) {
+      if (charAt(index) == EOF) {
+        return -1;
+      }
+      if (charAt(index) == '\\') {
+        index++;
+      }
+      index++;
+    }
+    return position + index + (isLongString ? 3 : 1);
+  }
+
+  private boolean isLookingOnLongString(char ch, int index) {
+    return charAt(index) == ch && charAt(index + 1) == ch && charAt(index + 2) == ch;
+  }
+
+  /**
+   * Equivalent of the regular expressions {@code ([xX][rR]?|[rR][xX]?)'([^'\\]*+(\\[\s\S])?+)*+'} (then with double quotes),
+   * where x is the given prefix letter. They only match when {@link StringLiteralsChannel} did not, i.e. for an unterminated
+   * long string where they match an empty string.
+   */
+  private int quotedLiteralEnd(String prefix) {
+    String optionalSecondPrefix;
+    if (prefix.indexOf(charAt(0)) >= 0) {
+      optionalSecondPrefix = RAW_PREFIX;
+    } else if (RAW_PREFIX.indexOf(charAt(0)) >= 0) {
+      optionalSecondPrefix = prefix;
+    } else {
+      return -1;
+    }
+    for (char quote : QUOTES) {
+      if (optionalSecondPrefix.indexOf(charAt(1)) >= 0) {
+        int end = quotedEnd(position + 2, quote);
+        if (end >= 0) {
+          return end;
+        }
+      }
+      int end = quotedEnd(position + 1, quote);
+      if (end >= 0) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  private int quotedEnd(int start, char quote) {
+    if (start >= length || source.charAt(start) != quote) {
+      return -1;
+    }
+    int index = start + 1;
+    while (index < length) {
+      char ch = source.charAt(index);
+      if (ch == quote) {
+        return index + 1;
+      }
+      if (ch == '\\') {
+        if (index + 1 >= length) {
+          return -1;
+        }
+        index++;
+      }
+      index++;
+    }
+    return -1;
+  }
+
+  private boolean consumeNumber() {
+    char ch = source.charAt(position);
+    if (!isDigit(ch) && (ch != '.' || !isDigit(charAt(1)))) {
+      return false;
+    }
+    int end = firstNonNegative(
+      pointFloatEnd(),
+      fractionEnd(position),
+      exponentFloatEnd(),
+      imaginaryIntegerEnd(),
+      prefixedIntegerEnd(position));
+    return end >= 0 && consumeToken(PythonTokenType.NUMBER, end);
+  }
+
+  private static int firstNonNegative(int... ends) {
+    for (int end : ends) {
+      if (end >= 0) {
+        return end;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * {@code [0-9]++(_?[0-9])*+\.[0-9]*+(_?[0-9])*+EXP?+(j|J)?+}
+   */
+  private int pointFloatEnd() {
+    int end = digitPartEnd(position);
+    if (end < 0 || end >= length || source.charAt(end) != '.') {
+      return -1;
+    }
+    end++;
+    while (end < length && isDigit(source.charAt(end))) {
+      end++;
+    }
+    end = underscoredDigitsEnd(end);
+    return imaginarySuffixEnd(optionalExponentEnd(end));
+  }
+
+  /**
+   * {@code \.[0-9]++(_?[0-9])*+EXP?+(j|J)?+}
+   */
+  private int fractionEnd(int start) {
+    if (start >= length || source.charAt(start) != '.') {
+      return -1;
+    }
+    int end = digitPartEnd(start + 1);
+    return end < 0 ? -1 : imaginarySuffixEnd(optionalExponentEnd(end));
+  }
+
+  /**
+   * {@code [0-9]++(_?[0-9])*+EXP(j|J)?+}
+   */
+  private int exponentFloatEnd() {
+    int end = digitPartEnd(position);
+    int exponentEnd = end < 0 ? -1 : exponentEnd(end);
+    return exponentEnd < 0 ? -1 : imaginarySuffixEnd(exponentEnd);
+  }
+
+  /**
+   * {@code [0-9]++(_?[0-9])*+(j|J)}
+   */
+  private int imaginaryIntegerEnd() {
+    int end = digitPartEnd(position);
+    return end >= 0 && end < length && isImaginarySuffix(source.charAt(end)) ? (end + 1) : -1;
+  }
+
+  /**
+   * Octal, hexadecimal, binary and decimal integers, with an optional long suffix.
+   */
+  private int prefixedIntegerEnd(int start) {
+    char ch = source.charAt(start);
+    int end;
+    if (ch == '0') {
+      // 0[oO]?+(_?[0-7])++
+      int digitsStart = (charAt(1) == 'o' || charAt(1) == 'O') ? (start + 2) : (start + 1);
+      end = prefixedDigitsEnd(digitsStart, "01234567");
+      if (end < 0 && (charAt(1) == 'x' || charAt(1) == 'X')) {
+        end = prefixedDigitsEnd(start + 2, "0123456789abcdefABCDEF");
+      }
+      if (end < 0 && (charAt(1) == 'b' || charAt(1) == 'B')) {
+        end = prefixedDigitsEnd(start + 2, "01");
+      }
+      if (end < 0) {
+        // 0(_?0)*+
+        end = prefixedDigitsEnd(start, "0");
+      }
+    } else {
+      // [1-9](_?[0-9])*+
+      end = underscoredDigitsEnd(start + 1);
+    }
+    return longSuffixEnd(end);
+  }
+
+  /**
+   * {@code (_?[digits])++}: at least one digit, each one optionally preceded by an underscore.
+   */
+  private int prefixedDigitsEnd(int start, String digits) {
+    int end = start;
+    while (true) {
+      if (end < length && digits.indexOf(source.charAt(end)) >= 0) {
+        end++;
+      } else if (end + 1 < length && source.charAt(end) == '_' && digits.indexOf(source.charAt(end + 1)) >= 0) {
+        end += 2;
+      } else {
+        break;
+      }
+    }
+    return end == start ? -1 : end;
+  }
+
+  /**
+   * {@code [0-9]++(_?[0-9])*+}
+   */
+  private int digitPartEnd(int start) {
+    if (start >= length || !isDigit(source.charAt(start))) {
+      return -1;
+    }
+    int end = start + 1;
+    while (end < length && isDigit(source.charAt(end))) {
+      end++;
+    }
+    return underscoredDigitsEnd(end);
+  }
+
+  /**
+   * {@code (_?[0-9])*+}
+   */
+  private int underscoredDigitsEnd(int start) {
+    int end = start;
+    while (true) {
+      if (end < length && isDigit(source.charAt(end))) {
+        end++;
+      } else if (end + 1 < length && source.charAt(end) == '_' && isDigit(source.charAt(end + 1))) {
+        end += 2;
+      } else {
+        return end;
+      }
+    }
+  }
+
+  private int optionalExponentEnd(int start) {
+    int end = exponentEnd(start);
+    return end < 0 ? start : end;
+  }
+
+  /**
+   * {@code [Ee][+-]?+[0-9_]++}
+   */
+  private int exponentEnd(int start) {
+    if (start >= length || (source.charAt(start) != 'e' && source.charAt(start) != 'E')) {
+      return -1;
+    }
+    int end = start + 1;
+    if (end < length && (source.charAt(end) == '+' || source.charAt(end) == '-')) {
+      end++;
+    }
+    int digitsStart = end;
+    while (end < length && (isDigit(source.charAt(end)) || source.charAt(end) == '_')) {
+      end++;
+    }
+    return end == digitsStart ? -1 : end;
+  }
+
+  private int imaginarySuffixEnd(int end) {
+    return end < length && isImaginarySuffix(source.charAt(end)) ? (end + 1) : end;
+  }
+
+  private int longSuffixEnd(int end) {
+    return end >= 0 && end < length && (source.charAt(end) == 'l' || source.charAt(end) == 'L') ? (end + 1) : end;
+  }
+
+  private static boolean isImaginarySuffix(char ch) {
+    return ch == 'j' || ch == 'J';
+  }
+
+  private static boolean isDigit(char ch) {
+    return ch >= '0' && ch <= '9';
+  }
+
+  private boolean consumeIdentifierOrKeyword() {
+    int codePoint = source.codePointAt(position);
+    if (!isIdentifierStart(codePoint)) {
+      return false;
+    }
+    int end = position + Character.charCount(codePoint);
+    while (end < length) {
+      codePoint = source.codePointAt(end);
+      if (!isIdentifierPart(codePoint)) {
+        break;
+      }
+      end += Character.charCount(codePoint);
+    }
+    String word = source.substring(position, end);
+    TokenType keyword = KEYWORDS.get(word);
+    addToken(keyword == null ? GenericTokenType.IDENTIFIER : keyword, word, line, column);
+    pop(end - position);
+    return true;
+  }
+
+  /**
+   * Same character classes as {@link PythonLexer}: {@code [\p{Lu}\p{Ll}\p{Lt}\p{Lm}\p{Lo}\p{Nl}_]}
+   */
+  private static boolean isIdentifierStart(int codePoint) {
+    if (codePoint < 128) {
+      return (codePoint >= 'a' && codePoint <= 'z') || (codePoint >= 'A' && codePoint <= 'Z') || codePoint == '_';
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.UPPERCASE_LETTER:
+      case Character.LOWERCASE_LETTER:
+      case Character.TITLECASE_LETTER:
+      case Character.MODIFIER_LETTER:
+      case Character.OTHER_LETTER:
+      case Character.LETTER_NUMBER:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Same character classes as {@link PythonLexer}: identifier start, {@code \p{Mn}\p{Mc}\p{Nd}\p{Pc}}
+   */
+  private static boolean isIdentifierPart(int codePoint) {
+    if (codePoint < 128) {
+      return isIdentifierStart(codePoint) || (codePoint >= '0' && codePoint <= '9');
+    }
+    switch (Character.getType(codePoint)) {
+      case Character.NON_SPACING_MARK:
+      case Character.COMBINING_SPACING_MARK:
+      case Character.DECIMAL_DIGIT_NUMBER:
+      case Character.CONNECTOR_PUNCTUATION:
+        return true;
+      default:
+        return isIdentifierStart(codePoint);
+    }
+  }
+
+  private boolean consumePunctuator() {
+    char ch = source.charAt(position);
+    PythonPunctuator[] candidates = ch < PUNCTUATORS_BY_FIRST_CHAR.length ? PUNCTUATORS_BY_FIRST_CHAR[ch] : null;
+    if (candidates == null) {
+      return false;
+    }
+    for (PythonPunctuator punctuator : candidates) {
+      String value = punctuator.getValue();
+      if (source.startsWith(value, position)) {
+        addToken(punctuator, value, line, column);
+        pop(value.length());
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private boolean consumeToken(TokenType type, int end) {
+    addToken(type, source.substring(position, end), line, column);
+    pop(end - position);
+    return true;
+  }
+
+  private void addToken(TokenType type, String value, int tokenLine, int tokenColumn) {
+    tokens.add(withTrivia(Token.builder()
+      .setType(type)
+      .setValueAndOriginalValue(value)
+      .setURI(URI_VALUE)
+      .setLine(tokenLine)
+      .setColumn(tokenColumn)));
+  }
+
+  private Token withTrivia(Token.Builder builder) {
+    if (trivia.isEmpty()) {
+      return builder.build();
+    }
+    Token token = builder.setTrivia(trivia).build();
+    trivia.clear();
+    return token;
+  }
+
+  private char charAt(int offset) {
+    int index = position + offset;
+    return index < length ? source.charAt(index) : EOF;
+  }
+
+  private void pop(int count) {
+    for (int i = 0; i < count; i++) {
+      pop();
+    }
+  }
+
+  /**
+   * Same line and column computation as {@link org.sonar.sslr.channel.CodeBuffer}, with a tab width of 1.
+   */
+  private void pop() {
+    char ch = source.charAt(position);
+    position++;
+    if (ch == '\n' || (ch == '\r' && charAt(0) != '\n')) {
+      line++;
+      column = 0;
+    } else {
+      column++;
+    }
+  }
+
+  private static boolean isNewLine(char ch) {
+    return ch == '\n' || ch == '\r';
+  }
+
+}
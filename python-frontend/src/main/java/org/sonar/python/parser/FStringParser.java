@@ -46,8 +46,9 @@ public class FStringParser {
   public List<AstNode> fStringExpressions(Token fStringToken) {
     StringElementImpl element = new StringElementImpl(new TokenImpl(fStringToken));
     String literalValue = element.trimmedQuotesValue();
-    lexerState.reset(fStringToken.getLine(), fStringToken.getColumn() + element.contentStartIndex());
-    lexer.lex(literalValue);
+    boolean isRaw = element.prefix().indexOf('r') >= 0 || element.prefix().indexOf('R') >= 0;
+    lexerState.reset(fStringToken.getLine(), fStringToken.getColumn() + element.contentStartIndex(), isRaw);
+    PythonLexer.lex(lexer, literalValue);
     List<Token> tokens = lexer.getTokens();
     AstNode astNode = internalParser.parse(tokens);
     return astNode.getChildren(PythonGrammar.FORMATTED_EXPR);
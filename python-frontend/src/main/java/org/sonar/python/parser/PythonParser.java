@@ -32,17 +32,27 @@ import org.sonar.python.api.PythonGrammar;
 import org.sonar.python.api.PythonTokenType;
 import org.sonar.python.lexer.LexerState;
 import org.sonar.python.lexer.PythonLexer;
+import org.sonar.python.lexer.PythonTokenizer;
 
 public final class PythonParser {
 
+  /**
+   * System property enabling {@link PythonTokenizer} instead of the SSLR lexer for parsers built with {@link #create()}.
+   */
+  public static final String HAND_WRITTEN_LEXER_PROPERTY = "sonar.python.lexer.handWritten";
+
   private final Parser<Grammar> sslrParser;
 
   public static PythonParser create() {
-    return new PythonParser();
+    return create(Boolean.getBoolean(HAND_WRITTEN_LEXER_PROPERTY));
+  }
+
+  public static PythonParser create(boolean useHandWrittenLexer) {
+    return new PythonParser(useHandWrittenLexer);
   }
 
-  private PythonParser() {
-    sslrParser = new SslrPythonParser();
+  private PythonParser(boolean useHandWrittenLexer) {
+    sslrParser = new SslrPythonParser(useHandWrittenLexer);
   }
 
   public AstNode parse(String source) {
@@ -61,6 +71,29 @@ public final class PythonParser {
     return sslrParser.getRootRule();
   }
 
+  /**
+   * Adds the DEDENT tokens closing the indentation levels still open at the end of the file, right before the EOF token.
+   */
+  public static List<Token> closeIndentations(List<Token> tokens, LexerState lexerState) {
+    if (lexerState.indentationStack.peek() <= 0) {
+      return tokens;
+    }
+    Token eofToken = tokens.get(tokens.size() - 1);
+    List<Token> result = new ArrayList<>(tokens.subList(0, tokens.size() - 1));
+    while (lexerState.indentationStack.peek() > 0) {
+      lexerState.indentationStack.pop();
+      result.add(Token.builder()
+        .setURI(eofToken.getURI())
+        .setType(PythonTokenType.DEDENT)
+        .setLine(eofToken.getLine())
+        .setColumn(eofToken.getColumn())
+        .setValueAndOriginalValue("")
+        .build());
+    }
+    result.add(eofToken);
+    return result;
+  }
+
   // We can't use com.sonar.sslr.impl.Parser directly because we need to add
   // DEDENT tokens before the EOF token (without using SSLR deprecated preprocessor API)
   // and we can't create a subclass of com.sonar.sslr.impl.Lexer.
@@ -68,39 +101,24 @@ public final class PythonParser {
   private static class SslrPythonParser extends Parser<Grammar> {
     private final LexerState lexerState;
     private final Lexer lexer;
+    private final PythonTokenizer tokenizer;
 
-    private SslrPythonParser() {
+    private SslrPythonParser(boolean useHandWrittenLexer) {
       super(PythonGrammar.create());
       super.setRootRule(super.getGrammar().getRootRule());
       this.lexerState = new LexerState();
-      this.lexer = PythonLexer.create(lexerState);
+      this.lexer = useHandWrittenLexer ? null : PythonLexer.create(lexerState);
+      this.tokenizer = useHandWrittenLexer ? new PythonTokenizer(lexerState) : null;
     }
 
     @Override
     public AstNode parse(String source) {
       lexerState.reset();
-      lexer.lex(source);
-      return super.parse(tokens());
+      return super.parse(tokens(source));
     }
 
-    private List<Token> tokens() {
-      List<Token> tokens = lexer.getTokens();
-      if (lexerState.indentationStack.peek() > 0) {
-        Token eofToken = tokens.get(tokens.size() - 1);
-        tokens = new ArrayList<>(tokens.subList(0, tokens.size() - 1));
-        while (lexerState.indentationStack.peek() > 0) {
-          lexerState.indentationStack.pop();
-          tokens.add(Token.builder()
-            .setURI(eofToken.getURI())
-            .setType(PythonTokenType.DEDENT)
-            .setLine(eofToken.getLine())
-            .setColumn(eofToken.getColumn())
-            .setValueAndOriginalValue("")
-            .build());
-        }
-        tokens.add(eofToken);
-      }
-      return tokens;
+    private List<Token> tokens(String source) {
+      return closeIndentations(tokenizer != null ? tokenizer.tokenize(source) : PythonLexer.lex(lexer, source), lexerState);
     }
   }
 
@@ -20,29 +20,49 @@
 package org.sonar.python.semantic;
 
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
 import org.sonar.plugins.python.api.symbols.ClassSymbol;
 import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.types.InferredType;
 
+/**
+ * Class symbols of TypeShed are shared by the analyses of all the files, which may run concurrently: the lazily computed
+ * super classes, members and method resolution order are computed locally and published as unmodifiable collections.
+ */
 public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
 
-  private final List<Symbol> superClasses = new ArrayList<>();
+  // classes whose method resolution order is being computed by the current thread
+  private static final ThreadLocal<Set<ClassSymbolImpl>> MRO_IN_PROGRESS = ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+  // shared empty collections until the first super class or member is added
+  private List<Symbol> superClasses = Collections.emptyList();
   private Set<Symbol> allSuperClasses = null;
   private Set<Symbol> allSuperClassesIncludingAmbiguousSymbols = null;
+  private Set<String> allSuperClassesFQN = null;
+  private Set<String> allSuperClassesIncludingAmbiguousSymbolsFQN = null;
+  private List<Symbol> mro = null;
+  private final Map<String, Optional<Symbol>> resolvedMembersByName = new ConcurrentHashMap<>();
+  private InferredType runtimeType = null;
   private boolean hasSuperClassWithoutSymbol = false;
-  private final Set<Symbol> members = new HashSet<>();
+  private Set<Symbol> members = Collections.emptySet();
   private Map<String, Symbol> membersByName = null;
   private boolean hasAlreadyReadSuperClasses = false;
   private boolean hasAlreadyReadMembers = false;
@@ -57,11 +77,11 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
     ClassSymbolImpl copiedClassSymbol = new ClassSymbolImpl(name(), fullyQualifiedName());
     for (Symbol superClass : superClasses()) {
       if (superClass == this) {
-        copiedClassSymbol.superClasses.add(copiedClassSymbol);
+        copiedClassSymbol.addSuperClass(copiedClassSymbol);
       } else if (superClass.kind() == Symbol.Kind.CLASS) {
-        copiedClassSymbol.superClasses.add(((ClassSymbolImpl) superClass).copyWithoutUsages());
+        copiedClassSymbol.addSuperClass(((ClassSymbolImpl) superClass).copyWithoutUsages());
       } else {
-        copiedClassSymbol.superClasses.add(new SymbolImpl(superClass.name(), superClass.fullyQualifiedName()));
+        copiedClassSymbol.addSuperClass(new SymbolImpl(superClass.name(), superClass.fullyQualifiedName()));
       }
     }
     copiedClassSymbol.addMembers(members.stream().map(m -> ((SymbolImpl) m).copyWithoutUsages()).collect(Collectors.toList()));
@@ -81,6 +101,9 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
     if (hasAlreadyReadSuperClasses) {
       throw new IllegalStateException("Cannot call addSuperClass, super classes were already read");
     }
+    if (superClasses.isEmpty()) {
+      superClasses = new ArrayList<>(1);
+    }
     this.superClasses.add(symbol);
   }
 
@@ -111,7 +134,11 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
 
   @Override
   public Optional<Symbol> resolveMember(String memberName) {
-    for (Symbol symbol : allSuperClasses(false)) {
+    return resolvedMembersByName.computeIfAbsent(memberName, this::resolveMemberAlongMro);
+  }
+
+  private Optional<Symbol> resolveMemberAlongMro(String memberName) {
+    for (Symbol symbol : mro()) {
       if (symbol.kind() == Kind.CLASS) {
         ClassSymbolImpl classSymbol = (ClassSymbolImpl) symbol;
         Symbol matchingMember = classSymbol.membersByName().get(memberName);
@@ -125,55 +152,158 @@ public class ClassSymbolImpl extends SymbolImpl implements ClassSymbol {
 
   @Override
   public boolean isOrExtends(String fullyQualifiedClassName) {
-    return allSuperClasses(false).stream().anyMatch(c -> c.fullyQualifiedName() != null && Objects.equals(fullyQualifiedClassName, c.fullyQualifiedName()));
+    return allSuperClassesFQN(false).contains(fullyQualifiedClassName);
   }
 
   @Override
   public boolean isOrExtends(ClassSymbol other) {
     // TODO there should be only 1 class with a given fullyQualifiedName when analyzing a python file
-    return allSuperClasses(false).stream().anyMatch(c -> Objects.equals(c.fullyQualifiedName(), other.fullyQualifiedName()));
+    String otherFullyQualifiedName = other.fullyQualifiedName();
+    if (otherFullyQualifiedName == null) {
+      return allSuperClasses(false).stream().anyMatch(c -> c.fullyQualifiedName() == null);
+    }
+    return allSuperClassesFQN(false).contains(otherFullyQualifiedName);
   }
 
   @Override
   public boolean canBeOrExtend(String fullyQualifiedClassName) {
-    return allSuperClasses(true).stream().anyMatch(c -> c.fullyQualifiedName() != null && Objects.equals(fullyQualifiedClassName, c.fullyQualifiedName()))
-      || hasUnresolvedTypeHierarchy();
+    return allSuperClassesFQN(true).contains(fullyQualifiedClassName) || hasUnresolvedTypeHierarchy();
+  }
+
+  /**
+   * Method resolution order, computed with the C3 linearization used by Python (https://www.python.org/download/releases/2.3/mro/).
+   * Super classes which are not class symbols are considered as classes without super classes.
+   * When the hierarchy cannot be linearized (e.g. cycles), super classes are ordered by a depth-first exploration.
+   */
+  List<Symbol> mro() {
+    List<Symbol> result = mro;
+    if (result != null) {
+      return result;
+    }
+    Set<ClassSymbolImpl> inProgress = MRO_IN_PROGRESS.get();
+    if (!inProgress.add(this)) {
+      // cycle between super classes
+      return new ArrayList<>(allSuperClasses(false));
+    }
+    try {
+      result = c3Linearization().orElseGet(() -> Collections.unmodifiableList(new ArrayList<>(allSuperClasses(false))));
+    } finally {
+      inProgress.remove(this);
+    }
+    mro = result;
+    return result;
+  }
+
+  private Optional<List<Symbol>> c3Linearization() {
+    List<Symbol> directSuperClasses = superClasses();
+    List<Deque<Symbol>> sequences = new ArrayList<>();
+    for (Symbol superClass : directSuperClasses) {
+      List<Symbol> superClassMro = superClass.kind() == Kind.CLASS ? ((ClassSymbolImpl) superClass).mro() : Collections.singletonList(superClass);
+      sequences.add(new ArrayDeque<>(superClassMro));
+    }
+    sequences.add(new ArrayDeque<>(directSuperClasses));
+    List<Symbol> linearization = new ArrayList<>();
+    linearization.add(this);
+    sequences.removeIf(Deque::isEmpty);
+    while (!sequences.isEmpty()) {
+      Symbol next = sequences.stream()
+        .map(Deque::peekFirst)
+        .filter(head -> sequences.stream().noneMatch(sequence -> isInTail(head, sequence)))
+        .findFirst()
+        .orElse(null);
+      if (next == null || linearization.contains(next)) {
+        return Optional.empty();
+      }
+      linearization.add(next);
+      sequences.forEach(sequence -> {
+        if (sequence.peekFirst() == next) {
+          sequence.removeFirst();
+        }
+      });
+      sequences.removeIf(Deque::isEmpty);
+    }
+    return Optional.of(Collections.unmodifiableList(linearization));
+  }
+
+  private static boolean isInTail(Symbol symbol, Deque<Symbol> sequence) {
+    Iterator<Symbol> iterator = sequence.iterator();
+    iterator.next();
+    while (iterator.hasNext()) {
+      if (iterator.next() == symbol) {
+        return true;
+      }
+    }
+    return false;
   }
 
   private Map<String, Symbol> membersByName() {
-    if (membersByName == null) {
-      membersByName = declaredMembers().stream().collect(Collectors.toMap(Symbol::name, m -> m, (s1, s2) -> s1));
+    Map<String, Symbol> result = membersByName;
+    if (result == null) {
+      result = Collections.unmodifiableMap(declaredMembers().stream().collect(Collectors.toMap(Symbol::name, m -> m, (s1, s2) -> s1)));
+      membersByName = result;
     }
-    return membersByName;
+    return result;
   }
 
   public void addMembers(Collection<Symbol> members) {
     if (hasAlreadyReadMembers) {
       throw new IllegalStateException("Cannot call addMembers, members were already read");
     }
+    if (members.isEmpty()) {
+      return;
+    }
+    if (this.members.isEmpty()) {
+      this.members = new HashSet<>();
+    }
     this.members.addAll(members);
     members.stream()
       .filter(m -> m.kind() == Kind.FUNCTION)
       .forEach(m -> ((FunctionSymbolImpl) m).setOwner(this));
   }
 
+  public InferredType runtimeType(Function<ClassSymbol, InferredType> runtimeTypeFactory) {
+    InferredType result = runtimeType;
+    if (result == null) {
+      result = runtimeTypeFactory.apply(this);
+      runtimeType = result;
+    }
+    return result;
+  }
+
   public void setHasSuperClassWithoutSymbol() {
     this.hasSuperClassWithoutSymbol = true;
   }
 
   private Set<Symbol> allSuperClasses(boolean includeAmbiguousSymbols) {
-    if (!includeAmbiguousSymbols) {
-      if (allSuperClasses == null) {
-        allSuperClasses = new LinkedHashSet<>();
-        exploreSuperClasses(this, allSuperClasses, false);
+    Set<Symbol> result = includeAmbiguousSymbols ? allSuperClassesIncludingAmbiguousSymbols : allSuperClasses;
+    if (result == null) {
+      Set<Symbol> superClassesSet = new LinkedHashSet<>();
+      exploreSuperClasses(this, superClassesSet, includeAmbiguousSymbols);
+      result = Collections.unmodifiableSet(superClassesSet);
+      if (includeAmbiguousSymbols) {
+        allSuperClassesIncludingAmbiguousSymbols = result;
+      } else {
+        allSuperClasses = result;
       }
-      return allSuperClasses;
     }
-    if (allSuperClassesIncludingAmbiguousSymbols == null) {
-      allSuperClassesIncludingAmbiguousSymbols = new LinkedHashSet<>();
-      exploreSuperClasses(this, allSuperClassesIncludingAmbiguousSymbols, true);
+    return result;
+  }
+
+  private Set<String> allSuperClassesFQN(boolean includeAmbiguousSymbols) {
+    Set<String> result = includeAmbiguousSymbols ? allSuperClassesIncludingAmbiguousSymbolsFQN : allSuperClassesFQN;
+    if (result == null) {
+      result = fullyQualifiedNames(allSuperClasses(includeAmbiguousSymbols));
+      if (includeAmbiguousSymbols) {
+        allSuperClassesIncludingAmbiguousSymbolsFQN = result;
+      } else {
+        allSuperClassesFQN = result;
+      }
     }
-    return allSuperClassesIncludingAmbiguousSymbols;
+    return result;
+  }
+
+  private static Set<String> fullyQualifiedNames(Set<Symbol> symbols) {
+    return Collections.unmodifiableSet(symbols.stream().map(Symbol::fullyQualifiedName).filter(Objects::nonNull).collect(Collectors.toSet()));
   }
 
   private static void exploreSuperClasses(Symbol symbol, Set<Symbol> set, boolean includeAmbiguousSymbols) {
@@ -0,0 +1,417 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.semantic;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
+import org.sonar.plugins.python.api.symbols.ClassSymbol;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.symbols.Usage;
+import org.sonar.plugins.python.api.tree.ClassDef;
+import org.sonar.plugins.python.api.tree.ComprehensionExpression;
+import org.sonar.plugins.python.api.tree.DictCompExpression;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionLike;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.QualifiedExpression;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.tree.Trivia;
+import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.python.tree.TriviaImpl;
+
+/**
+ * Estimate of the heap retained by the syntax tree and the semantic model of a file, to size the heap of the analysis.
+ * Objects are not measured: their sizes are computed from their fields, for a 64-bit JVM with compressed references
+ * (12 bytes of object header, 4 bytes per reference, objects aligned on 8 bytes), and the sizes of the collections from
+ * their number of elements. Empty collections and arrays are assumed to be shared.
+ * <p>
+ * Each object is counted once per file, in the category it is reached from first: the string of a name is counted with
+ * the tree, and not with its token and its symbol. Objects shared by all the files, like the TypeShed symbols which are
+ * not copied in the file, are not reachable from the file and not counted, except for the types of its symbols.
+ * <p>
+ * The estimate neither infers types nor parses f-strings: the symbols of member names and the types of symbols are counted
+ * as far as type inference already resolved them, and the expressions of f-strings are not counted.
+ */
+public final class MemoryFootprint {
+
+  public enum Category {
+    TREE, TOKENS, SYMBOLS, USAGES, TYPES
+  }
+
+  private static final int OBJECT_HEADER = 12;
+  private static final int ARRAY_HEADER = 16;
+  private static final int REFERENCE = 4;
+  private static final Set<PythonTokenType> WHITESPACE_TOKEN_TYPES = EnumSet.of(PythonTokenType.NEWLINE, PythonTokenType.INDENT, PythonTokenType.DEDENT);
+  private static final Map<Class<?>, ClassLayout> LAYOUTS = new ConcurrentHashMap<>();
+
+  private final long[] bytes = new long[Category.values().length];
+  private final long[] objects = new long[Category.values().length];
+  private long linesOfCode = 0;
+  private long sourceCharacters = 0;
+
+  /**
+   * Estimates the heap retained by the tree of a file and by its semantic model.
+   */
+  public static MemoryFootprint of(FileInput fileInput) {
+    return new Estimator().estimate(fileInput);
+  }
+
+  public void add(MemoryFootprint other) {
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] += other.bytes[i];
+      objects[i] += other.objects[i];
+    }
+    linesOfCode += other.linesOfCode;
+    sourceCharacters += other.sourceCharacters;
+  }
+
+  public long bytes(Category category) {
+    return bytes[category.ordinal()];
+  }
+
+  public long objects(Category category) {
+    return objects[category.ordinal()];
+  }
+
+  public long totalBytes() {
+    long total = 0;
+    for (long categoryBytes : bytes) {
+      total += categoryBytes;
+    }
+    return total;
+  }
+
+  /**
+   * Lines with at least one token other than a newline or an indentation.
+   */
+  public long linesOfCode() {
+    return linesOfCode;
+  }
+
+  /**
+   * Characters of the tokens and of their trivia, which is close to the size of the source code.
+   */
+  public long sourceCharacters() {
+    return sourceCharacters;
+  }
+
+  /**
+   * Estimated bytes per 1000 lines of code, 0 when there is no code.
+   */
+  public long bytesPerKloc(Category category) {
+    return linesOfCode == 0 ? 0 : (bytes(category) * 1000 / linesOfCode);
+  }
+
+  public long totalBytesPerKloc() {
+    return linesOfCode == 0 ? 0 : (totalBytes() * 1000 / linesOfCode);
+  }
+
+  private void count(Category category, long objectBytes) {
+    bytes[category.ordinal()] += objectBytes;
+    objects[category.ordinal()]++;
+  }
+
+  private static class Estimator {
+    private final MemoryFootprint footprint = new MemoryFootprint();
+    private final Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Symbol> symbols = new ArrayDeque<>();
+    private final BitSet lines = new BitSet();
+
+    private MemoryFootprint estimate(FileInput fileInput) {
+      Deque<Tree> trees = new ArrayDeque<>();
+      trees.push(fileInput);
+      while (!trees.isEmpty()) {
+        Tree tree = trees.pop();
+        if (tree.is(Tree.Kind.TOKEN)) {
+          token((Token) tree);
+        } else if (tree.is(Tree.Kind.STRING_ELEMENT)) {
+          tree(tree);
+          trees.push(tree.firstToken());
+        } else {
+          tree(tree);
+          for (Tree child : tree.children()) {
+            if (child != null) {
+              trees.push(child);
+            }
+          }
+        }
+      }
+      while (!symbols.isEmpty()) {
+        symbol(symbols.pop());
+      }
+      footprint.linesOfCode = lines.cardinality();
+      return footprint;
+    }
+
+    private void tree(Tree tree) {
+      if (!counted.add(tree)) {
+        return;
+      }
+      footprint.count(Category.TREE, retainedBytes(tree));
+      if (tree.is(Tree.Kind.NAME)) {
+        name((Name) tree);
+      } else if (tree instanceof FunctionLike) {
+        symbols.addAll(((FunctionLike) tree).localVariables());
+      } else if (tree.is(Tree.Kind.CLASSDEF)) {
+        symbols.addAll(((ClassDef) tree).classFields());
+        symbols.addAll(((ClassDef) tree).instanceFields());
+      } else if (tree.is(Tree.Kind.FILE_INPUT)) {
+        symbols.addAll(((FileInput) tree).globalVariables());
+      } else if (tree instanceof ComprehensionExpression) {
+        symbols.addAll(((ComprehensionExpression) tree).localVariables());
+      } else if (tree.is(Tree.Kind.DICT_COMPREHENSION)) {
+        symbols.addAll(((DictCompExpression) tree).localVariables());
+      }
+    }
+
+    private void name(Name name) {
+      Tree parent = name.parent();
+      boolean isMemberName = parent != null && parent.is(Tree.Kind.QUALIFIED_EXPR) && ((QualifiedExpression) parent).name() == name;
+      // the symbol of a member name is resolved by type inference
+      Symbol symbol = isMemberName ? null : name.symbol();
+      if (symbol != null) {
+        symbols.push(symbol);
+      }
+    }
+
+    private void token(Token token) {
+      if (!counted.add(token)) {
+        return;
+      }
+      footprint.count(Category.TOKENS, tokenBytes(token));
+      if (!WHITESPACE_TOKEN_TYPES.contains(token.type()) && token.type() != com.sonar.sslr.api.GenericTokenType.EOF) {
+        String value = token.value();
+        footprint.sourceCharacters += value.length();
+        int line = token.line();
+        lines.set(line);
+        for (int i = 0; i < value.length(); i++) {
+          if (value.charAt(i) == '\n') {
+            line++;
+            lines.set(line);
+          }
+        }
+      }
+      for (Trivia trivia : token.trivia()) {
+        footprint.sourceCharacters += trivia.value().length();
+        footprint.count(Category.TOKENS, shallowSize(TriviaImpl.class) + tokenBytes(trivia.token()));
+      }
+    }
+
+    private long tokenBytes(Token token) {
+      // the token of the lexer wrapped by the token of the tree
+      long result = retainedBytes(token) + shallowSize(com.sonar.sslr.api.Token.class);
+      String value = token.value();
+      return counted.add(value) ? (result + stringBytes(value)) : result;
+    }
+
+    private void symbol(Symbol symbol) {
+      if (!counted.add(symbol)) {
+        return;
+      }
+      footprint.count(Category.SYMBOLS, retainedBytes(symbol));
+      for (Usage usage : symbol.usages()) {
+        if (counted.add(usage)) {
+          footprint.count(Category.USAGES, retainedBytes(usage));
+        }
+      }
+      if (symbol instanceof SymbolImpl) {
+        symbols.addAll(((SymbolImpl) symbol).getChildrenSymbolByName().values());
+      }
+      if (symbol.is(Symbol.Kind.CLASS)) {
+        symbols.addAll(((ClassSymbol) symbol).declaredMembers());
+      } else if (symbol.is(Symbol.Kind.AMBIGUOUS)) {
+        symbols.addAll(((AmbiguousSymbol) symbol).alternatives());
+      }
+    }
+
+    private void type(InferredType type) {
+      if (counted.add(type)) {
+        footprint.count(Category.TYPES, retainedBytes(type));
+      }
+    }
+
+    /**
+     * Size of the object and of the collections, arrays and strings it references. The types it references are counted
+     * separately.
+     */
+    private long retainedBytes(Object object) {
+      ClassLayout layout = layout(object.getClass());
+      long result = layout.shallowSize;
+      for (Field field : layout.referencedFields) {
+        Object value = fieldValue(field, object);
+        if (value instanceof InferredType) {
+          type((InferredType) value);
+        } else if (value != null && counted.add(value)) {
+          result += value instanceof String ? stringBytes((String) value) : containerBytes(value);
+        }
+      }
+      return result;
+    }
+
+    private static Object fieldValue(Field field, Object object) {
+      try {
+        return field.get(object);
+      } catch (IllegalAccessException e) {
+        return null;
+      }
+    }
+  }
+
+  private static long stringBytes(String string) {
+    return align(OBJECT_HEADER + 3L * REFERENCE) + arrayBytes(string.length(), 2);
+  }
+
+  private static long arrayBytes(int length, int elementSize) {
+    return length == 0 ? 0 : align(ARRAY_HEADER + (long) length * elementSize);
+  }
+
+  private static long hashTableBytes(int size) {
+    int capacity = 16;
+    while (capacity * 3 / 4 < size) {
+      capacity *= 2;
+    }
+    return size == 0 ? 0 : arrayBytes(capacity, REFERENCE);
+  }
+
+  /**
+   * Size of a collection, a map or an array without its elements.
+   */
+  static long containerBytes(Object container) {
+    if (container.getClass().isArray()) {
+      int length = java.lang.reflect.Array.getLength(container);
+      Class<?> componentType = container.getClass().getComponentType();
+      return arrayBytes(length, componentType.isPrimitive() ? primitiveSize(componentType) : REFERENCE);
+    }
+    if (container instanceof Map) {
+      return mapBytes((Map<?, ?>) container);
+    }
+    if (container instanceof Collection) {
+      return collectionBytes((Collection<?>) container);
+    }
+    return 0;
+  }
+
+  private static long mapBytes(Map<?, ?> map) {
+    int size = map.size();
+    if (map instanceof LinkedHashMap) {
+      return align(OBJECT_HEADER + 8L * REFERENCE) + hashTableBytes(size) + size * 40L;
+    }
+    if (map instanceof HashMap || map instanceof ConcurrentHashMap) {
+      return align(OBJECT_HEADER + 6L * REFERENCE) + hashTableBytes(size) + size * 32L;
+    }
+    return size == 0 ? 0 : (align(OBJECT_HEADER + 2L * REFERENCE) + hashTableBytes(size) + size * 32L);
+  }
+
+  private static long collectionBytes(Collection<?> collection) {
+    int size = collection.size();
+    if (collection instanceof ArrayList) {
+      // the default capacity is allocated on the first addition
+      return align(OBJECT_HEADER + 2L * REFERENCE) + arrayBytes(size == 0 ? 0 : Math.max(size, 10), REFERENCE);
+    }
+    if (collection instanceof LinkedHashSet) {
+      return align(OBJECT_HEADER + REFERENCE) + align(OBJECT_HEADER + 8L * REFERENCE) + hashTableBytes(size) + size * 40L;
+    }
+    if (collection instanceof HashSet) {
+      return align(OBJECT_HEADER + REFERENCE) + align(OBJECT_HEADER + 6L * REFERENCE) + hashTableBytes(size) + size * 32L;
+    }
+    if (size == 0) {
+      return 0;
+    }
+    if (collection instanceof Set) {
+      return align(OBJECT_HEADER + REFERENCE) + hashTableBytes(size) + size * 32L;
+    }
+    return align(OBJECT_HEADER + 2L * REFERENCE) + arrayBytes(size, REFERENCE);
+  }
+
+  static long shallowSize(Class<?> type) {
+    return layout(type).shallowSize;
+  }
+
+  private static ClassLayout layout(Class<?> type) {
+    return LAYOUTS.computeIfAbsent(type, ClassLayout::new);
+  }
+
+  private static int primitiveSize(Class<?> type) {
+    if (type == long.class || type == double.class) {
+      return 8;
+    }
+    if (type == int.class || type == float.class) {
+      return 4;
+    }
+    if (type == short.class || type == char.class) {
+      return 2;
+    }
+    return 1;
+  }
+
+  private static long align(long size) {
+    return (size + 7) & ~7L;
+  }
+
+  /**
+   * Shallow size of the instances of a class, and its fields which may reference collections, arrays, strings or types.
+   */
+  private static class ClassLayout {
+    private final long shallowSize;
+    private final List<Field> referencedFields = new ArrayList<>();
+
+    private ClassLayout(Class<?> type) {
+      long size = OBJECT_HEADER;
+      for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+        for (Field field : current.getDeclaredFields()) {
+          if (Modifier.isStatic(field.getModifiers())) {
+            continue;
+          }
+          Class<?> fieldType = field.getType();
+          size += fieldType.isPrimitive() ? primitiveSize(fieldType) : REFERENCE;
+          if (isContainer(fieldType) && field.getDeclaringClass().getName().startsWith("org.sonar.python")) {
+            field.setAccessible(true);
+            referencedFields.add(field);
+          }
+        }
+      }
+      shallowSize = align(size);
+    }
+
+    private static boolean isContainer(Class<?> fieldType) {
+      return fieldType.isArray() || Collection.class.isAssignableFrom(fieldType) || Map.class.isAssignableFrom(fieldType)
+        || fieldType == String.class || InferredType.class.isAssignableFrom(fieldType);
+    }
+  }
+}
@@ -19,11 +19,13 @@
  */
 package org.sonar.python.semantic;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.sonar.plugins.python.api.symbols.Symbol;
@@ -34,13 +36,21 @@ import org.sonar.plugins.python.api.types.InferredType;
 import org.sonar.python.tree.NameImpl;
 import org.sonar.python.types.InferredTypes;
 
+/**
+ * Most symbols are local variables with a few usages and no children: usages are stored in an array grown on demand, and
+ * the map of children is only allocated for the first child.
+ */
 public class SymbolImpl implements Symbol {
 
+  private static final Usage[] NO_USAGES = new Usage[0];
+
   private final String name;
   @Nullable
   String fullyQualifiedName;
-  private final List<Usage> usages = new ArrayList<>();
-  private Map<String, Symbol> childrenSymbolByName = new HashMap<>();
+  private Usage[] usages = NO_USAGES;
+  private int usagesCount = 0;
+  // null as long as the symbol has no children
+  private Map<String, Symbol> childrenSymbolByName = null;
   private Kind kind;
   private InferredType inferredType = InferredTypes.anyType();
 
@@ -57,7 +67,7 @@ public class SymbolImpl implements Symbol {
 
   @Override
   public List<Usage> usages() {
-    return Collections.unmodifiableList(usages);
+    return new UsageList();
   }
 
   @CheckForNull
@@ -88,7 +98,10 @@ public class SymbolImpl implements Symbol {
 
   void addUsage(Tree tree, Usage.Kind kind) {
     UsageImpl usage = new UsageImpl(tree, kind);
-    usages.add(usage);
+    if (usagesCount == usages.length) {
+      usages = Arrays.copyOf(usages, usagesCount == 0 ? 1 : (usagesCount * 2));
+    }
+    usages[usagesCount++] = usage;
     if (tree.is(Tree.Kind.NAME)) {
       ((NameImpl) tree).setSymbol(this);
       ((NameImpl) tree).setUsage(usage);
@@ -97,18 +110,21 @@ public class SymbolImpl implements Symbol {
 
   void addOrCreateChildUsage(Name name, Usage.Kind kind) {
     String childSymbolName = name.name();
-    if (!childrenSymbolByName.containsKey(childSymbolName)) {
+    Symbol symbol = childrenSymbolByName == null ? null : childrenSymbolByName.get(childSymbolName);
+    if (symbol == null) {
       String childFullyQualifiedName = fullyQualifiedName != null
         ? (fullyQualifiedName + "." + childSymbolName)
         : null;
-      SymbolImpl symbol = new SymbolImpl(childSymbolName, childFullyQualifiedName);
-      childrenSymbolByName.put(childSymbolName, symbol);
+      symbol = new SymbolImpl(childSymbolName, childFullyQualifiedName);
+      addChildSymbol(symbol);
     }
-    Symbol symbol = childrenSymbolByName.get(childSymbolName);
     ((SymbolImpl) symbol).addUsage(name, kind);
   }
 
   void addChildSymbol(Symbol symbol) {
+    if (childrenSymbolByName == null) {
+      childrenSymbolByName = new HashMap<>();
+    }
     childrenSymbolByName.put(symbol.name(), symbol);
   }
 
@@ -125,11 +141,33 @@ public class SymbolImpl implements Symbol {
   }
 
   public void removeUsages() {
-    usages.clear();
-    childrenSymbolByName.values().forEach(symbol -> ((SymbolImpl) symbol).removeUsages());
+    usages = NO_USAGES;
+    usagesCount = 0;
+    if (childrenSymbolByName != null) {
+      childrenSymbolByName.values().forEach(symbol -> ((SymbolImpl) symbol).removeUsages());
+    }
   }
 
   Map<String, Symbol> getChildrenSymbolByName() {
-    return Collections.unmodifiableMap(childrenSymbolByName);
+    return childrenSymbolByName == null ? Collections.emptyMap() : Collections.unmodifiableMap(childrenSymbolByName);
+  }
+
+  /**
+   * Read-only view of the usages of the symbol, which reflects the usages added or removed afterwards.
+   */
+  private class UsageList extends AbstractList<Usage> implements RandomAccess {
+
+    @Override
+    public Usage get(int index) {
+      if (index >= usagesCount) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + usagesCount);
+      }
+      return usages[index];
+    }
+
+    @Override
+    public int size() {
+      return usagesCount;
+    }
   }
 }
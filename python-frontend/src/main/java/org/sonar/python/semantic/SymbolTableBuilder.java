@@ -47,7 +47,6 @@ import org.sonar.plugins.python.api.tree.AnnotatedAssignment;
 import org.sonar.plugins.python.api.tree.AnyParameter;
 import org.sonar.plugins.python.api.tree.AssignmentExpression;
 import org.sonar.plugins.python.api.tree.AssignmentStatement;
-import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
 import org.sonar.plugins.python.api.tree.ClassDef;
 import org.sonar.plugins.python.api.tree.CompoundAssignmentStatement;
 import org.sonar.plugins.python.api.tree.ComprehensionExpression;
@@ -71,19 +70,21 @@ import org.sonar.plugins.python.api.tree.Parameter;
 import org.sonar.plugins.python.api.tree.ParameterList;
 import org.sonar.plugins.python.api.tree.QualifiedExpression;
 import org.sonar.plugins.python.api.tree.Token;
-import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.Tree.Kind;
+import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.TupleParameter;
 import org.sonar.plugins.python.api.tree.WithItem;
 import org.sonar.python.tree.ClassDefImpl;
 import org.sonar.python.tree.ComprehensionExpressionImpl;
+import org.sonar.python.tree.DeepTreeVisitor;
 import org.sonar.python.tree.DictCompExpressionImpl;
 import org.sonar.python.tree.FileInputImpl;
 import org.sonar.python.tree.FunctionDefImpl;
 import org.sonar.python.tree.ImportFromImpl;
 import org.sonar.python.tree.LambdaExpressionImpl;
+import org.sonar.python.tree.NameImpl;
 import org.sonar.python.tree.TreeUtils;
-import org.sonar.python.types.TypeInference;
+import org.sonar.python.types.OnDemandTypeInference;
 import org.sonar.python.types.TypeShed;
 
 import static org.sonar.python.semantic.SymbolUtils.boundNamesFromExpression;
@@ -91,7 +92,7 @@ import static org.sonar.python.semantic.SymbolUtils.isTypeShedFile;
 import static org.sonar.python.semantic.SymbolUtils.resolveTypeHierarchy;
 
 // SymbolTable based on https://docs.python.org/3/reference/executionmodel.html#naming-and-binding
-public class SymbolTableBuilder extends BaseTreeVisitor {
+public class SymbolTableBuilder extends DeepTreeVisitor {
   private String fullyQualifiedModuleName;
   private List<String> filePath;
   private Map<String, Set<Symbol>> globalSymbolsByModuleName;
@@ -142,8 +143,20 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
     addSymbolsToTree((FileInputImpl) fileInput);
     fileInput.accept(new ThirdPhaseVisitor());
     if (!isTypeShedFile(pythonFile)) {
-      TypeInference.inferTypes(fileInput);
+      OnDemandTypeInference.enable(fileInput);
+    }
+  }
+
+  /**
+   * Type inference resolves the symbols of member names once the symbol table is built: until then, they are read without
+   * looking for it, which would walk up to the root of the file for each member name of a chain.
+   */
+  @CheckForNull
+  private static Symbol symbolWithoutTypeInference(Tree tree) {
+    if (tree.is(Kind.QUALIFIED_EXPR)) {
+      return ((NameImpl) ((QualifiedExpression) tree).name()).symbolWithoutTypeInference();
     }
+    return TreeUtils.getSymbolFromTree(tree).orElse(null);
   }
 
   private static class SymbolToUpdate {
@@ -247,7 +260,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
     return members;
   }
 
-  private class ScopeVisitor extends BaseTreeVisitor {
+  private class ScopeVisitor extends DeepTreeVisitor {
 
     private Deque<Tree> scopeRootTrees = new LinkedList<>();
     protected Scope moduleScope;
@@ -631,7 +644,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
       // We need to firstly create symbol for qualifier
       super.visitQualifiedExpression(qualifiedExpression);
       if (qualifiedExpression.qualifier() instanceof HasSymbol) {
-        Symbol qualifierSymbol = ((HasSymbol) qualifiedExpression.qualifier()).symbol();
+        Symbol qualifierSymbol = symbolWithoutTypeInference(qualifiedExpression.qualifier());
         if (qualifierSymbol != null) {
           Usage.Kind usageKind = assignmentLeftHandSides.contains(qualifiedExpression) ? Usage.Kind.ASSIGNMENT_LHS : Usage.Kind.OTHER;
           ((SymbolImpl) qualifierSymbol).addOrCreateChildUsage(qualifiedExpression.name(), usageKind);
@@ -658,14 +671,14 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
     private void addSymbolUsage(Name nameTree) {
       Scope scope = scopesByRootTree.get(currentScopeRootTree());
       SymbolImpl symbol = scope.resolve(nameTree.name());
-      // TODO: use Set to improve performances
-      if (symbol != null && symbol.usages().stream().noneMatch(usage -> usage.tree().equals(nameTree))) {
+      // a name without usage is not a usage of any symbol: the usages of the symbol are only searched otherwise
+      if (symbol != null && (nameTree.usage() == null || symbol.usages().stream().noneMatch(usage -> usage.tree().equals(nameTree)))) {
         symbol.addUsage(nameTree, Usage.Kind.OTHER);
       }
     }
   }
 
-  private class ThirdPhaseVisitor extends BaseTreeVisitor {
+  private class ThirdPhaseVisitor extends DeepTreeVisitor {
 
     @Override
     public void visitFunctionDef(FunctionDef functionDef) {
@@ -689,7 +702,7 @@ public class SymbolTableBuilder extends BaseTreeVisitor {
     @Override
     public void visitQualifiedExpression(QualifiedExpression qualifiedExpression) {
       super.visitQualifiedExpression(qualifiedExpression);
-      TreeUtils.getSymbolFromTree(qualifiedExpression.qualifier())
+      Optional.ofNullable(symbolWithoutTypeInference(qualifiedExpression.qualifier()))
         .filter(symbol -> symbol.kind() == Symbol.Kind.CLASS)
         .map(ClassSymbol.class::cast)
         .flatMap(classSymbol -> classSymbol.resolveMember(qualifiedExpression.name().name()))
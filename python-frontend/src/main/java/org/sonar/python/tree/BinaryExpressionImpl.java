@@ -19,8 +19,10 @@
  */
 package org.sonar.python.tree;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -114,25 +116,44 @@ public class BinaryExpressionImpl extends PyTree implements BinaryExpression, Ha
 
   @Override
   public InferredType type() {
+    if (!hasTypedOperands()) {
+      return InferredTypes.anyType();
+    }
+    // long chains such as "a + b + c + ..." are left-nested: their types are folded from the innermost operation
+    // to avoid one level of recursion per operation
+    Deque<BinaryExpressionImpl> chain = new ArrayDeque<>();
+    Expression innermost = this;
+    while (innermost instanceof BinaryExpressionImpl && ((BinaryExpressionImpl) innermost).hasTypedOperands()) {
+      chain.push((BinaryExpressionImpl) innermost);
+      innermost = ((BinaryExpressionImpl) innermost).leftOperand;
+    }
+    InferredType type = innermost.type();
+    for (BinaryExpressionImpl binaryExpression : chain) {
+      type = binaryExpression.type(type, binaryExpression.rightOperand.type());
+    }
+    return type;
+  }
+
+  private boolean hasTypedOperands() {
+    return is(Kind.AND, Kind.OR, Kind.PLUS);
+  }
+
+  private InferredType type(InferredType leftType, InferredType rightType) {
     if (is(Kind.AND, Kind.OR)) {
-      return InferredTypes.or(leftOperand.type(), rightOperand.type());
+      return InferredTypes.or(leftType, rightType);
+    }
+    if (leftType.equals(INT) && rightType.equals(INT)) {
+      return INT;
     }
-    if (is(Kind.PLUS)) {
-      InferredType leftType = leftOperand.type();
-      InferredType rightType = rightOperand.type();
-      if (leftType.equals(INT) && rightType.equals(INT)) {
-        return INT;
-      }
-      if (leftType.equals(STR) && rightType.equals(STR)) {
-        return STR;
-      }
+    if (leftType.equals(STR) && rightType.equals(STR)) {
+      return STR;
     }
     return InferredTypes.anyType();
   }
 
   @Override
   public List<Expression> typeDependencies() {
-    if (is(Kind.AND, Kind.OR, Kind.PLUS)) {
+    if (hasTypedOperands()) {
       return Arrays.asList(leftOperand, rightOperand);
     }
     return Collections.emptyList();
@@ -149,6 +149,12 @@ public class ClassDefImpl extends PyTree implements ClassDef {
     instanceFields.add(field);
   }
 
+  @Override
+  void clearSemantic() {
+    classFields.clear();
+    instanceFields.clear();
+  }
+
   @Override
   public List<Tree> computeChildren() {
     return Stream.of(decorators, Arrays.asList(classKeyword, name, leftPar, args, rightPar, colon, newLine, indent, body, dedent))
@@ -88,6 +88,11 @@ public class ComprehensionExpressionImpl extends PyTree implements Comprehension
     symbols.add(symbol);
   }
 
+  @Override
+  void clearSemantic() {
+    symbols = new HashSet<>();
+  }
+
   @Override
   public InferredType type() {
     switch (kind) {
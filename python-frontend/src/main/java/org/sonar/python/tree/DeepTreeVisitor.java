@@ -0,0 +1,139 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
+import org.sonar.plugins.python.api.tree.BinaryExpression;
+import org.sonar.plugins.python.api.tree.CallExpression;
+import org.sonar.plugins.python.api.tree.QualifiedExpression;
+import org.sonar.plugins.python.api.tree.SliceExpression;
+import org.sonar.plugins.python.api.tree.SubscriptionExpression;
+import org.sonar.plugins.python.api.tree.Tree;
+
+/**
+ * {@link BaseTreeVisitor} for the symbol table and the type inference, which are computed for every file before the checks.
+ * <p>
+ * Chains of binary operators, member accesses, calls and subscriptions give trees as deep as the chains are long, e.g.
+ * "x + x + ... + x" or "x.a(1)[b].a(1)[b]...". When such a chain is deeper than {@value #MAX_RECURSIVE_CHAIN_DEPTH}, it
+ * is visited with an explicit stack rather than recursively: its innermost operand is visited first, then each node of
+ * the chain from the innermost one, its own operand being skipped as already visited. The visit methods overridden for
+ * those nodes are still called once per node, and what they do after visiting the children of the node happens in the
+ * same order as for a recursive visit; what they do before happens after the operand of the node has been visited.
+ * <p>
+ * The depth of a chain is then only limited by the heap. Other nested trees, e.g. nested parentheses or arguments, are
+ * still visited recursively, as by {@link BaseTreeVisitor}.
+ */
+public class DeepTreeVisitor extends BaseTreeVisitor {
+
+  private static final int MAX_RECURSIVE_CHAIN_DEPTH = 100;
+
+  // operands of chain nodes visited before the nodes themselves, see scanChainOperand
+  private Set<Tree> visitedChainOperands = null;
+
+  @Override
+  public void visitQualifiedExpression(QualifiedExpression pyQualifiedExpressionTree) {
+    scanChainOperand(pyQualifiedExpressionTree.qualifier());
+    scan(pyQualifiedExpressionTree.name());
+  }
+
+  @Override
+  public void visitCallExpression(CallExpression pyCallExpressionTree) {
+    scanChainOperand(pyCallExpressionTree.callee());
+    scan(pyCallExpressionTree.argumentList());
+  }
+
+  @Override
+  public void visitBinaryExpression(BinaryExpression pyBinaryExpressionTree) {
+    scanChainOperand(pyBinaryExpressionTree.leftOperand());
+    scan(pyBinaryExpressionTree.rightOperand());
+  }
+
+  @Override
+  public void visitSliceExpression(SliceExpression pySliceExpressionTree) {
+    scanChainOperand(pySliceExpressionTree.object());
+    scan(pySliceExpressionTree.sliceList());
+  }
+
+  @Override
+  public void visitSubscriptionExpression(SubscriptionExpression pySubscriptionExpressionTree) {
+    scanChainOperand(pySubscriptionExpressionTree.object());
+    scan(pySubscriptionExpressionTree.subscripts());
+  }
+
+  /**
+   * Visits the operand of a chain node: its left operand, qualifier, callee or subscripted object.
+   */
+  private void scanChainOperand(Tree operand) {
+    if (visitedChainOperands != null && visitedChainOperands.remove(operand)) {
+      return;
+    }
+    int depth = 0;
+    for (Tree tree = operand; depth <= MAX_RECURSIVE_CHAIN_DEPTH && chainOperand(tree) != null; tree = chainOperand(tree)) {
+      depth++;
+    }
+    if (depth <= MAX_RECURSIVE_CHAIN_DEPTH) {
+      scan(operand);
+      return;
+    }
+    List<Tree> chain = new ArrayList<>();
+    Tree innermost = operand;
+    while (chainOperand(innermost) != null) {
+      chain.add(innermost);
+      innermost = chainOperand(innermost);
+    }
+    if (visitedChainOperands == null) {
+      visitedChainOperands = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+    scan(innermost);
+    for (int i = chain.size() - 1; i >= 0; i--) {
+      Tree node = chain.get(i);
+      Tree nodeOperand = chainOperand(node);
+      visitedChainOperands.add(nodeOperand);
+      scan(node);
+      // the overridden visit method of the node may not visit its operand
+      visitedChainOperands.remove(nodeOperand);
+    }
+  }
+
+  @Nullable
+  private static Tree chainOperand(Tree tree) {
+    if (tree instanceof BinaryExpression) {
+      return ((BinaryExpression) tree).leftOperand();
+    }
+    switch (tree.getKind()) {
+      case QUALIFIED_EXPR:
+        return ((QualifiedExpression) tree).qualifier();
+      case CALL_EXPR:
+        return ((CallExpression) tree).callee();
+      case SUBSCRIPTION:
+        return ((SubscriptionExpression) tree).object();
+      case SLICE_EXPR:
+        return ((SliceExpression) tree).object();
+      default:
+        return null;
+    }
+  }
+}
@@ -99,6 +99,11 @@ public class DictCompExpressionImpl extends PyTree implements DictCompExpression
     symbols.add(symbol);
   }
 
+  @Override
+  void clearSemantic() {
+    symbols = new HashSet<>();
+  }
+
   @Override
   public InferredType type() {
     return InferredTypes.DICT;
@@ -34,6 +34,7 @@ import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.tree.TreeVisitor;
 import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.python.types.OnDemandTypeInference;
 
 public class FileInputImpl extends PyTree implements FileInput {
 
@@ -41,6 +42,7 @@ public class FileInputImpl extends PyTree implements FileInput {
   private final Token endOfFile;
   private final StringLiteral docstring;
   private final Set<Symbol> globalVariables = new HashSet<>();
+  private OnDemandTypeInference typeInference = null;
 
   public FileInputImpl(@Nullable StatementList statements, Token endOfFile, @Nullable StringLiteral docstring) {
     this.statements = statements;
@@ -74,6 +76,15 @@ public class FileInputImpl extends PyTree implements FileInput {
     globalVariables.add(globalVariable);
   }
 
+  @CheckForNull
+  public OnDemandTypeInference typeInference() {
+    return typeInference;
+  }
+
+  public void setTypeInference(OnDemandTypeInference typeInference) {
+    this.typeInference = typeInference;
+  }
+
   @Override
   public void accept(TreeVisitor visitor) {
     visitor.visitFileInput(this);
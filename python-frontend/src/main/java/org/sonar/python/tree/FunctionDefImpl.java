@@ -176,6 +176,12 @@ public class FunctionDefImpl extends PyTree implements FunctionDef {
     this.functionSymbol = functionSymbol;
   }
 
+  @Override
+  void clearSemantic() {
+    symbols = new HashSet<>();
+    functionSymbol = null;
+  }
+
   @CheckForNull
   public FunctionSymbol functionSymbol() {
     return functionSymbol;
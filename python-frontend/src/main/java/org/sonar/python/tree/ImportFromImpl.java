@@ -104,6 +104,11 @@ public class ImportFromImpl extends SimpleStatement implements ImportFrom {
     this.hasUnresolvedWildcardImport = hasUnresolvedWildcardImport;
   }
 
+  @Override
+  void clearSemantic() {
+    hasUnresolvedWildcardImport = false;
+  }
+
   @CheckForNull
   @Override
   public Token separator() {
@@ -84,6 +84,11 @@ public class LambdaExpressionImpl extends PyTree implements LambdaExpression {
     symbols.add(symbol);
   }
 
+  @Override
+  void clearSemantic() {
+    symbols = new HashSet<>();
+  }
+
   @Override
   public Kind getKind() {
     return Kind.LAMBDA;
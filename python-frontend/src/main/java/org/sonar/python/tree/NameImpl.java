@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.List;
 import javax.annotation.CheckForNull;
 import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.QualifiedExpression;
 import org.sonar.plugins.python.api.tree.RegularArgument;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
@@ -32,6 +33,7 @@ import org.sonar.plugins.python.api.symbols.Usage;
 import org.sonar.plugins.python.api.types.InferredType;
 import org.sonar.python.semantic.SymbolImpl;
 import org.sonar.python.types.InferredTypes;
+import org.sonar.python.types.OnDemandTypeInference;
 
 public class NameImpl extends PyTree implements Name {
   private final Token token;
@@ -39,6 +41,7 @@ public class NameImpl extends PyTree implements Name {
   private final boolean isVariable;
   private Symbol symbol;
   private Usage usage;
+  private boolean typesInferred = false;
 
   public NameImpl(Token token, boolean isVariable) {
     this.token = token;
@@ -78,6 +81,10 @@ public class NameImpl extends PyTree implements Name {
   @CheckForNull
   @Override
   public Symbol symbol() {
+    if (!typesInferred && isMemberName()) {
+      // symbols of member names are resolved by type inference
+      inferTypes();
+    }
     return symbol;
   }
 
@@ -87,6 +94,21 @@ public class NameImpl extends PyTree implements Name {
     return usage;
   }
 
+  /**
+   * Returns the symbol of the name, without resolving the symbol of a member name by type inference.
+   */
+  @CheckForNull
+  public Symbol symbolWithoutTypeInference() {
+    return symbol;
+  }
+
+  /**
+   * Marks the name as belonging to a unit of type inference which is already inferred, or being inferred.
+   */
+  public void setTypesInferred() {
+    typesInferred = true;
+  }
+
   public void setSymbol(Symbol symbol) {
     this.symbol = symbol;
   }
@@ -95,11 +117,30 @@ public class NameImpl extends PyTree implements Name {
     this.usage = usage;
   }
 
+  @Override
+  void clearSemantic() {
+    symbol = null;
+    usage = null;
+    typesInferred = false;
+  }
+
   @Override
   public InferredType type() {
+    inferTypes();
     if (symbol == null) {
       return InferredTypes.anyType();
     }
     return ((SymbolImpl) symbol).inferredType();
   }
+
+  private boolean isMemberName() {
+    Tree parent = parent();
+    return parent != null && parent.is(Kind.QUALIFIED_EXPR) && ((QualifiedExpression) parent).name() == this;
+  }
+
+  private void inferTypes() {
+    if (!typesInferred) {
+      typesInferred = OnDemandTypeInference.ensureTypesInferred(this);
+    }
+  }
 }
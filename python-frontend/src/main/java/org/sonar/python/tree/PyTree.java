@@ -19,6 +19,8 @@
  */
 package org.sonar.python.tree;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.List;
 import org.sonar.plugins.python.api.tree.Token;
 import org.sonar.plugins.python.api.tree.Tree;
@@ -46,6 +48,11 @@ public abstract class PyTree implements Tree {
   @Override
   public Token firstToken() {
     if (firstToken == null) {
+      // first tokens of the leftmost descendants are computed bottom-up to avoid a recursion as deep as the tree
+      Deque<PyTree> descendants = descendantsWithoutToken(this, true);
+      while (!descendants.isEmpty()) {
+        descendants.pop().firstToken();
+      }
       List<Tree> children = children();
       if (children.isEmpty()) {
         this.firstToken = null;
@@ -60,6 +67,10 @@ public abstract class PyTree implements Tree {
   @Override
   public Token lastToken() {
     if (lastToken == null) {
+      Deque<PyTree> descendants = descendantsWithoutToken(this, false);
+      while (!descendants.isEmpty()) {
+        descendants.pop().lastToken();
+      }
       List<Tree> children = children();
       if (children.isEmpty()) {
         this.firstToken = null;
@@ -71,6 +82,25 @@ public abstract class PyTree implements Tree {
     return lastToken;
   }
 
+  /**
+   * Returns the leftmost (or rightmost) descendants whose first (or last) token is not computed yet, the deepest one on top.
+   */
+  private static Deque<PyTree> descendantsWithoutToken(PyTree tree, boolean first) {
+    Deque<PyTree> descendants = new ArrayDeque<>();
+    PyTree current = tree;
+    while (true) {
+      List<Tree> children = current.children();
+      if (children.isEmpty()) {
+        return descendants;
+      }
+      Tree child = children.get(first ? 0 : (children.size() - 1));
+      if (!(child instanceof PyTree) || child.is(Kind.TOKEN) || (first ? ((PyTree) child).firstToken : ((PyTree) child).lastToken) != null) {
+        return descendants;
+      }
+      current = (PyTree) child;
+      descendants.push(current);
+    }
+  }
 
   @Override
   public Tree parent() {
@@ -81,6 +111,13 @@ public abstract class PyTree implements Tree {
     this.parent = parent;
   }
 
+  /**
+   * Discards the semantic information attached to this node by a previous analysis.
+   */
+  void clearSemantic() {
+    // no semantic information by default
+  }
+
   abstract List<Tree> computeChildren();
 
   public List<Tree> children() {
@@ -22,8 +22,10 @@ package org.sonar.python.tree;
 import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.GenericTokenType;
 import com.sonar.sslr.api.RecognitionException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -86,6 +88,7 @@ import org.sonar.plugins.python.api.tree.WithItem;
 import org.sonar.plugins.python.api.tree.WithStatement;
 import org.sonar.plugins.python.api.tree.YieldExpression;
 import org.sonar.plugins.python.api.tree.YieldStatement;
+import org.sonar.python.AnalysisCancellation;
 import org.sonar.python.DocstringExtractor;
 import org.sonar.python.api.PythonGrammar;
 import org.sonar.python.api.PythonKeyword;
@@ -95,7 +98,8 @@ import org.sonar.python.parser.FStringParser;
 
 public class PythonTreeMaker {
 
-  private static final FStringParser F_STRING_PARSER = new FStringParser();
+  // created on the first f-string: its parser builds a grammar
+  private FStringParser fStringParser = null;
 
 
   public FileInput fileInput(AstNode astNode) {
@@ -119,15 +123,21 @@ public class PythonTreeMaker {
   }
 
   public void setParents(Tree root) {
-    for (Tree child : root.children()) {
-      if (child != null) {
-        ((PyTree) child).setParent(root);
-        setParents(child);
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      Tree tree = stack.pop();
+      for (Tree child : tree.children()) {
+        if (child != null) {
+          ((PyTree) child).setParent(tree);
+          stack.push(child);
+        }
       }
     }
   }
 
   private Statement statement(StatementWithSeparator statementWithSeparator) {
+    AnalysisCancellation.current().check();
     AstNode astNode = statementWithSeparator.statement();
     if (astNode.is(PythonGrammar.IF_STMT)) {
       return ifStatement(astNode);
@@ -1138,7 +1148,7 @@ public class PythonTreeMaker {
    * Post Condition on Generator Expression: parentheses can be omitted on calls with only one argument.
    * https://docs.python.org/3/reference/expressions.html#grammar-token-generator-expression
    */
-  private static void checkGeneratorExpressionInArgument(List<Argument> arguments) {
+  static void checkGeneratorExpressionInArgument(List<Argument> arguments) {
     List<Argument> nonParenthesizedGeneratorExpressions = arguments.stream()
       .filter(arg -> arg.is(Tree.Kind.REGULAR_ARGUMENT))
       .map(RegularArgument.class::cast)
@@ -1274,21 +1284,27 @@ public class PythonTreeMaker {
   private Expression stringLiteral(AstNode astNode) {
     List<StringElement> elements = new ArrayList<>();
     for (AstNode elementNode : astNode.getChildren(PythonTokenType.STRING)) {
-      com.sonar.sslr.api.Token token = elementNode.getToken();
-      StringElementImpl element = new StringElementImpl(toPyToken(token));
-      if (element.isInterpolated()) {
-        for (AstNode expressionNode : F_STRING_PARSER.fStringExpressions(token)) {
-          Expression exp = expression(expressionNode.getFirstChild(PythonGrammar.EXPR));
-          AstNode equalNode = expressionNode.getFirstChild(PythonPunctuator.ASSIGN);
-          Token equalToken = equalNode == null ? null : toPyToken(equalNode.getToken());
-          element.addFormattedExpression(new FormattedExpressionImpl(exp, equalToken));
-        }
-      }
-      elements.add(element);
+      elements.add(stringElement(elementNode.getToken()));
     }
     return new StringLiteralImpl(elements);
   }
 
+  StringElement stringElement(com.sonar.sslr.api.Token token) {
+    StringElementImpl element = new StringElementImpl(toPyToken(token));
+    if (element.isInterpolated()) {
+      if (fStringParser == null) {
+        fStringParser = new FStringParser();
+      }
+      for (AstNode expressionNode : fStringParser.fStringExpressions(token)) {
+        Expression exp = expression(expressionNode.getFirstChild(PythonGrammar.TEST));
+        AstNode equalNode = expressionNode.getFirstChild(PythonPunctuator.ASSIGN);
+        Token equalToken = equalNode == null ? null : toPyToken(equalNode.getToken());
+        element.addFormattedExpression(new FormattedExpressionImpl(exp, equalToken));
+      }
+    }
+    return element;
+  }
+
   private static Token suiteIndent(AstNode suite) {
     return suite.getFirstChild(PythonTokenType.INDENT) == null ? null : toPyToken(suite.getFirstChild(PythonTokenType.INDENT).getToken());
   }
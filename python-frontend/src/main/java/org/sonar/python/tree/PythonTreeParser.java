@@ -0,0 +1,2251 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import com.sonar.sslr.api.AstNode;
+import com.sonar.sslr.api.GenericTokenType;
+import com.sonar.sslr.api.RecognitionException;
+import com.sonar.sslr.api.TokenType;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.plugins.python.api.tree.AliasedName;
+import org.sonar.plugins.python.api.tree.AnyParameter;
+import org.sonar.plugins.python.api.tree.ArgList;
+import org.sonar.plugins.python.api.tree.Argument;
+import org.sonar.plugins.python.api.tree.AssignmentExpression;
+import org.sonar.plugins.python.api.tree.ClassDef;
+import org.sonar.plugins.python.api.tree.ComprehensionClause;
+import org.sonar.plugins.python.api.tree.ComprehensionFor;
+import org.sonar.plugins.python.api.tree.Decorator;
+import org.sonar.plugins.python.api.tree.DictionaryLiteralElement;
+import org.sonar.plugins.python.api.tree.DottedName;
+import org.sonar.plugins.python.api.tree.ElseClause;
+import org.sonar.plugins.python.api.tree.ExceptClause;
+import org.sonar.plugins.python.api.tree.Expression;
+import org.sonar.plugins.python.api.tree.ExpressionList;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FinallyClause;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.IfStatement;
+import org.sonar.plugins.python.api.tree.KeyValuePair;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Parameter;
+import org.sonar.plugins.python.api.tree.ParameterList;
+import org.sonar.plugins.python.api.tree.Statement;
+import org.sonar.plugins.python.api.tree.StatementList;
+import org.sonar.plugins.python.api.tree.StringElement;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.tree.Trivia;
+import org.sonar.plugins.python.api.tree.TypeAnnotation;
+import org.sonar.plugins.python.api.tree.WithItem;
+import org.sonar.plugins.python.api.tree.YieldExpression;
+import org.sonar.python.AnalysisCancellation;
+import org.sonar.python.AnalysisProfiler;
+import org.sonar.python.DocstringExtractor;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.python.lexer.LexerState;
+import org.sonar.python.lexer.PythonTokenizer;
+import org.sonar.python.parser.PythonParser;
+
+/**
+ * Parses Python source code into the strongly typed tree.
+ * <p>
+ * When direct parsing is enabled (see {@link #DIRECT_PARSER_PROPERTY}), the tokens produced by {@link PythonTokenizer} are consumed
+ * by a recursive descent parser which follows the PEG semantics of {@link org.sonar.python.api.PythonGrammar} rule by rule
+ * (ordered choices, no backtracking into a rule which already matched) and instantiates the tree nodes exactly as
+ * {@link PythonTreeMaker} does, without building the intermediate SSLR AST.
+ * Input which is not accepted that way (syntax errors, or the few constructs the tree maker rejects after parsing) is
+ * handed over to {@link PythonParser} and {@link PythonTreeMaker}, so that results and errors are the same in both modes.
+ */
+public class PythonTreeParser {
+
+  /**
+   * System property enabling direct parsing for parsers built with {@link #create()}.
+   */
+  public static final String DIRECT_PARSER_PROPERTY = "sonar.python.parser.direct";
+
+  private static final Set<String> COMPOUND_STATEMENT_KEYWORDS = set("if", "while", "for", "try", "with", "def", "class", "@");
+  private static final Set<String> AUGMENTED_ASSIGNMENTS = set("+=", "-=", "*=", "/=", "//=", "%=", "**=", ">>=", "<<=", "&=", "^=", "|=", "@=");
+  private static final Set<String> COMPARISON_OPERATORS = set("<", ">", "==", ">=", "<=", "!=", "<>");
+  private static final Set<String> UNARY_OPERATORS = set("+", "-", "~");
+  // operators of EXPR, XOR_EXPR, AND_EXPR, SHIFT_EXPR, A_EXPR and M_EXPR, by increasing precedence
+  private static final List<Set<String>> BINARY_OPERATORS = Arrays.asList(
+    set("|"),
+    set("^"),
+    set("&"),
+    set("<<", ">>"),
+    set("+", "-"),
+    set("*", "//", "/", "%", "@"));
+
+  private final boolean directParsing;
+  private final PythonTreeMaker treeMaker = new PythonTreeMaker();
+  private final LexerState lexerState = new LexerState();
+  private final PythonTokenizer tokenizer = new PythonTokenizer(lexerState);
+  private PythonParser sslrParser;
+
+  // state of the current direct parsing
+  private List<com.sonar.sslr.api.Token> tokens;
+  private int pos;
+  private boolean inClassBody;
+  private AnalysisCancellation cancellation = AnalysisCancellation.current();
+  // OR_TEST matched as the condition of an unfinished conditional expression, by start position: it will be parsed again
+  // as a comprehension condition, and re-parsing it would be exponential in the nesting depth of comprehensions
+  private final Map<Integer, ParsedExpression> orTestMemo = new HashMap<>();
+
+  private PythonTreeParser(boolean directParsing) {
+    this.directParsing = directParsing;
+  }
+
+  public static PythonTreeParser create() {
+    return create(Boolean.getBoolean(DIRECT_PARSER_PROPERTY));
+  }
+
+  public static PythonTreeParser create(boolean directParsing) {
+    return new PythonTreeParser(directParsing);
+  }
+
+  public FileInput parse(String source) {
+    if (directParsing) {
+      FileInput fileInput = parseDirectly(source);
+      if (fileInput != null) {
+        return fileInput;
+      }
+    }
+    if (sslrParser == null) {
+      sslrParser = PythonParser.create();
+    }
+    AstNode astNode = sslrParser.parse(source);
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    profiler.start(AnalysisProfiler.Phase.TREE_MAKING);
+    try {
+      return treeMaker.fileInput(astNode);
+    } finally {
+      profiler.stop();
+    }
+  }
+
+  /**
+   * Parses the given source, obtained by applying the given edit to the source of the previous tree.
+   * <p>
+   * Only the top-level statements touched by the edit are parsed again, the other ones are taken from the previous tree,
+   * which must not be used anymore. Their semantic information is discarded: the symbol table has to be built again for the
+   * returned tree, as module-level symbols are shared by all statements. When the edit adds or removes lines, the tokens of
+   * the following statements are moved to their new lines.
+   * When the edited statements cannot be parsed on their own (for instance when the edit changes the indentation of the
+   * first one, or opens a bracket closed in a following statement), or when direct parsing is disabled, the whole source
+   * is parsed.
+   */
+  public FileInput parse(FileInput previous, String source, TextEdit edit) {
+    StatementList previousStatements = previous.statements();
+    FileInput fileInput = null;
+    if (directParsing && previousStatements != null) {
+      fileInput = reparse(previousStatements.statements(), previous.lastToken(), source, edit);
+    }
+    return fileInput != null ? fileInput : parse(source);
+  }
+
+  @CheckForNull
+  private FileInput reparse(List<Statement> statements, Token endOfFile, String source, TextEdit edit) {
+    int[] startLines = statements.stream().mapToInt(PythonTreeParser::startLine).toArray();
+    int first = firstStatementOnLine(startLines, edit.startLine());
+    if (first > 0 && statements.get(first - 1).lastToken().type() == PythonTokenType.DEDENT) {
+      // the DEDENT tokens ending a block are located on the next non-blank line, which may be edited
+      first--;
+    }
+    int last = lastStatementStartingAtOrBefore(startLines, edit.endLine());
+    int lineDelta = lineBreaks(edit.text()) - (edit.endLine() - edit.startLine());
+    boolean untilEndOfFile = last == statements.size() - 1;
+    if (!untilEndOfFile && statements.get(last + 1).firstToken().column() != 0) {
+      // inconsistent dedent: the tokens closing the region depend on the indentation of the next statement
+      return null;
+    }
+    int regionStartLine = first == 0 ? 1 : startLines[first];
+    int regionEndLine = untilEndOfFile ? Integer.MAX_VALUE : (startLines[last + 1] - 1 + lineDelta);
+    String region = lines(source, regionStartLine, regionEndLine);
+    if (region == null || (!untilEndOfFile && endsWithLineContinuation(region))) {
+      return null;
+    }
+    lexerState.reset();
+    List<com.sonar.sslr.api.Token> regionTokens = PythonParser.closeIndentations(tokenizer.tokenize(region, regionStartLine), lexerState);
+    if (!untilEndOfFile && !moveTrailingTriviaToDedent(regionTokens)) {
+      return null;
+    }
+    FileInput regionInput = parseTokens(regionTokens);
+    if (regionInput == null) {
+      return null;
+    }
+    List<Statement> newStatements = new ArrayList<>(statements.subList(0, first));
+    if (regionInput.statements() != null) {
+      newStatements.addAll(regionInput.statements().statements());
+    }
+    newStatements.addAll(statements.subList(last + 1, statements.size()));
+    statements.subList(0, first).forEach(PythonTreeParser::clearSemantic);
+    statements.subList(last + 1, statements.size()).forEach(PythonTreeParser::clearSemantic);
+    if (lineDelta != 0 && !untilEndOfFile) {
+      shiftLines(statements.subList(last + 1, statements.size()), endOfFile, lineDelta);
+    }
+
+    StatementListImpl statementList = newStatements.isEmpty() ? null : new StatementListImpl(newStatements);
+    Token newEndOfFile = untilEndOfFile ? regionInput.lastToken() : endOfFile;
+    FileInputImpl fileInput = new FileInputImpl(statementList, newEndOfFile, DocstringExtractor.extractDocstring(statementList));
+    if (statementList != null) {
+      newStatements.forEach(statement -> ((PyTree) statement).setParent(statementList));
+      statementList.setParent(fileInput);
+    }
+    ((PyTree) newEndOfFile).setParent(fileInput);
+    return fileInput;
+  }
+
+  /**
+   * First line of the statement, including the comments preceding it.
+   */
+  private static int startLine(Statement statement) {
+    Token firstToken = statement.firstToken();
+    List<Trivia> trivia = firstToken.trivia();
+    return trivia.isEmpty() ? firstToken.line() : Math.min(firstToken.line(), trivia.get(0).token().line());
+  }
+
+  private static int firstStatementOnLine(int[] startLines, int line) {
+    int index = lastStatementStartingAtOrBefore(startLines, line);
+    while (index > 0 && startLines[index - 1] == startLines[index]) {
+      index--;
+    }
+    return index;
+  }
+
+  private static int lastStatementStartingAtOrBefore(int[] startLines, int line) {
+    int index = 0;
+    while (index + 1 < startLines.length && startLines[index + 1] <= line) {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Returns the given lines of the source, with their line breaks, or null if the source has fewer lines.
+   */
+  @CheckForNull
+  private static String lines(String source, int startLine, int endLine) {
+    int start = lineStart(source, 0, 1, startLine);
+    if (start < 0) {
+      return null;
+    }
+    if (endLine == Integer.MAX_VALUE) {
+      return source.substring(start);
+    }
+    int end = lineStart(source, start, startLine, endLine + 1);
+    return end < 0 ? null : source.substring(start, end);
+  }
+
+  private static int lineStart(String source, int fromIndex, int fromLine, int line) {
+    int index = fromIndex;
+    int currentLine = fromLine;
+    int length = source.length();
+    while (currentLine < line) {
+      if (index >= length) {
+        return -1;
+      }
+      char c = source.charAt(index);
+      index++;
+      if (c == '\n' || (c == '\r' && (index >= length || source.charAt(index) != '\n'))) {
+        currentLine++;
+      }
+    }
+    return index;
+  }
+
+  private static int lineBreaks(String text) {
+    int count = 0;
+    int length = text.length();
+    for (int i = 0; i < length; i++) {
+      char c = text.charAt(i);
+      if (c == '\n' || (c == '\r' && (i + 1 >= length || text.charAt(i + 1) != '\n'))) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static boolean endsWithLineContinuation(String region) {
+    int index = region.length() - 1;
+    while (index >= 0 && (region.charAt(index) == '\n' || region.charAt(index) == '\r')) {
+      index--;
+    }
+    return index >= 0 && region.charAt(index) == '\\';
+  }
+
+  /**
+   * Within the whole file, the comments ending a region which is followed by a top-level statement are attached to the
+   * first DEDENT token closing the blocks of the region. Without such DEDENT token, they would be attached to the next statement,
+   * which is not parsed again.
+   */
+  private static boolean moveTrailingTriviaToDedent(List<com.sonar.sslr.api.Token> regionTokens) {
+    int endOfFileIndex = regionTokens.size() - 1;
+    com.sonar.sslr.api.Token endOfFile = regionTokens.get(endOfFileIndex);
+    if (!endOfFile.hasTrivia()) {
+      return true;
+    }
+    int dedentIndex = endOfFileIndex;
+    while (dedentIndex > 0 && regionTokens.get(dedentIndex - 1).getType() == PythonTokenType.DEDENT) {
+      dedentIndex--;
+    }
+    if (dedentIndex == endOfFileIndex) {
+      return false;
+    }
+    regionTokens.set(dedentIndex, com.sonar.sslr.api.Token.builder(regionTokens.get(dedentIndex)).setTrivia(endOfFile.getTrivia()).build());
+    regionTokens.set(endOfFileIndex, com.sonar.sslr.api.Token.builder(endOfFile).setTrivia(Collections.emptyList()).build());
+    return true;
+  }
+
+  /**
+   * Unlike {@link TreeUtils#tokens(Tree)}, the tokens of the formatted expressions of f-strings are moved as well.
+   */
+  private static void shiftLines(List<Statement> followingStatements, Token endOfFile, int lineDelta) {
+    Set<Tree> shifted = Collections.newSetFromMap(new IdentityHashMap<>());
+    Deque<Tree> stack = new ArrayDeque<>(followingStatements);
+    stack.push(endOfFile);
+    while (!stack.isEmpty()) {
+      Tree tree = stack.pop();
+      if (!tree.is(Tree.Kind.TOKEN)) {
+        tree.children().stream().filter(Objects::nonNull).forEach(stack::push);
+      } else if (shifted.add(tree)) {
+        ((TokenImpl) tree).shiftLine(lineDelta);
+      }
+    }
+  }
+
+  private static void clearSemantic(Tree root) {
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(root);
+    while (!stack.isEmpty()) {
+      Tree tree = stack.pop();
+      ((PyTree) tree).clearSemantic();
+      tree.children().stream().filter(Objects::nonNull).forEach(stack::push);
+    }
+  }
+
+  @CheckForNull
+  private FileInput parseDirectly(String source) {
+    lexerState.reset();
+    return parseTokens(PythonParser.closeIndentations(tokenizer.tokenize(source), lexerState));
+  }
+
+  @CheckForNull
+  private FileInput parseTokens(List<com.sonar.sslr.api.Token> tokens) {
+    this.tokens = tokens;
+    pos = 0;
+    inClassBody = false;
+    cancellation = AnalysisCancellation.current();
+    try {
+      return fileInput();
+    } catch (UnsupportedInputException | RecognitionException e) {
+      return null;
+    } finally {
+      this.tokens = null;
+      orTestMemo.clear();
+    }
+  }
+
+  // FILE_INPUT: zeroOrMore(firstOf(NEWLINE, STATEMENT)), EOF
+  @CheckForNull
+  private FileInput fileInput() {
+    List<Statement> statements = new ArrayList<>();
+    while (!atType(GenericTokenType.EOF)) {
+      if (atType(PythonTokenType.NEWLINE)) {
+        pos++;
+      } else if (!statement(statements)) {
+        return null;
+      }
+    }
+    StatementListImpl statementList = statements.isEmpty() ? null : new StatementListImpl(statements);
+    FileInputImpl fileInput = new FileInputImpl(statementList, consume(), DocstringExtractor.extractDocstring(statementList));
+    treeMaker.setParents(fileInput);
+    return fileInput;
+  }
+
+  // Statements
+
+  // STATEMENT: firstOf(sequence(STMT_LIST, firstOf(NEWLINE, next(EOF), next(DEDENT))), COMPOUND_STMT)
+  private boolean statement(List<Statement> statements) {
+    cancellation.check();
+    if (!COMPOUND_STATEMENT_KEYWORDS.contains(value()) && simpleStatements(statements)) {
+      return true;
+    }
+    Statement compoundStatement = compoundStatement();
+    if (compoundStatement == null) {
+      return false;
+    }
+    statements.add(compoundStatement);
+    return true;
+  }
+
+  // STMT_LIST: SIMPLE_STMT, zeroOrMore(";", SIMPLE_STMT), optional(";")
+  // followed by firstOf(NEWLINE, next(EOF), next(DEDENT))
+  private boolean simpleStatements(List<Statement> statements) {
+    int start = pos;
+    Function<Separators, Statement> first = simpleStatement();
+    if (first == null) {
+      return false;
+    }
+    List<Function<Separators, Statement>> simpleStatements = new ArrayList<>();
+    List<Token> semicolons = new ArrayList<>();
+    simpleStatements.add(first);
+    while (at(";")) {
+      int semicolonPosition = pos;
+      pos++;
+      Function<Separators, Statement> next = simpleStatement();
+      if (next == null) {
+        pos = semicolonPosition;
+        break;
+      }
+      semicolons.add(tokenAt(semicolonPosition));
+      simpleStatements.add(next);
+    }
+    semicolons.add(at(";") ? consume() : null);
+    Token newLine = null;
+    if (atType(PythonTokenType.NEWLINE)) {
+      newLine = consume();
+    } else if (!atType(GenericTokenType.EOF) && !atType(PythonTokenType.DEDENT)) {
+      pos = start;
+      return false;
+    }
+    int lastIndex = simpleStatements.size() - 1;
+    for (int i = 0; i <= lastIndex; i++) {
+      statements.add(simpleStatements.get(i).apply(new Separators(semicolons.get(i), i == lastIndex ? newLine : null)));
+    }
+    return true;
+  }
+
+  /**
+   * Simple statements only get their separators once the whole statement list is parsed, hence they are returned as functions of the separators.
+   */
+  @CheckForNull
+  private Function<Separators, Statement> simpleStatement() {
+    switch (value()) {
+      case "print":
+        return at(1, "=") || at(1, "(") ? expressionStatement() : printStatement();
+      case "exec":
+        Function<Separators, Statement> execStatement = at(1, "(") ? null : execStatement();
+        return execStatement != null ? execStatement : expressionStatement();
+      case "assert":
+        return assertStatement();
+      case "pass":
+        Token passKeyword = consume();
+        return separators -> new PassStatementImpl(passKeyword, separators);
+      case "del":
+        return delStatement();
+      case "return":
+        Token returnKeyword = consume();
+        ListWithCommas<Expression> returned = testListStarExpr();
+        List<Expression> returnedExpressions = returned == null ? Collections.emptyList() : returned.elements;
+        return separators -> new ReturnStatementImpl(returnKeyword, returnedExpressions, separators);
+      case "yield":
+        YieldExpression yieldExpression = yieldExpression();
+        return separators -> new YieldStatementImpl(yieldExpression, separators);
+      case "raise":
+        return raiseStatement();
+      case "break":
+        Token breakKeyword = consume();
+        return separators -> new BreakStatementImpl(breakKeyword, separators);
+      case "continue":
+        Token continueKeyword = consume();
+        return separators -> new ContinueStatementImpl(continueKeyword, separators);
+      case "import":
+        return importName();
+      case "from":
+        return importFrom();
+      case "global":
+      case "nonlocal":
+        return globalOrNonlocalStatement();
+      default:
+        return expressionStatement();
+    }
+  }
+
+  // PRINT_STMT: "print", nextNot("="), nextNot("("), firstOf(
+  //   sequence(">>", TEST, optional(oneOrMore(",", TEST), optional(","))),
+  //   optional(TEST, zeroOrMore(",", TEST), optional(",")))
+  private Function<Separators, Statement> printStatement() {
+    Token printKeyword = consume();
+    List<Expression> expressions = new ArrayList<>();
+    if (!printRedirection(expressions)) {
+      Expression first = test();
+      if (first != null) {
+        expressions.add(first);
+        commaSeparatedTests(expressions);
+        skipOptional(",");
+      }
+    }
+    return separators -> new PrintStatementImpl(printKeyword, expressions, separators);
+  }
+
+  private boolean printRedirection(List<Expression> expressions) {
+    if (!at(">>")) {
+      return false;
+    }
+    int start = pos;
+    pos++;
+    Expression destination = test();
+    if (destination == null) {
+      pos = start;
+      return false;
+    }
+    expressions.add(destination);
+    if (commaSeparatedTests(expressions) > 0) {
+      skipOptional(",");
+    }
+    return true;
+  }
+
+  // zeroOrMore(",", TEST), where commas are not part of the tree
+  private int commaSeparatedTests(List<Expression> expressions) {
+    int count = 0;
+    while (at(",")) {
+      int start = pos;
+      pos++;
+      Expression expression = test();
+      if (expression == null) {
+        pos = start;
+        break;
+      }
+      expressions.add(expression);
+      count++;
+    }
+    return count;
+  }
+
+  // EXEC_STMT: "exec", nextNot("("), EXPR, optional("in", TEST, optional(",", TEST))
+  @CheckForNull
+  private Function<Separators, Statement> execStatement() {
+    int start = pos;
+    Token execKeyword = consume();
+    Expression expression = expr();
+    if (expression == null) {
+      pos = start;
+      return null;
+    }
+    TokenAndExpression globals = optionalTest("in");
+    if (globals == null) {
+      return separators -> new ExecStatementImpl(execKeyword, expression, separators);
+    }
+    TokenAndExpression locals = optionalTest(",");
+    Token comma = locals == null ? null : locals.token;
+    Expression localsExpression = locals == null ? null : locals.expression;
+    return separators -> new ExecStatementImpl(execKeyword, expression, globals.token, globals.expression, comma, localsExpression, separators);
+  }
+
+  // ASSERT_STMT: "assert", TEST, optional(",", TEST)
+  @CheckForNull
+  private Function<Separators, Statement> assertStatement() {
+    int start = pos;
+    Token assertKeyword = consume();
+    Expression condition = test();
+    if (condition == null) {
+      pos = start;
+      return null;
+    }
+    TokenAndExpression message = optionalTest(",");
+    Expression messageExpression = message == null ? null : message.expression;
+    return separators -> new AssertStatementImpl(assertKeyword, condition, messageExpression, separators);
+  }
+
+  // DEL_STMT: "del", EXPRLIST
+  @CheckForNull
+  private Function<Separators, Statement> delStatement() {
+    int start = pos;
+    Token delKeyword = consume();
+    ListWithCommas<Expression> expressions = exprList();
+    if (expressions == null) {
+      pos = start;
+      return null;
+    }
+    return separators -> new DelStatementImpl(delKeyword, expressions.elements, separators);
+  }
+
+  // RAISE_STMT: "raise", optional(TEST, optional(firstOf(sequence("from", TEST), sequence(",", TEST, optional(",", TEST)))))
+  private Function<Separators, Statement> raiseStatement() {
+    Token raiseKeyword = consume();
+    List<Expression> expressions = new ArrayList<>();
+    TokenAndExpression from = null;
+    Expression first = test();
+    if (first != null) {
+      expressions.add(first);
+      from = optionalTest("from");
+      TokenAndExpression second = from == null ? optionalTest(",") : null;
+      if (second != null) {
+        expressions.add(second.expression);
+        TokenAndExpression third = optionalTest(",");
+        if (third != null) {
+          expressions.add(third.expression);
+        }
+      }
+    }
+    Token fromKeyword = from == null ? null : from.token;
+    Expression fromExpression = from == null ? null : from.expression;
+    return separators -> new RaiseStatementImpl(raiseKeyword, expressions, fromKeyword, fromExpression, separators);
+  }
+
+  // GLOBAL_STMT: "global", NAME, zeroOrMore(",", NAME)
+  // NONLOCAL_STMT: "nonlocal", NAME, zeroOrMore(",", NAME)
+  @CheckForNull
+  private Function<Separators, Statement> globalOrNonlocalStatement() {
+    int start = pos;
+    Token keyword = consume();
+    ListWithCommas<Name> variables = commaSeparated(this::variable, false);
+    if (variables == null) {
+      pos = start;
+      return null;
+    }
+    if ("global".equals(keyword.value())) {
+      return separators -> new GlobalStatementImpl(keyword, variables.elements, separators);
+    }
+    return separators -> new NonlocalStatementImpl(keyword, variables.elements, separators);
+  }
+
+  // IMPORT_NAME: "import", DOTTED_AS_NAMES
+  @CheckForNull
+  private Function<Separators, Statement> importName() {
+    int start = pos;
+    Token importKeyword = consume();
+    ListWithCommas<AliasedName> aliasedNames = commaSeparated(this::dottedAsName, false);
+    if (aliasedNames == null) {
+      pos = start;
+      return null;
+    }
+    return separators -> new ImportNameImpl(importKeyword, aliasedNames.elements, separators);
+  }
+
+  // IMPORT_FROM: "from", firstOf(sequence(zeroOrMore("."), DOTTED_NAME), oneOrMore(".")), "import",
+  //   firstOf("*", sequence("(", IMPORT_AS_NAMES, ")"), IMPORT_AS_NAMES)
+  @CheckForNull
+  private Function<Separators, Statement> importFrom() {
+    int start = pos;
+    Token fromKeyword = consume();
+    List<Token> dottedPrefix = new ArrayList<>();
+    while (at(".")) {
+      dottedPrefix.add(consume());
+    }
+    DottedName moduleName = dottedName();
+    if ((moduleName == null && dottedPrefix.isEmpty()) || !at("import")) {
+      pos = start;
+      return null;
+    }
+    Token importKeyword = consume();
+    Token wildcard = null;
+    List<AliasedName> aliasedNames = null;
+    if (at("*")) {
+      wildcard = consume();
+    } else {
+      boolean parenthesized = skipOptional("(");
+      ListWithCommas<AliasedName> importAsNames = commaSeparated(this::importAsName, true);
+      if (importAsNames == null || (parenthesized && !skipOptional(")"))) {
+        pos = start;
+        return null;
+      }
+      aliasedNames = importAsNames.elements;
+    }
+    Token wildcardToken = wildcard;
+    List<AliasedName> importedNames = aliasedNames;
+    return separators -> new ImportFromImpl(fromKeyword, dottedPrefix, moduleName, importKeyword, importedNames, wildcardToken, separators);
+  }
+
+  // DOTTED_AS_NAME: DOTTED_NAME, optional("as", NAME)
+  @CheckForNull
+  private AliasedName dottedAsName() {
+    DottedName dottedName = dottedName();
+    return dottedName == null ? null : aliasedName(dottedName);
+  }
+
+  // IMPORT_AS_NAME: NAME, optional("as", NAME)
+  @CheckForNull
+  private AliasedName importAsName() {
+    Name name = name();
+    return name == null ? null : aliasedName(new DottedNameImpl(Collections.singletonList(name)));
+  }
+
+  private AliasedName aliasedName(DottedName dottedName) {
+    if (at("as") && atType(1, GenericTokenType.IDENTIFIER)) {
+      Token asKeyword = consume();
+      return new AliasedNameImpl(asKeyword, dottedName, name());
+    }
+    return new AliasedNameImpl(dottedName);
+  }
+
+  // DOTTED_NAME: NAME, zeroOrMore(".", NAME)
+  @CheckForNull
+  private DottedName dottedName() {
+    Name first = name();
+    if (first == null) {
+      return null;
+    }
+    List<Name> names = new ArrayList<>();
+    names.add(first);
+    while (at(".") && atType(1, GenericTokenType.IDENTIFIER)) {
+      pos++;
+      names.add(name());
+    }
+    return new DottedNameImpl(names);
+  }
+
+  // EXPRESSION_STMT: TESTLIST_STAR_EXPR, firstOf(
+  //   ANNASSIGN,
+  //   sequence(AUGASSIGN, firstOf(YIELD_EXPR, TESTLIST)),
+  //   zeroOrMore("=", firstOf(YIELD_EXPR, TESTLIST_STAR_EXPR)))
+  @CheckForNull
+  private Function<Separators, Statement> expressionStatement() {
+    ListWithCommas<Expression> lhs = testListStarExpr();
+    if (lhs == null) {
+      return null;
+    }
+    if (at(":")) {
+      Function<Separators, Statement> annotatedAssignment = annotatedAssignment(lhs);
+      if (annotatedAssignment != null) {
+        return annotatedAssignment;
+      }
+    } else if (AUGMENTED_ASSIGNMENTS.contains(value())) {
+      int start = pos;
+      Token operator = consume();
+      Expression rhs = at("yield") ? yieldExpression() : testListAsExpression();
+      if (rhs != null) {
+        Expression lhsExpression = expressionOrTuple(lhs);
+        return separators -> new CompoundAssignmentStatementImpl(lhsExpression, operator, rhs, separators);
+      }
+      pos = start;
+    }
+    List<Token> assignTokens = new ArrayList<>();
+    List<ExpressionList> lhsExpressions = new ArrayList<>();
+    ListWithCommas<Expression> previousList = lhs;
+    YieldExpression previousYield = null;
+    while (at("=")) {
+      int start = pos;
+      Token assignToken = consume();
+      YieldExpression yield = null;
+      ListWithCommas<Expression> list = null;
+      if (at("yield")) {
+        yield = yieldExpression();
+      } else {
+        list = testListStarExpr();
+        if (list == null) {
+          pos = start;
+          break;
+        }
+      }
+      assignTokens.add(assignToken);
+      lhsExpressions.add(previousYield != null
+        ? new ExpressionListImpl(Collections.singletonList(previousYield), Collections.emptyList())
+        : new ExpressionListImpl(previousList.elements, previousList.commas));
+      previousYield = yield;
+      previousList = list;
+    }
+    if (assignTokens.isEmpty()) {
+      return separators -> new ExpressionStatementImpl(lhs.elements, separators);
+    }
+    Expression assignedValue = previousYield != null ? previousYield : expressionOrTuple(previousList);
+    return separators -> new AssignmentStatementImpl(assignTokens, lhsExpressions, assignedValue, separators);
+  }
+
+  // ANNASSIGN: ":", TEST, optional("=", TEST)
+  @CheckForNull
+  private Function<Separators, Statement> annotatedAssignment(ListWithCommas<Expression> lhs) {
+    int start = pos;
+    Token colon = consume();
+    Expression annotation = test();
+    if (annotation == null) {
+      pos = start;
+      return null;
+    }
+    TokenAndExpression assigned = optionalTest("=");
+    Expression variable = expressionOrTuple(lhs);
+    TypeAnnotation typeAnnotation = new TypeAnnotationImpl(colon, annotation, Tree.Kind.VARIABLE_TYPE_ANNOTATION);
+    Token equalToken = assigned == null ? null : assigned.token;
+    Expression assignedValue = assigned == null ? null : assigned.expression;
+    return separators -> new AnnotatedAssignmentImpl(variable, typeAnnotation, equalToken, assignedValue, separators);
+  }
+
+  // COMPOUND_STMT: firstOf(IF_STMT, WHILE_STMT, FOR_STMT, TRY_STMT, WITH_STMT, FUNCDEF, CLASSDEF, ASYNC_STMT)
+  @CheckForNull
+  private Statement compoundStatement() {
+    switch (value()) {
+      case "if":
+        return ifStatement();
+      case "while":
+        return whileStatement();
+      case "for":
+        return forStatement(null);
+      case "try":
+        return tryStatement();
+      case "with":
+        return withStatement(null);
+      default:
+        return definitionOrAsyncStatement();
+    }
+  }
+
+  @CheckForNull
+  private Statement definitionOrAsyncStatement() {
+    int start = pos;
+    List<Decorator> decorators = decorators();
+    int afterDecorators = pos;
+    Statement definition = functionDefinition(decorators);
+    if (definition == null) {
+      pos = afterDecorators;
+      definition = classDefinition(decorators);
+    }
+    if (definition != null) {
+      return definition;
+    }
+    pos = start;
+    // ASYNC_STMT: "async", firstOf(WITH_STMT, FOR_STMT)
+    if (!at("async")) {
+      return null;
+    }
+    Token asyncKeyword = consume();
+    Statement asyncStatement = null;
+    if (at("with")) {
+      asyncStatement = withStatement(asyncKeyword);
+    } else if (at("for")) {
+      asyncStatement = forStatement(asyncKeyword);
+    }
+    if (asyncStatement == null) {
+      pos = start;
+    }
+    return asyncStatement;
+  }
+
+  // IF_STMT: "if", NAMED_EXPR_TEST, ":", SUITE, zeroOrMore("elif", NAMED_EXPR_TEST, ":", SUITE), optional("else", ":", SUITE)
+  @CheckForNull
+  private IfStatement ifStatement() {
+    int start = pos;
+    Token ifKeyword = consume();
+    Expression condition = namedExprTest();
+    Token colon = condition == null ? null : consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    List<IfStatement> elifBranches = new ArrayList<>();
+    IfStatement elifBranch;
+    while ((elifBranch = elifBranch()) != null) {
+      elifBranches.add(elifBranch);
+    }
+    return new IfStatementImpl(ifKeyword, condition, colon, suite.newLine, suite.indent, suite.body(), suite.dedent, elifBranches, elseClause());
+  }
+
+  @CheckForNull
+  private IfStatement elifBranch() {
+    if (!at("elif")) {
+      return null;
+    }
+    int start = pos;
+    Token elifKeyword = consume();
+    Expression condition = namedExprTest();
+    Token colon = condition == null ? null : consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    return new IfStatementImpl(elifKeyword, condition, colon, suite.newLine, suite.indent, suite.body(), suite.dedent);
+  }
+
+  // optional("else", ":", SUITE)
+  @CheckForNull
+  private ElseClause elseClause() {
+    if (!at("else") || !at(1, ":")) {
+      return null;
+    }
+    int start = pos;
+    Token elseKeyword = consume();
+    Token colon = consume();
+    Suite suite = suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    return new ElseClauseImpl(elseKeyword, colon, suite.newLine, suite.indent, suite.body(), suite.dedent);
+  }
+
+  // WHILE_STMT: "while", NAMED_EXPR_TEST, ":", SUITE, optional("else", ":", SUITE)
+  @CheckForNull
+  private Statement whileStatement() {
+    int start = pos;
+    Token whileKeyword = consume();
+    Expression condition = namedExprTest();
+    Token colon = condition == null ? null : consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    return new WhileStatementImpl(whileKeyword, condition, colon, suite.newLine, suite.indent, suite.body(), suite.dedent, elseClause());
+  }
+
+  // FOR_STMT: "for", EXPRLIST, "in", TESTLIST, ":", SUITE, optional("else", ":", SUITE)
+  @CheckForNull
+  private Statement forStatement(@Nullable Token asyncKeyword) {
+    int start = pos;
+    Token forKeyword = consume();
+    ListWithCommas<Expression> expressions = exprList();
+    Token inKeyword = expressions == null ? null : consumeOptional("in");
+    ListWithCommas<Expression> testExpressions = inKeyword == null ? null : testList();
+    Token colon = testExpressions == null ? null : consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    return new ForStatementImpl(forKeyword, expressions.elements, inKeyword, testExpressions.elements, colon, suite.newLine, suite.indent,
+      suite.body(), suite.dedent, elseClause(), asyncKeyword);
+  }
+
+  // TRY_STMT: "try", ":", SUITE, firstOf(
+  //   sequence(oneOrMore(EXCEPT_CLAUSE, ":", SUITE), optional("else", ":", SUITE), optional("finally", ":", SUITE)),
+  //   sequence("finally", ":", SUITE))
+  @CheckForNull
+  private Statement tryStatement() {
+    int start = pos;
+    Token tryKeyword = consume();
+    Token colon = consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    List<ExceptClause> exceptClauses = new ArrayList<>();
+    ExceptClause exceptClause;
+    while ((exceptClause = exceptClause()) != null) {
+      exceptClauses.add(exceptClause);
+    }
+    ElseClause elseClause = exceptClauses.isEmpty() ? null : elseClause();
+    FinallyClause finallyClause = finallyClause();
+    if (exceptClauses.isEmpty() && finallyClause == null) {
+      pos = start;
+      return null;
+    }
+    return new TryStatementImpl(tryKeyword, colon, suite.newLine, suite.indent, suite.body(), suite.dedent, exceptClauses, finallyClause, elseClause);
+  }
+
+  // EXCEPT_CLAUSE: "except", optional(TEST, optional(firstOf("as", ","), TEST))
+  // followed by ":", SUITE
+  @CheckForNull
+  private ExceptClause exceptClause() {
+    if (!at("except")) {
+      return null;
+    }
+    int start = pos;
+    Token exceptKeyword = consume();
+    Expression exception = test();
+    TokenAndExpression instance = null;
+    if (exception != null) {
+      instance = at("as") ? optionalTest("as") : optionalTest(",");
+    }
+    Token colon = consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    if (exception == null) {
+      return new ExceptClauseImpl(exceptKeyword, colon, suite.newLine, suite.indent, suite.body(), suite.dedent);
+    }
+    if (instance == null) {
+      return new ExceptClauseImpl(exceptKeyword, colon, suite.newLine, suite.indent, suite.body(), suite.dedent, exception);
+    }
+    boolean isAs = "as".equals(instance.token.value());
+    return new ExceptClauseImpl(exceptKeyword, colon, suite.newLine, suite.indent, suite.body(), suite.dedent, exception,
+      isAs ? instance.token : null, isAs ? null : instance.token, instance.expression);
+  }
+
+  // optional("finally", ":", SUITE)
+  @CheckForNull
+  private FinallyClause finallyClause() {
+    if (!at("finally") || !at(1, ":")) {
+      return null;
+    }
+    int start = pos;
+    Token finallyKeyword = consume();
+    Token colon = consume();
+    Suite suite = suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    return new FinallyClauseImpl(finallyKeyword, colon, suite.newLine, suite.indent, suite.body(), suite.dedent);
+  }
+
+  // WITH_STMT: "with", WITH_ITEM, zeroOrMore(",", WITH_ITEM), ":", SUITE
+  @CheckForNull
+  private Statement withStatement(@Nullable Token asyncKeyword) {
+    int start = pos;
+    Token withKeyword = consume();
+    ListWithCommas<WithItem> withItems = commaSeparated(this::withItem, false);
+    Token colon = withItems == null ? null : consumeOptional(":");
+    Suite suite = colon == null ? null : suite();
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    return new WithStatementImpl(withKeyword, withItems.elements, withItems.commas, colon, suite.newLine, suite.indent, suite.body(), suite.dedent, asyncKeyword);
+  }
+
+  // WITH_ITEM: TEST, optional("as", EXPR)
+  @CheckForNull
+  private WithItem withItem() {
+    Expression test = test();
+    if (test == null) {
+      return null;
+    }
+    if (at("as")) {
+      int start = pos;
+      Token asKeyword = consume();
+      Expression expression = expr();
+      if (expression != null) {
+        return new WithStatementImpl.WithItemImpl(test, asKeyword, expression);
+      }
+      pos = start;
+    }
+    return new WithStatementImpl.WithItemImpl(test, null, null);
+  }
+
+  // FUNCDEF: optional(DECORATORS), optional("async"), "def", FUNCNAME, "(", optional(TYPEDARGSLIST), ")",
+  //   optional(FUN_RETURN_ANNOTATION), ":", SUITE
+  @CheckForNull
+  private FunctionDef functionDefinition(List<Decorator> decorators) {
+    int start = pos;
+    Token asyncKeyword = at("async") ? consume() : null;
+    if (!at("def") || !atType(1, GenericTokenType.IDENTIFIER) || !at(2, "(")) {
+      pos = start;
+      return null;
+    }
+    Token defKeyword = consume();
+    Name name = name();
+    Token leftPar = consume();
+    List<Tree> parameters = typedArgsList();
+    Token rightPar = consumeOptional(")");
+    if (rightPar == null) {
+      pos = start;
+      return null;
+    }
+    TypeAnnotation returnType = null;
+    if (at("-") && at(1, ">")) {
+      int annotationStart = pos;
+      Token dash = consume();
+      Token gt = consume();
+      Expression expression = test();
+      if (expression == null) {
+        pos = annotationStart;
+      } else {
+        returnType = new TypeAnnotationImpl(dash, gt, expression);
+      }
+    }
+    Token colon = consumeOptional(":");
+    boolean isMethodDefinition = inClassBody;
+    inClassBody = false;
+    Suite suite = colon == null ? null : suite();
+    inClassBody = isMethodDefinition;
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    StatementList body = suite.body();
+    return new FunctionDefImpl(decorators, asyncKeyword, defKeyword, name, leftPar, parameters == null ? null : parameterList(parameters), rightPar,
+      returnType, colon, suite.newLine, suite.indent, body, suite.dedent, isMethodDefinition, DocstringExtractor.extractDocstring(body));
+  }
+
+  // CLASSDEF: optional(DECORATORS), "class", CLASSNAME, optional("(", optional(ARGLIST), ")"), ":", SUITE
+  @CheckForNull
+  private ClassDef classDefinition(List<Decorator> decorators) {
+    if (!at("class") || !atType(1, GenericTokenType.IDENTIFIER)) {
+      return null;
+    }
+    int start = pos;
+    Token classKeyword = consume();
+    Name name = name();
+    Arguments arguments = optionalArguments();
+    Token colon = consumeOptional(":");
+    boolean wasInClassBody = inClassBody;
+    inClassBody = true;
+    Suite suite = colon == null ? null : suite();
+    inClassBody = wasInClassBody;
+    if (suite == null) {
+      pos = start;
+      return null;
+    }
+    StatementList body = suite.body();
+    return new ClassDefImpl(decorators, classKeyword, name, arguments.leftPar, arguments.argList, arguments.rightPar,
+      colon, suite.newLine, suite.indent, body, suite.dedent, DocstringExtractor.extractDocstring(body));
+  }
+
+  // DECORATORS: oneOrMore(DECORATOR)
+  private List<Decorator> decorators() {
+    Decorator decorator = decorator();
+    if (decorator == null) {
+      return Collections.emptyList();
+    }
+    List<Decorator> decorators = new ArrayList<>();
+    while (decorator != null) {
+      decorators.add(decorator);
+      decorator = decorator();
+    }
+    return decorators;
+  }
+
+  // DECORATOR: "@", DOTTED_NAME, optional("(", optional(ARGLIST), ")"), NEWLINE
+  @CheckForNull
+  private Decorator decorator() {
+    if (!at("@")) {
+      return null;
+    }
+    int start = pos;
+    Token atToken = consume();
+    DottedName dottedName = dottedName();
+    Arguments arguments = dottedName == null ? null : optionalArguments();
+    if (arguments == null || !atType(PythonTokenType.NEWLINE)) {
+      pos = start;
+      return null;
+    }
+    return new DecoratorImpl(atToken, dottedName, arguments.leftPar, arguments.argList, arguments.rightPar, consume());
+  }
+
+  // optional("(", optional(ARGLIST), ")")
+  private Arguments optionalArguments() {
+    Arguments arguments = new Arguments();
+    if (at("(")) {
+      int start = pos;
+      Token leftPar = consume();
+      ArgList argList = argList();
+      if (at(")")) {
+        arguments.leftPar = leftPar;
+        arguments.argList = argList;
+        arguments.rightPar = consume();
+      } else {
+        pos = start;
+      }
+    }
+    return arguments;
+  }
+
+  // SUITE: firstOf(
+  //   sequence(STMT_LIST, firstOf(NEWLINE, next(EOF), next(DEDENT))),
+  //   sequence(NEWLINE, INDENT, oneOrMore(STATEMENT), DEDENT))
+  @CheckForNull
+  private Suite suite() {
+    Suite suite = new Suite();
+    if (!atType(PythonTokenType.NEWLINE)) {
+      return simpleStatements(suite.statements) ? suite : null;
+    }
+    if (!atType(1, PythonTokenType.INDENT)) {
+      return null;
+    }
+    int start = pos;
+    suite.newLine = consume();
+    suite.indent = consume();
+    while (statement(suite.statements)) {
+      // oneOrMore(STATEMENT)
+    }
+    if (suite.statements.isEmpty() || !atType(PythonTokenType.DEDENT)) {
+      pos = start;
+      return null;
+    }
+    suite.dedent = consume();
+    return suite;
+  }
+
+  // Parameters
+
+  /*
+   * VARARGSLIST and TYPEDARGSLIST are first parsed into the flat list of their children (punctuators, parameters without
+   * star nor default value, default values) and then converted the way PythonTreeMaker does, as star tokens and
+   * default values are siblings of the parameter they belong to.
+   */
+
+  // VARARGSLIST: firstOf(
+  //   sequence("**", NAME, optional(",")),
+  //   sequence("*", optional(NAME), zeroOrMore(",", FPDEF, optional("=", TEST)), optional(",", "**", NAME), optional(",")),
+  //   sequence(FPDEF, optional("=", TEST), zeroOrMore(",", FPDEF, optional("=", TEST)),
+  //     optional(",", "/", zeroOrMore(",", FPDEF, optional("=", TEST))),
+  //     optional(",", firstOf(sequence("**", NAME), sequence("*", optional(NAME), zeroOrMore(",", FPDEF, optional("=", TEST)), optional(",", "**", NAME))))),
+  //   optional(","))
+  private List<Tree> varArgsList() {
+    List<Tree> children = new ArrayList<>();
+    if (starStarParameter(false, children) || starParameters(false, children) || !parameterWithDefault(false, children)) {
+      optionalComma(children);
+      return children;
+    }
+    parametersWithDefault(false, children);
+    positionalOnlyParameters(false, children);
+    if (at(",")) {
+      int start = pos;
+      int size = children.size();
+      children.add(consume());
+      if (!starStarParameter(false, children) && !starParameters(false, children)) {
+        pos = start;
+        truncate(children, size);
+      }
+    }
+    return children;
+  }
+
+  // TYPEDARGSLIST: firstOf(
+  //   sequence("**", TFPDEF, optional(",")),
+  //   sequence("*", optional(TFPDEF), zeroOrMore(",", TFPDEF, optional("=", TEST)), optional(",", "**", TFPDEF), optional(",")),
+  //   sequence(TFPDEF, optional("=", TEST), zeroOrMore(",", TFPDEF, optional("=", TEST)),
+  //     optional(",", "/", zeroOrMore(",", TFPDEF, optional("=", TEST))),
+  //     optional(",", optional(firstOf(sequence("**", TFPDEF), sequence("*", optional(TFPDEF), zeroOrMore(",", TFPDEF, optional("=", TEST)), optional(",", "**", TFPDEF))), optional(",")))))
+  @CheckForNull
+  private List<Tree> typedArgsList() {
+    List<Tree> children = new ArrayList<>();
+    if (starStarParameter(true, children) || starParameters(true, children)) {
+      optionalComma(children);
+      return children;
+    }
+    if (!parameterWithDefault(true, children)) {
+      return null;
+    }
+    parametersWithDefault(true, children);
+    positionalOnlyParameters(true, children);
+    if (optionalComma(children) && (starStarParameter(true, children) || starParameters(true, children))) {
+      optionalComma(children);
+    }
+    return children;
+  }
+
+  // sequence("**", NAME) or sequence("**", TFPDEF)
+  private boolean starStarParameter(boolean typed, List<Tree> children) {
+    if (!at("**")) {
+      return false;
+    }
+    int start = pos;
+    Token starStar = consume();
+    Tree parameter = typed ? parameterDefinition(true) : nameParameter();
+    if (parameter == null) {
+      pos = start;
+      return false;
+    }
+    children.add(starStar);
+    children.add(parameter);
+    return true;
+  }
+
+  // sequence("*", optional(NAME), zeroOrMore(",", FPDEF, optional("=", TEST)), optional(",", "**", NAME)), with TFPDEF instead of NAME when typed
+  private boolean starParameters(boolean typed, List<Tree> children) {
+    if (!at("*")) {
+      return false;
+    }
+    children.add(consume());
+    Tree parameter = typed ? parameterDefinition(true) : nameParameter();
+    if (parameter != null) {
+      children.add(parameter);
+    }
+    parametersWithDefault(typed, children);
+    if (at(",") && at(1, "**")) {
+      int start = pos;
+      int size = children.size();
+      children.add(consume());
+      if (!starStarParameter(typed, children)) {
+        pos = start;
+        truncate(children, size);
+      }
+    }
+    return true;
+  }
+
+  // optional(",", "/", zeroOrMore(",", FPDEF, optional("=", TEST)))
+  private void positionalOnlyParameters(boolean typed, List<Tree> children) {
+    if (at(",") && at(1, "/")) {
+      children.add(consume());
+      children.add(consume());
+      parametersWithDefault(typed, children);
+    }
+  }
+
+  // zeroOrMore(",", FPDEF, optional("=", TEST))
+  private void parametersWithDefault(boolean typed, List<Tree> children) {
+    while (at(",")) {
+      int start = pos;
+      int size = children.size();
+      children.add(consume());
+      if (!parameterWithDefault(typed, children)) {
+        pos = start;
+        truncate(children, size);
+        return;
+      }
+    }
+  }
+
+  // FPDEF, optional("=", TEST)
+  private boolean parameterWithDefault(boolean typed, List<Tree> children) {
+    Tree parameter = parameterDefinition(typed);
+    if (parameter == null) {
+      return false;
+    }
+    children.add(parameter);
+    TokenAndExpression defaultValue = optionalTest("=");
+    if (defaultValue != null) {
+      children.add(defaultValue.token);
+      children.add(defaultValue.expression);
+    }
+    return true;
+  }
+
+  private boolean optionalComma(List<Tree> children) {
+    if (at(",")) {
+      children.add(consume());
+      return true;
+    }
+    return false;
+  }
+
+  @CheckForNull
+  private Tree nameParameter() {
+    Name name = name();
+    return name == null ? null : new ParameterImpl(null, name, null, null, null);
+  }
+
+  // FPDEF: firstOf(NAME, sequence("(", FPLIST, ")"))
+  // TFPDEF: firstOf(sequence(NAME, optional(":", TEST)), sequence("(", TFPLIST, ")"))
+  @CheckForNull
+  private Tree parameterDefinition(boolean typed) {
+    if (atType(GenericTokenType.IDENTIFIER)) {
+      Name name = name();
+      TokenAndExpression annotation = typed ? optionalTest(":") : null;
+      TypeAnnotation typeAnnotation = annotation == null ? null : new TypeAnnotationImpl(annotation.token, annotation.expression, Tree.Kind.PARAMETER_TYPE_ANNOTATION);
+      return new ParameterImpl(null, name, typeAnnotation, null, null);
+    }
+    if (!at("(")) {
+      return null;
+    }
+    // FPLIST: FPDEF, zeroOrMore(",", FPDEF), optional(",")
+    int start = pos;
+    Token leftPar = consume();
+    ListWithCommas<Tree> parameters = commaSeparated(() -> parameterDefinition(typed), true);
+    if (parameters == null || !at(")")) {
+      pos = start;
+      return null;
+    }
+    List<AnyParameter> anyParameters = parameters.elements.stream().map(AnyParameter.class::cast).collect(Collectors.toList());
+    return new TupleParameterImpl(leftPar, anyParameters, parameters.commas, consume());
+  }
+
+  private static ParameterList parameterList(List<Tree> children) {
+    List<AnyParameter> parameters = new ArrayList<>();
+    List<Token> commas = new ArrayList<>();
+    int size = children.size();
+    for (int i = 0; i < size; i++) {
+      Tree child = children.get(i);
+      if (child.is(Tree.Kind.TOKEN)) {
+        Token token = (Token) child;
+        if (isToken(token, ",")) {
+          commas.add(token);
+        } else if (isToken(token, "/") || (isToken(token, "*") && (i + 1 == size || isToken(children.get(i + 1), ",")))) {
+          parameters.add(new ParameterImpl(token));
+        }
+      } else if (child.is(Tree.Kind.TUPLE_PARAMETER)) {
+        parameters.add((AnyParameter) child);
+      } else if (child.is(Tree.Kind.PARAMETER)) {
+        Tree previous = i > 0 ? children.get(i - 1) : null;
+        Token star = isToken(previous, "*") || isToken(previous, "**") ? (Token) previous : null;
+        boolean hasDefault = i + 2 < size && isToken(children.get(i + 1), "=");
+        Parameter parameter = (Parameter) child;
+        if (star != null || hasDefault) {
+          parameter = new ParameterImpl(star, parameter.name(), parameter.typeAnnotation(),
+            hasDefault ? (Token) children.get(i + 1) : null, hasDefault ? (Expression) children.get(i + 2) : null);
+        }
+        parameters.add(parameter);
+      }
+      // other children are default values, which belong to the preceding parameter
+    }
+    return new ParameterListImpl(parameters, commas);
+  }
+
+  private static boolean isToken(@Nullable Tree tree, String value) {
+    return tree != null && tree.is(Tree.Kind.TOKEN) && value.equals(((Token) tree).value());
+  }
+
+  private static void truncate(List<Tree> list, int size) {
+    list.subList(size, list.size()).clear();
+  }
+
+  // Expressions
+
+  // TESTLIST_STAR_EXPR: firstOf(TEST, STAR_EXPR), zeroOrMore(",", firstOf(TEST, STAR_EXPR)), optional(",")
+  @CheckForNull
+  private ListWithCommas<Expression> testListStarExpr() {
+    return commaSeparated(this::testOrStarExpr, true);
+  }
+
+  // TESTLIST: TEST, zeroOrMore(",", TEST), optional(",")
+  @CheckForNull
+  private ListWithCommas<Expression> testList() {
+    return commaSeparated(this::test, true);
+  }
+
+  @CheckForNull
+  private Expression testListAsExpression() {
+    ListWithCommas<Expression> testList = testList();
+    return testList == null ? null : expressionOrTuple(testList);
+  }
+
+  // EXPRLIST: firstOf(EXPR, STAR_EXPR), zeroOrMore(",", firstOf(EXPR, STAR_EXPR)), optional(",")
+  @CheckForNull
+  private ListWithCommas<Expression> exprList() {
+    return commaSeparated(this::exprOrStarExpr, true);
+  }
+
+  private static Expression expressionOrTuple(ListWithCommas<Expression> list) {
+    if (list.commas.isEmpty()) {
+      return list.elements.get(0);
+    }
+    return new TupleImpl(null, list.elements, list.commas, null);
+  }
+
+  @CheckForNull
+  private Expression testOrStarExpr() {
+    return at("*") ? starExpr() : test();
+  }
+
+  @CheckForNull
+  private Expression exprOrStarExpr() {
+    return at("*") ? starExpr() : expr();
+  }
+
+  @CheckForNull
+  private Expression namedExprTestOrStarExpr() {
+    return at("*") ? starExpr() : namedExprTest();
+  }
+
+  // STAR_EXPR: "*", EXPR
+  @CheckForNull
+  private Expression starExpr() {
+    int start = pos;
+    Token star = consume();
+    Expression expression = expr();
+    if (expression == null) {
+      pos = start;
+      return null;
+    }
+    return new UnpackingExpressionImpl(star, expression);
+  }
+
+  // NAMED_EXPR_TEST: TEST, optional(":=", TEST)
+  @CheckForNull
+  private Expression namedExprTest() {
+    Expression test = test();
+    if (test == null) {
+      return null;
+    }
+    TokenAndExpression assigned = at(":=") ? optionalTest(":=") : null;
+    return assigned == null ? test : assignmentExpression(test, assigned);
+  }
+
+  private static AssignmentExpression assignmentExpression(Expression target, TokenAndExpression assigned) {
+    if (!target.is(Tree.Kind.NAME)) {
+      // syntax error raised by PythonTreeMaker
+      throw new UnsupportedInputException();
+    }
+    return new AssignmentExpressionImpl((Name) target, assigned.token, assigned.expression);
+  }
+
+  // TEST: firstOf(sequence(OR_TEST, optional("if", OR_TEST, "else", TEST)), LAMBDEF)
+  @CheckForNull
+  private Expression test() {
+    if (at("lambda")) {
+      return lambda(false);
+    }
+    Expression orTest = orTest();
+    if (orTest == null || !at("if")) {
+      return orTest;
+    }
+    int start = pos;
+    Token ifKeyword = consume();
+    int conditionStart = pos;
+    Expression condition = orTest();
+    if (condition != null) {
+      int conditionEnd = pos;
+      if (at("else")) {
+        Token elseKeyword = consume();
+        Expression falseExpression = test();
+        if (falseExpression != null) {
+          return new ConditionalExpressionImpl(orTest, ifKeyword, condition, elseKeyword, falseExpression);
+        }
+      }
+      orTestMemo.put(conditionStart, new ParsedExpression(condition, conditionEnd));
+    }
+    pos = start;
+    return orTest;
+  }
+
+  // TEST_NOCOND: firstOf(OR_TEST, LAMBDEF_NOCOND)
+  @CheckForNull
+  private Expression testNoCond() {
+    return at("lambda") ? lambda(true) : orTest();
+  }
+
+  // LAMBDEF: "lambda", optional(VARARGSLIST), ":", TEST
+  // LAMBDEF_NOCOND: "lambda", optional(VARARGSLIST), ":", TEST_NOCOND
+  @CheckForNull
+  private Expression lambda(boolean noCond) {
+    int start = pos;
+    Token lambdaKeyword = consume();
+    List<Tree> parameters = varArgsList();
+    Token colon = consumeOptional(":");
+    Expression body = null;
+    if (colon != null) {
+      body = noCond ? testNoCond() : test();
+    }
+    if (body == null) {
+      pos = start;
+      return null;
+    }
+    return new LambdaExpressionImpl(lambdaKeyword, colon, body, parameterList(parameters));
+  }
+
+  // OR_TEST: AND_TEST, zeroOrMore("or", AND_TEST)
+  @CheckForNull
+  private Expression orTest() {
+    if (!orTestMemo.isEmpty()) {
+      ParsedExpression parsed = orTestMemo.remove(pos);
+      if (parsed != null) {
+        pos = parsed.end;
+        return parsed.expression;
+      }
+    }
+    Expression result = andTest();
+    while (result != null && at("or")) {
+      int start = pos;
+      Token operator = consume();
+      Expression rightOperand = andTest();
+      if (rightOperand == null) {
+        pos = start;
+        break;
+      }
+      result = new BinaryExpressionImpl(result, operator, rightOperand);
+    }
+    return result;
+  }
+
+  // AND_TEST: NOT_TEST, zeroOrMore("and", NOT_TEST)
+  @CheckForNull
+  private Expression andTest() {
+    Expression result = notTest();
+    while (result != null && at("and")) {
+      int start = pos;
+      Token operator = consume();
+      Expression rightOperand = notTest();
+      if (rightOperand == null) {
+        pos = start;
+        break;
+      }
+      result = new BinaryExpressionImpl(result, operator, rightOperand);
+    }
+    return result;
+  }
+
+  // NOT_TEST: firstOf(COMPARISON, sequence("not", NOT_TEST))
+  @CheckForNull
+  private Expression notTest() {
+    if (!at("not")) {
+      return comparison();
+    }
+    int start = pos;
+    Token not = consume();
+    Expression operand = notTest();
+    if (operand == null) {
+      pos = start;
+      return null;
+    }
+    return new UnaryExpressionImpl(not, operand);
+  }
+
+  // COMPARISON: OR_EXPR, zeroOrMore(COMP_OPERATOR, OR_EXPR)
+  @CheckForNull
+  private Expression comparison() {
+    Expression result = expr();
+    while (result != null) {
+      int start = pos;
+      Expression comparison = comparisonOperation(result);
+      if (comparison == null) {
+        pos = start;
+        break;
+      }
+      result = comparison;
+    }
+    return result;
+  }
+
+  // COMP_OPERATOR: firstOf("<", ">", "==", ">=", "<=", "!=", "<>", sequence("is", optional("not")), sequence(optional("not"), "in"))
+  @CheckForNull
+  private Expression comparisonOperation(Expression leftOperand) {
+    if (COMPARISON_OPERATORS.contains(value())) {
+      Token operator = consume();
+      Expression rightOperand = expr();
+      return rightOperand == null ? null : new BinaryExpressionImpl(leftOperand, operator, rightOperand);
+    }
+    if (at("is")) {
+      Token operator = consume();
+      Token not = at("not") ? consume() : null;
+      Expression rightOperand = expr();
+      return rightOperand == null ? null : new IsExpressionImpl(leftOperand, operator, not, rightOperand);
+    }
+    if (at("in") || (at("not") && at(1, "in"))) {
+      Token not = at("not") ? consume() : null;
+      Token operator = consume();
+      Expression rightOperand = expr();
+      return rightOperand == null ? null : new InExpressionImpl(leftOperand, not, operator, rightOperand);
+    }
+    return null;
+  }
+
+  // EXPR (same as OR_EXPR)
+  @CheckForNull
+  private Expression expr() {
+    return binaryExpression(0);
+  }
+
+  // EXPR, XOR_EXPR, AND_EXPR, SHIFT_EXPR, A_EXPR, M_EXPR: operand, zeroOrMore(operator, operand)
+  @CheckForNull
+  private Expression binaryExpression(int level) {
+    if (level == BINARY_OPERATORS.size()) {
+      return factor();
+    }
+    Set<String> operators = BINARY_OPERATORS.get(level);
+    Expression result = binaryExpression(level + 1);
+    while (result != null && operators.contains(value())) {
+      int start = pos;
+      Token operator = consume();
+      Expression rightOperand = binaryExpression(level + 1);
+      if (rightOperand == null) {
+        pos = start;
+        break;
+      }
+      result = new BinaryExpressionImpl(result, operator, rightOperand);
+    }
+    return result;
+  }
+
+  // FACTOR: firstOf(sequence(firstOf("+", "-", "~"), FACTOR), POWER)
+  @CheckForNull
+  private Expression factor() {
+    if (!UNARY_OPERATORS.contains(value())) {
+      return power();
+    }
+    int start = pos;
+    Token operator = consume();
+    Expression operand = factor();
+    if (operand == null) {
+      pos = start;
+      return null;
+    }
+    return new UnaryExpressionImpl(operator, operand);
+  }
+
+  // POWER: firstOf(sequence(optional("await"), ATOM, zeroOrMore(TRAILER), optional("**", FACTOR)), "await")
+  @CheckForNull
+  private Expression power() {
+    int start = pos;
+    Token awaitKeyword = at("await") ? consume() : null;
+    Expression expression = atom();
+    if (expression == null) {
+      pos = start;
+      if (awaitKeyword != null) {
+        // "await" alone is matched by the grammar, but not translated by PythonTreeMaker
+        throw new UnsupportedInputException();
+      }
+      return null;
+    }
+    Expression withTrailer = trailer(expression);
+    while (withTrailer != null) {
+      expression = withTrailer;
+      withTrailer = trailer(expression);
+    }
+    if (awaitKeyword != null) {
+      expression = new AwaitExpressionImpl(awaitKeyword, expression);
+    }
+    if (at("**")) {
+      int operatorStart = pos;
+      Token operator = consume();
+      Expression exponent = factor();
+      if (exponent == null) {
+        pos = operatorStart;
+      } else {
+        expression = new BinaryExpressionImpl(expression, operator, exponent);
+      }
+    }
+    return expression;
+  }
+
+  // TRAILER: firstOf(sequence("(", optional(ARGLIST), ")"), sequence("[", SUBSCRIPTLIST, "]"), sequence(".", NAME))
+  @CheckForNull
+  private Expression trailer(Expression expression) {
+    int start = pos;
+    if (at("(")) {
+      Token leftPar = consume();
+      ArgList argList = argList();
+      if (!at(")")) {
+        pos = start;
+        return null;
+      }
+      if (argList != null) {
+        PythonTreeMaker.checkGeneratorExpressionInArgument(argList.arguments());
+      }
+      return new CallExpressionImpl(expression, argList, leftPar, consume());
+    }
+    if (at("[")) {
+      Token leftBracket = consume();
+      // SUBSCRIPTLIST: SUBSCRIPT, zeroOrMore(",", SUBSCRIPT), optional(",")
+      ListWithCommas<Tree> subscripts = commaSeparated(this::subscript, true);
+      if (subscripts == null || !at("]")) {
+        pos = start;
+        return null;
+      }
+      return subscriptionOrSlicing(expression, leftBracket, subscripts, consume());
+    }
+    if (at(".") && atType(1, GenericTokenType.IDENTIFIER)) {
+      Token dot = consume();
+      return new QualifiedExpressionImpl(name(), expression, dot);
+    }
+    return null;
+  }
+
+  private static Expression subscriptionOrSlicing(Expression expression, Token leftBracket, ListWithCommas<Tree> subscripts, Token rightBracket) {
+    if (subscripts.elements.stream().anyMatch(subscript -> subscript.is(Tree.Kind.SLICE_ITEM))) {
+      return new SliceExpressionImpl(expression, leftBracket, new SliceListImpl(subscripts.elements, subscripts.commas), rightBracket);
+    }
+    List<Expression> expressions = subscripts.elements.stream().map(Expression.class::cast).collect(Collectors.toList());
+    return new SubscriptionExpressionImpl(expression, leftBracket, new ExpressionListImpl(expressions, subscripts.commas), rightBracket);
+  }
+
+  // SUBSCRIPT: firstOf(sequence(optional(TEST), ":", optional(TEST), optional(SLICEOP)), TEST)
+  // SLICEOP: ":", optional(TEST)
+  @CheckForNull
+  private Tree subscript() {
+    Expression lowerBound = test();
+    if (!at(":")) {
+      return lowerBound;
+    }
+    Token boundSeparator = consume();
+    Expression upperBound = test();
+    Token strideSeparator = null;
+    Expression stride = null;
+    if (at(":")) {
+      strideSeparator = consume();
+      stride = test();
+    }
+    return new SliceItemImpl(lowerBound, boundSeparator, upperBound, strideSeparator, stride);
+  }
+
+  // ARGLIST: ARGUMENT, zeroOrMore(",", ARGUMENT), optional(",")
+  @CheckForNull
+  private ArgList argList() {
+    ListWithCommas<Argument> arguments = commaSeparated(this::argument, true);
+    return arguments == null ? null : new ArgListImpl(arguments.elements, arguments.commas);
+  }
+
+  // ARGUMENT: firstOf(sequence("*", TEST), sequence("**", TEST), sequence(TEST, ":=", TEST), sequence(TEST, "=", TEST), sequence(TEST, optional(COMP_FOR)))
+  @CheckForNull
+  private Argument argument() {
+    if (at("*") || at("**")) {
+      int start = pos;
+      Token star = consume();
+      Expression expression = test();
+      if (expression == null) {
+        pos = start;
+        return null;
+      }
+      return new UnpackingExpressionImpl(star, expression);
+    }
+    Expression test = test();
+    if (test == null) {
+      return null;
+    }
+    TokenAndExpression assigned = at(":=") ? optionalTest(":=") : null;
+    if (assigned != null) {
+      return new RegularArgumentImpl(assignmentExpression(test, assigned));
+    }
+    assigned = at("=") ? optionalTest("=") : null;
+    if (assigned != null) {
+      if (!test.is(Tree.Kind.NAME)) {
+        // keyword which is not an identifier: rejected by PythonTreeMaker
+        throw new UnsupportedInputException();
+      }
+      return new RegularArgumentImpl((Name) test, assigned.token, assigned.expression);
+    }
+    ComprehensionFor comprehensionFor = compFor();
+    if (comprehensionFor != null) {
+      return new RegularArgumentImpl(new ComprehensionExpressionImpl(Tree.Kind.GENERATOR_EXPR, null, test, comprehensionFor, null));
+    }
+    return new RegularArgumentImpl(test);
+  }
+
+  // COMP_FOR: optional("async"), "for", EXPRLIST, "in", TESTLIST, optional(COMP_ITER)
+  @CheckForNull
+  private ComprehensionFor compFor() {
+    int start = pos;
+    Token asyncKeyword = at("async") ? consume() : null;
+    Token forKeyword = consumeOptional("for");
+    ListWithCommas<Expression> loopExpressions = forKeyword == null ? null : exprList();
+    Token inKeyword = loopExpressions == null ? null : consumeOptional("in");
+    ListWithCommas<Expression> iterables = inKeyword == null ? null : testList();
+    if (iterables == null) {
+      pos = start;
+      return null;
+    }
+    return new ComprehensionForImpl(asyncKeyword, forKeyword, expressionOrTuple(loopExpressions), inKeyword, expressionOrTuple(iterables), compIter());
+  }
+
+  // COMP_ITER: firstOf(COMP_FOR, COMP_IF)
+  // COMP_IF: "if", TEST_NOCOND, optional(COMP_ITER)
+  @CheckForNull
+  private ComprehensionClause compIter() {
+    ComprehensionFor comprehensionFor = compFor();
+    if (comprehensionFor != null || !at("if")) {
+      return comprehensionFor;
+    }
+    int start = pos;
+    Token ifKeyword = consume();
+    Expression condition = testNoCond();
+    if (condition == null) {
+      pos = start;
+      return null;
+    }
+    return new ComprehensionIfImpl(ifKeyword, condition, compIter());
+  }
+
+  // YIELD_EXPR: firstOf(sequence("yield", "from", TEST), sequence("yield", optional(TESTLIST_STAR_EXPR)))
+  private YieldExpression yieldExpression() {
+    Token yieldKeyword = consume();
+    TokenAndExpression from = optionalTest("from");
+    if (from != null) {
+      return new YieldExpressionImpl(yieldKeyword, from.token, Collections.singletonList(from.expression));
+    }
+    ListWithCommas<Expression> expressions = testListStarExpr();
+    return new YieldExpressionImpl(yieldKeyword, null, expressions == null ? Collections.emptyList() : expressions.elements);
+  }
+
+  // ATOM: firstOf(
+  //   sequence("(", optional(firstOf(YIELD_EXPR, TESTLIST_COMP)), ")"),
+  //   sequence("[", optional(TESTLIST_COMP), "]"),
+  //   sequence("{", optional(DICTORSETMAKER), "}"),
+  //   sequence("`", TEST, zeroOrMore(",", TEST), "`"),
+  //   NAME, NUMBER, oneOrMore(STRING), ELLIPSIS, "None")
+  @CheckForNull
+  private Expression atom() {
+    TokenType type = tokens.get(pos).getType();
+    if (type == GenericTokenType.IDENTIFIER) {
+      return new NameImpl(consume(), true);
+    }
+    if (type == PythonTokenType.NUMBER) {
+      return new NumericLiteralImpl(consume());
+    }
+    if (type == PythonTokenType.STRING) {
+      List<StringElement> elements = new ArrayList<>();
+      while (atType(PythonTokenType.STRING)) {
+        elements.add(treeMaker.stringElement(tokens.get(pos)));
+        pos++;
+      }
+      return new StringLiteralImpl(elements);
+    }
+    switch (value()) {
+      case "(":
+        return parenthesized();
+      case "[":
+        return listLiteral();
+      case "{":
+        return dictionaryOrSetLiteral();
+      case "`":
+        return repr();
+      case ".":
+        return at(1, ".") && at(2, ".") ? new EllipsisExpressionImpl(Arrays.asList(consume(), consume(), consume())) : null;
+      case "None":
+        return new NoneExpressionImpl(consume());
+      default:
+        return null;
+    }
+  }
+
+  @CheckForNull
+  private Expression parenthesized() {
+    int start = pos;
+    Token leftPar = consume();
+    if (at("yield")) {
+      YieldExpression yieldExpression = yieldExpression();
+      if (at(")")) {
+        return new ParenthesizedExpressionImpl(leftPar, yieldExpression, consume());
+      }
+      pos = start;
+      return null;
+    }
+    if (at(")")) {
+      return new TupleImpl(leftPar, Collections.emptyList(), Collections.emptyList(), consume());
+    }
+    ElementsOrComprehension testListComp = testListComp();
+    if (testListComp == null || !at(")")) {
+      pos = start;
+      return null;
+    }
+    Token rightPar = consume();
+    if (testListComp.comprehensionFor != null) {
+      return new ComprehensionExpressionImpl(Tree.Kind.GENERATOR_EXPR, leftPar, testListComp.first, testListComp.comprehensionFor, rightPar);
+    }
+    if (testListComp.elements.commas.isEmpty()) {
+      return new ParenthesizedExpressionImpl(leftPar, testListComp.first, rightPar);
+    }
+    return new TupleImpl(leftPar, testListComp.elements.elements, testListComp.elements.commas, rightPar);
+  }
+
+  @CheckForNull
+  private Expression listLiteral() {
+    int start = pos;
+    Token leftBracket = consume();
+    if (at("]")) {
+      return new ListLiteralImpl(leftBracket, new ExpressionListImpl(Collections.emptyList(), Collections.emptyList()), consume());
+    }
+    ElementsOrComprehension testListComp = testListComp();
+    if (testListComp == null || !at("]")) {
+      pos = start;
+      return null;
+    }
+    Token rightBracket = consume();
+    if (testListComp.comprehensionFor != null) {
+      return new ComprehensionExpressionImpl(Tree.Kind.LIST_COMPREHENSION, leftBracket, testListComp.first, testListComp.comprehensionFor, rightBracket);
+    }
+    return new ListLiteralImpl(leftBracket, new ExpressionListImpl(testListComp.elements.elements, testListComp.elements.commas), rightBracket);
+  }
+
+  // TESTLIST_COMP: firstOf(NAMED_EXPR_TEST, STAR_EXPR), firstOf(COMP_FOR, sequence(zeroOrMore(",", firstOf(NAMED_EXPR_TEST, STAR_EXPR)), optional(",")))
+  @CheckForNull
+  private ElementsOrComprehension testListComp() {
+    Expression first = namedExprTestOrStarExpr();
+    return first == null ? null : elementsOrComprehension(first, this::namedExprTestOrStarExpr);
+  }
+
+  private ElementsOrComprehension elementsOrComprehension(Expression first, Supplier<Expression> element) {
+    ComprehensionFor comprehensionFor = compFor();
+    if (comprehensionFor != null) {
+      return new ElementsOrComprehension(first, null, comprehensionFor);
+    }
+    return new ElementsOrComprehension(first, commaSeparated(first, element, true), null);
+  }
+
+  @CheckForNull
+  private Expression dictionaryOrSetLiteral() {
+    int start = pos;
+    Token leftCurlyBrace = consume();
+    if (at("}")) {
+      return new DictionaryLiteralImpl(leftCurlyBrace, Collections.emptyList(), Collections.emptyList(), consume());
+    }
+    Expression literal = dictOrSetMaker(leftCurlyBrace);
+    if (literal == null) {
+      pos = start;
+    }
+    return literal;
+  }
+
+  // DICTORSETMAKER: firstOf(
+  //   sequence(firstOf(sequence(TEST, ":", TEST), sequence("**", EXPR)),
+  //     firstOf(COMP_FOR, sequence(zeroOrMore(",", firstOf(sequence(TEST, ":", TEST), sequence("**", EXPR))), optional(",")))),
+  //   sequence(firstOf(TEST, STAR_EXPR), firstOf(COMP_FOR, sequence(zeroOrMore(",", firstOf(TEST, STAR_EXPR)), optional(",")))))
+  // followed by "}"
+  @CheckForNull
+  private Expression dictOrSetMaker(Token leftCurlyBrace) {
+    Expression firstTest = null;
+    DictionaryLiteralElement firstEntry;
+    if (at("**")) {
+      firstEntry = dictionaryUnpacking();
+    } else {
+      firstTest = test();
+      firstEntry = firstTest == null ? null : keyValuePair(firstTest);
+    }
+    if (firstEntry != null) {
+      return dictionary(leftCurlyBrace, firstEntry);
+    }
+    Expression firstElement = firstTest;
+    if (firstElement == null) {
+      firstElement = at("*") ? starExpr() : null;
+      if (firstElement == null) {
+        return null;
+      }
+    }
+    ElementsOrComprehension set = elementsOrComprehension(firstElement, this::testOrStarExpr);
+    if (!at("}")) {
+      return null;
+    }
+    Token rightCurlyBrace = consume();
+    if (set.comprehensionFor != null) {
+      return new ComprehensionExpressionImpl(Tree.Kind.SET_COMPREHENSION, leftCurlyBrace, firstElement, set.comprehensionFor, rightCurlyBrace);
+    }
+    return new SetLiteralImpl(leftCurlyBrace, set.elements.elements, set.elements.commas, rightCurlyBrace);
+  }
+
+  @CheckForNull
+  private Expression dictionary(Token leftCurlyBrace, DictionaryLiteralElement firstEntry) {
+    ComprehensionFor comprehensionFor = compFor();
+    if (comprehensionFor != null) {
+      if (!at("}")) {
+        return null;
+      }
+      if (!firstEntry.is(Tree.Kind.KEY_VALUE_PAIR)) {
+        // unpacking in a dictionary comprehension: rejected by PythonTreeMaker
+        throw new UnsupportedInputException();
+      }
+      KeyValuePair keyValuePair = (KeyValuePair) firstEntry;
+      return new DictCompExpressionImpl(leftCurlyBrace, keyValuePair.key(), keyValuePair.colon(), keyValuePair.value(), comprehensionFor, consume());
+    }
+    ListWithCommas<DictionaryLiteralElement> entries = commaSeparated(firstEntry, this::dictionaryEntry, true);
+    if (!at("}")) {
+      return null;
+    }
+    return new DictionaryLiteralImpl(leftCurlyBrace, entries.commas, entries.elements, consume());
+  }
+
+  // firstOf(sequence(TEST, ":", TEST), sequence("**", EXPR))
+  @CheckForNull
+  private DictionaryLiteralElement dictionaryEntry() {
+    if (at("**")) {
+      return dictionaryUnpacking();
+    }
+    int start = pos;
+    Expression key = test();
+    DictionaryLiteralElement entry = key == null ? null : keyValuePair(key);
+    if (entry == null) {
+      pos = start;
+    }
+    return entry;
+  }
+
+  @CheckForNull
+  private DictionaryLiteralElement keyValuePair(Expression key) {
+    TokenAndExpression value = optionalTest(":");
+    return value == null ? null : new KeyValuePairImpl(key, value.token, value.expression);
+  }
+
+  @CheckForNull
+  private DictionaryLiteralElement dictionaryUnpacking() {
+    int start = pos;
+    Token starStar = consume();
+    Expression expression = expr();
+    if (expression == null) {
+      pos = start;
+      return null;
+    }
+    return new UnpackingExpressionImpl(starStar, expression);
+  }
+
+  // sequence("`", TEST, zeroOrMore(",", TEST), "`")
+  @CheckForNull
+  private Expression repr() {
+    int start = pos;
+    Token openingBacktick = consume();
+    ListWithCommas<Expression> expressions = commaSeparated(this::test, false);
+    if (expressions == null || !at("`")) {
+      pos = start;
+      return null;
+    }
+    return new ReprExpressionImpl(openingBacktick, new ExpressionListImpl(expressions.elements, expressions.commas), consume());
+  }
+
+  @CheckForNull
+  private Name name() {
+    return atType(GenericTokenType.IDENTIFIER) ? new NameImpl(consume(), false) : null;
+  }
+
+  @CheckForNull
+  private Name variable() {
+    return atType(GenericTokenType.IDENTIFIER) ? new NameImpl(consume(), true) : null;
+  }
+
+  // Generic sequences
+
+  // element, zeroOrMore(",", element), and optional(",") when trailingComma is true
+  @CheckForNull
+  private <T> ListWithCommas<T> commaSeparated(Supplier<T> element, boolean trailingComma) {
+    T first = element.get();
+    return first == null ? null : commaSeparated(first, element, trailingComma);
+  }
+
+  private <T> ListWithCommas<T> commaSeparated(T first, Supplier<T> element, boolean trailingComma) {
+    ListWithCommas<T> list = new ListWithCommas<>();
+    list.elements.add(first);
+    while (at(",")) {
+      int commaPosition = pos;
+      pos++;
+      T next = element.get();
+      if (next == null) {
+        pos = commaPosition;
+        break;
+      }
+      list.commas.add(tokenAt(commaPosition));
+      list.elements.add(next);
+    }
+    if (trailingComma && at(",")) {
+      list.commas.add(consume());
+    }
+    return list;
+  }
+
+  // optional(value, TEST)
+  @CheckForNull
+  private TokenAndExpression optionalTest(String value) {
+    if (!at(value)) {
+      return null;
+    }
+    int start = pos;
+    Token token = consume();
+    Expression expression = test();
+    if (expression == null) {
+      pos = start;
+      return null;
+    }
+    return new TokenAndExpression(token, expression);
+  }
+
+  // Tokens
+
+  private String value() {
+    return tokens.get(pos).getValue();
+  }
+
+  private boolean at(String value) {
+    return value.equals(tokens.get(pos).getValue());
+  }
+
+  private boolean at(int offset, String value) {
+    int index = pos + offset;
+    return index < tokens.size() && value.equals(tokens.get(index).getValue());
+  }
+
+  private boolean atType(TokenType type) {
+    return tokens.get(pos).getType() == type;
+  }
+
+  private boolean atType(int offset, TokenType type) {
+    int index = pos + offset;
+    return index < tokens.size() && tokens.get(index).getType() == type;
+  }
+
+  private Token consume() {
+    Token token = tokenAt(pos);
+    pos++;
+    return token;
+  }
+
+  @CheckForNull
+  private Token consumeOptional(String value) {
+    return at(value) ? consume() : null;
+  }
+
+  private boolean skipOptional(String value) {
+    if (at(value)) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private Token tokenAt(int index) {
+    return new TokenImpl(tokens.get(index));
+  }
+
+  private static Set<String> set(String... values) {
+    return new HashSet<>(Arrays.asList(values));
+  }
+
+  private static class ListWithCommas<T> {
+    private final List<T> elements = new ArrayList<>();
+    private final List<Token> commas = new ArrayList<>();
+  }
+
+  private static class ElementsOrComprehension {
+    private final Expression first;
+    private final ListWithCommas<Expression> elements;
+    private final ComprehensionFor comprehensionFor;
+
+    private ElementsOrComprehension(Expression first, @Nullable ListWithCommas<Expression> elements, @Nullable ComprehensionFor comprehensionFor) {
+      this.first = first;
+      this.elements = elements;
+      this.comprehensionFor = comprehensionFor;
+    }
+  }
+
+  private static class TokenAndExpression {
+    private final Token token;
+    private final Expression expression;
+
+    private TokenAndExpression(Token token, Expression expression) {
+      this.token = token;
+      this.expression = expression;
+    }
+  }
+
+  private static class ParsedExpression {
+    private final Expression expression;
+    private final int end;
+
+    private ParsedExpression(Expression expression, int end) {
+      this.expression = expression;
+      this.end = end;
+    }
+  }
+
+  private static class Arguments {
+    private Token leftPar;
+    private ArgList argList;
+    private Token rightPar;
+  }
+
+  private static class Suite {
+    private final List<Statement> statements = new ArrayList<>();
+    private Token newLine;
+    private Token indent;
+    private Token dedent;
+
+    private StatementList body() {
+      return new StatementListImpl(statements);
+    }
+  }
+
+  /**
+   * Input which is accepted by the grammar but rejected by {@link PythonTreeMaker}: the SSLR parser takes over to report it.
+   */
+  private static class UnsupportedInputException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private UnsupportedInputException() {
+      super(null, null, false, false);
+    }
+  }
+}
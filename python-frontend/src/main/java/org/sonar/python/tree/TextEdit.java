@@ -0,0 +1,60 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+/**
+ * Replacement of a range of a source by a new text. Lines start at 1 and columns at 0, as for tokens.
+ */
+public class TextEdit {
+
+  private final int startLine;
+  private final int startColumn;
+  private final int endLine;
+  private final int endColumn;
+  private final String text;
+
+  public TextEdit(int startLine, int startColumn, int endLine, int endColumn, String text) {
+    this.startLine = startLine;
+    this.startColumn = startColumn;
+    this.endLine = endLine;
+    this.endColumn = endColumn;
+    this.text = text;
+  }
+
+  public int startLine() {
+    return startLine;
+  }
+
+  public int startColumn() {
+    return startColumn;
+  }
+
+  public int endLine() {
+    return endLine;
+  }
+
+  public int endColumn() {
+    return endColumn;
+  }
+
+  public String text() {
+    return text;
+  }
+}
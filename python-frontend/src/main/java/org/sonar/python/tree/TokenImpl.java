@@ -58,6 +58,14 @@ public class TokenImpl extends PyTree implements Token {
     return trivia;
   }
 
+  /**
+   * Moves the token and its trivia by the given number of lines, when lines are added or removed before it.
+   */
+  void shiftLine(int lineDelta) {
+    token = com.sonar.sslr.api.Token.builder(token).setLine(token.getLine() + lineDelta).build();
+    trivia.forEach(t -> ((TokenImpl) t.token()).shiftLine(lineDelta));
+  }
+
   public TokenType type() {
     return token.getType();
   }
@@ -19,10 +19,13 @@
  */
 package org.sonar.python.tree;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
@@ -78,17 +81,22 @@ public class TreeUtils {
   }
 
   public static List<Token> tokens(Tree tree) {
-    if (tree.is(Kind.TOKEN)) {
-      return Collections.singletonList((Token) tree);
-    } else if (tree.is(Kind.STRING_ELEMENT)) {
-      return Collections.singletonList(tree.firstToken());
-    }
     List<Token> tokens = new ArrayList<>();
-    for (Tree child : tree.children()) {
-      if (child.is(Kind.TOKEN)) {
-        tokens.add(((Token) child));
+    Deque<Tree> stack = new ArrayDeque<>();
+    stack.push(tree);
+    while (!stack.isEmpty()) {
+      Tree current = stack.pop();
+      if (current.is(Kind.TOKEN)) {
+        tokens.add((Token) current);
+      } else if (current.is(Kind.STRING_ELEMENT)) {
+        tokens.add(current.firstToken());
       } else {
-        tokens.addAll(tokens(child));
+        List<Tree> children = current.children();
+        for (int i = children.size() - 1; i >= 0; i--) {
+          if (children.get(i) != null) {
+            stack.push(children.get(i));
+          }
+        }
       }
     }
     return tokens;
@@ -101,7 +109,16 @@ public class TreeUtils {
   }
 
   public static boolean hasDescendant(Tree tree, Predicate<Tree> predicate) {
-    return tree.children().stream().anyMatch(child -> predicate.test(child) || hasDescendant(child, predicate));
+    Deque<Tree> stack = new ArrayDeque<>();
+    tree.children().stream().filter(Objects::nonNull).forEach(stack::push);
+    while (!stack.isEmpty()) {
+      Tree descendant = stack.pop();
+      if (predicate.test(descendant)) {
+        return true;
+      }
+      descendant.children().stream().filter(Objects::nonNull).forEach(stack::push);
+    }
+    return false;
   }
 
   public static Stream<Expression> flattenTuples(Expression expression) {
@@ -35,6 +35,7 @@ import org.sonar.plugins.python.api.tree.Tree.Kind;
 import org.sonar.plugins.python.api.tree.TypeAnnotation;
 import org.sonar.plugins.python.api.types.BuiltinTypes;
 import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.semantic.ClassSymbolImpl;
 import org.sonar.python.tree.TreeUtils;
 
 public class InferredTypes {
@@ -66,7 +67,7 @@ public class InferredTypes {
 
   public static final InferredType BOOL = runtimeBuiltinType(BuiltinTypes.BOOL);
 
-  private static Map<String, Symbol> builtinSymbols;
+  private static volatile Map<String, Symbol> builtinSymbols;
 
   private InferredTypes() {
   }
@@ -76,10 +77,14 @@ public class InferredTypes {
   }
 
   private static InferredType runtimeBuiltinType(String fullyQualifiedName) {
-    return new RuntimeType(TypeShed.typeShedClass(fullyQualifiedName));
+    return runtimeType(TypeShed.typeShedClass(fullyQualifiedName));
   }
 
   public static InferredType runtimeType(@Nullable Symbol typeClass) {
+    if (typeClass instanceof ClassSymbolImpl) {
+      // a single runtime type instance is created per class symbol
+      return ((ClassSymbolImpl) typeClass).runtimeType(RuntimeType::new);
+    }
     if (typeClass instanceof ClassSymbol) {
       return new RuntimeType((ClassSymbol) typeClass);
     }
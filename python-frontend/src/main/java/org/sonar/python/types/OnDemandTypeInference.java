@@ -0,0 +1,112 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.types;
+
+import java.util.HashSet;
+import java.util.Set;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.AnalysisProfiler;
+import org.sonar.python.tree.DeepTreeVisitor;
+import org.sonar.python.tree.FileInputImpl;
+import org.sonar.python.tree.NameImpl;
+
+/**
+ * Type inference is only performed when a type or a member symbol is requested.
+ * It is then performed once for the outermost function containing the requested tree, or for the module level code
+ * when the tree is not inside a function. Those units are independent: nested functions are inferred together with
+ * their enclosing function, in the same order as a whole-file inference would do.
+ */
+public class OnDemandTypeInference {
+
+  private final FileInput fileInput;
+  private final Set<Tree> inferredUnits = new HashSet<>();
+
+  private OnDemandTypeInference(FileInput fileInput) {
+    this.fileInput = fileInput;
+  }
+
+  public static void enable(FileInput fileInput) {
+    ((FileInputImpl) fileInput).setTypeInference(new OnDemandTypeInference(fileInput));
+  }
+
+  /**
+   * @return false if type inference is not enabled for the file containing the given tree (yet), true otherwise.
+   */
+  public static boolean ensureTypesInferred(Tree tree) {
+    Tree outermostFunction = null;
+    Tree current = tree;
+    while (current.parent() != null) {
+      if (current.is(Tree.Kind.FUNCDEF)) {
+        outermostFunction = current;
+      }
+      current = current.parent();
+    }
+    if (!current.is(Tree.Kind.FILE_INPUT)) {
+      return false;
+    }
+    OnDemandTypeInference typeInference = ((FileInputImpl) current).typeInference();
+    if (typeInference == null) {
+      return false;
+    }
+    typeInference.inferTypes(outermostFunction == null ? current : outermostFunction);
+    return true;
+  }
+
+  private void inferTypes(Tree unit) {
+    // the unit is marked before being processed: trees requested during inference get the types computed so far
+    if (inferredUnits.add(unit)) {
+      AnalysisProfiler profiler = AnalysisProfiler.current();
+      profiler.start(AnalysisProfiler.Phase.TYPE_INFERENCE);
+      try {
+        markNames(unit);
+        if (unit == fileInput) {
+          TypeInference.inferModuleLevelTypes(fileInput);
+        } else {
+          TypeInference.inferTypes(unit);
+        }
+      } finally {
+        profiler.stop();
+      }
+    }
+  }
+
+  /**
+   * Names request the inference of their unit only once, but finding the unit walks up to the root of the file: the names
+   * of the unit are marked beforehand, so that a long chain of operations does not walk up once per name.
+   */
+  private void markNames(Tree unit) {
+    unit.accept(new DeepTreeVisitor() {
+      @Override
+      public void visitFunctionDef(FunctionDef functionDef) {
+        if (unit != fileInput) {
+          super.visitFunctionDef(functionDef);
+        }
+      }
+
+      @Override
+      public void visitName(Name name) {
+        ((NameImpl) name).setTypesInferred();
+      }
+    });
+  }
+}
@@ -19,6 +19,7 @@
  */
 package org.sonar.python.types;
 
+import java.util.Collections;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -33,6 +34,7 @@ class RuntimeType implements InferredType {
   private final ClassSymbol typeClass;
   private Set<String> typeClassSuperClassesFQN = null;
   private Set<String> typeClassMembersFQN = null;
+  private int hashCode = 0;
 
   RuntimeType(ClassSymbol typeClass) {
     this.typeClass = typeClass;
@@ -104,17 +106,22 @@ class RuntimeType implements InferredType {
   }
 
   private Set<String> typeClassSuperClassesFQN() {
-    if (typeClassSuperClassesFQN == null) {
-      typeClassSuperClassesFQN = typeClass.superClasses().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet());
+    Set<String> result = typeClassSuperClassesFQN;
+    if (result == null) {
+      // runtime types of TypeShed classes are shared by concurrent analyses
+      result = Collections.unmodifiableSet(typeClass.superClasses().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet()));
+      typeClassSuperClassesFQN = result;
     }
-    return typeClassSuperClassesFQN;
+    return result;
   }
 
   private Set<String> typeClassMembersFQN() {
-    if (typeClassMembersFQN == null) {
-      typeClassMembersFQN = typeClass.declaredMembers().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet());
+    Set<String> result = typeClassMembersFQN;
+    if (result == null) {
+      result = Collections.unmodifiableSet(typeClass.declaredMembers().stream().map(Symbol::fullyQualifiedName).collect(Collectors.toSet()));
+      typeClassMembersFQN = result;
     }
-    return typeClassMembersFQN;
+    return result;
   }
 
   boolean hasUnresolvedHierarchy() {
@@ -123,7 +130,10 @@ class RuntimeType implements InferredType {
 
   @Override
   public int hashCode() {
-    return Objects.hash(typeClass.fullyQualifiedName(), typeClassSuperClassesFQN(), typeClassMembersFQN());
+    if (hashCode == 0) {
+      hashCode = Objects.hash(typeClass.fullyQualifiedName(), typeClassSuperClassesFQN(), typeClassMembersFQN());
+    }
+    return hashCode;
   }
 
   @Override
@@ -20,20 +20,25 @@
 package org.sonar.python.types;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.symbols.Usage;
 import org.sonar.plugins.python.api.tree.AssignmentStatement;
-import org.sonar.plugins.python.api.tree.BaseTreeVisitor;
 import org.sonar.plugins.python.api.tree.Expression;
 import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.plugins.python.api.tree.FunctionDef;
@@ -43,42 +48,65 @@ import org.sonar.plugins.python.api.tree.QualifiedExpression;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.plugins.python.api.types.InferredType;
 import org.sonar.python.semantic.SymbolImpl;
+import org.sonar.python.tree.DeepTreeVisitor;
 import org.sonar.python.tree.NameImpl;
 
-public class TypeInference extends BaseTreeVisitor {
+public class TypeInference extends DeepTreeVisitor {
 
   // The super() builtin is not specified precisely in typeshed.
   // It should return a proxy object (temporary object of the superclass) that allows to access methods of the base class
   // https://docs.python.org/3/library/functions.html#super
   private static final InferredType TYPE_OF_SUPER = InferredTypes.runtimeType(TypeShed.typeShedClass("super"));
 
+  // unions with more alternatives are widened to "any type", so that inference converges quickly on loops
+  static final int MAX_UNION_SIZE = 20;
+
+  private static final Logger LOG = Loggers.get(TypeInference.class);
+
   private final FunctionLike functionDef;
-  private final Map<Symbol, Set<Assignment>> assignmentsByLhs = new HashMap<>();
-  private final Map<QualifiedExpression, MemberAccess> memberAccessesByQualifiedExpr = new HashMap<>();
+  private final Map<Symbol, Set<Assignment>> assignmentsByLhs = new LinkedHashMap<>();
+  private final Map<QualifiedExpression, MemberAccess> memberAccessesByQualifiedExpr = new LinkedHashMap<>();
+  private int propagationCount = 0;
 
-  public static void inferTypes(FileInput fileInput) {
-    fileInput.accept(new BaseTreeVisitor() {
+  /**
+   * Infers types inside the given function, including its nested functions, and resolves its member accesses accordingly.
+   */
+  static void inferTypes(Tree function) {
+    function.accept(new DeepTreeVisitor() {
       @Override
       public void visitFunctionDef(FunctionDef funcDef) {
         super.visitFunctionDef(funcDef);
         inferTypesAndMemberAccessSymbols(funcDef);
       }
     });
+    function.accept(new MemberResolutionVisitor());
+  }
 
-    fileInput.accept(new BaseTreeVisitor() {
+  /**
+   * Resolves member accesses of the code which is outside of any function.
+   */
+  static void inferModuleLevelTypes(FileInput fileInput) {
+    fileInput.accept(new MemberResolutionVisitor() {
       @Override
-      public void visitQualifiedExpression(QualifiedExpression qualifiedExpression) {
-        super.visitQualifiedExpression(qualifiedExpression);
-        Name name = qualifiedExpression.name();
-        InferredType type = qualifiedExpression.qualifier().type();
-        if (!type.equals(TYPE_OF_SUPER)) {
-          Optional<Symbol> resolvedMember = type.resolveMember(name.name());
-          resolvedMember.ifPresent(((NameImpl) name)::setSymbol);
-        }
+      public void visitFunctionDef(FunctionDef funcDef) {
+        // functions are inferred separately
       }
     });
   }
 
+  private static class MemberResolutionVisitor extends DeepTreeVisitor {
+    @Override
+    public void visitQualifiedExpression(QualifiedExpression qualifiedExpression) {
+      super.visitQualifiedExpression(qualifiedExpression);
+      Name name = qualifiedExpression.name();
+      InferredType type = qualifiedExpression.qualifier().type();
+      if (!type.equals(TYPE_OF_SUPER)) {
+        Optional<Symbol> resolvedMember = type.resolveMember(name.name());
+        resolvedMember.ifPresent(((NameImpl) name)::setSymbol);
+      }
+    }
+  }
+
   private static void inferTypesAndMemberAccessSymbols(FunctionLike functionDef) {
     TypeInference visitor = new TypeInference(functionDef);
     functionDef.accept(visitor);
@@ -110,7 +138,7 @@ public class TypeInference extends BaseTreeVisitor {
 
     Expression rhs = assignmentStatement.assignedValue();
     Assignment assignment = new Assignment(symbol, lhs, rhs);
-    assignmentsByLhs.computeIfAbsent(symbol, s -> new HashSet<>()).add(assignment);
+    assignmentsByLhs.computeIfAbsent(symbol, s -> new LinkedHashSet<>()).add(assignment);
   }
 
   @Override
@@ -134,7 +162,7 @@ public class TypeInference extends BaseTreeVisitor {
       }
     }
 
-    Set<Propagation> propagations = new HashSet<>();
+    List<Propagation> propagations = new ArrayList<>();
     Set<Symbol> initializedVars = new HashSet<>();
 
     for (MemberAccess memberAccess : memberAccessesByQualifiedExpr.values()) {
@@ -148,29 +176,97 @@ public class TypeInference extends BaseTreeVisitor {
       }
     });
 
-    applyPropagations(propagations, initializedVars, true);
-    applyPropagations(propagations, initializedVars, false);
+    List<Set<Propagation>> components = stronglyConnectedComponents(propagations);
+    components.forEach(component -> applyPropagations(component, initializedVars, true));
+    components.forEach(component -> applyPropagations(component, initializedVars, false));
+    if (functionDef.is(Tree.Kind.FUNCDEF)) {
+      LOG.debug("Type inference of function \"{}\" (line {}): {} propagations, {} strongly connected components",
+        ((FunctionDef) functionDef).name().name(), functionDef.firstToken().line(), propagationCount, components.size());
+    }
   }
 
-  private void applyPropagations(Set<Propagation> propagations, Set<Symbol> initializedVars, boolean checkDependenciesReadiness) {
-    Set<Propagation> workSet = new HashSet<>(propagations);
+  /**
+   * Components are processed in topological order: a component is only processed once all the propagations it depends on
+   * have reached their fixpoint. Iterating until fixpoint is therefore only needed inside cyclic components.
+   */
+  private void applyPropagations(Set<Propagation> component, Set<Symbol> initializedVars, boolean checkDependenciesReadiness) {
+    Set<Propagation> workSet = new LinkedHashSet<>(component);
     while (!workSet.isEmpty()) {
       Iterator<Propagation> iterator = workSet.iterator();
       Propagation propagation = iterator.next();
       iterator.remove();
       if (!checkDependenciesReadiness || propagation.areDependenciesReady(initializedVars)) {
+        propagationCount++;
         boolean learnt = propagation.propagate(initializedVars);
         if (learnt) {
-          workSet.addAll(propagation.dependents());
+          propagation.dependents().stream().filter(component::contains).forEach(workSet::add);
         }
       }
     }
   }
 
+  /**
+   * Iterative version of Tarjan's algorithm, as assignment chains can be very long.
+   * @return strongly connected components of the dependency graph, in topological order
+   */
+  private static List<Set<Propagation>> stronglyConnectedComponents(List<Propagation> propagations) {
+    Map<Propagation, Integer> indexes = new HashMap<>();
+    Map<Propagation, Integer> lowLinks = new HashMap<>();
+    Map<Propagation, Iterator<Propagation>> remainingDependents = new HashMap<>();
+    Deque<Propagation> stack = new ArrayDeque<>();
+    Set<Propagation> onStack = new HashSet<>();
+    Deque<Propagation> callStack = new ArrayDeque<>();
+    List<Set<Propagation>> components = new ArrayList<>();
+    for (Propagation root : propagations) {
+      if (indexes.containsKey(root)) {
+        continue;
+      }
+      callStack.push(root);
+      while (!callStack.isEmpty()) {
+        Propagation current = callStack.peek();
+        if (!indexes.containsKey(current)) {
+          indexes.put(current, indexes.size());
+          lowLinks.put(current, indexes.get(current));
+          remainingDependents.put(current, current.dependents().iterator());
+          stack.push(current);
+          onStack.add(current);
+        }
+        Iterator<Propagation> dependents = remainingDependents.get(current);
+        if (dependents.hasNext()) {
+          Propagation dependent = dependents.next();
+          if (!indexes.containsKey(dependent)) {
+            callStack.push(dependent);
+          } else if (onStack.contains(dependent)) {
+            lowLinks.put(current, Math.min(lowLinks.get(current), indexes.get(dependent)));
+          }
+        } else {
+          callStack.pop();
+          if (!callStack.isEmpty()) {
+            Propagation caller = callStack.peek();
+            lowLinks.put(caller, Math.min(lowLinks.get(caller), lowLinks.get(current)));
+          }
+          if (lowLinks.get(current).equals(indexes.get(current))) {
+            Set<Propagation> component = new LinkedHashSet<>();
+            Propagation member;
+            do {
+              member = stack.pop();
+              onStack.remove(member);
+              component.add(member);
+            } while (member != current);
+            components.add(component);
+          }
+        }
+      }
+    }
+    // Tarjan's algorithm completes a component after all the components depending on it
+    Collections.reverse(components);
+    return components;
+  }
+
   private abstract class Propagation {
     private final Set<Symbol> variableDependencies = new HashSet<>();
     private final Set<QualifiedExpression> memberAccessDependencies = new HashSet<>();
-    private final Set<Propagation> dependents = new HashSet<>();
+    private final Set<Propagation> dependents = new LinkedHashSet<>();
 
     abstract boolean propagate(Set<Symbol> initializedVars);
 
@@ -228,13 +324,20 @@ public class TypeInference extends BaseTreeVisitor {
         return true;
       } else {
         InferredType currentType = lhs.inferredType();
-        InferredType newType = InferredTypes.or(rhsType, currentType);
+        InferredType newType = widen(InferredTypes.or(rhsType, currentType));
         lhs.setInferredType(newType);
         return !newType.equals(currentType);
       }
     }
   }
 
+  private static InferredType widen(InferredType type) {
+    if (type instanceof UnionType && ((UnionType) type).types().size() > MAX_UNION_SIZE) {
+      return InferredTypes.anyType();
+    }
+    return type;
+  }
+
   private class MemberAccess extends Propagation {
 
     private final QualifiedExpression qualifiedExpression;
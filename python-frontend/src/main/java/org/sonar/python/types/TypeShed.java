@@ -27,6 +27,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.sonar.plugins.python.api.PythonFile;
@@ -38,6 +39,7 @@ import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.plugins.python.api.tree.FunctionDef;
 import org.sonar.plugins.python.api.tree.ParameterList;
 import org.sonar.plugins.python.api.tree.TypeAnnotation;
+import org.sonar.python.AnalysisCancellation;
 import org.sonar.python.parser.PythonParser;
 import org.sonar.python.semantic.AmbiguousSymbolImpl;
 import org.sonar.python.semantic.ClassSymbolImpl;
@@ -53,8 +55,10 @@ public class TypeShed {
 
   private static final String TYPING = "typing";
   private static final String TYPING_EXTENSIONS = "typing_extensions";
-  private static Map<String, Symbol> builtins;
-  private static final Map<String, Set<Symbol>> typeShedSymbols = new HashMap<>();
+  private static volatile Map<String, Symbol> builtins;
+  // builtin symbols being loaded, visible to the thread which loads them only
+  private static Map<String, Symbol> loadingBuiltins;
+  private static final Map<String, Set<Symbol>> typeShedSymbols = new ConcurrentHashMap<>();
   private static final Map<String, Set<Symbol>> builtinGlobalSymbols = new HashMap<>();
   
   private static final String STDLIB_2AND3 = "typeshed/stdlib/2and3/";
@@ -67,8 +71,29 @@ public class TypeShed {
   private TypeShed() {
   }
 
+  /**
+   * TypeShed symbols are shared by the analyses of all the files, which may run concurrently: they are loaded while holding
+   * the lock of this class, and published once complete.
+   */
   public static Map<String, Symbol> builtinSymbols() {
-    if (TypeShed.builtins == null) {
+    Map<String, Symbol> symbols = TypeShed.builtins;
+    return symbols != null ? symbols : loadBuiltinSymbols();
+  }
+
+  private static Map<String, Symbol> loadBuiltinSymbols() {
+    // TypeShed symbols are shared by all the files: they must not be left incomplete by the cancellation of an analysis
+    return AnalysisCancellation.uncancellable(TypeShed::loadBuiltinSymbolsUncancellable);
+  }
+
+  private static Map<String, Symbol> loadBuiltinSymbolsUncancellable() {
+    initializeInferredTypes();
+    synchronized (TypeShed.class) {
+      if (TypeShed.builtins != null) {
+        return TypeShed.builtins;
+      }
+      if (TypeShed.loadingBuiltins != null) {
+        return TypeShed.loadingBuiltins;
+      }
       Map<String, Symbol> builtins = new HashMap<>();
       builtins.put(NONE_TYPE, new ClassSymbolImpl(NONE_TYPE, NONE_TYPE));
       InputStream resource = TypeShed.class.getResourceAsStream("typeshed/stdlib/2and3/builtins.pyi");
@@ -85,12 +110,22 @@ public class TypeShed {
         ((SymbolImpl) globalVariable).removeUsages();
         builtins.put(globalVariable.fullyQualifiedName(), globalVariable);
       }
-      TypeShed.builtins = Collections.unmodifiableMap(builtins);
+      TypeShed.loadingBuiltins = Collections.unmodifiableMap(builtins);
       InferredTypes.setBuiltinSymbols(builtins);
       fileInput.accept(new ReturnTypeVisitor());
       TypeShed.builtinGlobalSymbols.put("", new HashSet<>(builtins.values()));
+      TypeShed.builtins = TypeShed.loadingBuiltins;
+      TypeShed.loadingBuiltins = null;
+      return TypeShed.builtins;
     }
-    return builtins;
+  }
+
+  /**
+   * The static initialization of {@link InferredTypes} reads builtin symbols: it is triggered before taking the lock of this
+   * class, so that a thread holding the lock never waits for another thread initializing {@link InferredTypes}.
+   */
+  private static void initializeInferredTypes() {
+    InferredTypes.anyType();
   }
 
   private static void setDeclaredReturnType(Symbol symbol, FunctionDef functionDef) {
@@ -143,12 +178,20 @@ public class TypeShed {
   }
 
   public static Set<Symbol> symbolsForModule(String moduleName) {
-    if (!TypeShed.typeShedSymbols.containsKey(moduleName)) {
-      Set<Symbol> symbols = searchTypeShedForModule(moduleName);
-      typeShedSymbols.put(moduleName, symbols);
+    Set<Symbol> symbols = TypeShed.typeShedSymbols.get(moduleName);
+    return symbols != null ? symbols : loadSymbolsForModule(moduleName);
+  }
+
+  private static Set<Symbol> loadSymbolsForModule(String moduleName) {
+    initializeInferredTypes();
+    synchronized (TypeShed.class) {
+      Set<Symbol> symbols = TypeShed.typeShedSymbols.get(moduleName);
+      if (symbols == null) {
+        symbols = searchTypeShedForModule(moduleName);
+        typeShedSymbols.put(moduleName, symbols);
+      }
       return symbols;
     }
-    return TypeShed.typeShedSymbols.get(moduleName);
   }
 
   public static Symbol symbolWithFQN(String stdLibModuleName, String fullyQualifiedName) {
@@ -177,6 +220,10 @@ public class TypeShed {
   }
 
   private static Map<String, Symbol> getModuleSymbols(String moduleName, String categoryPath, Map<String, Set<Symbol>> initialSymbols) {
+    return AnalysisCancellation.uncancellable(() -> getModuleSymbolsUncancellable(moduleName, categoryPath, initialSymbols));
+  }
+
+  private static Map<String, Symbol> getModuleSymbolsUncancellable(String moduleName, String categoryPath, Map<String, Set<Symbol>> initialSymbols) {
     String resourcePath = categoryPath + moduleName + ".pyi";
     InputStream resource = TypeShed.class.getResourceAsStream(resourcePath);
     if (resource == null) {
@@ -33,6 +33,7 @@ import static org.sonar.python.types.InferredTypes.anyType;
 class UnionType implements InferredType {
 
   private final Set<InferredType> types;
+  private int hashCode = 0;
 
   private UnionType(Set<InferredType> types) {
     this.types = types;
@@ -42,15 +43,27 @@ class UnionType implements InferredType {
     if (type1.equals(anyType()) || type2.equals(anyType())) {
       return anyType();
     }
-    if (type1.equals(type2)) {
+    if (type1.equals(type2) || containsAll(type1, type2)) {
       return type1;
     }
+    if (containsAll(type2, type1)) {
+      // avoids allocating a new union when joining with an already known type
+      return type2;
+    }
     Set<InferredType> types = new HashSet<>();
     addTypes(type1, types);
     addTypes(type2, types);
     return new UnionType(types);
   }
 
+  private static boolean containsAll(InferredType union, InferredType type) {
+    if (!(union instanceof UnionType)) {
+      return false;
+    }
+    Set<InferredType> unionTypes = ((UnionType) union).types;
+    return type instanceof UnionType ? unionTypes.containsAll(((UnionType) type).types) : unionTypes.contains(type);
+  }
+
   private static void addTypes(InferredType type, Set<InferredType> types) {
     if (type instanceof UnionType) {
       types.addAll(((UnionType) type).types);
@@ -110,7 +123,10 @@ class UnionType implements InferredType {
 
   @Override
   public int hashCode() {
-    return Objects.hash(types);
+    if (hashCode == 0) {
+      hashCode = Objects.hash(types);
+    }
+    return hashCode;
   }
 
   @Override
@@ -0,0 +1,103 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python.api;
+
+import java.net.URI;
+import org.junit.Test;
+import org.sonar.plugins.python.api.LineIndex.LineTerminator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LineIndexTest {
+
+  @Test
+  public void empty_content() {
+    LineIndex lines = new LineIndex("");
+    assertThat(lines.lineCount()).isEqualTo(1);
+    assertThat(lines.lineStart(1)).isZero();
+    assertThat(lines.lineLength(1)).isZero();
+    assertThat(lines.lineTerminator(1)).isEqualTo(LineTerminator.NONE);
+  }
+
+  @Test
+  public void line_terminators() {
+    String content = "a\nbc\r\ndef\r\rg";
+    LineIndex lines = new LineIndex(content);
+    assertThat(lines.lineCount()).isEqualTo(5);
+    String[] expected = content.split("\r\n|\n|\r", -1);
+    for (int line = 1; line <= lines.lineCount(); line++) {
+      assertThat(content.substring(lines.lineStart(line), lines.lineStart(line) + lines.lineLength(line))).isEqualTo(expected[line - 1]);
+    }
+    assertThat(lines.lineTerminator(1)).isEqualTo(LineTerminator.LF);
+    assertThat(lines.lineTerminator(2)).isEqualTo(LineTerminator.CRLF);
+    assertThat(lines.lineTerminator(3)).isEqualTo(LineTerminator.CR);
+    assertThat(lines.lineTerminator(4)).isEqualTo(LineTerminator.CR);
+    assertThat(lines.lineTerminator(5)).isEqualTo(LineTerminator.NONE);
+  }
+
+  @Test
+  public void trailing_line_terminator() {
+    LineIndex lines = new LineIndex("x = 1\r\n");
+    assertThat(lines.lineCount()).isEqualTo(2);
+    assertThat(lines.lineLength(1)).isEqualTo(5);
+    assertThat(lines.lineStart(2)).isEqualTo(7);
+    assertThat(lines.lineLength(2)).isZero();
+  }
+
+  @Test
+  public void many_lines() {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      content.append("line").append(i).append("\n");
+    }
+    LineIndex lines = new LineIndex(content.toString());
+    assertThat(lines.lineCount()).isEqualTo(101);
+    assertThat(lines.lineLength(100)).isEqualTo("line99".length());
+  }
+
+  @Test
+  public void unknown_line() {
+    LineIndex lines = new LineIndex("a\nb");
+    assertThatThrownBy(() -> lines.lineStart(0)).isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> lines.lineLength(3)).isInstanceOf(IllegalArgumentException.class).hasMessage("Line 3 does not exist: there are 2 lines.");
+  }
+
+  @Test
+  public void default_python_file_index() {
+    PythonFile pythonFile = new PythonFile() {
+      @Override
+      public String content() {
+        return "a\nb";
+      }
+
+      @Override
+      public String fileName() {
+        return "file.py";
+      }
+
+      @Override
+      public URI uri() {
+        return null;
+      }
+    };
+    assertThat(pythonFile.lineIndex().lineCount()).isEqualTo(2);
+  }
+}
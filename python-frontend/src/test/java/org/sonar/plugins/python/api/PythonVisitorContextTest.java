@@ -84,4 +84,15 @@ public class PythonVisitorContextTest {
     new PythonVisitorContext(fileInput, pythonFile, null, "my_package", globalSymbols);
     assertThat(fileInput.globalVariables()).extracting(Symbol::name).containsExactlyInAnyOrder("a", "b");
   }
+
+  @Test
+  public void without_semantic() {
+    FileInput fileInput = new PythonTreeMaker().fileInput(PythonParser.create().parse("def foo(): pass"));
+    PythonVisitorContext context = new PythonVisitorContext(fileInput, pythonFile("my_module.py"), null);
+    assertThat(context.rootTree()).isSameAs(fileInput);
+    assertThat(context.parsingException()).isNull();
+    FunctionDef functionDef = (FunctionDef) PythonTestUtils.getAllDescendant(fileInput, t -> t.is(Tree.Kind.FUNCDEF)).get(0);
+    assertThat(functionDef.name().symbol()).isNull();
+    assertThat(fileInput.globalVariables()).isEmpty();
+  }
 }
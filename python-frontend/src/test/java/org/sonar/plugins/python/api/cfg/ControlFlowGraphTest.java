@@ -19,7 +19,13 @@
  */
 package org.sonar.plugins.python.api.cfg;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -243,6 +249,31 @@ public class ControlFlowGraphTest {
       )).isNull();
   }
 
+  @Test
+  public void concurrent_failures() throws Exception {
+    // the trees whose control flow graph cannot be built are shared by concurrent analyses
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        // the parser is not thread-safe
+        List<FileInput> invalidFiles = new ArrayList<>();
+        for (int j = 0; j < 200; j++) {
+          invalidFiles.add(PythonTestUtils.parse("continue"));
+        }
+        FileInput valid = PythonTestUtils.parse("pass");
+        Callable<Boolean> builds = () -> invalidFiles.stream()
+          .allMatch(invalid -> ControlFlowGraph.build(invalid, file) == null && ControlFlowGraph.build(invalid, file) == null && ControlFlowGraph.build(valid, file) != null);
+        results.add(executor.submit(builds));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void continue_nested_while() {
     verifyCfg(
@@ -20,6 +20,8 @@
 package org.sonar.plugins.python.api.tree;
 
 import com.sonar.sslr.api.AstNode;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 import javax.annotation.Nullable;
@@ -364,6 +366,34 @@ public class BaseTreeVisitorTest extends RuleTest {
     verify(visitor).visitNumericLiteral((NumericLiteral) expr.expressionList().expressions().get(0));
   }
 
+  @Test
+  public void long_chain_visited_recursively() {
+    setRootRule(PythonGrammar.TEST);
+    String code = String.join(" + ", Collections.nCopies(500, "x"));
+    BinaryExpression expr = (BinaryExpression) parse(code, treeMaker::expression);
+    List<Tree> visited = new ArrayList<>();
+    expr.accept(new BaseTreeVisitor() {
+      @Override
+      public void visitBinaryExpression(BinaryExpression binaryExpression) {
+        visited.add(binaryExpression);
+        super.visitBinaryExpression(binaryExpression);
+      }
+
+      @Override
+      public void visitName(Name name) {
+        visited.add(name);
+      }
+    });
+
+    // outermost operation first, then its left operand, as for a short chain
+    assertThat(visited).hasSize(999);
+    assertThat(visited.get(0)).isSameAs(expr);
+    assertThat(visited.get(1)).isSameAs(expr.leftOperand());
+    assertThat(visited.get(498)).isInstanceOf(BinaryExpression.class);
+    assertThat(visited.get(499)).isInstanceOf(Name.class);
+    assertThat(visited.get(998)).isSameAs(expr.rightOperand());
+  }
+
   private <T> T parse(String code, Function<AstNode, T> func) {
     return func.apply(p.parse(code));
   }
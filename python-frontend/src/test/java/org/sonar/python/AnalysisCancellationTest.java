@@ -0,0 +1,117 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.lexer.LexerState;
+import org.sonar.python.lexer.PythonTokenizer;
+import org.sonar.python.parser.PythonParser;
+import org.sonar.python.semantic.SymbolTableBuilder;
+import org.sonar.python.tree.PythonTreeParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.sonar.python.PythonTestUtils.pythonFile;
+
+public class AnalysisCancellationTest {
+
+  @After
+  public void unregister() {
+    AnalysisCancellation.unregister();
+  }
+
+  @Test
+  public void current_cancellation() {
+    AnalysisCancellation none = AnalysisCancellation.current();
+    none.cancel();
+    assertThat(none.isCancelled()).isFalse();
+    none.check();
+
+    AnalysisCancellation cancellation = AnalysisCancellation.register();
+    assertThat(AnalysisCancellation.current()).isSameAs(cancellation);
+    cancellation.check();
+    cancellation.cancel();
+    assertThat(cancellation.isCancelled()).isTrue();
+    assertThatThrownBy(cancellation::check).isInstanceOf(AnalysisCancelledException.class).hasMessage("Analysis cancelled");
+
+    AnalysisCancellation.unregister();
+    assertThat(AnalysisCancellation.current()).isSameAs(none);
+  }
+
+  @Test
+  public void cancelled_parsing() {
+    AnalysisCancellation.register().cancel();
+    assertThatThrownBy(() -> new PythonTokenizer(new LexerState()).tokenize("x = 1")).isInstanceOf(AnalysisCancelledException.class);
+    assertThatThrownBy(() -> PythonTreeParser.create(true).parse("x = 1")).isInstanceOf(AnalysisCancelledException.class);
+  }
+
+  @Test
+  public void cancelled_sslr_parsing() {
+    AnalysisCancellation.register().cancel();
+    // the regular expressions of the lexer check the cancellation every 1024 characters they read
+    String longNumber = "x = " + String.join("", Collections.nCopies(2000, "1"));
+    assertThatThrownBy(() -> PythonParser.create(false).parse(longNumber)).isInstanceOf(AnalysisCancelledException.class);
+    assertThatThrownBy(() -> PythonTreeParser.create(false).parse("x = 1")).isInstanceOf(AnalysisCancelledException.class);
+  }
+
+  @Test
+  public void cancelled_symbol_table() {
+    FileInput fileInput = PythonTreeParser.create(false).parse("def foo(x):\n  return x.bar\n");
+    AnalysisCancellation.register().cancel();
+    SymbolTableBuilder symbolTableBuilder = new SymbolTableBuilder(pythonFile("mod.py"));
+    assertThatThrownBy(() -> symbolTableBuilder.visitFileInput(fileInput)).isInstanceOf(AnalysisCancelledException.class);
+  }
+
+  @Test
+  public void uncancellable() {
+    AnalysisCancellation cancellation = AnalysisCancellation.register();
+    cancellation.cancel();
+    FileInput fileInput = AnalysisCancellation.uncancellable(() -> PythonTreeParser.create(false).parse("x = 1"));
+    assertThat(fileInput.statements().statements()).hasSize(1);
+    assertThat(AnalysisCancellation.current()).isSameAs(cancellation);
+  }
+
+  @Test
+  public void cancelled_subscription_visitor() {
+    PythonVisitorContext context = TestPythonVisitorRunner.createContext(new File("src/test/resources/file.py"));
+    AnalysisCancellation cancellation = AnalysisCancellation.register();
+    List<Tree> visited = new ArrayList<>();
+    PythonSubscriptionCheck check = new PythonSubscriptionCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.NAME, ctx -> {
+          visited.add(ctx.syntaxNode());
+          cancellation.cancel();
+        });
+      }
+    };
+    assertThatThrownBy(() -> SubscriptionVisitor.analyze(Collections.singletonList(check), context)).isInstanceOf(AnalysisCancelledException.class);
+    assertThat(visited).hasSize(1);
+  }
+}
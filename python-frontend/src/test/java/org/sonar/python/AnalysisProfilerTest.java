@@ -0,0 +1,212 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.AnalysisProfiler.Phase;
+import org.sonar.python.tree.PythonTreeParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalysisProfilerTest {
+
+  @After
+  public void unregister() {
+    AnalysisProfiler.unregister();
+  }
+
+  @Test
+  public void disabled_profiler() {
+    AnalysisProfiler disabled = AnalysisProfiler.current();
+    assertThat(disabled.isEnabled()).isFalse();
+    disabled.start(Phase.PARSING);
+    disabled.stop();
+    assertThat(disabled.measure(Phase.PARSING).nanos()).isZero();
+    assertThat(disabled.totalNanos()).isZero();
+
+    AnalysisProfiler profiler = AnalysisProfiler.register();
+    assertThat(AnalysisProfiler.current()).isSameAs(profiler);
+    assertThat(profiler.isEnabled()).isTrue();
+    AnalysisProfiler.unregister();
+    assertThat(AnalysisProfiler.current()).isSameAs(disabled);
+  }
+
+  @Test
+  public void exclusive_measures() throws InterruptedException {
+    AnalysisProfiler profiler = AnalysisProfiler.register();
+    profiler.start(Phase.PARSING);
+    Thread.sleep(20);
+    profiler.start(Phase.TREE_MAKING);
+    Thread.sleep(20);
+    profiler.stop();
+    profiler.stop();
+    // nothing is running
+    Thread.sleep(20);
+    profiler.stop();
+
+    long parsing = profiler.measure(Phase.PARSING).nanos();
+    long treeMaking = profiler.measure(Phase.TREE_MAKING).nanos();
+    assertThat(parsing).isBetween(20_000_000L, 39_000_000L);
+    assertThat(treeMaking).isGreaterThanOrEqualTo(20_000_000L);
+    assertThat(profiler.totalNanos()).isEqualTo(parsing + treeMaking);
+    if (AnalysisProfiler.measuresAllocations()) {
+      profiler.start(Phase.METRICS);
+      byte[] allocated = new byte[1_000_000];
+      profiler.stop();
+      assertThat(allocated).hasSize(1_000_000);
+      assertThat(profiler.measure(Phase.METRICS).allocatedBytes()).isGreaterThanOrEqualTo(1_000_000L);
+    }
+  }
+
+  @Test
+  public void stop_all() {
+    AnalysisProfiler profiler = AnalysisProfiler.register();
+    profiler.start(Phase.RULES);
+    profiler.start(Phase.TYPE_INFERENCE);
+    profiler.stopAll();
+    long total = profiler.totalNanos();
+    profiler.stop();
+    assertThat(profiler.totalNanos()).isEqualTo(total);
+  }
+
+  @Test
+  public void add() {
+    AnalysisProfiler parsingThread = AnalysisProfiler.aggregate();
+    parsingThread.start(Phase.PARSING);
+    parsingThread.stop();
+    AnalysisProfiler profiler = AnalysisProfiler.aggregate();
+    profiler.start(Phase.PARSING);
+    profiler.stop();
+    PythonSubscriptionCheck check = new PythonSubscriptionCheck() {
+      @Override
+      public void initialize(Context context) {
+        // no subscription
+      }
+    };
+    parsingThread.startRule(check, "NAME");
+    parsingThread.stop();
+    long parsing = profiler.measure(Phase.PARSING).nanos() + parsingThread.measure(Phase.PARSING).nanos();
+    profiler.add(parsingThread);
+    profiler.add(parsingThread);
+    assertThat(profiler.measure(Phase.PARSING).nanos()).isEqualTo(parsing + parsingThread.measure(Phase.PARSING).nanos());
+    assertThat(profiler.measure(Phase.PARSING).invocations()).isEqualTo(3);
+    assertThat(profiler.rules().get(check).invocations()).isEqualTo(2);
+    assertThat(profiler.rules().get(check).entryPoints().get("NAME").invocations()).isEqualTo(2);
+  }
+
+  @Test
+  public void tree_making() {
+    AnalysisProfiler profiler = AnalysisProfiler.register();
+    profiler.start(Phase.PARSING);
+    PythonTreeParser.create(false).parse("x = 1");
+    profiler.stop();
+    assertThat(profiler.measure(Phase.TREE_MAKING).nanos()).isPositive();
+    assertThat(profiler.measure(Phase.PARSING).nanos()).isPositive();
+  }
+
+  @Test
+  public void rule_time_budget() {
+    PythonVisitorContext context = TestPythonVisitorRunner.createContext(new File("src/test/resources/file.py"));
+    AnalysisProfiler profiler = AnalysisProfiler.register(TimeUnit.MILLISECONDS.toNanos(50));
+    List<String> calls = new ArrayList<>();
+    PythonSubscriptionCheck slowCheck = new PythonSubscriptionCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.NAME, ctx -> {
+          calls.add("NAME");
+          sleep(100);
+        });
+      }
+
+      @Override
+      public void leaveFile() {
+        calls.add("leaveFile");
+      }
+    };
+    PythonSubscriptionCheck fastCheck = new PythonSubscriptionCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.NAME, ctx -> calls.add("fast NAME"));
+      }
+    };
+    profiler.start(Phase.RULES);
+    SubscriptionVisitor.analyze(Arrays.asList(slowCheck, fastCheck), context);
+    profiler.stop();
+
+    assertThat(calls.stream().filter("NAME"::equals).count()).isEqualTo(1);
+    assertThat(calls.stream().filter("fast NAME"::equals).count()).isEqualTo(5);
+    assertThat(calls).endsWith("leaveFile");
+    assertThat(profiler.isOverBudget(slowCheck)).isTrue();
+    assertThat(profiler.isOverBudget(fastCheck)).isFalse();
+    assertThat(AnalysisProfiler.aggregate().isOverBudget(slowCheck)).isFalse();
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Test
+  public void rules_and_type_inference() {
+    PythonVisitorContext context = TestPythonVisitorRunner.createContext(new File("src/test/resources/file.py"));
+    AnalysisProfiler profiler = AnalysisProfiler.register();
+    PythonSubscriptionCheck check = new PythonSubscriptionCheck() {
+      @Override
+      public void initialize(Context context) {
+        context.registerSyntaxNodeConsumer(Tree.Kind.NAME, ctx -> ((Name) ctx.syntaxNode()).type());
+      }
+    };
+    profiler.start(Phase.METRICS);
+    SubscriptionVisitor.analyze(Collections.singletonList(check), context);
+    profiler.stop();
+    // only the visitors run in the rules phase are measured as rules
+    assertThat(profiler.rules()).isEmpty();
+    assertThat(profiler.isRunning(Phase.RULES)).isFalse();
+
+    profiler.start(Phase.RULES);
+    assertThat(profiler.isRunning(Phase.RULES)).isTrue();
+    SubscriptionVisitor.analyze(Collections.singletonList(check), context);
+    profiler.stop();
+
+    assertThat(profiler.rules()).containsOnlyKeys(check);
+    AnalysisProfiler.RuleMeasure rule = profiler.rules().get(check);
+    assertThat(rule.nanos()).isPositive();
+    assertThat(rule.entryPoints()).containsOnlyKeys(AnalysisProfiler.INITIALIZE, "NAME", AnalysisProfiler.LEAVE_FILE);
+    assertThat(rule.entryPoints().get("NAME").invocations()).isEqualTo(5);
+    assertThat(rule.invocations()).isEqualTo(7);
+    assertThat(rule.entryPoints().values().stream().mapToLong(AnalysisProfiler.Measure::nanos).sum()).isEqualTo(rule.nanos());
+    assertThat(profiler.measure(Phase.RULES).nanos()).isGreaterThanOrEqualTo(profiler.rules().get(check).nanos());
+    assertThat(profiler.measure(Phase.TYPE_INFERENCE).nanos()).isPositive();
+  }
+}
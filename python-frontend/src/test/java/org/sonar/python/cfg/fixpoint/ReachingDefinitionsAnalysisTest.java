@@ -64,6 +64,25 @@ public class ReachingDefinitionsAnalysisTest {
     assertThat(analysis.valuesAtLocation(x)).extracting(ReachingDefinitionsAnalysisTest::getValueAsString).containsExactlyInAnyOrder("1", "2");
   }
 
+  @Test
+  public void valuesAtLocation_definition_after_join() {
+    FileInput fileInput = parse(
+      "def f(p):",
+      "  if p:",
+      "    x = 1",
+      "  else:",
+      "    x = 2",
+      "  x",
+      "  x = 3",
+      "  x"
+    );
+    Name x = ((Name) ((ExpressionStatement) getFirstDescendant(fileInput, tree -> tree.is(EXPRESSION_STMT))).expressions().get(0));
+    assertThat(analysis.valuesAtLocation(x)).extracting(ReachingDefinitionsAnalysisTest::getValueAsString).containsExactlyInAnyOrder("1", "2");
+
+    x = ((Name) ((ExpressionStatement) getLastDescendant(fileInput, tree -> tree.is(EXPRESSION_STMT))).expressions().get(0));
+    assertThat(analysis.valuesAtLocation(x)).extracting(ReachingDefinitionsAnalysisTest::getValueAsString).containsExactly("3");
+  }
+
   @Test
   public void valuesAtLocation_outside_function() {
     Name x = (Name) lastExpression("x = 42; x");
@@ -131,6 +150,25 @@ public class ReachingDefinitionsAnalysisTest {
     assertThat(analysis.valuesAtLocation(x)).isEmpty();
   }
 
+  @Test
+  public void symbol_assigned_in_several_functions() {
+    FileInput fileInput = parse(
+      "def f():",
+      "  global x",
+      "  x = 1",
+      "  x",
+      "def g():",
+      "  global x",
+      "  x = 2",
+      "  x"
+    );
+    Name xInF = ((Name) ((ExpressionStatement) getFirstDescendant(fileInput, tree -> tree.is(EXPRESSION_STMT))).expressions().get(0));
+    Name xInG = ((Name) ((ExpressionStatement) getLastDescendant(fileInput, tree -> tree.is(EXPRESSION_STMT))).expressions().get(0));
+    // the assignment in "g" is not known yet
+    assertThat(analysis.valuesAtLocation(xInF)).isEmpty();
+    assertThat(analysis.valuesAtLocation(xInG)).extracting(ReachingDefinitionsAnalysisTest::getValueAsString).containsExactly("2");
+  }
+
   @Test
   public void compound_assignments() {
     Name x = (Name) lastExpressionInFunction("x = 42; x += 1; x");
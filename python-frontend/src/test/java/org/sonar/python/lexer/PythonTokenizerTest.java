@@ -0,0 +1,140 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.lexer;
+
+import com.sonar.sslr.api.Token;
+import com.sonar.sslr.api.Trivia;
+import com.sonar.sslr.impl.Lexer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.sonar.python.api.PythonTokenType;
+import org.sonar.python.parser.PythonParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PythonTokenizerTest {
+
+  private final LexerState sslrLexerState = new LexerState();
+  private final Lexer sslrLexer = PythonLexer.create(sslrLexerState);
+  private final LexerState tokenizerState = new LexerState();
+  private final PythonTokenizer tokenizer = new PythonTokenizer(tokenizerState);
+
+  @Test
+  public void simple_tokens() {
+    List<Token> tokens = tokenize("if x:\n  y = 0x1F # comment\n");
+    assertThat(tokens).extracting(Token::getValue).containsExactly("if", "x", ":", "\n", "  ", "y", "=", "0x1F", "\n", "EOF");
+    assertThat(tokens.get(4).getType()).isEqualTo(PythonTokenType.INDENT);
+    assertThat(tokens.get(8).getTrivia()).extracting(trivia -> trivia.getToken().getValue()).containsExactly("# comment");
+    assertThat(tokenizerState.indentationStack).containsExactly(2, 0);
+  }
+
+  @Test
+  public void same_tokens_as_sslr_lexer() {
+    assertSameTokens("");
+    assertSameTokens("\n\n  \n");
+    assertSameTokens("def f():\n\tif x:\n\t\treturn 1\n  # comment\n\n    pass\nx");
+    assertSameTokens("x = (1,\n  2)\ny = [\n]\nz = \\\n  3\n");
+    assertSameTokens("a = \\\n\n  b");
+    assertSameTokens("a = ]\nb = )\n\n c");
+    assertSameTokens("x = 1\r\ny = 2\rz = 3\r\n\r\n  w\r");
+    assertSameTokens("'abc' \"abc\" '''a\nb''' \"\"\"a\"b\"\"\" 'a\\'b' '\\\n' 'a\nb'");
+    assertSameTokens("r'x' R'x' u'x' b'x' br'x' Rb'x' rB'x' f'{x}' fr'x' Rf'x' ub'x' bb'x' rbb'x'");
+    assertSameTokens("'''unterminated", "b'''unterminated", "rb\"\"\"unterminated", "f'''x", "Rf\"\"\"x", "'unterminated", "b'x\\");
+    assertSameTokens("1 12 1_000 0 00 0_0 0777 0o17 0O_7 0o 0x1F 0X_f 0x 0b101 0B_1 0b 08 09.5 0l 12L 0xFFL");
+    assertSameTokens("1. 1.5 .5 1e5 1E+5 1e-5 1e 1e_ 1_0.0_1e1_0j 1j 1J .5j 1.j 1__0 1_ 5.real 1..2 ...");
+    assertSameTokens("+ - * ** / // % << >> & | ^ ~ < > <= >= == != <> ` ( ) [ ] { } , : . ; @ = += -= *= /= //= %= &= |= ^= >>= <<= **= @= := -> !");
+    assertSameTokens("café = ñ_1 + ΔΣ + 変数 + x\u0301 + _ + \uD835\uDC00 + a\u00A0b + $ + ? + \u000B\f");
+    assertSameTokens("async def f(): await x; nonlocal y; print exec None True False");
+    assertSameTokens("x = 1 # c1\n# c2\n\n# c3");
+    assertSameTokens("if x:\n  pass\n# c\n");
+  }
+
+  @Test
+  public void same_tokens_as_sslr_lexer_on_resources() throws IOException {
+    List<File> files;
+    try (Stream<java.nio.file.Path> paths = Files.walk(new File("src/test/resources").toPath())) {
+      files = paths.map(java.nio.file.Path::toFile).filter(file -> file.getName().endsWith(".py")).collect(Collectors.toList());
+    }
+    assertThat(files).isNotEmpty();
+    for (File file : files) {
+      assertSameTokens(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void same_tokens_as_sslr_lexer_on_random_input() {
+    String[] fragments = {" ", "  ", "\t", "\n", "\r", "\r\n", "\\", "\\\n", "#", "'", "\"", "'''", "\"\"\"", "b", "r", "f", "u", "R", "B",
+      "0", "1", "7", "9", "x", "o", "e", "E", "j", "L", "_", ".", "+", "-", "*", "=", "<", ">", "(", ")", "[", "]", "{", "}", ":", "!",
+      "é", "\u0301", "\u00A0", "if", "def", "\u000B"};
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      StringBuilder sb = new StringBuilder();
+      int size = random.nextInt(40);
+      for (int j = 0; j < size; j++) {
+        sb.append(fragments[random.nextInt(fragments.length)]);
+      }
+      assertSameTokens(sb.toString());
+    }
+  }
+
+  @Test
+  public void parser_with_hand_written_lexer() {
+    String source = "class A:\n  def f(self, x):\n    if x:\n      return [i for i in x]\n";
+    assertThat(PythonParser.create(true).parse(source).getTokens()).extracting(PythonTokenizerTest::describe)
+      .isEqualTo(PythonParser.create(false).parse(source).getTokens().stream().map(PythonTokenizerTest::describe).collect(Collectors.toList()));
+  }
+
+  private List<Token> tokenize(String source) {
+    tokenizerState.reset();
+    return tokenizer.tokenize(source);
+  }
+
+  private void assertSameTokens(String... sources) {
+    for (String source : sources) {
+      sslrLexerState.reset();
+      List<String> expected = sslrLexer.lex(source).stream().map(PythonTokenizerTest::describe).collect(Collectors.toList());
+      List<String> actual = tokenize(source).stream().map(PythonTokenizerTest::describe).collect(Collectors.toList());
+      assertThat(actual).as(source).isEqualTo(expected);
+      assertThat(new ArrayList<>(tokenizerState.indentationStack)).as(source).isEqualTo(new ArrayList<>(sslrLexerState.indentationStack));
+    }
+  }
+
+  private static String describe(Token token) {
+    StringBuilder sb = new StringBuilder()
+      .append(token.getType()).append(' ')
+      .append(token.getValue()).append(' ')
+      .append(token.getOriginalValue()).append(' ')
+      .append(token.getLine()).append(':').append(token.getColumn()).append(' ')
+      .append(token.isGeneratedCode()).append(' ')
+      .append(token.getURI());
+    for (Trivia trivia : token.getTrivia()) {
+      sb.append(" [").append(trivia.isComment()).append(' ').append(describe(trivia.getToken())).append(']');
+    }
+    return sb.toString();
+  }
+}
@@ -103,6 +103,16 @@ public class FStringParserTest {
     assertThat(parse("f'{delta.days=:,d}'")).hasSize(1);
   }
 
+  @Test
+  public void nested_strings_and_escapes() {
+    assertThat(parse("f\"{name}-{version}-py{py_version or PY_MAJOR}\"")).hasSize(3);
+    assertThat(parse("f\"{os.sep}{os.altsep if os.altsep else ''}\"")).hasSize(2);
+    assertThat(parse("f'{n} file{\"\" if n == 1 else \"s\"}'")).hasSize(2);
+    assertThat(parse("f'\\N{BULLET} {item}'")).hasSize(1);
+    assertThat(parse("f'\\\\N{item}'")).hasSize(1);
+    assertThat(parse("rf'\\N{item}'")).hasSize(1);
+  }
+
   private List<AstNode> parse(String tokenValue) {
     return parse(tokenValue, 1, 1);
   }
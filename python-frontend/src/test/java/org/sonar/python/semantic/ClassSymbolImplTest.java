@@ -19,8 +19,14 @@
  */
 package org.sonar.python.semantic;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
 import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
 import org.sonar.plugins.python.api.symbols.ClassSymbol;
@@ -133,6 +139,84 @@ public class ClassSymbolImplTest {
     assertThat(a.resolveMember("foo")).contains(fooA);
   }
 
+  @Test
+  public void resolve_member_with_c3_mro() {
+    ClassSymbolImpl a = new ClassSymbolImpl("a", "a");
+    Symbol fooA = new SymbolImpl("foo", "a.foo");
+    a.addMembers(Collections.singleton(fooA));
+    ClassSymbolImpl b = new ClassSymbolImpl("b", "b");
+    b.addSuperClass(a);
+    ClassSymbolImpl c = new ClassSymbolImpl("c", "c");
+    Symbol fooC = new SymbolImpl("foo", "c.foo");
+    c.addMembers(Collections.singleton(fooC));
+    c.addSuperClass(a);
+    ClassSymbolImpl d = new ClassSymbolImpl("d", "d");
+    d.addSuperClass(b);
+    d.addSuperClass(c);
+
+    assertThat(d.mro()).containsExactly(d, b, c, a);
+    assertThat(d.resolveMember("foo")).contains(fooC);
+  }
+
+  @Test
+  public void mro_fallback_on_inconsistent_hierarchy() {
+    ClassSymbolImpl a = new ClassSymbolImpl("a", "a");
+    ClassSymbolImpl b = new ClassSymbolImpl("b", "b");
+    b.addSuperClass(a);
+    ClassSymbolImpl x = new ClassSymbolImpl("x", "x");
+    x.addSuperClass(a);
+    x.addSuperClass(b);
+    assertThat(x.mro()).containsExactly(x, a, b);
+
+    ClassSymbolImpl y = new ClassSymbolImpl("y", "y");
+    ClassSymbolImpl z = new ClassSymbolImpl("z", "z");
+    y.addSuperClass(z);
+    z.addSuperClass(y);
+    assertThat(y.mro()).containsExactly(y, z);
+    assertThat(z.mro()).containsExactly(z, y);
+
+    ClassSymbolImpl c = new ClassSymbolImpl("c", "c");
+    Symbol unresolved = new SymbolImpl("s", "s");
+    c.addSuperClass(unresolved);
+    assertThat(c.mro()).containsExactly(c, unresolved);
+  }
+
+  @Test
+  public void concurrent_resolution() throws Exception {
+    // many classes, so that threads resolve them at the same time
+    List<ClassSymbolImpl> classes = new ArrayList<>();
+    ClassSymbolImpl base = new ClassSymbolImpl("base", "base");
+    Symbol foo = new SymbolImpl("foo", "base.foo");
+    base.addMembers(Collections.singleton(foo));
+    for (int i = 0; i < 200; i++) {
+      ClassSymbolImpl left = new ClassSymbolImpl("left" + i, "left" + i);
+      left.addSuperClass(base);
+      ClassSymbolImpl right = new ClassSymbolImpl("right" + i, "right" + i);
+      right.addSuperClass(base);
+      ClassSymbolImpl diamond = new ClassSymbolImpl("diamond" + i, "diamond" + i);
+      diamond.addSuperClass(left);
+      diamond.addSuperClass(right);
+      classes.add(diamond);
+    }
+    Callable<Boolean> resolution = () -> classes.stream().allMatch(c -> c.mro().size() == 4
+      && c.mro().get(3) == base
+      && c.resolveMember("foo").filter(member -> member == foo).isPresent()
+      && c.isOrExtends("base")
+      && !c.resolveMember("bar").isPresent());
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(resolution));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void should_throw_when_adding_member_after_call_to_resolveMember() {
     ClassSymbolImpl a = new ClassSymbolImpl("a", null);
@@ -0,0 +1,106 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.semantic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import org.junit.Test;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.python.semantic.MemoryFootprint.Category;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.parse;
+import static org.sonar.python.PythonTestUtils.parseWithoutSymbols;
+
+public class MemoryFootprintTest {
+
+  @Test
+  public void file_footprint() {
+    FileInput fileInput = parse(
+      "import os",
+      "",
+      "def foo(x):",
+      "  '''multi",
+      "  line'''",
+      "  return x + os.sep",
+      "");
+    MemoryFootprint footprint = MemoryFootprint.of(fileInput);
+    assertThat(footprint.linesOfCode()).isEqualTo(5);
+    assertThat(footprint.sourceCharacters()).isGreaterThan(40);
+    for (Category category : Category.values()) {
+      assertThat(footprint.bytes(category)).as(category.name()).isPositive();
+      assertThat(footprint.objects(category)).as(category.name()).isPositive();
+    }
+    // "os", "foo" and "x", plus the children of "os" copied from TypeShed
+    assertThat(footprint.objects(Category.SYMBOLS)).isGreaterThan(3);
+    // with the usage of the child "sep" of "os"
+    assertThat(footprint.objects(Category.USAGES)).isEqualTo(6);
+    assertThat(footprint.totalBytes()).isEqualTo(Arrays.stream(Category.values()).mapToLong(footprint::bytes).sum());
+    assertThat(footprint.totalBytesPerKloc()).isEqualTo(footprint.totalBytes() * 200);
+    assertThat(footprint.bytesPerKloc(Category.TREE)).isEqualTo(footprint.bytes(Category.TREE) * 200);
+
+    // the footprint is an estimate, not a measure: it is the same for the same code
+    assertThat(MemoryFootprint.of(parse("import os", "", "def foo(x):", "  '''multi", "  line'''", "  return x + os.sep", "")).totalBytes())
+      .isEqualTo(footprint.totalBytes());
+  }
+
+  @Test
+  public void without_symbols() {
+    MemoryFootprint footprint = MemoryFootprint.of(parseWithoutSymbols("x = 1"));
+    assertThat(footprint.objects(Category.SYMBOLS)).isZero();
+    assertThat(footprint.objects(Category.USAGES)).isZero();
+    assertThat(footprint.bytes(Category.TREE)).isPositive();
+
+    MemoryFootprint empty = MemoryFootprint.of(parseWithoutSymbols(""));
+    assertThat(empty.linesOfCode()).isZero();
+    assertThat(empty.totalBytesPerKloc()).isZero();
+    assertThat(empty.bytesPerKloc(Category.TOKENS)).isZero();
+  }
+
+  @Test
+  public void add() {
+    MemoryFootprint first = MemoryFootprint.of(parse("x = 1"));
+    MemoryFootprint second = MemoryFootprint.of(parse("y = 2", "z = y"));
+    MemoryFootprint total = new MemoryFootprint();
+    total.add(first);
+    total.add(second);
+    assertThat(total.linesOfCode()).isEqualTo(3);
+    assertThat(total.totalBytes()).isEqualTo(first.totalBytes() + second.totalBytes());
+    assertThat(total.objects(Category.USAGES)).isEqualTo(4);
+  }
+
+  @Test
+  public void container_sizes() {
+    assertThat(MemoryFootprint.containerBytes(Collections.emptyList())).isZero();
+    assertThat(MemoryFootprint.containerBytes(new Object[0])).isZero();
+    assertThat(MemoryFootprint.containerBytes(new int[3])).isEqualTo(32);
+    assertThat(MemoryFootprint.containerBytes(new Object[3])).isEqualTo(32);
+    // an empty array list does not allocate its array
+    assertThat(MemoryFootprint.containerBytes(new ArrayList<>())).isEqualTo(24);
+    assertThat(MemoryFootprint.containerBytes(new ArrayList<>(Collections.singletonList(1)))).isEqualTo(24 + 56);
+    assertThat(MemoryFootprint.containerBytes(new HashMap<>())).isEqualTo(40);
+    assertThat(MemoryFootprint.containerBytes(new HashSet<>(Collections.singletonList(1)))).isEqualTo(16 + 40 + 80 + 32);
+    assertThat(MemoryFootprint.containerBytes(Collections.singletonList(1))).isEqualTo(24 + 24);
+    assertThat(MemoryFootprint.shallowSize(UsageImpl.class)).isEqualTo(24);
+  }
+}
@@ -19,18 +19,22 @@
  */
 package org.sonar.python.semantic;
 
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.junit.Test;
 import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.symbols.Usage;
 import org.sonar.plugins.python.api.tree.FileInput;
 import org.sonar.plugins.python.api.tree.HasSymbol;
+import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.QualifiedExpression;
 import org.sonar.plugins.python.api.tree.Tree;
 import org.sonar.python.PythonTestUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.sonar.python.PythonTestUtils.parse;
 
 
@@ -50,9 +54,11 @@ public class SymbolImplTest {
   @Test
   public void removeUsages() {
     Symbol x = symbols("x = 42").get("x");
-    assertThat(x.usages()).isNotEmpty();
+    List<Usage> usages = x.usages();
+    assertThat(usages).isNotEmpty();
     ((SymbolImpl) x).removeUsages();
     assertThat(x.usages()).isEmpty();
+    assertThat(usages).isEmpty();
 
     FileInput fileInput = parse(
       "obj = {}",
@@ -65,6 +71,30 @@ public class SymbolImplTest {
     assertThat(qualifiedExpr.symbol().usages()).isEmpty();
   }
 
+  @Test
+  public void usages_and_children() {
+    SymbolImpl symbol = new SymbolImpl("x", "mod.x");
+    assertThat(symbol.usages()).isEmpty();
+    assertThat(symbol.getChildrenSymbolByName()).isEmpty();
+
+    FileInput fileInput = parse("x = 1", "x", "x", "x.y");
+    List<Name> names = PythonTestUtils.getAllDescendant(fileInput, tree -> tree.is(Tree.Kind.NAME));
+    symbol.addUsage(names.get(0), Usage.Kind.ASSIGNMENT_LHS);
+    List<Usage> firstUsages = symbol.usages();
+    symbol.addUsage(names.get(1), Usage.Kind.OTHER);
+    symbol.addUsage(names.get(2), Usage.Kind.OTHER);
+    // the usages are a view, as the usages added afterwards are visible
+    assertThat(firstUsages).extracting(Usage::tree).containsExactly(names.get(0), names.get(1), names.get(2));
+    assertThat(symbol.usages()).extracting(Usage::tree).containsExactly(names.get(0), names.get(1), names.get(2));
+    assertThatThrownBy(() -> symbol.usages().get(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> symbol.usages().add(firstUsages.get(0))).isInstanceOf(UnsupportedOperationException.class);
+
+    symbol.addOrCreateChildUsage(names.get(4), Usage.Kind.OTHER);
+    Symbol child = symbol.getChildrenSymbolByName().get("y");
+    assertThat(child.fullyQualifiedName()).isEqualTo("mod.x.y");
+    assertThat(child.usages()).hasSize(1);
+  }
+
   private Map<String, Symbol> symbols(String... code) {
     FileInput fileInput = parse(new SymbolTableBuilder("", PythonTestUtils.pythonFile("foo")), code);
     return fileInput.globalVariables().stream().collect(Collectors.toMap(Symbol::name, Function.identity()));
@@ -442,6 +442,22 @@ public class SymbolTableBuilderTest {
     assertThat(b.usages()).extracting(Usage::kind).containsExactly(Usage.Kind.ASSIGNMENT_LHS, Usage.Kind.OTHER);
   }
 
+  @Test
+  public void fstring_usages() {
+    FileInput tree = PythonTestUtils.parse(
+      "import os",
+      "name = version = py_version = PY_MAJOR = n = 1",
+      "f\"{name}-{version}-py{py_version or PY_MAJOR}\"",
+      "f\"{os.sep}{os.altsep if os.altsep else ''}\"",
+      "f'{n} file{\"\" if n == 1 else \"s\"}'");
+    Map<String, Symbol> symbols = tree.globalVariables().stream().collect(Collectors.toMap(Symbol::name, Functions.identity()));
+    assertThat(symbols.get("os").usages()).hasSize(4);
+    assertThat(symbols.get("name").usages()).hasSize(2);
+    assertThat(symbols.get("py_version").usages()).hasSize(2);
+    assertThat(symbols.get("PY_MAJOR").usages()).hasSize(2);
+    assertThat(symbols.get("n").usages()).hasSize(3);
+  }
+
   private static class TestVisitor extends BaseTreeVisitor {
     @Override
     public void visitFunctionDef(FunctionDef pyFunctionDefTree) {
@@ -0,0 +1,81 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import org.sonar.plugins.python.api.tree.BinaryExpression;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.PythonTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DeepTreeVisitorTest {
+
+  @Test
+  public void short_chain_visited_recursively() {
+    BinaryExpression expr = (BinaryExpression) PythonTestUtils.lastExpression(chain(50));
+    List<Tree> visited = visit(expr);
+    assertThat(visited).hasSize(99);
+    assertThat(visited.get(0)).isSameAs(expr);
+    assertThat(visited.get(1)).isSameAs(expr.leftOperand());
+    assertThat(visited.get(49)).isInstanceOf(Name.class);
+    assertThat(visited.get(98)).isSameAs(expr.rightOperand());
+  }
+
+  @Test
+  public void long_chain_visited_from_innermost_operand() {
+    BinaryExpression expr = (BinaryExpression) PythonTestUtils.lastExpression(chain(500));
+    List<Tree> visited = visit(expr);
+    // each node is visited once: the innermost operand first, then each operation followed by its right operand
+    assertThat(visited).hasSize(999);
+    assertThat(visited.get(0)).isSameAs(expr);
+    assertThat(visited.get(1)).isInstanceOf(Name.class);
+    BinaryExpression innermost = (BinaryExpression) visited.get(2);
+    assertThat(innermost.leftOperand()).isSameAs(visited.get(1));
+    assertThat(visited.get(3)).isSameAs(innermost.rightOperand());
+    assertThat(visited.get(996)).isSameAs(expr.leftOperand());
+    assertThat(visited.get(998)).isSameAs(expr.rightOperand());
+  }
+
+  private static List<Tree> visit(BinaryExpression expr) {
+    List<Tree> visited = new ArrayList<>();
+    expr.accept(new DeepTreeVisitor() {
+      @Override
+      public void visitBinaryExpression(BinaryExpression binaryExpression) {
+        visited.add(binaryExpression);
+        super.visitBinaryExpression(binaryExpression);
+      }
+
+      @Override
+      public void visitName(Name name) {
+        visited.add(name);
+      }
+    });
+    return visited;
+  }
+
+  private static String chain(int operands) {
+    return String.join(" + ", Collections.nCopies(operands, "x"));
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.ReturnStatement;
+import org.sonar.plugins.python.api.tree.Statement;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.pythonFile;
+
+/**
+ * Generated code can produce trees far deeper than the nesting of its source: long chains of binary operators or trailers
+ * are parsed in loops but give left-nested trees. Those trees are parsed here with a stack much smaller than the default one, and
+ * their symbol table and types are computed with the same stack.
+ */
+public class DeeplyNestedTreeTest {
+
+  private static final int DEPTH = 20_000;
+  private static final long STACK_SIZE = 512 * 1024L;
+
+  @Test(timeout = 60_000)
+  public void chained_binary_expressions() throws Exception {
+    assertDeepTree(repeat("x + ", DEPTH) + "x", "x");
+    assertDeepTree(repeat("x * b - ", DEPTH) + "x", "x");
+    assertDeepTree(repeat("x and ", DEPTH) + "x", "x");
+  }
+
+  @Test(timeout = 60_000)
+  public void chained_trailers() throws Exception {
+    assertDeepTree("x" + repeat(".a", DEPTH), "a");
+    assertDeepTree("x" + repeat("[0]", DEPTH), "]");
+    assertDeepTree("f" + repeat("()", DEPTH), ")");
+    assertDeepTree("x" + repeat(".a(1)[b]", DEPTH), "]");
+  }
+
+  private static void assertDeepTree(String expression, String lastTokenValue) throws Exception {
+    String code = "y = " + expression + "\n";
+    String functionCode = "def f(x, b):\n  y = " + expression + "\n  return y\n";
+    for (boolean directParsing : new boolean[] {true, false}) {
+      AtomicReference<Throwable> error = new AtomicReference<>();
+      Thread thread = new Thread(null, () -> {
+        try {
+          PythonTreeParser parser = PythonTreeParser.create(directParsing);
+          checkTree(parser.parse(code), lastTokenValue);
+          checkSemantic(parser.parse(functionCode));
+        } catch (Throwable e) {
+          error.set(e);
+        }
+      }, "deep-tree", STACK_SIZE);
+      thread.start();
+      thread.join();
+      assertThat(error.get()).as("direct parsing: " + directParsing).isNull();
+    }
+  }
+
+  private static void checkTree(FileInput fileInput, String lastTokenValue) {
+    Statement statement = fileInput.statements().statements().get(0);
+    assertThat(statement.firstToken().value()).isEqualTo("y");
+    assertThat(statement.lastToken().value()).isEqualTo(lastTokenValue);
+
+    List<Token> tokens = TreeUtils.tokens(fileInput);
+    assertThat(tokens.get(0)).isSameAs(statement.firstToken());
+    assertThat(TreeUtils.hasDescendant(fileInput, tree -> tree == statement.lastToken())).isTrue();
+
+    // the leftmost token of the assigned value is the deepest one
+    int depth = 0;
+    for (Tree tree = tokens.get(2); tree != fileInput; tree = tree.parent()) {
+      depth++;
+    }
+    assertThat(depth).isGreaterThan(DEPTH);
+  }
+
+  private static void checkSemantic(FileInput fileInput) {
+    // the symbol table and the type inference are built by the context, and types are inferred again on demand
+    new PythonVisitorContext(fileInput, pythonFile("mod.py"), null, "");
+    FunctionDef functionDef = (FunctionDef) fileInput.statements().statements().get(0);
+    ReturnStatement returnStatement = (ReturnStatement) functionDef.body().statements().get(1);
+    Name returnedName = (Name) returnStatement.expressions().get(0);
+    assertThat(returnedName.name()).isEqualTo("y");
+    assertThat(returnedName.symbol().usages()).hasSize(2);
+    assertThat(returnedName.type()).isNotNull();
+  }
+
+  private static String repeat(String s, int times) {
+    List<String> parts = new ArrayList<>(times);
+    for (int i = 0; i < times; i++) {
+      parts.add(s);
+    }
+    return String.join("", parts);
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.python.tree;
+
+import com.sonar.sslr.api.RecognitionException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.sonar.plugins.python.api.symbols.Symbol;
+import org.sonar.plugins.python.api.tree.AssignmentStatement;
+import org.sonar.plugins.python.api.tree.ClassDef;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.Statement;
+import org.sonar.plugins.python.api.tree.StringLiteral;
+import org.sonar.plugins.python.api.tree.Token;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.python.PythonTestUtils;
+import org.sonar.python.parser.PythonParser;
+import org.sonar.python.semantic.SymbolTableBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class PythonTreeParserTest {
+
+  private final PythonTreeParser directParser = PythonTreeParser.create(true);
+  private final PythonParser sslrParser = PythonParser.create();
+  private final PythonTreeMaker treeMaker = new PythonTreeMaker();
+
+  @Test
+  public void statements() {
+    assertSameTree("");
+    assertSameTree("\n\n");
+    assertSameTree("pass");
+    assertSameTree("# comment\npass # trailing\n");
+    assertSameTree("x = 1; y = 2;\nz = 3");
+    assertSameTree("x = y = z, *t = 1, 2");
+    assertSameTree("x = yield\ny = yield from z\nx = yield 1, 2 = 3");
+    assertSameTree("x += 1\nx //= yield\nx, y **= 1, 2");
+    assertSameTree("x: int\nx: int = 1\nx, y: str = (1, 2)\nself.x: List[int] = []");
+    assertSameTree("del x, y[0], z.a,");
+    assertSameTree("return\nreturn x\nreturn x, *y,");
+    assertSameTree("raise\nraise E\nraise E from e\nraise E, v\nraise E, v, tb");
+    assertSameTree("assert x\nassert x, 'message'");
+    assertSameTree("break\ncontinue\nglobal a, b\nnonlocal c");
+    assertSameTree("import a\nimport a.b as c, d");
+    assertSameTree("from . import a\nfrom .. a import b as c, d,\nfrom a.b import (c, d)\nfrom a import *");
+    assertSameTree("print\nprint x\nprint x, y,\nprint >> f, x\nprint >>f\nprint(x)\nprint = 1");
+    assertSameTree("exec code\nexec code in g\nexec code in g, l\nexec(code)\nexec");
+  }
+
+  @Test
+  public void compound_statements() {
+    assertSameTree("if x:\n  pass\nelif y: pass\nelif (z := 1):\n  pass\nelse:\n  pass");
+    assertSameTree("while x: pass\nelse:\n  pass");
+    assertSameTree("for x, y in z, t:\n  pass\nelse: pass");
+    assertSameTree("try:\n  pass\nexcept:\n  pass");
+    assertSameTree("try:\n  pass\nexcept E:\n  pass\nexcept E as e:\n  pass\nexcept E, e:\n  pass\nelse:\n  pass\nfinally:\n  pass");
+    assertSameTree("try: pass\nfinally: pass");
+    assertSameTree("with a, b as c, d as (e, f): pass");
+    assertSameTree("async def f():\n  async with a: pass\n  async for x in y: pass\n  await x\n  return await f() ** 2");
+    assertSameTree("if x:\n  if y:\n    pass\n  # comment\n\n  pass\npass");
+  }
+
+  @Test
+  public void definitions() {
+    assertSameTree("def f(): pass");
+    assertSameTree("def f(a, b=1, *args, c, d=2, **kwargs) -> int:\n  '''doc'''\n  pass");
+    assertSameTree("def f(a: int, b: str = '', *, c, **d): pass");
+    assertSameTree("def f(a, /, b, *, c): pass\ndef g(a, /): pass\ndef h(*a, b=1, **c,): pass\ndef i(**a,): pass");
+    assertSameTree("def f(a, (b, c), (d, (e,)) = x): pass");
+    assertSameTree("@decorator\n@a.b(1, x=2)\n@c()\ndef f(): pass");
+    assertSameTree("class A: pass\nclass B(): pass\nclass C(A, metaclass=M):\n  'doc'\n  def m(self): pass\n  class D:\n    def n(self):\n      def o(): pass");
+    assertSameTree("@dataclass\nclass A:\n  x: int = 0");
+    assertSameTree("def f(): '''doc'''");
+    assertSameTree("'''module docstring'''\nx = 1");
+  }
+
+  @Test
+  public void expressions() {
+    assertSameTree("x if y else z\nlambda: x\nlambda x, y=1, *z, **t: x\nlambda *, x: x\nlambda (x, y): x");
+    assertSameTree("a or b and not c\na < b == c >= d != e <> f\na is b is not c in d not in e");
+    assertSameTree("a | b ^ c & d << e >> f + g - h * i / j // k % l @ m\n-a + ~b ** -c ** d");
+    assertSameTree("a.b.c(d)[e](f, *g, **h, i=j, k := 1)\nf(x for x in y)\nf(x for x in y if z for t in u)");
+    assertSameTree("a[1]\na[1, 2]\na[1:2]\na[::]\na[1:2:3, 4]\na[:, x]\na[...]");
+    assertSameTree("()\n(1)\n(1,)\n(1, 2)\n(yield)\n(yield x)\n(x for x in y)\n(*a, b)");
+    assertSameTree("[]\n[1]\n[1, 2,]\n[x for x in y if z]\n[*a, *b]\n[y := 1, z]");
+    assertSameTree("{}\n{1}\n{1: 2}\n{1: 2, **a, 3: 4,}\n{**a}\n{*a, b}\n{x for x in y}\n{k: v for k, v in x}");
+    assertSameTree("`x`\n`x, y`\n...\nNone\nTrue\n1\n1.5j\n0x1F\n'a' \"b\"\nb'c'\nu'd' r'e'");
+    assertSameTree("f'{x}' f'{y!r:>{width}}' f'{z=}'\nf'''{a\n+ b}'''");
+    assertSameTree("[x for x in a if b if c]\n[lambda: x for x in y]\n[x for x in lambda: y]\n[x for x in y if lambda: z]");
+    assertSameTree("x = [[[[[[[[1 for a in b if c] for d in e if f] for g in h if i] for j in k if l] for m in n if o] for p in q if r] for s in t if u] for v in w if x]");
+    assertSameTree("x = (\n  1,\n  2\n)\ny = \\\n  3");
+  }
+
+  @Test
+  public void names() {
+    FileInput fileInput = directParser.parse("global x\nimport a.b\nf(k=v).attr\ndef g(p): pass");
+    List<Name> names = PythonTestUtils.getAllDescendant(fileInput, t -> t.is(Tree.Kind.NAME));
+    assertThat(names).extracting(Name::name, Name::isVariable).containsExactly(
+      tuple("x", true), tuple("a", false), tuple("b", false), tuple("f", true), tuple("k", false), tuple("v", true), tuple("attr", false),
+      tuple("g", false), tuple("p", false));
+  }
+
+  @Test
+  public void fallback_to_sslr_parser() {
+    assertSameResult("x = await");
+    assertSameResult("await");
+    assertSameResult("f(a.b=1)");
+    assertSameResult("f(x for x in y, z)");
+    assertSameResult("(a.b := 1)");
+    assertSameResult("{**a for x in y}");
+    assertSameResult("lambda a,: x");
+    assertSameResult("lambda ,: x");
+    assertSameResult("lambda *a,: x");
+  }
+
+  @Test
+  public void syntax_errors() {
+    assertSameError("x = ");
+    assertSameError("if x:\npass");
+    assertSameError("def f(:\n  pass");
+    assertSameError("x = (1, 2");
+    assertSameError("class A(: pass");
+    assertSameError("try:\n  pass\n");
+    assertSameError("a = 1 +");
+    assertSameError("x, y: str = 1, 2");
+    assertSameError("print.x");
+  }
+
+  @Test
+  public void without_direct_parsing() {
+    PythonTreeParser parser = PythonTreeParser.create(false);
+    assertThat(dump(parser.parse("x = 1"))).isEqualTo(dump(sslrTree("x = 1")));
+    assertThat(PythonTreeParser.create().parse("x = 1").statements().statements()).hasSize(1);
+  }
+
+  @Test
+  public void incremental_parse_reuses_untouched_statements() {
+    String code = "x = 1\ndef f():\n  return 2\ny = 3\n";
+    FileInput previous = directParser.parse(code);
+    TextEdit edit = new TextEdit(3, 9, 3, 10, "42");
+    String source = apply(code, edit);
+    FileInput fileInput = directParser.parse(previous, source, edit);
+    assertThat(dump(fileInput)).isEqualTo(dump(sslrTree(source)));
+    List<Statement> before = previous.statements().statements();
+    List<Statement> after = fileInput.statements().statements();
+    assertThat(after.get(0)).isSameAs(before.get(0));
+    assertThat(after.get(1)).isNotSameAs(before.get(1));
+    assertThat(after.get(2)).isSameAs(before.get(2));
+  }
+
+  @Test
+  public void incremental_parse_with_line_breaks() {
+    assertSameIncrementalTree("x = 1\ny = 2\nz = 3\n", new TextEdit(2, 5, 2, 5, "\nw = 4"));
+    assertSameIncrementalTree("x = 1\ny = 2\nz = 3\n", new TextEdit(1, 5, 2, 5, ""));
+    assertSameIncrementalTree("if x:\n  pass\n# comment\ny = 2\n", new TextEdit(4, 0, 4, 0, "  "));
+    assertSameIncrementalTree("if x:\n  pass\n# comment\ny = 2\nz = 3\n", new TextEdit(2, 6, 2, 6, "\n  x = 1"));
+    assertSameIncrementalTree("def f():\n  pass\nx = (1,\n 2)\n", new TextEdit(3, 0, 3, 1, "y"));
+    assertSameIncrementalTree("x = 1\ny = 2\n", new TextEdit(2, 5, 2, 5, " \\"));
+    assertSameIncrementalTree("", new TextEdit(1, 0, 1, 0, "x = 1"));
+  }
+
+  @Test
+  public void incremental_parse_moves_following_statements() {
+    String code = "x = 1\ny = 2\n# comment\nz = f'{y}'\n";
+    FileInput previous = directParser.parse(code);
+    TextEdit edit = new TextEdit(1, 5, 1, 5, "\nw = 4");
+    String source = apply(code, edit);
+    FileInput fileInput = directParser.parse(previous, source, edit);
+    assertThat(dump(fileInput)).isEqualTo(dump(sslrTree(source)));
+    Statement z = fileInput.statements().statements().get(3);
+    assertThat(z).isSameAs(previous.statements().statements().get(2));
+    assertThat(z.firstToken().line()).isEqualTo(5);
+    assertThat(z.firstToken().trivia()).extracting(trivia -> trivia.token().line()).containsExactly(4);
+    StringLiteral fString = (StringLiteral) ((AssignmentStatement) z).assignedValue();
+    assertThat(fString.stringElements().get(0).formattedExpressions().get(0).firstToken().line()).isEqualTo(5);
+  }
+
+  @Test
+  public void incremental_parse_without_direct_parsing() {
+    PythonTreeParser parser = PythonTreeParser.create(false);
+    String code = "x = 1\ny = 2\n";
+    FileInput previous = parser.parse(code);
+    TextEdit edit = new TextEdit(2, 4, 2, 5, "3");
+    String source = apply(code, edit);
+    FileInput fileInput = parser.parse(previous, source, edit);
+    assertThat(dump(fileInput)).isEqualTo(dump(sslrTree(source)));
+    assertThat(fileInput.statements().statements().get(0)).isNotSameAs(previous.statements().statements().get(0));
+  }
+
+  @Test
+  public void incremental_parse_of_inconsistent_indentation() {
+    assertSameIncrementalTree("if x:\n  pass\ny = 2\nz = 3\n", new TextEdit(3, 0, 3, 0, "  "));
+    String code = "x = 1\ny = 2\n";
+    TextEdit edit = new TextEdit(2, 0, 2, 0, " ");
+    Throwable error = catchThrowable(() -> directParser.parse(directParser.parse(code), apply(code, edit), edit));
+    assertThat(error).isInstanceOf(RecognitionException.class);
+  }
+
+  @Test
+  public void incremental_parse_discards_semantic() {
+    String code = "import os\ndef f(p):\n  return os.path\ny = 0\nx = f(1)\n";
+    FileInput previous = directParser.parse(code);
+    new SymbolTableBuilder(PythonTestUtils.pythonFile("mod.py")).visitFileInput(previous);
+    TextEdit edit = new TextEdit(5, 6, 5, 7, "2");
+    FileInput fileInput = directParser.parse(previous, apply(code, edit), edit);
+    new SymbolTableBuilder(PythonTestUtils.pythonFile("mod.py")).visitFileInput(fileInput);
+    FunctionDef functionDef = (FunctionDef) fileInput.statements().statements().get(1);
+    assertThat(functionDef).isSameAs(previous.statements().statements().get(1));
+    assertThat(functionDef.localVariables()).extracting(Symbol::name).containsExactly("p");
+    assertThat(fileInput.globalVariables()).extracting(Symbol::name).containsExactlyInAnyOrder("os", "f", "y", "x");
+    Symbol os = fileInput.globalVariables().stream().filter(symbol -> symbol.name().equals("os")).findFirst().get();
+    assertThat(os.usages()).hasSize(2);
+  }
+
+  @Test
+  public void test_resources() throws IOException {
+    List<Path> files;
+    try (Stream<Path> stream = Files.walk(new File("src/test/resources").toPath())) {
+      files = stream.filter(path -> path.toString().endsWith(".py")).collect(Collectors.toList());
+    }
+    assertThat(files).isNotEmpty();
+    for (Path file : files) {
+      String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+      Throwable sslrError = catchThrowable(() -> sslrTree(content));
+      if (sslrError == null) {
+        assertThat(dump(directParser.parse(content))).as(file.toString()).isEqualTo(dump(sslrTree(content)));
+      } else {
+        assertThat(catchThrowable(() -> directParser.parse(content))).as(file.toString()).hasSameClassAs(sslrError);
+      }
+    }
+  }
+
+  private void assertSameTree(String code) {
+    assertThat(dump(directParser.parse(code))).as(code).isEqualTo(dump(sslrTree(code)));
+  }
+
+  private void assertSameError(String code) {
+    Throwable sslrError = catchThrowable(() -> sslrTree(code));
+    Throwable directError = catchThrowable(() -> directParser.parse(code));
+    assertThat(sslrError).isInstanceOf(RecognitionException.class);
+    assertThat(directError).isInstanceOf(RecognitionException.class).hasMessage(sslrError.getMessage());
+  }
+
+  private void assertSameResult(String code) {
+    Throwable sslrError = catchThrowable(() -> sslrTree(code));
+    if (sslrError == null) {
+      assertSameTree(code);
+    } else {
+      assertThat(catchThrowable(() -> directParser.parse(code))).as(code).hasSameClassAs(sslrError).hasMessage(sslrError.getMessage());
+    }
+  }
+
+  private void assertSameIncrementalTree(String code, TextEdit edit) {
+    String source = apply(code, edit);
+    assertThat(dump(directParser.parse(directParser.parse(code), source, edit))).as(source).isEqualTo(dump(sslrTree(source)));
+  }
+
+  private static String apply(String code, TextEdit edit) {
+    return code.substring(0, offset(code, edit.startLine(), edit.startColumn())) + edit.text() + code.substring(offset(code, edit.endLine(), edit.endColumn()));
+  }
+
+  private static int offset(String code, int line, int column) {
+    int offset = 0;
+    for (int i = 1; i < line; i++) {
+      offset = code.indexOf('\n', offset) + 1;
+    }
+    return offset + column;
+  }
+
+  private FileInput sslrTree(String code) {
+    return treeMaker.fileInput(sslrParser.parse(code));
+  }
+
+  private static String dump(Tree tree) {
+    StringBuilder sb = new StringBuilder();
+    dump(tree, 0, sb);
+    return sb.toString();
+  }
+
+  private static void dump(Tree tree, int depth, StringBuilder sb) {
+    for (int i = 0; i < depth; i++) {
+      sb.append("  ");
+    }
+    sb.append(tree.getKind());
+    if (tree.is(Tree.Kind.TOKEN)) {
+      Token token = (Token) tree;
+      sb.append(" ").append(token.type()).append(" '").append(token.value()).append("' ").append(token.line()).append(":").append(token.column())
+        .append(" ").append(token.trivia().stream().map(trivia -> trivia.token().value()).collect(Collectors.toList()));
+    } else if (tree.is(Tree.Kind.NAME)) {
+      sb.append(" variable=").append(((Name) tree).isVariable());
+    } else if (tree.is(Tree.Kind.FUNCDEF)) {
+      FunctionDef functionDef = (FunctionDef) tree;
+      sb.append(" method=").append(functionDef.isMethodDefinition()).append(" docstring=").append(position(functionDef.docstring()));
+    } else if (tree.is(Tree.Kind.CLASSDEF)) {
+      sb.append(" docstring=").append(position(((ClassDef) tree).docstring()));
+    } else if (tree.is(Tree.Kind.FILE_INPUT)) {
+      sb.append(" docstring=").append(position(((FileInput) tree).docstring()));
+    }
+    sb.append("\n");
+    for (Tree child : tree.children()) {
+      if (child == null) {
+        sb.append("null\n");
+      } else {
+        assertThat(child.parent()).isSameAs(tree);
+        dump(child, depth + 1, sb);
+      }
+    }
+  }
+
+  private static String position(StringLiteral stringLiteral) {
+    return stringLiteral == null ? "null" : (stringLiteral.firstToken().line() + ":" + stringLiteral.firstToken().column());
+  }
+}
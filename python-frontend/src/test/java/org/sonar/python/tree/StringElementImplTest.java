@@ -19,10 +19,20 @@
  */
 package org.sonar.python.tree;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Test;
+import org.sonar.plugins.python.api.tree.ExpressionStatement;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FormattedExpression;
+import org.sonar.plugins.python.api.tree.Name;
 import org.sonar.plugins.python.api.tree.StringElement;
 import org.sonar.plugins.python.api.tree.StringLiteral;
 import org.sonar.python.PythonTestUtils;
+import org.sonar.python.parser.PythonParser;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -37,6 +47,49 @@ public class StringElementImplTest {
     assertThat(stringElement("rf'abc'").isInterpolated()).isTrue();
   }
 
+  @Test
+  public void formatted_expressions() {
+    StringElement element = fileStringElement("x = 1\nf'{a}' 'b' f'{x + 1=}'", 2);
+    assertThat(element.value()).isEqualTo("f'{x + 1=}'");
+    assertThat(element.firstToken().parent()).isSameAs(element);
+    List<FormattedExpression> formattedExpressions = element.formattedExpressions();
+    assertThat(formattedExpressions).hasSize(1);
+    FormattedExpression formattedExpression = formattedExpressions.get(0);
+    assertThat(formattedExpression.parent()).isSameAs(element);
+    assertThat(formattedExpression.equalToken()).isNotNull();
+    Name x = (Name) formattedExpression.expression().firstToken().parent();
+    assertThat(x.name()).isEqualTo("x");
+    assertThat(x.parent().parent()).isSameAs(formattedExpression);
+    assertThat(x.firstToken().line()).isEqualTo(2);
+    assertThat(x.firstToken().column()).isEqualTo(14);
+    assertThat(element.formattedExpressions()).isSameAs(formattedExpressions);
+    assertThat(element.children()).hasSize(2);
+  }
+
+  @Test
+  public void concurrent_parsing() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        String variable = "v" + i;
+        results.add(executor.submit(() -> ((Name) fileStringElement("f'{" + variable + "}'", 0).formattedExpressions().get(0).expression()).name()));
+      }
+      for (int i = 0; i < 100; i++) {
+        assertThat(results.get(i).get()).isEqualTo("v" + i);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private static StringElement fileStringElement(String code, int index) {
+    FileInput fileInput = new PythonTreeMaker().fileInput(PythonParser.create().parse(code));
+    List<?> statements = fileInput.statements().statements();
+    ExpressionStatement statement = (ExpressionStatement) statements.get(statements.size() - 1);
+    return ((StringLiteral) statement.expressions().get(0)).stringElements().get(index);
+  }
+
   private StringElement stringElement(String code) {
     return ((StringLiteral) PythonTestUtils.lastExpression(code)).stringElements().get(0);
   }
@@ -46,6 +46,14 @@ public class InferredTypesTest {
     assertThat(runtimeType(typeClass)).isEqualTo(new RuntimeType(typeClass));
   }
 
+  @Test
+  public void runtime_type_shared_per_class_symbol() {
+    ClassSymbolImpl a = new ClassSymbolImpl("a", "a");
+    assertThat(runtimeType(a)).isSameAs(runtimeType(a));
+    assertThat(runtimeType(a)).isNotSameAs(runtimeType(new ClassSymbolImpl("a", "a")));
+    assertThat(runtimeType(a)).isEqualTo(runtimeType(new ClassSymbolImpl("a", "a")));
+  }
+
   @Test
   public void test_or() {
     ClassSymbol a = new ClassSymbolImpl("a", "a");
@@ -19,15 +19,30 @@
  */
 package org.sonar.python.types;
 
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
 import org.junit.Test;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.plugins.python.api.symbols.AmbiguousSymbol;
 import org.sonar.plugins.python.api.symbols.ClassSymbol;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.tree.CallExpression;
+import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.api.tree.FunctionDef;
+import org.sonar.plugins.python.api.tree.Name;
+import org.sonar.plugins.python.api.tree.QualifiedExpression;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.api.types.InferredType;
+import org.sonar.python.semantic.SymbolImpl;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.python.PythonTestUtils.getFirstDescendant;
+import static org.sonar.python.PythonTestUtils.getLastDescendant;
 import static org.sonar.python.PythonTestUtils.lastExpression;
 import static org.sonar.python.PythonTestUtils.lastExpressionInFunction;
+import static org.sonar.python.PythonTestUtils.parse;
 import static org.sonar.python.types.InferredTypes.BOOL;
 import static org.sonar.python.types.InferredTypes.COMPLEX;
 import static org.sonar.python.types.InferredTypes.DICT;
@@ -46,6 +61,9 @@ import static org.sonar.python.types.InferredTypes.runtimeType;
 
 public class TypeInferenceTest {
 
+  @Rule
+  public LogTester logTester = new LogTester();
+
   @Test
   public void unknown_expression_type() {
     assertThat(lastExpression("a.b").type()).isEqualTo(anyType());
@@ -311,4 +329,80 @@ public class TypeInferenceTest {
       "c = 42 if '' else c",
       "c").type()).isEqualTo(anyType());
   }
+
+  @Test
+  public void types_inferred_on_demand() {
+    FileInput fileInput = parse(
+      "def f():",
+      "  x = 42",
+      "  x",
+      "def g():",
+      "  y = ''",
+      "  y"
+    );
+    FunctionDef f = getFirstDescendant(fileInput, tree -> tree.is(Tree.Kind.FUNCDEF));
+    FunctionDef g = getLastDescendant(fileInput, tree -> tree.is(Tree.Kind.FUNCDEF));
+    SymbolImpl x = (SymbolImpl) f.localVariables().iterator().next();
+    SymbolImpl y = (SymbolImpl) g.localVariables().iterator().next();
+    assertThat(x.inferredType()).isEqualTo(anyType());
+    assertThat(y.inferredType()).isEqualTo(anyType());
+
+    Name xName = getLastDescendant(f, tree -> tree.is(Tree.Kind.NAME));
+    assertThat(xName.type()).isEqualTo(INT);
+    assertThat(x.inferredType()).isEqualTo(INT);
+    assertThat(y.inferredType()).isEqualTo(anyType());
+  }
+
+  @Test
+  public void member_symbol_resolved_on_demand() {
+    FileInput fileInput = parse(
+      "def f():",
+      "  x = ''",
+      "  x.capitalize"
+    );
+    QualifiedExpression qualifiedExpression = getLastDescendant(fileInput, tree -> tree.is(Tree.Kind.QUALIFIED_EXPR));
+    assertThat(qualifiedExpression.symbol().fullyQualifiedName()).isEqualTo("str.capitalize");
+  }
+
+  @Test
+  public void union_widening() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i <= TypeInference.MAX_UNION_SIZE; i++) {
+      lines.add("class A" + i + ": pass");
+    }
+    lines.add("def f(p):");
+    for (int i = 0; i < TypeInference.MAX_UNION_SIZE; i++) {
+      lines.add("  if p == " + i + ": x = A" + i + "()");
+    }
+    lines.add("  x");
+    InferredType type = lastExpression(lines.toArray(new String[0])).type();
+    assertThat(type).isInstanceOf(UnionType.class);
+    assertThat(((UnionType) type).types()).hasSize(TypeInference.MAX_UNION_SIZE);
+
+    lines.add(lines.size() - 1, "  if p: x = A" + TypeInference.MAX_UNION_SIZE + "()");
+    assertThat(lastExpression(lines.toArray(new String[0])).type()).isEqualTo(anyType());
+  }
+
+  @Test
+  public void long_assignment_chain() {
+    List<String> lines = new ArrayList<>();
+    lines.add("x0 = 42");
+    for (int i = 1; i < 5000; i++) {
+      lines.add("x" + i + " = x" + (i - 1));
+    }
+    lines.add("x4999");
+    assertThat(lastExpressionInFunction(lines.toArray(new String[0])).type()).isEqualTo(INT);
+  }
+
+  @Test
+  public void propagation_count_debug_log() {
+    logTester.setLevel(LoggerLevel.DEBUG);
+    lastExpressionInFunction(
+      "x = 42",
+      "y = x",
+      "while cond:",
+      "  y = y",
+      "y").type();
+    assertThat(logTester.logs(LoggerLevel.DEBUG)).contains("Type inference of function \"f\" (line 1): 6 propagations, 3 strongly connected components");
+  }
 }
@@ -19,7 +19,15 @@
  */
 package org.sonar.python.types;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import org.junit.Test;
@@ -112,4 +120,33 @@ public class TypeShedTest {
     assertThat(TypeShed.symbolsForModule("kazoo")).isEmpty();
     assertThat(TypeShed.symbolsForModule("docutils")).isEmpty();
   }
+
+  @Test
+  public void concurrent_loading() throws Exception {
+    List<String> modules = Arrays.asList("math", "socket", "threading", "time");
+    Callable<List<Object>> loading = () -> {
+      List<Object> symbols = new ArrayList<>();
+      symbols.add(TypeShed.builtinSymbols());
+      modules.forEach(module -> symbols.add(TypeShed.symbolsForModule(module)));
+      return symbols;
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<List<Object>>> results = new ArrayList<>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(loading));
+      }
+      List<Object> expected = results.get(0).get();
+      assertThat(expected).allMatch(symbols -> !((symbols instanceof Map) ? ((Map<?, ?>) symbols).isEmpty() : ((Set<?>) symbols).isEmpty()));
+      // each module is loaded once, and published to all the threads
+      for (Future<List<Object>> result : results) {
+        List<Object> symbols = result.get();
+        for (int i = 0; i < expected.size(); i++) {
+          assertThat(symbols.get(i)).isSameAs(expected.get(i));
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
@@ -50,6 +50,16 @@ public class UnionTypeTest {
     assertThat(or(or(a, b), c)).isEqualTo(or(a, or(b, c)));
   }
 
+  @Test
+  public void join_with_contained_type() {
+    InferredType aOrB = or(a, b);
+    assertThat(or(aOrB, a)).isSameAs(aOrB);
+    assertThat(or(b, aOrB)).isSameAs(aOrB);
+    InferredType aOrBOrC = or(aOrB, c);
+    assertThat(or(aOrB, aOrBOrC)).isSameAs(aOrBOrC);
+    assertThat(or(aOrBOrC, or(c, a))).isSameAs(aOrBOrC);
+  }
+
   @Test
   public void isIdentityComparableWith() {
     assertThat(or(a, b).isIdentityComparableWith(anyType())).isTrue();
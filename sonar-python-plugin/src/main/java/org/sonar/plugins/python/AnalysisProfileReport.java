@@ -0,0 +1,321 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.plugins.python.api.PythonCheck;
+import org.sonar.python.AnalysisProfiler;
+import org.sonar.python.AnalysisProfiler.Measure;
+import org.sonar.python.AnalysisProfiler.Phase;
+import org.sonar.python.AnalysisProfiler.RuleMeasure;
+import org.sonar.python.semantic.MemoryFootprint;
+import org.sonar.python.semantic.MemoryFootprint.Category;
+
+/**
+ * Aggregates the measures of the profilers of all analysed files, to log them and write them to a JSON report in the
+ * working directory at the end of the analysis. Profiling is only enabled by {@link #PROFILING_KEY}: its measures cost
+ * a few system calls per phase and per rule execution.
+ * Rules are reported with their measures by entry point, and the number of files on which they exceeded the rule time budget.
+ * The estimated heap of the trees and semantic models is reported per 1000 lines of code, and per source character to be
+ * compared with the heap budgeted for each parsed file.
+ */
+class AnalysisProfileReport {
+
+  static final String PROFILING_KEY = "sonar.python.analysis.profiling";
+  static final String REPORT_FILE_NAME = "python-analysis-profile.json";
+
+  private final Function<PythonCheck, RuleKey> ruleKeys;
+  private final int size;
+  private final long heapBudgetPerSourceByte;
+  private final AnalysisProfiler total = AnalysisProfiler.aggregate();
+  private final PriorityQueue<FileProfile> slowestFiles = new PriorityQueue<>(Comparator.comparingLong(FileProfile::totalNanos));
+  private final Map<PythonCheck, Integer> filesOverBudget = new HashMap<>();
+  private int files = 0;
+
+  /**
+   * @param size number of rules and files reported as the slowest ones
+   * @param heapBudgetPerSourceByte heap budgeted for the tree and the semantic model of a file, per byte of source code
+   */
+  AnalysisProfileReport(Function<PythonCheck, RuleKey> ruleKeys, int size, long heapBudgetPerSourceByte) {
+    this.ruleKeys = ruleKeys;
+    this.size = size;
+    this.heapBudgetPerSourceByte = heapBudgetPerSourceByte;
+  }
+
+  void add(InputFile file, AnalysisProfiler profiler) {
+    files++;
+    total.add(profiler);
+    profiler.rules().keySet().stream().filter(profiler::isOverBudget).forEach(check -> filesOverBudget.merge(check, 1, Integer::sum));
+    slowestFiles.add(new FileProfile(file, profiler));
+    if (slowestFiles.size() > size) {
+      slowestFiles.poll();
+    }
+  }
+
+  AnalysisProfiler total() {
+    return total;
+  }
+
+  List<FileProfile> slowestFiles() {
+    List<FileProfile> result = new ArrayList<>(slowestFiles);
+    result.sort(Comparator.comparingLong(FileProfile::totalNanos).reversed());
+    return result;
+  }
+
+  /**
+   * Measures of the rules, slowest first. Several checks of the same rule, like the instances of a rule template, are
+   * measured together.
+   */
+  List<RuleProfile> slowestRules() {
+    Map<String, RuleProfile> profilesByRule = new HashMap<>();
+    total.rules().forEach((check, measure) -> profilesByRule.computeIfAbsent(ruleName(check), RuleProfile::new)
+      .add(measure, filesOverBudget.getOrDefault(check, 0)));
+    List<RuleProfile> result = new ArrayList<>(profilesByRule.values());
+    result.sort(Comparator.comparingLong(RuleProfile::nanos).reversed());
+    return result;
+  }
+
+  private String ruleName(PythonCheck check) {
+    RuleKey ruleKey = ruleKeys.apply(check);
+    return ruleKey == null ? check.getClass().getName() : ruleKey.toString();
+  }
+
+  void log(Logger logger, @Nullable File reportFile) {
+    StringBuilder sb = new StringBuilder().append("Python analysis profile of ").append(files).append(" file(s)");
+    if (reportFile != null) {
+      sb.append(", written to ").append(reportFile);
+    }
+    sb.append(":\n").append(String.format(Locale.ENGLISH, "  %-16s %12s %16s", "phase", "time (ms)", "allocated (MB)"));
+    for (Phase phase : Phase.values()) {
+      Measure measure = total.measure(phase);
+      sb.append("\n").append(String.format(Locale.ENGLISH, "  %-16s %12d %16s", name(phase), millis(measure.nanos()), megabytes(measure.allocatedBytes())));
+    }
+    sb.append("\n").append(String.format(Locale.ENGLISH, "  %-16s %12d %16s", "total", millis(total.totalNanos()), megabytes(total.totalAllocatedBytes())));
+    logFootprint(sb, total.footprint());
+    List<RuleProfile> rules = slowestRules();
+    sb.append("\n").append(Math.min(size, rules.size())).append(" slowest rules:");
+    rules.stream().limit(size).forEach(rule -> logRule(sb, rule));
+    List<FileProfile> fileProfiles = slowestFiles();
+    sb.append("\n").append(fileProfiles.size()).append(" slowest files:");
+    fileProfiles.forEach(fileProfile -> sb.append("\n  ").append(fileProfile.file).append(": ")
+      .append(millis(fileProfile.totalNanos())).append(" ms, ").append(megabytes(fileProfile.profiler.totalAllocatedBytes())).append(" MB"));
+    logger.info(sb.toString());
+  }
+
+  private void logFootprint(StringBuilder sb, MemoryFootprint footprint) {
+    sb.append("\nEstimated heap of the trees and semantic models of ").append(footprint.linesOfCode()).append(" lines of code:\n")
+      .append(String.format(Locale.ENGLISH, "  %-16s %12s %16s", "category", "objects", "bytes per KLOC"));
+    for (Category category : Category.values()) {
+      sb.append("\n").append(String.format(Locale.ENGLISH, "  %-16s %12d %16d", name(category), footprint.objects(category), footprint.bytesPerKloc(category)));
+    }
+    sb.append("\n").append(String.format(Locale.ENGLISH, "  %-16s %12s %16d", "total", "", footprint.totalBytesPerKloc()));
+    long perSourceCharacter = bytesPerSourceCharacter(footprint);
+    sb.append("\n  ").append(perSourceCharacter).append(" bytes per source character");
+    if (perSourceCharacter > heapBudgetPerSourceByte) {
+      sb.append(", over the budget of ").append(heapBudgetPerSourceByte).append(" bytes per source byte of the parsed files");
+    }
+  }
+
+  private static long bytesPerSourceCharacter(MemoryFootprint footprint) {
+    return footprint.sourceCharacters() == 0 ? 0 : (footprint.totalBytes() / footprint.sourceCharacters());
+  }
+
+  private static void logRule(StringBuilder sb, RuleProfile rule) {
+    sb.append("\n  ").append(rule.rule).append(": ")
+      .append(millis(rule.measure.nanos())).append(" ms, ").append(megabytes(rule.measure.allocatedBytes())).append(" MB, ")
+      .append(rule.measure.invocations()).append(" calls");
+    List<Map.Entry<String, Measure>> entryPoints = rule.slowestEntryPoints();
+    if (!entryPoints.isEmpty()) {
+      sb.append(", slowest on ").append(entryPoints.get(0).getKey()).append(": ").append(millis(entryPoints.get(0).getValue().nanos())).append(" ms");
+    }
+    if (rule.filesOverBudget > 0) {
+      sb.append(", over budget on ").append(rule.filesOverBudget).append(" file(s)");
+    }
+  }
+
+  void write(File reportFile) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(reportFile.toPath(), StandardCharsets.UTF_8); JsonWriter json = JsonWriter.of(writer)) {
+      json.beginObject()
+        .prop("files", files)
+        .prop("allocationsMeasured", AnalysisProfiler.measuresAllocations());
+      json.name("phases");
+      writePhases(json, total);
+      json.name("footprint");
+      writeFootprint(json, total.footprint());
+      json.name("rules").beginArray();
+      for (RuleProfile rule : slowestRules()) {
+        json.beginObject().prop("rule", rule.rule);
+        writeMeasure(json, rule.measure);
+        json.prop("filesOverBudget", rule.filesOverBudget);
+        json.name("entryPoints").beginArray();
+        for (Map.Entry<String, Measure> entryPoint : rule.slowestEntryPoints()) {
+          json.beginObject().prop("entryPoint", entryPoint.getKey());
+          writeMeasure(json, entryPoint.getValue());
+          json.endObject();
+        }
+        json.endArray().endObject();
+      }
+      json.endArray();
+      json.name("slowestFiles").beginArray();
+      for (FileProfile fileProfile : slowestFiles()) {
+        json.beginObject()
+          .prop("file", fileProfile.file.toString())
+          .prop("timeMs", fileProfile.totalNanos() / 1_000_000.0)
+          .prop("allocatedBytes", fileProfile.profiler.totalAllocatedBytes())
+          .prop("footprintBytes", fileProfile.profiler.footprint().totalBytes());
+        json.name("phases");
+        writePhases(json, fileProfile.profiler);
+        json.endObject();
+      }
+      json.endArray();
+      json.endObject();
+    }
+  }
+
+  private static void writePhases(JsonWriter json, AnalysisProfiler profiler) {
+    json.beginObject();
+    for (Phase phase : Phase.values()) {
+      json.name(name(phase)).beginObject();
+      writeMeasure(json, profiler.measure(phase));
+      json.endObject();
+    }
+    json.endObject();
+  }
+
+  private void writeFootprint(JsonWriter json, MemoryFootprint footprint) {
+    json.beginObject()
+      .prop("linesOfCode", footprint.linesOfCode())
+      .prop("sourceCharacters", footprint.sourceCharacters())
+      .prop("bytes", footprint.totalBytes())
+      .prop("bytesPerKloc", footprint.totalBytesPerKloc())
+      .prop("bytesPerSourceCharacter", bytesPerSourceCharacter(footprint))
+      .prop("budgetPerSourceByte", heapBudgetPerSourceByte);
+    json.name("categories").beginObject();
+    for (Category category : Category.values()) {
+      json.name(name(category)).beginObject()
+        .prop("objects", footprint.objects(category))
+        .prop("bytes", footprint.bytes(category))
+        .prop("bytesPerKloc", footprint.bytesPerKloc(category))
+        .endObject();
+    }
+    json.endObject().endObject();
+  }
+
+  private static void writeMeasure(JsonWriter json, Measure measure) {
+    json.prop("timeMs", measure.nanos() / 1_000_000.0)
+      .prop("allocatedBytes", measure.allocatedBytes())
+      .prop("invocations", measure.invocations());
+  }
+
+  private static String name(Phase phase) {
+    return phase.name().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static String name(Category category) {
+    return category.name().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static long millis(long nanos) {
+    return nanos / 1_000_000;
+  }
+
+  private static String megabytes(long bytes) {
+    return AnalysisProfiler.measuresAllocations() ? String.valueOf(bytes / (1024 * 1024)) : "n/a";
+  }
+
+  static class RuleProfile {
+    private final String rule;
+    private final RuleMeasure measure = new RuleMeasure();
+    private int filesOverBudget = 0;
+
+    private RuleProfile(String rule) {
+      this.rule = rule;
+    }
+
+    private void add(RuleMeasure checkMeasure, int checkFilesOverBudget) {
+      measure.add(checkMeasure);
+      filesOverBudget += checkFilesOverBudget;
+    }
+
+    /**
+     * Measures by kind of visited node, or by method of the check, slowest first.
+     */
+    List<Map.Entry<String, Measure>> slowestEntryPoints() {
+      List<Map.Entry<String, Measure>> result = new ArrayList<>(measure.entryPoints().entrySet());
+      result.sort(Comparator.comparing((Map.Entry<String, Measure> entry) -> entry.getValue().nanos()).reversed());
+      return result;
+    }
+
+    String rule() {
+      return rule;
+    }
+
+    RuleMeasure measure() {
+      return measure;
+    }
+
+    int filesOverBudget() {
+      return filesOverBudget;
+    }
+
+    long nanos() {
+      return measure.nanos();
+    }
+  }
+
+  static class FileProfile {
+    private final InputFile file;
+    private final AnalysisProfiler profiler;
+
+    private FileProfile(InputFile file, AnalysisProfiler profiler) {
+      this.file = file;
+      this.profiler = profiler;
+    }
+
+    InputFile file() {
+      return file;
+    }
+
+    AnalysisProfiler profiler() {
+      return profiler;
+    }
+
+    long totalNanos() {
+      return profiler.totalNanos();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+
+/**
+ * Groups the files which necessarily get the same analysis results: same name, same content and same package, the module
+ * name of a file being part of its semantic model. Only the first file of a group is analysed, its results are kept until
+ * they are saved on the other files of the group.
+ */
+class IdenticalFiles<T> {
+
+  private final Map<InputFile, String> keys = new HashMap<>();
+  private final Map<String, Integer> remainingFiles = new HashMap<>();
+  private final Map<String, T> results = new HashMap<>();
+  private final Set<InputFile> followingFiles = new HashSet<>();
+  private int reusedResults = 0;
+
+  void add(InputFile file, String content, String packageName) {
+    String key = packageName + ":" + file.filename() + ":" + content.length() + ":" + sha256(content);
+    keys.put(file, key);
+    remainingFiles.merge(key, 1, Integer::sum);
+  }
+
+  /**
+   * Reorders the files so that the files of a group are analysed one after the other, and their results are kept
+   * as short as possible.
+   */
+  List<InputFile> groupIdenticalFiles(List<InputFile> files) {
+    Map<Object, List<InputFile>> groups = new LinkedHashMap<>();
+    for (InputFile file : files) {
+      Object key = keys.containsKey(file) ? keys.get(file) : file;
+      groups.computeIfAbsent(key, k -> new ArrayList<>()).add(file);
+    }
+    List<InputFile> result = new ArrayList<>(files.size());
+    for (List<InputFile> group : groups.values()) {
+      result.addAll(group);
+      followingFiles.addAll(group.subList(1, group.size()));
+    }
+    return result;
+  }
+
+  /**
+   * True when the given file comes after an identical file in the order returned by {@link #groupIdenticalFiles(List)}:
+   * it should get the results of that file.
+   */
+  boolean followsIdenticalFile(InputFile file) {
+    return followingFiles.contains(file);
+  }
+
+  /**
+   * Returns the analysis results of a file identical to the given one, or null when no such file has been analysed.
+   * To be called once for each file.
+   */
+  @CheckForNull
+  T resultOf(InputFile file) {
+    String key = keys.get(file);
+    if (key == null) {
+      return null;
+    }
+    T result = results.get(key);
+    if (result != null) {
+      reusedResults++;
+    }
+    if (remainingFiles.merge(key, -1, Integer::sum) == 0) {
+      remainingFiles.remove(key);
+      results.remove(key);
+    }
+    return result;
+  }
+
+  /**
+   * True when files identical to the given one remain to be analysed: the results of the given file should be kept for
+   * them with {@link #analysed(InputFile, Object)}.
+   */
+  boolean hasRemainingIdenticalFiles(InputFile file) {
+    String key = keys.get(file);
+    return key != null && remainingFiles.containsKey(key);
+  }
+
+  /**
+   * Keeps the analysis results of the given file if files identical to it remain to be analysed.
+   */
+  void analysed(InputFile file, T result) {
+    String key = keys.get(file);
+    if (key != null && remainingFiles.containsKey(key)) {
+      results.put(key, result);
+    }
+  }
+
+  int reusedResults() {
+    return reusedResults;
+  }
+
+  private static String sha256(String content) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.python.AnalysisCancellation;
+
+/**
+ * Runs a stage of the analysis on a background thread, ahead of the thread which analyses the files one after the other.
+ * Results are handed over through a bounded queue: a file is only admitted in the stage when the estimated heap footprint
+ * of the files waiting in the queue and of the file being analysed leaves room for it, so that the memory used by
+ * the analysis does not depend on the number of files.
+ */
+class PipelineStage<T> implements AutoCloseable {
+
+  private final List<InputFile> files;
+  private final Map<InputFile, Integer> positions = new HashMap<>();
+  private final Function<InputFile, T> task;
+  private final ToLongFunction<InputFile> footprint;
+  private final long heapBudget;
+  private final int capacity;
+  private final long fileTimeout;
+  private final Thread thread;
+
+  // guarded by "this"
+  private final Deque<Output<T>> outputs = new ArrayDeque<>();
+  private long inFlightFootprint = 0;
+  private long takenFootprint = 0;
+  private boolean done = false;
+  private boolean closed = false;
+  private AnalysisCancellation currentCancellation = null;
+
+  /**
+   * @param files files to be processed by the stage, in the order in which they are analysed
+   * @param footprint estimated heap footprint of the result of the stage for a file, until the file is analysed
+   * @param capacity maximum number of results waiting to be taken
+   * @param fileTimeout time budget in seconds of the stage for a file, 0 for none
+   */
+  PipelineStage(String name, List<InputFile> files, Function<InputFile, T> task, ToLongFunction<InputFile> footprint,
+                long heapBudget, int capacity, long fileTimeout) {
+    this.files = files;
+    for (int i = 0; i < files.size(); i++) {
+      positions.put(files.get(i), i);
+    }
+    this.task = task;
+    this.footprint = footprint;
+    this.heapBudget = heapBudget;
+    this.capacity = capacity;
+    this.fileTimeout = fileTimeout;
+    this.thread = new Thread(this::run, name);
+    this.thread.setDaemon(true);
+  }
+
+  void start() {
+    thread.start();
+  }
+
+  /**
+   * Returns the result of the stage for the given file, which ends the analysis of the previously taken file.
+   * Files have to be taken in the order given to the stage. Returns null when the file is not processed by the stage:
+   * it was not given to the stage, or the stage has been stopped.
+   * Exceptions thrown by the stage for the file are rethrown.
+   */
+  @CheckForNull
+  synchronized T take(InputFile file) {
+    release();
+    Integer position = positions.get(file);
+    if (position == null) {
+      return null;
+    }
+    while (true) {
+      Output<T> head = outputs.peekFirst();
+      if (head == null) {
+        if (done || closed || !await()) {
+          return null;
+        }
+      } else if (head.position > position) {
+        return null;
+      } else {
+        outputs.removeFirst();
+        if (head.position == position) {
+          takenFootprint = head.footprint;
+          return head.result();
+        }
+        // the file has not been taken
+        inFlightFootprint -= head.footprint;
+        notifyAll();
+      }
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    outputs.clear();
+    if (currentCancellation != null) {
+      currentCancellation.cancel();
+    }
+    notifyAll();
+  }
+
+  private void run() {
+    ScheduledExecutorService watchdog = fileTimeout > 0 ? Executors.newSingleThreadScheduledExecutor(Scanner::watchdogThread) : null;
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        InputFile file = files.get(i);
+        long fileFootprint = footprint.applyAsLong(file);
+        if (!admit(fileFootprint)) {
+          return;
+        }
+        Output<T> output = process(file, i, fileFootprint, watchdog);
+        synchronized (this) {
+          currentCancellation = null;
+          if (closed) {
+            return;
+          }
+          outputs.addLast(output);
+          notifyAll();
+        }
+      }
+    } finally {
+      if (watchdog != null) {
+        watchdog.shutdownNow();
+      }
+      synchronized (this) {
+        done = true;
+        notifyAll();
+      }
+    }
+  }
+
+  private synchronized boolean admit(long fileFootprint) {
+    while (!closed && (outputs.size() >= capacity || (inFlightFootprint > 0 && inFlightFootprint + fileFootprint > heapBudget))) {
+      if (!await()) {
+        return false;
+      }
+    }
+    if (closed) {
+      return false;
+    }
+    inFlightFootprint += fileFootprint;
+    currentCancellation = AnalysisCancellation.register();
+    return true;
+  }
+
+  private Output<T> process(InputFile file, int position, long fileFootprint, @Nullable ScheduledExecutorService watchdog) {
+    AnalysisCancellation cancellation = AnalysisCancellation.current();
+    ScheduledFuture<?> timeout = watchdog == null ? null : watchdog.schedule(cancellation::cancel, fileTimeout, TimeUnit.SECONDS);
+    try {
+      return new Output<>(position, fileFootprint, task.apply(file), null);
+    } catch (RuntimeException e) {
+      return new Output<>(position, fileFootprint, null, e);
+    } finally {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      AnalysisCancellation.unregister();
+    }
+  }
+
+  private void release() {
+    inFlightFootprint -= takenFootprint;
+    takenFootprint = 0;
+    notifyAll();
+  }
+
+  private boolean await() {
+    try {
+      wait();
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static class Output<T> {
+    private final int position;
+    private final long footprint;
+    private final T result;
+    private final RuntimeException exception;
+
+    private Output(int position, long footprint, @Nullable T result, @Nullable RuntimeException exception) {
+      this.position = position;
+      this.footprint = footprint;
+      this.result = result;
+      this.exception = exception;
+    }
+
+    private T result() {
+      if (exception != null) {
+        throw exception;
+      }
+      return result;
+    }
+  }
+}
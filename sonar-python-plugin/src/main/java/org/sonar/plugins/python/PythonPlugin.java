@@ -50,6 +50,9 @@ public class PythonPlugin implements Plugin {
   private static final String DEPRECATED_PREFIX = "DEPRECATED : Use " + PythonCoverageSensor.REPORT_PATHS_KEY + " instead. ";
 
   public static final String FILE_SUFFIXES_KEY = "sonar.python.file.suffixes";
+  public static final String FILE_TIMEOUT_KEY = "sonar.python.analysis.fileTimeout";
+  public static final String RULE_TIME_BUDGET_KEY = "sonar.python.analysis.ruleTimeBudget";
+  public static final String DISABLE_SLOW_RULES_KEY = "sonar.python.analysis.disableSlowRules";
 
   @Override
   public void define(Context context) {
@@ -66,6 +69,97 @@ public class PythonPlugin implements Plugin {
         .defaultValue("py")
         .build(),
 
+      PropertyDefinition.builder(FILE_TIMEOUT_KEY)
+        .index(11)
+        .name("Analysis Time Budget per File")
+        .description("Maximum time in seconds spent on the analysis of a single file. When it is exceeded, the analysis of the file is stopped " +
+          "and an analysis warning is raised. 0 means no limit.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .defaultValue("0")
+        .build(),
+
+      PropertyDefinition.builder(ReducedAnalysisPolicy.GENERATED_FILES_KEY)
+        .index(12)
+        .name("Generated Files")
+        .description("Path patterns of generated files, e.g. \"**/*_pb2.py\". They only get metrics, duplications and highlighting: " +
+          "rules are not executed on them.")
+        .multiValues(true)
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+
+      PropertyDefinition.builder(ReducedAnalysisPolicy.GENERATED_CODE_HEADER_KEY)
+        .index(13)
+        .name("Generated Code Header")
+        .description("Files whose header comments contain \"Generated by\", \"DO NOT EDIT\" or \"@generated\" are considered as generated: " +
+          "they only get metrics, duplications and highlighting.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .defaultValue("false")
+        .build(),
+
+      PropertyDefinition.builder(ReducedAnalysisPolicy.LARGE_FILE_SIZE_KEY)
+        .index(14)
+        .name("Large File Size")
+        .description("Size in KB above which a file only gets metrics, duplications and highlighting. 0 means no limit.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .defaultValue("0")
+        .build(),
+
+      PropertyDefinition.builder(ReducedAnalysisPolicy.LARGE_FILE_LINES_KEY)
+        .index(15)
+        .name("Large File Lines")
+        .description("Number of lines above which a file only gets metrics, duplications and highlighting. 0 means no limit.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .defaultValue("0")
+        .build(),
+
+      PropertyDefinition.builder(AnalysisProfileReport.PROFILING_KEY)
+        .index(16)
+        .name("Analysis Profiling")
+        .description("Measures the time spent and the memory allocated by each phase of the analysis and by each rule. The measures are " +
+          "logged at the end of the analysis and written to \"" + AnalysisProfileReport.REPORT_FILE_NAME + "\" in the working directory.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .defaultValue("false")
+        .build(),
+
+      PropertyDefinition.builder(RULE_TIME_BUDGET_KEY)
+        .index(17)
+        .name("Rule Time Budget per File")
+        .description("Maximum time in milliseconds spent by a single rule on a single file. When it is exceeded, the rule is stopped on the file, " +
+          "its issues on the file are discarded and a warning is logged. 0 means no limit.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .defaultValue("0")
+        .build(),
+
+      PropertyDefinition.builder(DISABLE_SLOW_RULES_KEY)
+        .index(18)
+        .name("Disable Slow Rules")
+        .description("Disables a rule for the rest of the analysis once it exceeded the rule time budget on a file.")
+        .category(PYTHON_CATEGORY)
+        .subCategory(GENERAL)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .defaultValue("false")
+        .build(),
 
       Python.class,
 
@@ -19,24 +19,32 @@
  */
 package org.sonar.plugins.python;
 
-import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.sonar.api.SonarProduct;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.TextRange;
 import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
 import org.sonar.api.batch.sensor.issue.NewIssue;
 import org.sonar.api.batch.sensor.issue.NewIssueLocation;
+import org.sonar.api.batch.sensor.symbol.NewSymbolTable;
 import org.sonar.api.issue.NoSonarFilter;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.measures.FileLinesContext;
@@ -53,27 +61,47 @@ import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
 import org.sonar.plugins.python.api.symbols.Symbol;
 import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.RecordedAnalysis.Measures;
+import org.sonar.plugins.python.SlowestFilesReport.FileTimings;
+import org.sonar.plugins.python.SlowestFilesReport.Phase;
 import org.sonar.plugins.python.cpd.PythonCpdAnalyzer;
+import org.sonar.python.AnalysisCancellation;
+import org.sonar.python.AnalysisProfiler;
 import org.sonar.python.SubscriptionVisitor;
-import org.sonar.python.metrics.FileLinesVisitor;
 import org.sonar.python.metrics.FileMetrics;
-import org.sonar.python.parser.PythonParser;
+import org.sonar.python.semantic.MemoryFootprint;
 import org.sonar.python.semantic.SymbolUtils;
-import org.sonar.python.tree.PythonTreeMaker;
+import org.sonar.python.tree.PythonTreeParser;
 
 import static org.sonar.python.semantic.SymbolUtils.pythonPackageName;
 
 public class PythonScanner extends Scanner {
 
   private static final Logger LOG = Loggers.get(PythonScanner.class);
+  private static final int SLOWEST_FILES_REPORT_SIZE = 10;
+  // measured heap used by the syntax tree and the semantic model of a file, per byte of source code
+  private static final int HEAP_BYTES_PER_SOURCE_BYTE = 64;
+  private static final int PARSED_FILES_QUEUE_CAPACITY = 4;
 
-  private final PythonParser parser;
+  private final PythonTreeParser parser;
   private final Map<InputFile, String> packageNames = new HashMap<>();
   private final PythonChecks checks;
   private final FileLinesContextFactory fileLinesContextFactory;
   private final NoSonarFilter noSonarFilter;
-  private final PythonCpdAnalyzer cpdAnalyzer;
   private final Map<String, Set<Symbol>> globalSymbolsByModuleName = SymbolUtils.externalModulesSymbols();
+  private final SlowestFilesReport slowestFilesReport = new SlowestFilesReport(SLOWEST_FILES_REPORT_SIZE);
+  private final ReducedAnalysisPolicy reducedAnalysisPolicy;
+  private final IdenticalFiles<RecordedAnalysis> identicalFiles = new IdenticalFiles<>();
+  // null when profiling is disabled
+  private final AnalysisProfileReport profileReport;
+  // 0 when rules have no time budget
+  private final long ruleBudgetNanos;
+  private final boolean disableSlowRules;
+  private final Set<PythonCheck> disabledChecks = new HashSet<>();
+  private PipelineStage<ParsedFile> parsingStage = null;
+  private final List<InputFile> reducedAnalysisFiles = new ArrayList<>();
+  private final List<InputFile> globalSymbolsTimedOutFiles;
+  private long reducedAnalysisBytes = 0;
 
 
   public PythonScanner(
@@ -84,12 +112,27 @@ public class PythonScanner extends Scanner {
     this.checks = checks;
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.noSonarFilter = noSonarFilter;
-    this.cpdAnalyzer = new PythonCpdAnalyzer(context);
-    this.parser = PythonParser.create();
+    this.parser = PythonTreeParser.create();
+    this.reducedAnalysisPolicy = new ReducedAnalysisPolicy(context);
+    boolean profiling = context.config().getBoolean(AnalysisProfileReport.PROFILING_KEY).orElse(false);
+    this.profileReport = profiling ? new AnalysisProfileReport(checks::ruleKey, SLOWEST_FILES_REPORT_SIZE, HEAP_BYTES_PER_SOURCE_BYTE) : null;
+    this.ruleBudgetNanos = TimeUnit.MILLISECONDS.toNanos(context.config().getLong(PythonPlugin.RULE_TIME_BUDGET_KEY).orElse(0L));
+    this.disableSlowRules = context.config().getBoolean(PythonPlugin.DISABLE_SLOW_RULES_KEY).orElse(false);
 
     // computes "globalSymbolsByModuleName"
     GlobalSymbolsScanner globalSymbolsStep = new GlobalSymbolsScanner(context);
     globalSymbolsStep.execute(files, context);
+    globalSymbolsTimedOutFiles = globalSymbolsStep.timedOutFiles();
+  }
+
+  /**
+   * Files whose computation of the global symbols or whose rules execution was stopped because it exceeded the time budget.
+   */
+  @Override
+  List<InputFile> timedOutFiles() {
+    Set<InputFile> files = new LinkedHashSet<>(globalSymbolsTimedOutFiles);
+    files.addAll(super.timedOutFiles());
+    return new ArrayList<>(files);
   }
 
   @Override
@@ -97,42 +140,318 @@ public class PythonScanner extends Scanner {
     return "rules execution";
   }
 
+  @Override
+  void execute(List<InputFile> files, SensorContext context) {
+    List<InputFile> orderedFiles = identicalFiles.groupIdenticalFiles(largestFirst(files));
+    if (orderedFiles.size() > 1) {
+      List<InputFile> filesToParse = orderedFiles.stream().filter(file -> !identicalFiles.followsIdenticalFile(file)).collect(Collectors.toList());
+      PythonTreeParser backgroundParser = PythonTreeParser.create();
+      boolean profiling = profileReport != null;
+      parsingStage = new PipelineStage<>("python-parsing", filesToParse, file -> parse(backgroundParser, file, profiling), PythonScanner::heapFootprint,
+        Runtime.getRuntime().maxMemory() / 4, PARSED_FILES_QUEUE_CAPACITY, context.config().getLong(PythonPlugin.FILE_TIMEOUT_KEY).orElse(0L));
+      parsingStage.start();
+    }
+    try {
+      super.execute(orderedFiles, context);
+    } finally {
+      if (parsingStage != null) {
+        parsingStage.close();
+        parsingStage = null;
+      }
+    }
+    slowestFilesReport.log(LOG);
+    if (profileReport != null) {
+      writeProfileReport(context);
+    }
+    if (identicalFiles.reusedResults() > 0) {
+      LOG.info(identicalFiles.reusedResults() + " file(s) got the analysis results of an identical file.");
+    }
+    if (!reducedAnalysisFiles.isEmpty()) {
+      LOG.info(reducedAnalysisFiles.size() + " generated or large file(s), " + reducedAnalysisBytes + " bytes, only got metrics, duplications and highlighting.");
+    }
+  }
+
+  List<InputFile> reducedAnalysisFiles() {
+    return reducedAnalysisFiles;
+  }
+
+  private void writeProfileReport(SensorContext context) {
+    File reportFile = null;
+    File workDir = getWorkingDirectory(context);
+    if (workDir != null) {
+      reportFile = new File(workDir, AnalysisProfileReport.REPORT_FILE_NAME);
+      try {
+        profileReport.write(reportFile);
+      } catch (IOException e) {
+        LOG.warn("Unable to write the analysis profile to " + reportFile, e);
+        reportFile = null;
+      }
+    }
+    profileReport.log(LOG, reportFile);
+  }
+
   @Override
   protected void scanFile(InputFile inputFile) {
-    PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
-    PythonVisitorContext visitorContext;
+    FileTimings timings = slowestFilesReport.newTimings(inputFile);
+    // rule time budgets are enforced by measuring rules, as profiling does
+    boolean measured = profileReport != null || ruleBudgetNanos > 0;
+    AnalysisProfiler profiler = measured ? AnalysisProfiler.register(ruleBudgetNanos) : AnalysisProfiler.current();
     try {
-      AstNode astNode = parser.parse(pythonFile.content());
-      FileInput parse = new PythonTreeMaker().fileInput(astNode);
-      visitorContext = new PythonVisitorContext(parse, pythonFile, getWorkingDirectory(context), packageNames.get(inputFile), globalSymbolsByModuleName);
-      saveMeasures(inputFile, visitorContext);
-    } catch (RecognitionException e) {
-      visitorContext = new PythonVisitorContext(pythonFile, e);
-      LOG.error("Unable to parse file: " + inputFile.toString());
-      LOG.error(e.getMessage());
-      context.newAnalysisError()
-        .onFile(inputFile)
-        .at(inputFile.newPointer(e.getLine(), 0))
-        .message(e.getMessage())
-        .save();
+      scanFile(inputFile, timings);
+    } finally {
+      timings.stop();
+      slowestFilesReport.add(timings);
+      if (measured) {
+        profiler.stopAll();
+        AnalysisProfiler.unregister();
+      }
+      if (profileReport != null) {
+        profileReport.add(inputFile, profiler);
+      }
+    }
+  }
+
+  private void scanFile(InputFile inputFile, FileTimings timings) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    ParsedFile parsedFile = parsingStage == null ? null : parsingStage.take(inputFile);
+    PythonFile pythonFile = parsedFile == null ? SonarQubePythonFile.create(inputFile) : parsedFile.pythonFile;
+    RecordedAnalysis identicalFileResult = identicalFiles.resultOf(inputFile);
+    // the policy reads the files it does not exclude by their path
+    profiler.start(AnalysisProfiler.Phase.READING);
+    String reducedAnalysisReason = reducedAnalysisPolicy.reason(inputFile, pythonFile);
+    profiler.stop();
+    if (reducedAnalysisReason != null) {
+      LOG.debug("Reduced analysis of {}: {}", inputFile, reducedAnalysisReason);
+      reducedAnalysis(inputFile, parsed(parsedFile, pythonFile, timings), timings);
+      return;
+    }
+    if (identicalFileResult != null) {
+      timings.start(Phase.MEASURES);
+      saveResult(inputFile, identicalFileResult);
+      return;
+    }
+    parsedFile = parsed(parsedFile, pythonFile, timings);
+    // what is saved on the file is recorded for the identical files which remain to be analysed
+    RecordedAnalysis recording = identicalFiles.hasRemainingIdenticalFiles(inputFile) ? new RecordedAnalysis() : null;
+    PythonVisitorContext visitorContext;
+    if (parsedFile.tree != null) {
+      profiler.start(AnalysisProfiler.Phase.SYMBOL_TABLE);
+      visitorContext = new PythonVisitorContext(parsedFile.tree, pythonFile, getWorkingDirectory(context), packageNames.get(inputFile), globalSymbolsByModuleName);
+      profiler.stop();
+      timings.start(Phase.MEASURES);
+      saveMeasures(inputFile, visitorContext, measures(visitorContext), recording);
+    } else {
+      visitorContext = new PythonVisitorContext(pythonFile, parsedFile.parsingError);
+      saveParsingError(inputFile, parsedFile.parsingError);
+      if (recording != null) {
+        recording.parsingError(parsedFile.parsingError);
+      }
     }
+    timings.start(Phase.RULES);
+    profiler.start(AnalysisProfiler.Phase.RULES);
+    AnalysisCancellation cancellation = AnalysisCancellation.current();
+    List<PythonCheck> executedChecks = new ArrayList<>();
     List<PythonSubscriptionCheck> checksBasedOnTree = new ArrayList<>();
     for (PythonCheck check : checks.all()) {
+      if (disabledChecks.contains(check)) {
+        continue;
+      }
+      executedChecks.add(check);
       if (check instanceof PythonSubscriptionCheck) {
         checksBasedOnTree.add((PythonSubscriptionCheck) check);
       } else {
+        cancellation.check();
+        profiler.startRule(check, AnalysisProfiler.SCAN_FILE);
         check.scanFile(visitorContext);
+        profiler.stop();
       }
     }
     SubscriptionVisitor.analyze(checksBasedOnTree, visitorContext);
+    profiler.stop();
+    if (profileReport != null && visitorContext.rootTree() != null) {
+      // once the rules ran, the semantic model is as complete as it gets
+      profiler.footprint().add(MemoryFootprint.of(visitorContext.rootTree()));
+    }
+    if (ruleBudgetNanos > 0) {
+      discardIssuesOfRulesOverBudget(inputFile, visitorContext, executedChecks);
+    }
     saveIssues(inputFile, visitorContext.getIssues());
 
     if (visitorContext.rootTree() != null) {
-      new SymbolVisitor(context.newSymbolTable().onFile(inputFile)).visitFileInput(visitorContext.rootTree());
-      new PythonHighlighter(context, inputFile).scanFile(visitorContext);
+      timings.start(Phase.HIGHLIGHTING);
+      saveSymbolsAndHighlighting(inputFile, visitorContext, recording);
+    }
+    if (recording != null) {
+      recording.issues(visitorContext.getIssues());
+      identicalFiles.analysed(inputFile, recording);
+    }
+  }
+
+  /**
+   * Rules over budget did not visit the whole file: their issues would depend on the speed of the analysis.
+   */
+  private void discardIssuesOfRulesOverBudget(InputFile inputFile, PythonVisitorContext visitorContext, List<PythonCheck> executedChecks) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    for (PythonCheck check : executedChecks) {
+      if (profiler.isOverBudget(check)) {
+        visitorContext.getIssues().removeIf(issue -> issue.check() == check);
+        StringBuilder message = new StringBuilder().append("Rule ").append(checks.ruleKey(check)).append(" exceeded its time budget of ")
+          .append(TimeUnit.NANOSECONDS.toMillis(ruleBudgetNanos)).append(" ms on file ").append(inputFile).append(": its issues on the file are discarded");
+        if (disableSlowRules) {
+          disabledChecks.add(check);
+          message.append(", and it is disabled on the following files");
+        }
+        LOG.warn(message.append(".").toString());
+      }
     }
   }
 
+  /**
+   * Saves on a file the results of the analysis of an identical file.
+   */
+  private void saveResult(InputFile inputFile, RecordedAnalysis result) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    RecognitionException parsingError = result.parsingError();
+    if (parsingError != null) {
+      saveParsingError(inputFile, parsingError);
+    } else {
+      profiler.start(AnalysisProfiler.Phase.METRICS);
+      profiler.start(AnalysisProfiler.Phase.CPD);
+      result.saveCpdTokens(context.newCpdTokens().onFile(inputFile));
+      profiler.stop();
+      saveMetrics(inputFile, result.measures());
+      profiler.stop();
+    }
+    saveIssues(inputFile, result.issues());
+    if (parsingError == null) {
+      profiler.start(AnalysisProfiler.Phase.SYMBOL_EXPORT);
+      result.saveSymbols(context.newSymbolTable().onFile(inputFile));
+      profiler.stop();
+      profiler.start(AnalysisProfiler.Phase.HIGHLIGHTING);
+      result.saveHighlighting(context.newHighlighting().onFile(inputFile));
+      profiler.stop();
+    }
+  }
+
+  private void saveSymbolsAndHighlighting(InputFile inputFile, PythonVisitorContext visitorContext, @Nullable RecordedAnalysis recording) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    profiler.start(AnalysisProfiler.Phase.SYMBOL_EXPORT);
+    NewSymbolTable newSymbolTable = context.newSymbolTable().onFile(inputFile);
+    new SymbolVisitor(recording == null ? newSymbolTable : recording.recording(newSymbolTable)).visitFileInput(visitorContext.rootTree());
+    profiler.stop();
+    saveHighlighting(inputFile, visitorContext, recording);
+  }
+
+  private void saveHighlighting(InputFile inputFile, PythonVisitorContext visitorContext, @Nullable RecordedAnalysis recording) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    profiler.start(AnalysisProfiler.Phase.HIGHLIGHTING);
+    NewHighlighting newHighlighting = context.newHighlighting().onFile(inputFile);
+    new PythonHighlighter(recording == null ? newHighlighting : recording.recording(newHighlighting)).scanFile(visitorContext);
+    profiler.stop();
+  }
+
+  /**
+   * Returns the file parsed by the parsing stage, or parses it when the parsing stage did not.
+   * The parsing phase goes on until the semantic model is computed.
+   */
+  private ParsedFile parsed(@Nullable ParsedFile parsedFile, PythonFile pythonFile, FileTimings timings) {
+    timings.start(Phase.PARSING);
+    if (parsedFile != null) {
+      timings.add(Phase.PARSING, parsedFile.parsingNanos);
+      if (parsedFile.profiler != null) {
+        AnalysisProfiler.current().add(parsedFile.profiler);
+      }
+      return parsedFile;
+    }
+    return parse(parser, pythonFile);
+  }
+
+  /**
+   * Parses a file on the thread of the parsing stage, which has its own profiler when profiling is enabled.
+   */
+  private static ParsedFile parse(PythonTreeParser parser, InputFile inputFile, boolean profiling) {
+    if (!profiling) {
+      return parse(parser, SonarQubePythonFile.create(inputFile));
+    }
+    AnalysisProfiler profiler = AnalysisProfiler.register();
+    try {
+      ParsedFile parsedFile = parse(parser, SonarQubePythonFile.create(inputFile));
+      profiler.stopAll();
+      parsedFile.profiler = profiler;
+      return parsedFile;
+    } finally {
+      AnalysisProfiler.unregister();
+    }
+  }
+
+  private static ParsedFile parse(PythonTreeParser parser, PythonFile pythonFile) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    long start = System.nanoTime();
+    profiler.start(AnalysisProfiler.Phase.READING);
+    String content = pythonFile.content();
+    profiler.stop();
+    profiler.start(AnalysisProfiler.Phase.PARSING);
+    try {
+      FileInput tree = parser.parse(content);
+      return new ParsedFile(pythonFile, tree, null, System.nanoTime() - start);
+    } catch (RecognitionException e) {
+      return new ParsedFile(pythonFile, null, e, System.nanoTime() - start);
+    } finally {
+      profiler.stop();
+    }
+  }
+
+  private static Measures measures(PythonVisitorContext visitorContext) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    profiler.start(AnalysisProfiler.Phase.METRICS);
+    Measures measures = new Measures(new FileMetrics(visitorContext));
+    profiler.stop();
+    return measures;
+  }
+
+  private static long heapFootprint(InputFile inputFile) {
+    return inputFile.file().length() * HEAP_BYTES_PER_SOURCE_BYTE;
+  }
+
+  /**
+   * Largest files first: the parsing of the small files overlaps with the analysis of the large ones, instead of the
+   * analysis ending with a large file which nothing overlaps with.
+   */
+  static List<InputFile> largestFirst(List<InputFile> files) {
+    Map<InputFile, Long> sizes = new HashMap<>();
+    files.forEach(file -> sizes.put(file, file.file().length()));
+    List<InputFile> result = new ArrayList<>(files);
+    result.sort(Comparator.comparing(sizes::get, Comparator.reverseOrder()));
+    return result;
+  }
+
+  /**
+   * Metrics, duplications and highlighting only: no semantic model, no rules and no symbol references.
+   */
+  private void reducedAnalysis(InputFile inputFile, ParsedFile parsedFile, FileTimings timings) {
+    if (parsedFile.tree == null) {
+      saveParsingError(inputFile, parsedFile.parsingError);
+      return;
+    }
+    PythonVisitorContext visitorContext = new PythonVisitorContext(parsedFile.tree, parsedFile.pythonFile, getWorkingDirectory(context));
+    timings.start(Phase.MEASURES);
+    saveMeasures(inputFile, visitorContext, measures(visitorContext), null);
+    timings.start(Phase.HIGHLIGHTING);
+    saveHighlighting(inputFile, visitorContext, null);
+    reducedAnalysisFiles.add(inputFile);
+    reducedAnalysisBytes += inputFile.file().length();
+  }
+
+  private void saveParsingError(InputFile inputFile, RecognitionException e) {
+    LOG.error("Unable to parse file: " + inputFile.toString());
+    LOG.error(e.getMessage());
+    context.newAnalysisError()
+      .onFile(inputFile)
+      .at(inputFile.newPointer(e.getLine(), 0))
+      .message(e.getMessage())
+      .save();
+  }
+
   // visible for testing
   static File getWorkingDirectory(SensorContext context) {
     return context.runtime().getProduct().equals(SonarProduct.SONARLINT) ? null : context.fileSystem().workDir();
@@ -144,6 +463,8 @@ public class PythonScanner extends Scanner {
   }
 
   private void saveIssues(InputFile inputFile, List<PreciseIssue> issues) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    profiler.start(AnalysisProfiler.Phase.ISSUE_SAVING);
     for (PreciseIssue preciseIssue : issues) {
       RuleKey ruleKey = checks.ruleKey(preciseIssue.check());
       NewIssue newIssue = context
@@ -179,6 +500,7 @@ public class PythonScanner extends Scanner {
       }
       newIssue.save();
     }
+    profiler.stop();
   }
 
   @CheckForNull
@@ -210,27 +532,36 @@ public class PythonScanner extends Scanner {
     return newLocation;
   }
 
-  private void saveMeasures(InputFile inputFile, PythonVisitorContext visitorContext) {
-    FileMetrics fileMetrics = new FileMetrics(visitorContext);
-    FileLinesVisitor fileLinesVisitor = fileMetrics.fileLinesVisitor();
+  private void saveMeasures(InputFile inputFile, PythonVisitorContext visitorContext, Measures measures, @Nullable RecordedAnalysis recording) {
+    AnalysisProfiler profiler = AnalysisProfiler.current();
+    profiler.start(AnalysisProfiler.Phase.METRICS);
+    profiler.start(AnalysisProfiler.Phase.CPD);
+    NewCpdTokens cpdTokens = context.newCpdTokens().onFile(inputFile);
+    PythonCpdAnalyzer.pushCpdTokens(recording == null ? cpdTokens : recording.recording(cpdTokens), visitorContext.rootTree());
+    profiler.stop();
+    saveMetrics(inputFile, measures);
+    if (recording != null) {
+      recording.measures(measures);
+    }
+    profiler.stop();
+  }
 
-    cpdAnalyzer.pushCpdTokens(inputFile, visitorContext);
-    noSonarFilter.noSonarInFile(inputFile, fileLinesVisitor.getLinesWithNoSonar());
+  private void saveMetrics(InputFile inputFile, Measures measures) {
+    noSonarFilter.noSonarInFile(inputFile, measures.linesWithNoSonar);
 
-    Set<Integer> linesOfCode = fileLinesVisitor.getLinesOfCode();
-    saveMetricOnFile(inputFile, CoreMetrics.NCLOC, linesOfCode.size());
-    saveMetricOnFile(inputFile, CoreMetrics.STATEMENTS, fileMetrics.numberOfStatements());
-    saveMetricOnFile(inputFile, CoreMetrics.FUNCTIONS, fileMetrics.numberOfFunctions());
-    saveMetricOnFile(inputFile, CoreMetrics.CLASSES, fileMetrics.numberOfClasses());
-    saveMetricOnFile(inputFile, CoreMetrics.COMPLEXITY, fileMetrics.complexity());
-    saveMetricOnFile(inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, fileMetrics.cognitiveComplexity());
-    saveMetricOnFile(inputFile, CoreMetrics.COMMENT_LINES, fileLinesVisitor.getCommentLineCount());
+    saveMetricOnFile(inputFile, CoreMetrics.NCLOC, measures.linesOfCode.size());
+    saveMetricOnFile(inputFile, CoreMetrics.STATEMENTS, measures.statements);
+    saveMetricOnFile(inputFile, CoreMetrics.FUNCTIONS, measures.functions);
+    saveMetricOnFile(inputFile, CoreMetrics.CLASSES, measures.classes);
+    saveMetricOnFile(inputFile, CoreMetrics.COMPLEXITY, measures.complexity);
+    saveMetricOnFile(inputFile, CoreMetrics.COGNITIVE_COMPLEXITY, measures.cognitiveComplexity);
+    saveMetricOnFile(inputFile, CoreMetrics.COMMENT_LINES, measures.commentLines);
 
     FileLinesContext fileLinesContext = fileLinesContextFactory.createFor(inputFile);
-    for (int line : linesOfCode) {
+    for (int line : measures.linesOfCode) {
       fileLinesContext.setIntValue(CoreMetrics.NCLOC_DATA_KEY, line, 1);
     }
-    for (int line : fileLinesVisitor.getExecutableLines()) {
+    for (int line : measures.executableLines) {
       fileLinesContext.setIntValue(CoreMetrics.EXECUTABLE_LINES_DATA_KEY, line, 1);
     }
     fileLinesContext.save();
@@ -257,10 +588,12 @@ public class PythonScanner extends Scanner {
 
     @Override
     protected void scanFile(InputFile inputFile) throws IOException {
-      AstNode astNode = parser.parse(inputFile.contents());
-      FileInput astRoot = new PythonTreeMaker().fileInput(astNode);
+      // the package name is needed by the rules execution even if this step is stopped by the time budget
       String packageName = pythonPackageName(inputFile.file(), context.fileSystem().baseDir());
       packageNames.put(inputFile, packageName);
+      String content = inputFile.contents();
+      FileInput astRoot = parser.parse(content);
+      identicalFiles.add(inputFile, content, packageName);
       String fullyQualifiedModuleName = SymbolUtils.fullyQualifiedModuleName(packageName, inputFile.filename());
       PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
       globalSymbolsByModuleName.put(fullyQualifiedModuleName, SymbolUtils.globalSymbols(astRoot, packageName, pythonFile));
@@ -272,4 +605,21 @@ public class PythonScanner extends Scanner {
       LOG.debug(e.getMessage());
     }
   }
+
+  private static class ParsedFile {
+    private final PythonFile pythonFile;
+    private final FileInput tree;
+    // null when the file could be parsed
+    private final RecognitionException parsingError;
+    private final long parsingNanos;
+    // measures of the parsing stage, when profiling is enabled
+    private AnalysisProfiler profiler = null;
+
+    private ParsedFile(PythonFile pythonFile, @Nullable FileInput tree, @Nullable RecognitionException parsingError, long parsingNanos) {
+      this.pythonFile = pythonFile;
+      this.tree = tree;
+      this.parsingError = parsingError;
+      this.parsingNanos = parsingNanos;
+    }
+  }
 }
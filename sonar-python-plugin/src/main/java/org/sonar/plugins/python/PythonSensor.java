@@ -19,13 +19,15 @@
  */
 package org.sonar.plugins.python;
 
-import com.sonar.sslr.api.AstNode;
 import com.sonar.sslr.api.RecognitionException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.FilePredicates;
 import org.sonar.api.batch.fs.InputFile;
@@ -42,30 +44,45 @@ import org.sonar.plugins.python.api.PythonCustomRuleRepository;
 import org.sonar.plugins.python.api.PythonFile;
 import org.sonar.plugins.python.api.PythonVisitorContext;
 import org.sonar.plugins.python.api.tree.FileInput;
+import org.sonar.plugins.python.warnings.AnalysisWarningsWrapper;
 import org.sonar.python.checks.CheckList;
-import org.sonar.python.parser.PythonParser;
-import org.sonar.python.tree.PythonTreeMaker;
+import org.sonar.python.tree.PythonTreeParser;
 
 public final class PythonSensor implements Sensor {
 
+  // files listed by the analysis warning of the reduced analysis
+  private static final int WARNING_MAX_FILES = 10;
+
   private final PythonChecks checks;
   private final FileLinesContextFactory fileLinesContextFactory;
   private final NoSonarFilter noSonarFilter;
+  private final AnalysisWarningsWrapper analysisWarnings;
 
   /**
-   * Constructor to be used by pico if no PythonCustomRuleRepository are to be found and injected.
+   * Constructor to be used by pico if neither PythonCustomRuleRepository nor AnalysisWarningsWrapper are to be found and injected.
    */
   public PythonSensor(FileLinesContextFactory fileLinesContextFactory, CheckFactory checkFactory, NoSonarFilter noSonarFilter) {
-    this(fileLinesContextFactory, checkFactory, noSonarFilter, null);
+    this(fileLinesContextFactory, checkFactory, noSonarFilter, null, null);
   }
 
   public PythonSensor(FileLinesContextFactory fileLinesContextFactory, CheckFactory checkFactory, NoSonarFilter noSonarFilter,
                       @Nullable PythonCustomRuleRepository[] customRuleRepositories) {
+    this(fileLinesContextFactory, checkFactory, noSonarFilter, customRuleRepositories, null);
+  }
+
+  public PythonSensor(FileLinesContextFactory fileLinesContextFactory, CheckFactory checkFactory, NoSonarFilter noSonarFilter,
+                      AnalysisWarningsWrapper analysisWarnings) {
+    this(fileLinesContextFactory, checkFactory, noSonarFilter, null, analysisWarnings);
+  }
+
+  public PythonSensor(FileLinesContextFactory fileLinesContextFactory, CheckFactory checkFactory, NoSonarFilter noSonarFilter,
+                      @Nullable PythonCustomRuleRepository[] customRuleRepositories, @Nullable AnalysisWarningsWrapper analysisWarnings) {
     this.checks = new PythonChecks(checkFactory)
       .addChecks(CheckList.REPOSITORY_KEY, CheckList.getChecks())
       .addCustomChecks(customRuleRepositories);
     this.fileLinesContextFactory = fileLinesContextFactory;
     this.noSonarFilter = noSonarFilter;
+    this.analysisWarnings = analysisWarnings;
   }
 
   @Override
@@ -82,11 +99,28 @@ public final class PythonSensor implements Sensor {
     List<InputFile> testFiles = getInputFiles(Type.TEST, context);
     PythonScanner scanner = new PythonScanner(context, checks, fileLinesContextFactory, noSonarFilter, mainFiles);
     scanner.execute(mainFiles, context);
+    Set<InputFile> timedOutFiles = new LinkedHashSet<>(scanner.timedOutFiles());
     if (!testFiles.isEmpty()) {
-      new TestHighlightingScanner(context).execute(testFiles, context);
+      TestHighlightingScanner testHighlightingScanner = new TestHighlightingScanner(context);
+      testHighlightingScanner.execute(testFiles, context);
+      timedOutFiles.addAll(testHighlightingScanner.timedOutFiles());
+    }
+    if (!timedOutFiles.isEmpty() && analysisWarnings != null) {
+      analysisWarnings.addWarning(String.format("The analysis of %d Python file(s) was stopped because it exceeded the time budget set by \"%s\". "
+        + "See the analysis logs for the list of files.", timedOutFiles.size(), PythonPlugin.FILE_TIMEOUT_KEY));
+    }
+    List<InputFile> reducedAnalysisFiles = scanner.reducedAnalysisFiles();
+    if (!reducedAnalysisFiles.isEmpty() && analysisWarnings != null) {
+      analysisWarnings.addWarning(String.format("%d generated or large Python file(s) only got metrics, duplications and highlighting, "
+        + "without rules: %s", reducedAnalysisFiles.size(), fileList(reducedAnalysisFiles)));
     }
   }
 
+  private static String fileList(List<InputFile> files) {
+    String list = files.stream().limit(WARNING_MAX_FILES).map(InputFile::toString).collect(Collectors.joining(", "));
+    return files.size() > WARNING_MAX_FILES ? (list + " and " + (files.size() - WARNING_MAX_FILES) + " more") : list;
+  }
+
   private static List<InputFile> getInputFiles(InputFile.Type type, SensorContext context) {
     FilePredicates p = context.fileSystem().predicates();
     Iterable<InputFile> it = context.fileSystem().inputFiles(p.and(p.hasType(type), p.hasLanguage(Python.KEY)));
@@ -98,7 +132,7 @@ public final class PythonSensor implements Sensor {
   private static class TestHighlightingScanner extends Scanner {
 
     private static final Logger LOG = Loggers.get(TestHighlightingScanner.class);
-    private final PythonParser parser = PythonParser.create();
+    private final PythonTreeParser parser = PythonTreeParser.create();
 
     TestHighlightingScanner(SensorContext context) {
       super(context);
@@ -113,8 +147,7 @@ public final class PythonSensor implements Sensor {
     protected void scanFile(InputFile inputFile) throws IOException {
       try {
         PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
-        AstNode astNode = parser.parse(pythonFile.content());
-        FileInput parse = new PythonTreeMaker().fileInput(astNode);
+        FileInput parse = parser.parse(pythonFile.content());
         // omitting package and symbols info as it's not required for highlighting
         PythonVisitorContext visitorContext = new PythonVisitorContext(parse, pythonFile, context.fileSystem().workDir(), "", new HashMap<>());
         new PythonHighlighter(context, inputFile).scanFile(visitorContext);
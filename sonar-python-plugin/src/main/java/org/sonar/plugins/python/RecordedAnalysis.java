@@ -0,0 +1,282 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import com.sonar.sslr.api.RecognitionException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.TextRange;
+import org.sonar.api.batch.sensor.cpd.NewCpdTokens;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.symbol.NewSymbol;
+import org.sonar.api.batch.sensor.symbol.NewSymbolTable;
+import org.sonar.plugins.python.api.PythonCheck.PreciseIssue;
+import org.sonar.python.metrics.FileLinesVisitor;
+import org.sonar.python.metrics.FileMetrics;
+
+/**
+ * What the analysis of a file saves on it: parsing error or measures, CPD tokens, issues, symbol references and
+ * highlighting. It is recorded while it is saved, to be saved on the identical files as well without keeping the syntax
+ * tree and the semantic model of the file.
+ */
+class RecordedAnalysis {
+
+  // null when the file could be parsed
+  private RecognitionException parsingError = null;
+  // null when the file could not be parsed
+  private Measures measures = null;
+  private List<PreciseIssue> issues = Collections.emptyList();
+  private final List<Range> cpdTokens = new ArrayList<>();
+  private final List<Range> highlightings = new ArrayList<>();
+  // for each symbol, its declaration then its references
+  private final List<List<Range>> symbols = new ArrayList<>();
+
+  @CheckForNull
+  RecognitionException parsingError() {
+    return parsingError;
+  }
+
+  void parsingError(RecognitionException parsingError) {
+    this.parsingError = parsingError;
+  }
+
+  @CheckForNull
+  Measures measures() {
+    return measures;
+  }
+
+  void measures(Measures measures) {
+    this.measures = measures;
+  }
+
+  List<PreciseIssue> issues() {
+    return issues;
+  }
+
+  void issues(List<PreciseIssue> issues) {
+    this.issues = new ArrayList<>(issues);
+  }
+
+  /**
+   * Returns CPD tokens which are recorded when they are added to the given ones.
+   */
+  NewCpdTokens recording(NewCpdTokens newCpdTokens) {
+    return new NewCpdTokens() {
+      @Override
+      public NewCpdTokens onFile(InputFile inputFile) {
+        newCpdTokens.onFile(inputFile);
+        return this;
+      }
+
+      @Override
+      public NewCpdTokens addToken(TextRange range, String image) {
+        return addToken(range.start().line(), range.start().lineOffset(), range.end().line(), range.end().lineOffset(), image);
+      }
+
+      @Override
+      public NewCpdTokens addToken(int startLine, int startLineOffset, int endLine, int endLineOffset, String image) {
+        newCpdTokens.addToken(startLine, startLineOffset, endLine, endLineOffset, image);
+        cpdTokens.add(new Range(startLine, startLineOffset, endLine, endLineOffset, image));
+        return this;
+      }
+
+      @Override
+      public void save() {
+        newCpdTokens.save();
+      }
+    };
+  }
+
+  /**
+   * Returns a highlighting which is recorded when it is added to the given one.
+   */
+  NewHighlighting recording(NewHighlighting newHighlighting) {
+    return new NewHighlighting() {
+      @Override
+      public NewHighlighting onFile(InputFile inputFile) {
+        newHighlighting.onFile(inputFile);
+        return this;
+      }
+
+      @Override
+      public NewHighlighting highlight(int startOffset, int endOffset, TypeOfText typeOfText) {
+        throw new UnsupportedOperationException("Only the highlightings with lines and line offsets are recorded");
+      }
+
+      @Override
+      public NewHighlighting highlight(TextRange range, TypeOfText typeOfText) {
+        return highlight(range.start().line(), range.start().lineOffset(), range.end().line(), range.end().lineOffset(), typeOfText);
+      }
+
+      @Override
+      public NewHighlighting highlight(int startLine, int startLineOffset, int endLine, int endLineOffset, TypeOfText typeOfText) {
+        newHighlighting.highlight(startLine, startLineOffset, endLine, endLineOffset, typeOfText);
+        highlightings.add(new Range(startLine, startLineOffset, endLine, endLineOffset, typeOfText));
+        return this;
+      }
+
+      @Override
+      public void save() {
+        newHighlighting.save();
+      }
+    };
+  }
+
+  /**
+   * Returns a symbol table which is recorded when symbols and references are added to the given one.
+   */
+  NewSymbolTable recording(NewSymbolTable newSymbolTable) {
+    return new NewSymbolTable() {
+      @Override
+      public NewSymbolTable onFile(InputFile inputFile) {
+        newSymbolTable.onFile(inputFile);
+        return this;
+      }
+
+      @Override
+      public NewSymbol newSymbol(int startOffset, int endOffset) {
+        throw new UnsupportedOperationException("Only the symbols with lines and line offsets are recorded");
+      }
+
+      @Override
+      public NewSymbol newSymbol(TextRange range) {
+        return newSymbol(range.start().line(), range.start().lineOffset(), range.end().line(), range.end().lineOffset());
+      }
+
+      @Override
+      public NewSymbol newSymbol(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+        NewSymbol newSymbol = newSymbolTable.newSymbol(startLine, startLineOffset, endLine, endLineOffset);
+        List<Range> ranges = new ArrayList<>();
+        ranges.add(new Range(startLine, startLineOffset, endLine, endLineOffset, null));
+        symbols.add(ranges);
+        return new RecordingSymbol(newSymbol, ranges);
+      }
+
+      @Override
+      public void save() {
+        newSymbolTable.save();
+      }
+    };
+  }
+
+  void saveCpdTokens(NewCpdTokens newCpdTokens) {
+    for (Range range : cpdTokens) {
+      newCpdTokens.addToken(range.startLine, range.startLineOffset, range.endLine, range.endLineOffset, (String) range.value);
+    }
+    newCpdTokens.save();
+  }
+
+  void saveHighlighting(NewHighlighting newHighlighting) {
+    for (Range range : highlightings) {
+      newHighlighting.highlight(range.startLine, range.startLineOffset, range.endLine, range.endLineOffset, (TypeOfText) range.value);
+    }
+    newHighlighting.save();
+  }
+
+  void saveSymbols(NewSymbolTable newSymbolTable) {
+    for (List<Range> ranges : symbols) {
+      Range declaration = ranges.get(0);
+      NewSymbol newSymbol = newSymbolTable.newSymbol(declaration.startLine, declaration.startLineOffset, declaration.endLine, declaration.endLineOffset);
+      for (Range reference : ranges.subList(1, ranges.size())) {
+        newSymbol.newReference(reference.startLine, reference.startLineOffset, reference.endLine, reference.endLineOffset);
+      }
+    }
+    newSymbolTable.save();
+  }
+
+  private static class RecordingSymbol implements NewSymbol {
+    private final NewSymbol newSymbol;
+    private final List<Range> ranges;
+
+    private RecordingSymbol(NewSymbol newSymbol, List<Range> ranges) {
+      this.newSymbol = newSymbol;
+      this.ranges = ranges;
+    }
+
+    @Override
+    public NewSymbol newReference(int startOffset, int endOffset) {
+      throw new UnsupportedOperationException("Only the references with lines and line offsets are recorded");
+    }
+
+    @Override
+    public NewSymbol newReference(TextRange range) {
+      return newReference(range.start().line(), range.start().lineOffset(), range.end().line(), range.end().lineOffset());
+    }
+
+    @Override
+    public NewSymbol newReference(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+      newSymbol.newReference(startLine, startLineOffset, endLine, endLineOffset);
+      ranges.add(new Range(startLine, startLineOffset, endLine, endLineOffset, null));
+      return this;
+    }
+  }
+
+  /**
+   * Range of a CPD token with its image, of a highlighting with its type of text, or of a symbol.
+   */
+  private static class Range {
+    private final int startLine;
+    private final int startLineOffset;
+    private final int endLine;
+    private final int endLineOffset;
+    private final Object value;
+
+    private Range(int startLine, int startLineOffset, int endLine, int endLineOffset, Object value) {
+      this.startLine = startLine;
+      this.startLineOffset = startLineOffset;
+      this.endLine = endLine;
+      this.endLineOffset = endLineOffset;
+      this.value = value;
+    }
+  }
+
+  /**
+   * Measures of a file, without the visitors which computed them and which reference the syntax tree.
+   */
+  static class Measures {
+    final int statements;
+    final int functions;
+    final int classes;
+    final int complexity;
+    final int cognitiveComplexity;
+    final int commentLines;
+    final Set<Integer> linesOfCode;
+    final Set<Integer> executableLines;
+    final Set<Integer> linesWithNoSonar;
+
+    Measures(FileMetrics fileMetrics) {
+      FileLinesVisitor fileLinesVisitor = fileMetrics.fileLinesVisitor();
+      statements = fileMetrics.numberOfStatements();
+      functions = fileMetrics.numberOfFunctions();
+      classes = fileMetrics.numberOfClasses();
+      complexity = fileMetrics.complexity();
+      cognitiveComplexity = fileMetrics.cognitiveComplexity();
+      commentLines = fileLinesVisitor.getCommentLineCount();
+      linesOfCode = fileLinesVisitor.getLinesOfCode();
+      executableLines = fileLinesVisitor.getExecutableLines();
+      linesWithNoSonar = fileLinesVisitor.getLinesWithNoSonar();
+    }
+  }
+}
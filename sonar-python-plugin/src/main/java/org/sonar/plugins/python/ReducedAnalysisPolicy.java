@@ -0,0 +1,93 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.plugins.python.api.LineIndex;
+import org.sonar.plugins.python.api.PythonFile;
+
+/**
+ * Detects the generated and the very large files, which only get metrics, duplications and highlighting:
+ * neither their semantic model nor the rules are computed. Every criterion is disabled by default.
+ */
+class ReducedAnalysisPolicy {
+
+  static final String GENERATED_FILES_KEY = "sonar.python.analysis.generatedFiles";
+  static final String LARGE_FILE_SIZE_KEY = "sonar.python.analysis.largeFileSize";
+  static final String LARGE_FILE_LINES_KEY = "sonar.python.analysis.largeFileLines";
+  static final String GENERATED_CODE_HEADER_KEY = "sonar.python.analysis.generatedCodeHeader";
+
+  private static final List<String> GENERATED_CODE_MARKERS = Arrays.asList("Generated by", "DO NOT EDIT", "@generated");
+  private static final int HEADER_LINES = 10;
+
+  private final FilePredicate generatedFiles;
+  private final long largeFileSize;
+  private final int largeFileLines;
+  private final boolean generatedCodeHeader;
+
+  ReducedAnalysisPolicy(SensorContext context) {
+    String[] patterns = context.config().getStringArray(GENERATED_FILES_KEY);
+    this.generatedFiles = patterns.length == 0 ? null : context.fileSystem().predicates().matchesPathPatterns(patterns);
+    this.largeFileSize = context.config().getLong(LARGE_FILE_SIZE_KEY).orElse(0L) * 1024;
+    this.largeFileLines = context.config().getInt(LARGE_FILE_LINES_KEY).orElse(0);
+    this.generatedCodeHeader = context.config().getBoolean(GENERATED_CODE_HEADER_KEY).orElse(false);
+  }
+
+  /**
+   * Returns why the given file only gets a reduced analysis, or null when it is fully analysed.
+   */
+  @CheckForNull
+  String reason(InputFile inputFile, PythonFile pythonFile) {
+    if (largeFileSize > 0 && inputFile.file().length() > largeFileSize) {
+      return "larger than " + (largeFileSize / 1024) + " KB";
+    }
+    if (largeFileLines > 0 && inputFile.lines() > largeFileLines) {
+      return "more than " + largeFileLines + " lines";
+    }
+    if (generatedFiles != null && generatedFiles.apply(inputFile)) {
+      return "matches " + GENERATED_FILES_KEY;
+    }
+    if (generatedCodeHeader && hasGeneratedCodeMarker(pythonFile)) {
+      return "generated code header";
+    }
+    return null;
+  }
+
+  private static boolean hasGeneratedCodeMarker(PythonFile pythonFile) {
+    String content = pythonFile.content();
+    LineIndex lines = pythonFile.lineIndex();
+    for (int line = 1; line <= Math.min(HEADER_LINES, lines.lineCount()); line++) {
+      String text = content.substring(lines.lineStart(line), lines.lineStart(line) + lines.lineLength(line)).trim();
+      if (!text.isEmpty() && !text.startsWith("#")) {
+        // the header comments are over
+        return false;
+      }
+      if (GENERATED_CODE_MARKERS.stream().anyMatch(text::contains)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -20,19 +20,27 @@
 package org.sonar.plugins.python;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.python.AnalysisCancellation;
+import org.sonar.python.AnalysisCancelledException;
 import org.sonarsource.analyzer.commons.ProgressReport;
 
 abstract class Scanner {
   private static final Logger LOG = Loggers.get(Scanner.class);
   private static final String FAIL_FAST_PROPERTY_NAME = "sonar.internal.analysis.failFast";
   protected final SensorContext context;
+  private final List<InputFile> timedOutFiles = new ArrayList<>();
 
   Scanner(SensorContext context) {
     this.context = context;
@@ -43,26 +51,60 @@ abstract class Scanner {
     LOG.info("Starting " + this.name());
     List<String> filenames = files.stream().map(InputFile::toString).collect(Collectors.toList());
     progressReport.start(filenames);
-    for (InputFile file : files) {
-      if (context.isCancelled()) {
-        progressReport.cancel();
-        return;
-      }
-      try {
-        this.scanFile(file);
-      } catch (Exception e) {
-        this.processException(e, file);
-        if (context.config().getBoolean(FAIL_FAST_PROPERTY_NAME).orElse(false)) {
-          throw new IllegalStateException("Exception when analyzing " + file, e);
+    long fileTimeout = context.config().getLong(PythonPlugin.FILE_TIMEOUT_KEY).orElse(0L);
+    ScheduledExecutorService watchdog = fileTimeout > 0 ? Executors.newSingleThreadScheduledExecutor(Scanner::watchdogThread) : null;
+    try {
+      for (InputFile file : files) {
+        if (context.isCancelled()) {
+          progressReport.cancel();
+          return;
         }
-      } finally {
+        scanFile(file, watchdog, fileTimeout, context);
         progressReport.nextFile();
       }
+    } finally {
+      if (watchdog != null) {
+        watchdog.shutdownNow();
+      }
     }
 
     progressReport.stop();
   }
 
+  private void scanFile(InputFile file, @Nullable ScheduledExecutorService watchdog, long fileTimeout, SensorContext context) {
+    AnalysisCancellation cancellation = AnalysisCancellation.register();
+    ScheduledFuture<?> timeout = watchdog == null ? null : watchdog.schedule(cancellation::cancel, fileTimeout, TimeUnit.SECONDS);
+    try {
+      this.scanFile(file);
+    } catch (AnalysisCancelledException e) {
+      timedOutFiles.add(file);
+      LOG.warn("Analysis of file " + file + " stopped during " + this.name() + ": it exceeded the time budget of " + fileTimeout + " seconds.");
+    } catch (Exception e) {
+      this.processException(e, file);
+      if (context.config().getBoolean(FAIL_FAST_PROPERTY_NAME).orElse(false)) {
+        throw new IllegalStateException("Exception when analyzing " + file, e);
+      }
+    } finally {
+      if (timeout != null) {
+        timeout.cancel(false);
+      }
+      AnalysisCancellation.unregister();
+    }
+  }
+
+  static Thread watchdogThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "python-analysis-watchdog");
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Files whose analysis was stopped because it exceeded the time budget.
+   */
+  List<InputFile> timedOutFiles() {
+    return timedOutFiles;
+  }
+
   abstract String name();
 
   abstract void scanFile(InputFile file) throws IOException;
@@ -0,0 +1,133 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.utils.log.Logger;
+
+/**
+ * Keeps the analysis durations, by phase, of the slowest files to report them at the end of the analysis.
+ */
+class SlowestFilesReport {
+
+  enum Phase {
+    PARSING, MEASURES, RULES, HIGHLIGHTING
+  }
+
+  private final int size;
+  private final PriorityQueue<FileTimings> slowestFiles = new PriorityQueue<>(Comparator.comparingLong(FileTimings::totalNanos));
+
+  SlowestFilesReport(int size) {
+    this.size = size;
+  }
+
+  FileTimings newTimings(InputFile file) {
+    return new FileTimings(file);
+  }
+
+  void add(FileTimings timings) {
+    slowestFiles.add(timings);
+    if (slowestFiles.size() > size) {
+      slowestFiles.poll();
+    }
+  }
+
+  List<FileTimings> slowestFiles() {
+    List<FileTimings> result = new ArrayList<>(slowestFiles);
+    result.sort(Comparator.comparingLong(FileTimings::totalNanos).reversed());
+    return result;
+  }
+
+  void log(Logger logger) {
+    List<FileTimings> files = slowestFiles();
+    if (files.isEmpty()) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder().append(files.size()).append(" slowest files:");
+    for (FileTimings timings : files) {
+      sb.append("\n  ").append(timings.file).append(": ").append(millis(timings.totalNanos())).append(" (")
+        .append(timings.phaseNanos.entrySet().stream()
+          .map(entry -> entry.getKey().name().toLowerCase(Locale.ENGLISH) + ": " + millis(entry.getValue()))
+          .collect(Collectors.joining(", ")))
+        .append(")");
+    }
+    logger.info(sb.toString());
+  }
+
+  private static String millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+  }
+
+  static class FileTimings {
+    private final InputFile file;
+    private final Map<Phase, Long> phaseNanos = new EnumMap<>(Phase.class);
+    private Phase currentPhase = null;
+    private long currentPhaseStart;
+
+    private FileTimings(InputFile file) {
+      this.file = file;
+    }
+
+    /**
+     * Starts measuring the given phase, which ends the current one.
+     */
+    void start(@Nullable Phase phase) {
+      long now = System.nanoTime();
+      if (currentPhase != null) {
+        phaseNanos.merge(currentPhase, now - currentPhaseStart, Long::sum);
+      }
+      currentPhase = phase;
+      currentPhaseStart = now;
+    }
+
+    /**
+     * Adds the duration of a phase which ran out of the analysis of the file, on another thread.
+     */
+    void add(Phase phase, long nanos) {
+      phaseNanos.merge(phase, nanos, Long::sum);
+    }
+
+    void stop() {
+      start(null);
+    }
+
+    InputFile file() {
+      return file;
+    }
+
+    long phaseNanos(Phase phase) {
+      return phaseNanos.getOrDefault(phase, 0L);
+    }
+
+    long totalNanos() {
+      return phaseNanos.values().stream().mapToLong(Long::longValue).sum();
+    }
+  }
+}
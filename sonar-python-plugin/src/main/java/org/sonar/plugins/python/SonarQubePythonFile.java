@@ -22,6 +22,7 @@ package org.sonar.plugins.python;
 import java.io.IOException;
 import java.net.URI;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.plugins.python.api.LineIndex;
 import org.sonar.plugins.python.api.PythonFile;
 
 public abstract class SonarQubePythonFile implements PythonFile {
@@ -57,17 +58,32 @@ public abstract class SonarQubePythonFile implements PythonFile {
 
   private static class Sq62File extends SonarQubePythonFile {
 
+    private String content;
+    private LineIndex lineIndex;
+
     public Sq62File(InputFile inputFile) {
       super(inputFile);
     }
 
     @Override
     public String content() {
-      try {
-        return inputFile().contents();
-      } catch (IOException e) {
-        throw new IllegalStateException("Could not read content of input file " + inputFile(), e);
+      if (content == null) {
+        // InputFile reads and decodes the file on each call
+        try {
+          content = inputFile().contents();
+        } catch (IOException e) {
+          throw new IllegalStateException("Could not read content of input file " + inputFile(), e);
+        }
+      }
+      return content;
+    }
+
+    @Override
+    public LineIndex lineIndex() {
+      if (lineIndex == null) {
+        lineIndex = new LineIndex(content());
       }
+      return lineIndex;
     }
 
   }
@@ -0,0 +1,138 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.plugins.python.api.PythonCheck;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
+import org.sonar.python.AnalysisProfiler;
+import org.sonar.python.AnalysisProfiler.Phase;
+import org.sonar.python.semantic.MemoryFootprint;
+import org.sonar.python.tree.PythonTreeParser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalysisProfileReportTest {
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private final PythonCheck check = new TestCheck();
+  private final PythonCheck otherInstance = new TestCheck();
+  private final PythonCheck customCheck = new TestCheck();
+  private final AnalysisProfileReport report = new AnalysisProfileReport(
+    c -> c == customCheck ? null : RuleKey.of("python", "S1"), 1, 64);
+
+  @After
+  public void unregister() {
+    AnalysisProfiler.unregister();
+  }
+
+  @Test
+  public void aggregated_measures() throws InterruptedException {
+    InputFile fast = inputFile("fast.py");
+    InputFile slow = inputFile("slow.py");
+    report.add(fast, profile(1, check));
+    report.add(slow, profile(20, otherInstance));
+    report.add(inputFile("custom.py"), profile(2, customCheck));
+
+    assertThat(report.slowestFiles()).extracting(AnalysisProfileReport.FileProfile::file).containsExactly(slow);
+    assertThat(report.slowestRules()).extracting(AnalysisProfileReport.RuleProfile::rule).containsExactly("python:S1", TestCheck.class.getName());
+    assertThat(report.slowestRules().get(0).nanos()).isEqualTo(report.total().rules().get(check).nanos() + report.total().rules().get(otherInstance).nanos());
+    assertThat(report.total().measure(Phase.PARSING).nanos()).isGreaterThanOrEqualTo(23_000_000L);
+    AnalysisProfileReport.RuleProfile rule = report.slowestRules().get(0);
+    assertThat(rule.measure().invocations()).isEqualTo(4);
+    assertThat(rule.filesOverBudget()).isEqualTo(1);
+    assertThat(rule.slowestEntryPoints()).extracting(Map.Entry::getKey).containsExactly("NAME", AnalysisProfiler.LEAVE_FILE);
+  }
+
+  @Test
+  public void log_and_write() throws Exception {
+    AnalysisProfiler profiler = profile(20, check);
+    profiler.footprint().add(MemoryFootprint.of(PythonTreeParser.create().parse("x = 1\nprint(x)\n")));
+    report.add(inputFile("mod.py"), profiler);
+    File reportFile = temporaryFolder.newFile(AnalysisProfileReport.REPORT_FILE_NAME);
+    report.write(reportFile);
+    report.log(Loggers.get(AnalysisProfileReportTest.class), reportFile);
+
+    String json = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+    assertThat(json).startsWith("{\"files\":1,\"allocationsMeasured\":" + AnalysisProfiler.measuresAllocations() + ",\"phases\":{\"reading\":{\"timeMs\":");
+    assertThat(json).contains("\"rules\":[{\"rule\":\"python:S1\",\"timeMs\":", "\"invocations\":2,\"filesOverBudget\":1,\"entryPoints\":[{\"entryPoint\":\"NAME\",",
+      "\"slowestFiles\":[{\"file\":\"mod.py\",\"timeMs\":", "\"footprint\":{\"linesOfCode\":2,\"sourceCharacters\":11,",
+      "\"budgetPerSourceByte\":64,\"categories\":{\"tree\":{\"objects\":", "\"footprintBytes\":");
+    String log = logTester.logs(LoggerLevel.INFO).get(0);
+    assertThat(log).startsWith("Python analysis profile of 1 file(s), written to " + reportFile + ":\n  phase ");
+    assertThat(log).contains("\n  parsing ", "\n  total ", "1 slowest rules:\n  python:S1: ", " MB, 2 calls, slowest on NAME: ", " ms, over budget on 1 file(s)\n",
+      "1 slowest files:\n  mod.py: ", "Estimated heap of the trees and semantic models of 2 lines of code:\n  category ", "\n  tokens ",
+      " bytes per source character, over the budget of 64 bytes per source byte of the parsed files");
+  }
+
+  @Test
+  public void log_without_report_file() throws IOException {
+    report.log(Loggers.get(AnalysisProfileReportTest.class), null);
+    assertThat(logTester.logs(LoggerLevel.INFO).get(0)).startsWith("Python analysis profile of 0 file(s):\n")
+      .contains("0 slowest rules:", "0 slowest files:", "\n  0 bytes per source character")
+      .doesNotContain("over the budget");
+  }
+
+  private static AnalysisProfiler profile(long parsingMillis, PythonCheck check) throws InterruptedException {
+    AnalysisProfiler profiler = AnalysisProfiler.register(TimeUnit.MILLISECONDS.toNanos(10));
+    profiler.start(Phase.PARSING);
+    Thread.sleep(parsingMillis);
+    profiler.stop();
+    profiler.startRule(check, "NAME");
+    // over budget when the parsing was slow
+    Thread.sleep(parsingMillis);
+    profiler.stop();
+    profiler.startRule(check, AnalysisProfiler.LEAVE_FILE);
+    profiler.stop();
+    AnalysisProfiler.unregister();
+    return profiler;
+  }
+
+  private static InputFile inputFile(String name) {
+    return TestInputFileBuilder.create("moduleKey", name).build();
+  }
+
+  private static class TestCheck extends PythonSubscriptionCheck {
+    @Override
+    public void initialize(Context context) {
+      // no subscription
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.util.Arrays;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IdenticalFilesTest {
+
+  private final IdenticalFiles<String> identicalFiles = new IdenticalFiles<>();
+
+  @Test
+  public void identical_files() {
+    InputFile a = inputFile("a/mod.py");
+    InputFile b = inputFile("b/mod.py");
+    InputFile c = inputFile("c/mod.py");
+    InputFile other = inputFile("c/other.py");
+    identicalFiles.add(a, "x = 1", "");
+    identicalFiles.add(other, "x = 1", "");
+    identicalFiles.add(b, "x = 1", "");
+    identicalFiles.add(c, "x = 1", "");
+
+    assertThat(identicalFiles.groupIdenticalFiles(Arrays.asList(a, other, b, c))).containsExactly(a, b, c, other);
+    assertThat(identicalFiles.followsIdenticalFile(a)).isFalse();
+    assertThat(identicalFiles.followsIdenticalFile(b)).isTrue();
+    assertThat(identicalFiles.followsIdenticalFile(c)).isTrue();
+    assertThat(identicalFiles.followsIdenticalFile(other)).isFalse();
+
+    assertThat(identicalFiles.resultOf(a)).isNull();
+    assertThat(identicalFiles.hasRemainingIdenticalFiles(a)).isTrue();
+    identicalFiles.analysed(a, "result of a");
+    assertThat(identicalFiles.resultOf(b)).isEqualTo("result of a");
+    assertThat(identicalFiles.resultOf(c)).isEqualTo("result of a");
+    assertThat(identicalFiles.resultOf(other)).isNull();
+    assertThat(identicalFiles.hasRemainingIdenticalFiles(other)).isFalse();
+    identicalFiles.analysed(other, "result of other");
+    assertThat(identicalFiles.reusedResults()).isEqualTo(2);
+  }
+
+  @Test
+  public void different_contents_or_packages() {
+    InputFile a = inputFile("a/mod.py");
+    InputFile b = inputFile("b/mod.py");
+    InputFile c = inputFile("c/mod.py");
+    identicalFiles.add(a, "x = 1", "a");
+    identicalFiles.add(b, "x = 1", "b");
+    identicalFiles.add(c, "x = 2", "a");
+    assertThat(identicalFiles.resultOf(a)).isNull();
+    assertThat(identicalFiles.hasRemainingIdenticalFiles(a)).isFalse();
+    identicalFiles.analysed(a, "result of a");
+    assertThat(identicalFiles.resultOf(b)).isNull();
+    assertThat(identicalFiles.resultOf(c)).isNull();
+    assertThat(identicalFiles.reusedResults()).isZero();
+  }
+
+  @Test
+  public void failed_analysis() {
+    InputFile a = inputFile("a/mod.py");
+    InputFile b = inputFile("b/mod.py");
+    InputFile c = inputFile("c/mod.py");
+    InputFile unknown = inputFile("d/mod.py");
+    identicalFiles.add(a, "x = 1", "");
+    identicalFiles.add(b, "x = 1", "");
+    identicalFiles.add(c, "x = 1", "");
+    // analysis of "a" did not complete
+    assertThat(identicalFiles.resultOf(a)).isNull();
+    assertThat(identicalFiles.resultOf(b)).isNull();
+    identicalFiles.analysed(b, "result of b");
+    assertThat(identicalFiles.resultOf(c)).isEqualTo("result of b");
+    // no result is kept once all files are analysed
+    identicalFiles.analysed(c, "result of c");
+    assertThat(identicalFiles.resultOf(unknown)).isNull();
+    identicalFiles.analysed(unknown, "result of unknown");
+  }
+
+  private static InputFile inputFile(String path) {
+    return TestInputFileBuilder.create("moduleKey", path).build();
+  }
+}
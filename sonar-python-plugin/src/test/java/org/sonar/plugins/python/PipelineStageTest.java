@@ -0,0 +1,152 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.junit.After;
+import org.junit.Test;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.python.AnalysisCancellation;
+import org.sonar.python.AnalysisCancelledException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class PipelineStageTest {
+
+  private final InputFile a = inputFile("a.py");
+  private final InputFile b = inputFile("b.py");
+  private final InputFile c = inputFile("c.py");
+  private final List<InputFile> files = Arrays.asList(a, b, c);
+  private final AtomicInteger processedFiles = new AtomicInteger();
+  private PipelineStage<String> stage;
+
+  @After
+  public void close() {
+    stage.close();
+  }
+
+  @Test
+  public void results_in_order() {
+    start(InputFile::filename, 100, 100, 10);
+    assertThat(stage.take(a)).isEqualTo("a.py");
+    assertThat(stage.take(b)).isEqualTo("b.py");
+    assertThat(stage.take(c)).isEqualTo("c.py");
+    assertThat(processedFiles.get()).isEqualTo(3);
+  }
+
+  @Test
+  public void files_not_taken() {
+    start(InputFile::filename, 100, 100, 10);
+    assertThat(stage.take(inputFile("unknown.py"))).isNull();
+    assertThat(stage.take(c)).isEqualTo("c.py");
+    assertThat(stage.take(a)).isNull();
+  }
+
+  @Test
+  public void exceptions_are_rethrown() {
+    start(file -> {
+      if (file == b) {
+        throw new IllegalStateException("failure on b");
+      }
+      return file.filename();
+    }, 100, 100, 10);
+    assertThat(stage.take(a)).isEqualTo("a.py");
+    try {
+      stage.take(b);
+      fail("should have failed");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessage("failure on b");
+    }
+    assertThat(stage.take(c)).isEqualTo("c.py");
+  }
+
+  @Test
+  public void admission_by_heap_footprint() throws InterruptedException {
+    start(InputFile::filename, 100, 15, 10);
+    assertThat(stage.take(a)).isEqualTo("a.py");
+    Thread.sleep(200);
+    // "a" is being analysed, "b" does not fit in the heap budget
+    assertThat(processedFiles.get()).isEqualTo(1);
+    assertThat(stage.take(b)).isEqualTo("b.py");
+    Thread.sleep(200);
+    assertThat(processedFiles.get()).isEqualTo(2);
+    assertThat(stage.take(c)).isEqualTo("c.py");
+  }
+
+  @Test
+  public void file_larger_than_heap_budget() {
+    start(InputFile::filename, 100, 50, 10);
+    assertThat(stage.take(a)).isEqualTo("a.py");
+    assertThat(stage.take(b)).isEqualTo("b.py");
+    assertThat(stage.take(c)).isEqualTo("c.py");
+  }
+
+  @Test
+  public void admission_by_capacity() throws InterruptedException {
+    start(InputFile::filename, 1, 100, 10);
+    Thread.sleep(200);
+    assertThat(processedFiles.get()).isEqualTo(1);
+    assertThat(stage.take(a)).isEqualTo("a.py");
+    assertThat(stage.take(b)).isEqualTo("b.py");
+    assertThat(stage.take(c)).isEqualTo("c.py");
+  }
+
+  @Test
+  public void closed_stage() {
+    start(InputFile::filename, 100, 100, 10);
+    stage.close();
+    assertThat(stage.take(a)).isNull();
+  }
+
+  @Test(timeout = 10_000)
+  public void time_budget() {
+    stage = new PipelineStage<>("test-stage", files, file -> {
+      while (file == a) {
+        AnalysisCancellation.current().check();
+      }
+      return file.filename();
+    }, file -> 10, 100, 100, 1);
+    stage.start();
+    try {
+      stage.take(a);
+      fail("should have been cancelled");
+    } catch (AnalysisCancelledException e) {
+      assertThat(e).hasMessage("Analysis cancelled");
+    }
+    assertThat(stage.take(b)).isEqualTo("b.py");
+  }
+
+  private void start(Function<InputFile, String> task, int capacity, long heapBudget, long fileFootprint) {
+    stage = new PipelineStage<>("test-stage", files, file -> {
+      processedFiles.incrementAndGet();
+      return task.apply(file);
+    }, file -> fileFootprint, heapBudget, capacity, 0);
+    stage.start();
+  }
+
+  private static InputFile inputFile(String name) {
+    return TestInputFileBuilder.create("moduleKey", name).build();
+  }
+}
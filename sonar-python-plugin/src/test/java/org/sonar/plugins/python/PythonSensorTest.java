@@ -25,10 +25,13 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import org.junit.Before;
 import org.junit.Test;
@@ -46,6 +49,7 @@ import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.rule.CheckFactory;
 import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
 import org.sonar.api.batch.rule.internal.NewActiveRule;
+import org.sonar.api.batch.sensor.cpd.internal.TokensLine;
 import org.sonar.api.batch.sensor.error.AnalysisError;
 import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
 import org.sonar.api.batch.sensor.internal.SensorContextTester;
@@ -65,13 +69,19 @@ import org.sonar.check.Rule;
 import org.sonar.check.RuleProperty;
 import org.sonar.plugins.python.api.PythonCheck;
 import org.sonar.plugins.python.api.PythonCustomRuleRepository;
+import org.sonar.plugins.python.api.PythonSubscriptionCheck;
 import org.sonar.plugins.python.api.PythonVisitorContext;
+import org.sonar.plugins.python.api.tree.Tree;
+import org.sonar.plugins.python.warnings.AnalysisWarningsWrapper;
 import org.sonar.python.checks.CheckList;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class PythonSensorTest {
@@ -116,6 +126,35 @@ public class PythonSensorTest {
     }
   }
 
+  @Rule(key = "slow")
+  public static class SlowCustomRule extends PythonSubscriptionCheck {
+    @Override
+    public void initialize(Context context) {
+      context.registerSyntaxNodeConsumer(Tree.Kind.FILE_INPUT, ctx -> {
+        try {
+          Thread.sleep(1500);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+  }
+
+  @Rule(key = "slowIssue")
+  public static class SlowIssueRule extends PythonSubscriptionCheck {
+    @Override
+    public void initialize(Context context) {
+      context.registerSyntaxNodeConsumer(Tree.Kind.FILE_INPUT, ctx -> {
+        ctx.addFileIssue("Slow issue");
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+    }
+  }
+
   private final File baseDir = new File("src/test/resources/org/sonar/plugins/python/sensor").getAbsoluteFile();
 
   private SensorContextTester context;
@@ -394,6 +433,233 @@ public class PythonSensorTest {
     assertThat(context.allAnalysisErrors()).isEmpty();
   }
 
+  @Test
+  public void file_analysis_time_budget() {
+    inputFile(FILE_1);
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of("customKey", "slow"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings().setProperty(PythonPlugin.FILE_TIMEOUT_KEY, "1"));
+    PythonCustomRuleRepository[] slowRules = {new PythonCustomRuleRepository() {
+      @Override
+      public String repositoryKey() {
+        return "customKey";
+      }
+
+      @Override
+      public List<Class> checkClasses() {
+        return Collections.singletonList(SlowCustomRule.class);
+      }
+    }};
+    AnalysisWarningsWrapper analysisWarnings = mock(AnalysisWarningsWrapper.class);
+    sensor(slowRules, analysisWarnings).execute(context);
+
+    // measures are saved before rules execution
+    assertThat(context.measure("moduleKey:file1.py", CoreMetrics.NCLOC).value()).isEqualTo(22);
+    assertThat(context.highlightingTypeAt("moduleKey:file1.py", 15, 2)).isEmpty();
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .contains("Analysis of file file1.py stopped during rules execution: it exceeded the time budget of 1 seconds.");
+    assertThat(logTester.logs(LoggerLevel.INFO).stream().anyMatch(log -> log.startsWith("1 slowest files:\n  file1.py: ") && log.contains("rules: "))).isTrue();
+    verify(analysisWarnings).addWarning("The analysis of 1 Python file(s) was stopped because it exceeded the time budget set by " +
+      "\"sonar.python.analysis.fileTimeout\". See the analysis logs for the list of files.");
+  }
+
+  @Test
+  public void global_symbols_time_budget() throws IOException {
+    DefaultInputFile inputFile = spy(createInputFile(FILE_1));
+    // only the first reading of the file, by the computation of the global symbols, exceeds the time budget
+    AtomicBoolean firstReading = new AtomicBoolean(true);
+    doAnswer(invocation -> {
+      if (firstReading.getAndSet(false)) {
+        Thread.sleep(1500);
+      }
+      return invocation.callRealMethod();
+    }).when(inputFile).contents();
+    context.fileSystem().add(inputFile);
+    activeRules = new ActiveRulesBuilder().build();
+    context.setSettings(new MapSettings().setProperty(PythonPlugin.FILE_TIMEOUT_KEY, "1"));
+    AnalysisWarningsWrapper analysisWarnings = mock(AnalysisWarningsWrapper.class);
+    sensor(null, analysisWarnings).execute(context);
+
+    assertThat(context.measure("moduleKey:file1.py", CoreMetrics.NCLOC).value()).isEqualTo(22);
+    assertThat(logTester.logs(LoggerLevel.WARN))
+      .contains("Analysis of file file1.py stopped during global symbols computation: it exceeded the time budget of 1 seconds.");
+    verify(analysisWarnings).addWarning("The analysis of 1 Python file(s) was stopped because it exceeded the time budget set by " +
+      "\"sonar.python.analysis.fileTimeout\". See the analysis logs for the list of files.");
+  }
+
+  @Test
+  public void rule_time_budget() {
+    inputFile(FILE_1);
+    inputFile(FILE_2);
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of("customKey", "slowIssue"))
+        .build())
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "PrintStatementUsage"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings()
+      .setProperty(PythonPlugin.RULE_TIME_BUDGET_KEY, "50")
+      .setProperty(PythonPlugin.DISABLE_SLOW_RULES_KEY, "true")
+      .setProperty(AnalysisProfileReport.PROFILING_KEY, "true"));
+    PythonCustomRuleRepository[] slowRules = {new PythonCustomRuleRepository() {
+      @Override
+      public String repositoryKey() {
+        return "customKey";
+      }
+
+      @Override
+      public List<Class> checkClasses() {
+        return Collections.singletonList(SlowIssueRule.class);
+      }
+    }};
+    sensor(slowRules).execute(context);
+
+    assertThat(context.allIssues()).extracting(issue -> issue.ruleKey().rule()).containsExactly("PrintStatementUsage");
+    // the rule is disabled after the first file
+    assertThat(logTester.logs(LoggerLevel.WARN).stream().filter(log -> log.startsWith("Rule customKey:slowIssue exceeded its time budget of 50 ms on file ")
+      && log.endsWith(": its issues on the file are discarded, and it is disabled on the following files.")).count()).isEqualTo(1);
+    assertThat(logTester.logs(LoggerLevel.INFO).stream()
+      .anyMatch(log -> log.contains("\n  customKey:slowIssue: ") && log.contains(" slowest on FILE_INPUT: ") && log.contains(", over budget on 1 file(s)"))).isTrue();
+  }
+
+  @Test
+  public void slowest_files_report() {
+    inputFile(FILE_1);
+    inputFile(FILE_2);
+    activeRules = new ActiveRulesBuilder().build();
+    AnalysisWarningsWrapper analysisWarnings = mock(AnalysisWarningsWrapper.class);
+    sensor(null, analysisWarnings).execute(context);
+    assertThat(logTester.logs(LoggerLevel.INFO).stream().anyMatch(log -> log.startsWith("2 slowest files:") && log.contains("parsing: "))).isTrue();
+    verifyZeroInteractions(analysisWarnings);
+  }
+
+  @Test
+  public void analysis_profile() throws IOException {
+    inputFile(FILE_1);
+    inputFile(FILE_2);
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "PrintStatementUsage"))
+        .build())
+      .build();
+    sensor().execute(context);
+    assertThat(workDir.resolve(AnalysisProfileReport.REPORT_FILE_NAME)).doesNotExist();
+
+    init();
+    inputFile(FILE_1);
+    inputFile(FILE_2);
+    File reportFile = workDir.resolve(AnalysisProfileReport.REPORT_FILE_NAME).toFile();
+    context.setSettings(new MapSettings().setProperty(AnalysisProfileReport.PROFILING_KEY, "true"));
+    sensor().execute(context);
+    assertThat(logTester.logs(LoggerLevel.INFO).stream()
+      .anyMatch(log -> log.startsWith("Python analysis profile of 2 file(s), written to " + reportFile) && log.contains("python:PrintStatementUsage: "))).isTrue();
+    String report = new String(Files.readAllBytes(reportFile.toPath()), StandardCharsets.UTF_8);
+    assertThat(report).contains("\"files\":2", "\"tree_making\":", "\"type_inference\":", "\"rule\":\"python:PrintStatementUsage\"", "\"file\":\"file1.py\"");
+  }
+
+  @Test
+  public void reduced_analysis_of_generated_files() {
+    inputFile("generated_pb2.py");
+    inputFile("generated_header.py");
+    inputFile("not_generated.py");
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "PrintStatementUsage"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings()
+      .setProperty("sonar.python.analysis.generatedFiles", "**/*_pb2.py")
+      .setProperty("sonar.python.analysis.generatedCodeHeader", "true"));
+    AnalysisWarningsWrapper analysisWarnings = mock(AnalysisWarningsWrapper.class);
+    sensor(CUSTOM_RULES, analysisWarnings).execute(context);
+
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent().key()).containsExactly("moduleKey:not_generated.py");
+    for (String key : Arrays.asList("moduleKey:generated_pb2.py", "moduleKey:generated_header.py")) {
+      assertThat(context.measure(key, CoreMetrics.FUNCTIONS).value()).isEqualTo(1);
+      assertThat(context.highlightingTypeAt(key, 4, 0)).isNotEmpty();
+    }
+    assertThat(context.referencesForSymbolAt("moduleKey:generated_pb2.py", 4, 4)).isNull();
+    assertThat(context.referencesForSymbolAt("moduleKey:not_generated.py", 1, 4)).isEmpty();
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("2 generated or large file(s), 315 bytes, only got metrics, duplications and highlighting.");
+    verify(analysisWarnings).addWarning("2 generated or large Python file(s) only got metrics, duplications and highlighting, without rules: "
+      + "generated_header.py, generated_pb2.py");
+  }
+
+  @Test
+  public void no_reduced_analysis_by_default() {
+    inputFile("generated_pb2.py");
+    inputFile("generated_header.py");
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "PrintStatementUsage"))
+        .build())
+      .build();
+    AnalysisWarningsWrapper analysisWarnings = mock(AnalysisWarningsWrapper.class);
+    sensor(CUSTOM_RULES, analysisWarnings).execute(context);
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent().key())
+      .containsExactlyInAnyOrder("moduleKey:generated_pb2.py", "moduleKey:generated_header.py");
+    verifyZeroInteractions(analysisWarnings);
+  }
+
+  @Test
+  public void reduced_analysis_of_large_files() throws IOException {
+    inputFile(FILE_1);
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "PrintStatementUsage"))
+        .build())
+      .build();
+    context.setSettings(new MapSettings().setProperty("sonar.python.analysis.largeFileLines", "10"));
+    sensor().execute(context);
+    assertThat(context.allIssues()).isEmpty();
+    assertThat(context.measure("moduleKey:file1.py", CoreMetrics.NCLOC).value()).isEqualTo(22);
+
+    init();
+    inputFile(FILE_1);
+    sensor().execute(context);
+    assertThat(context.allIssues()).hasSize(1);
+  }
+
+  @Test
+  public void identical_files_analysed_once() {
+    List<String> files = Arrays.asList("identical/a/util.py", "identical/a/other_name.py", "identical/b/util.py", "identical/pkg1/relative.py", "identical/pkg2/relative.py");
+    files.forEach(this::inputFile);
+    activeRules = new ActiveRulesBuilder()
+      .addRule(new NewActiveRule.Builder()
+        .setRuleKey(RuleKey.of(CheckList.REPOSITORY_KEY, "PrintStatementUsage"))
+        .build())
+      .build();
+    sensor().execute(context);
+
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().inputComponent().key())
+      .containsExactlyInAnyOrder(files.stream().map(file -> "moduleKey:" + file).toArray(String[]::new));
+    for (String file : files) {
+      String key = "moduleKey:" + file;
+      assertThat(context.measure(key, CoreMetrics.FUNCTIONS).value()).isEqualTo(1);
+      assertThat(context.highlightingTypeAt(key, file.endsWith("relative.py") ? 3 : 1, 0)).isNotEmpty();
+    }
+    assertThat(context.allIssues()).extracting(issue -> issue.primaryLocation().textRange().start().line()).containsOnly(2, 4);
+    verifyUsages("moduleKey:identical/b/util.py", 1, 9, reference(3, 11, 3, 12));
+    assertThat(context.cpdTokens("moduleKey:identical/b/util.py")).extracting(TokensLine::getValue)
+      .containsExactlyElementsOf(context.cpdTokens("moduleKey:identical/a/util.py").stream().map(TokensLine::getValue).collect(Collectors.toList()));
+    // same content but different name, and same content in a different package
+    assertThat(logTester.logs(LoggerLevel.INFO)).contains("1 file(s) got the analysis results of an identical file.");
+  }
+
+  @Test
+  public void largest_files_first() {
+    InputFile mod = inputFile("mod.py");
+    InputFile file1 = inputFile(FILE_1);
+    InputFile symbolVisitor = inputFile("symbolVisitor.py");
+    InputFile file2 = inputFile(FILE_2);
+    assertThat(PythonScanner.largestFirst(Arrays.asList(mod, file1, symbolVisitor, file2))).containsExactly(symbolVisitor, file1, file2, mod);
+  }
+
   private PythonSensor sensor() {
     return sensor(CUSTOM_RULES);
   }
@@ -409,6 +675,17 @@ public class PythonSensorTest {
     return new PythonSensor(fileLinesContextFactory, checkFactory, new NoSonarFilter(), customRuleRepositories);
   }
 
+  private PythonSensor sensor(@Nullable PythonCustomRuleRepository[] customRuleRepositories, AnalysisWarningsWrapper analysisWarnings) {
+    FileLinesContextFactory fileLinesContextFactory = mock(FileLinesContextFactory.class);
+    FileLinesContext fileLinesContext = mock(FileLinesContext.class);
+    when(fileLinesContextFactory.createFor(Mockito.any(InputFile.class))).thenReturn(fileLinesContext);
+    CheckFactory checkFactory = new CheckFactory(activeRules);
+    if (customRuleRepositories == null) {
+      return new PythonSensor(fileLinesContextFactory, checkFactory, new NoSonarFilter(), analysisWarnings);
+    }
+    return new PythonSensor(fileLinesContextFactory, checkFactory, new NoSonarFilter(), customRuleRepositories, analysisWarnings);
+  }
+
   private InputFile inputFile(String name) {
     DefaultInputFile inputFile = createInputFile(name);
     context.fileSystem().add(inputFile);
@@ -0,0 +1,93 @@
+/*
+ * SonarQube Python Plugin
+ * Copyright (C) 2011-2020 SonarSource SA
+ * mailto:info AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.plugins.python;
+
+import java.io.File;
+import org.junit.Test;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.fs.internal.DefaultTextPointer;
+import org.sonar.api.batch.fs.internal.DefaultTextRange;
+import org.sonar.api.batch.fs.internal.TestInputFileBuilder;
+import org.sonar.api.batch.sensor.cpd.internal.TokensLine;
+import org.sonar.api.batch.sensor.highlighting.NewHighlighting;
+import org.sonar.api.batch.sensor.highlighting.TypeOfText;
+import org.sonar.api.batch.sensor.internal.SensorContextTester;
+import org.sonar.api.batch.sensor.symbol.NewSymbolTable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class RecordedAnalysisTest {
+
+  private static final String CONTENT = "def f(x):\n  return x\n";
+
+  private final SensorContextTester context = SensorContextTester.create(new File("."));
+  private final DefaultInputFile analysedFile = inputFile("a/mod.py");
+  private final DefaultInputFile identicalFile = inputFile("b/mod.py");
+  private final RecordedAnalysis recordedAnalysis = new RecordedAnalysis();
+
+  @Test
+  public void cpd_tokens() {
+    recordedAnalysis.recording(context.newCpdTokens().onFile(analysedFile))
+      .addToken(1, 0, 1, 3, "def")
+      .addToken(analysedFile.newRange(2, 2, 2, 8), "return")
+      .save();
+    recordedAnalysis.saveCpdTokens(context.newCpdTokens().onFile(identicalFile));
+    assertThat(context.cpdTokens(identicalFile.key())).extracting(TokensLine::getValue).containsExactly("def", "return");
+    assertThat(context.cpdTokens(analysedFile.key())).extracting(TokensLine::getValue).containsExactly("def", "return");
+  }
+
+  @Test
+  public void highlighting() {
+    NewHighlighting highlighting = recordedAnalysis.recording(context.newHighlighting().onFile(analysedFile))
+      .highlight(1, 0, 1, 3, TypeOfText.KEYWORD)
+      .highlight(analysedFile.newRange(2, 2, 2, 8), TypeOfText.KEYWORD);
+    assertThat(catchThrowable(() -> highlighting.highlight(0, 3, TypeOfText.KEYWORD))).isInstanceOf(UnsupportedOperationException.class);
+    highlighting.save();
+    recordedAnalysis.saveHighlighting(context.newHighlighting().onFile(identicalFile));
+    assertThat(context.highlightingTypeAt(identicalFile.key(), 1, 0)).containsExactly(TypeOfText.KEYWORD);
+    assertThat(context.highlightingTypeAt(identicalFile.key(), 2, 2)).containsExactly(TypeOfText.KEYWORD);
+    assertThat(context.highlightingTypeAt(identicalFile.key(), 2, 1)).isEmpty();
+    assertThat(context.highlightingTypeAt(analysedFile.key(), 2, 2)).containsExactly(TypeOfText.KEYWORD);
+  }
+
+  @Test
+  public void symbols() {
+    NewSymbolTable symbolTable = recordedAnalysis.recording(context.newSymbolTable().onFile(analysedFile));
+    symbolTable.newSymbol(1, 4, 1, 5);
+    symbolTable.newSymbol(analysedFile.newRange(1, 6, 1, 7)).newReference(2, 9, 2, 10);
+    assertThat(catchThrowable(() -> symbolTable.newSymbol(6, 7))).isInstanceOf(UnsupportedOperationException.class);
+    symbolTable.save();
+    recordedAnalysis.saveSymbols(context.newSymbolTable().onFile(identicalFile));
+    assertThat(context.referencesForSymbolAt(identicalFile.key(), 1, 4)).isEmpty();
+    assertThat(context.referencesForSymbolAt(identicalFile.key(), 1, 6)).containsExactly(range(2, 9, 2, 10));
+    assertThat(context.referencesForSymbolAt(analysedFile.key(), 1, 6)).containsExactly(range(2, 9, 2, 10));
+  }
+
+  private DefaultInputFile inputFile(String path) {
+    DefaultInputFile inputFile = TestInputFileBuilder.create("moduleKey", path).initMetadata(CONTENT).build();
+    context.fileSystem().add(inputFile);
+    return inputFile;
+  }
+
+  private static DefaultTextRange range(int startLine, int startLineOffset, int endLine, int endLineOffset) {
+    return new DefaultTextRange(new DefaultTextPointer(startLine, startLineOffset), new DefaultTextPointer(endLine, endLineOffset));
+  }
+}
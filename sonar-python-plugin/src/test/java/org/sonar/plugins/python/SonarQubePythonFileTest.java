@@ -28,6 +28,8 @@ import org.sonar.plugins.python.api.PythonFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class SonarQubePythonFileTest {
@@ -46,6 +48,16 @@ public class SonarQubePythonFileTest {
     assertThat(pythonFile.uri()).isEqualTo(inputFile.uri());
   }
 
+  @Test
+  public void content_read_once() throws Exception {
+    when(inputFile.contents()).thenReturn("x = 1\ny = 2\n");
+    PythonFile pythonFile = SonarQubePythonFile.create(inputFile);
+    assertThat(pythonFile.content()).isSameAs(pythonFile.content());
+    assertThat(pythonFile.lineIndex()).isSameAs(pythonFile.lineIndex());
+    assertThat(pythonFile.lineIndex().lineCount()).isEqualTo(3);
+    verify(inputFile, times(1)).contents();
+  }
+
   @Test
   public void unknown_file() throws Exception {
     when(inputFile.contents()).thenThrow(new FileNotFoundException());
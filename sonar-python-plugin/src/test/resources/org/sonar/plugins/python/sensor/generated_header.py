@@ -0,0 +1,8 @@
+# -*- coding: utf-8 -*-
+# Generated by Django 3.0 on 2020-01-01 00:00
+
+from django.db import migrations
+
+def forwards(apps, schema_editor):
+    print "migration"
+    return apps
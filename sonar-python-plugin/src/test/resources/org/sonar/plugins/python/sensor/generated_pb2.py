@@ -0,0 +1,6 @@
+# -*- coding: utf-8 -*-
+from google.protobuf import descriptor as _descriptor
+
+def build():
+    print "generated"
+    return _descriptor
@@ -0,0 +1,3 @@
+def util(x):
+    print "util"
+    return x
@@ -0,0 +1,5 @@
+from . import util
+
+def relative(x):
+    print "relative"
+    return util(x)
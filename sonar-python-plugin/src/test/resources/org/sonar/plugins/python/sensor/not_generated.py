@@ -0,0 +1,4 @@
+def f(apps):
+    print "not generated"
+    # Generated by hand
+    return apps